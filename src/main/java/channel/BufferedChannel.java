@@ -0,0 +1,101 @@
+package channel;
+
+import java.util.Collection;
+
+import org.jcsp.lang.AltingChannelInput;
+import org.jcsp.lang.Channel;
+import org.jcsp.lang.ChannelOutput;
+import org.jcsp.lang.One2OneChannel;
+
+/**
+ * BufferedChannel is a One2OneChannel backed by a bounded RingBuffer: the
+ * writer goes on until the buffer is full instead of waiting for the reader
+ * at every item, like a Go channel made with a capacity.
+ *
+ * Its input is a JCSP guard, so the channel is selected on with an
+ * Alternative among other channels and timers, as the unbuffered ones. The
+ * reader drains the items already buffered in batches, and the buffer exposes
+ * its capacity and backlog.
+ *
+ * @param <T>
+ */
+public class BufferedChannel<T> implements One2OneChannel<T> {
+	private final RingBuffer<T> buffer;
+	private final One2OneChannel<T> channel;
+
+	public BufferedChannel(int capacity) {
+		// the channel stores its items in a clone of the buffer it is given,
+		// which is the one to read the metrics from
+		RingBuffer<T> template = new RingBuffer<T>(capacity);
+		this.channel = Channel.one2one(template);
+		this.buffer = template.copy() != null ? template.copy() : template;
+	}
+
+	public AltingChannelInput<T> in() {
+		return channel.in();
+	}
+
+	public ChannelOutput<T> out() {
+		return channel.out();
+	}
+
+	/**
+	 * drain reads the items already in the channel, without waiting, up to max
+	 * of them. It must be called by the reader of the channel.
+	 * @param into where to add the items
+	 * @param max the maximum number of items read
+	 * @return the number of items read
+	 */
+	public int drain(Collection<? super T> into, int max) {
+		return drain(channel, into, max);
+	}
+
+	// capacity returns the number of items the channel buffers
+	public int capacity() {
+		return buffer.capacity();
+	}
+
+	// backlog returns the number of items waiting to be read
+	public int backlog() {
+		return buffer.backlog();
+	}
+
+	public RingBuffer<T> buffer() {
+		return buffer;
+	}
+
+	/**
+	 * backlog returns the backlog of a channel, or 0 if it is not buffered
+	 * @param ch
+	 * @return
+	 */
+	public static int backlog(One2OneChannel<?> ch) {
+		return ch instanceof BufferedChannel ? ((BufferedChannel<?>) ch).backlog() : 0;
+	}
+
+	/**
+	 * drain reads the items already in a channel, or the one a writer is
+	 * waiting to pass on an unbuffered channel, without waiting, up to max of
+	 * them. It must be called by the reader of the channel.
+	 * @param ch
+	 * @param into where to add the items
+	 * @param max the maximum number of items read
+	 * @return the number of items read
+	 */
+	public static <T> int drain(One2OneChannel<T> ch, Collection<? super T> into, int max) {
+		AltingChannelInput<T> in = ch.in();
+		int n = 0;
+		while (n < max && in.pending()) {
+			into.add(in.read());
+			n++;
+		}
+		return n;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append("BufferedChannel [").append(buffer).append("]");
+		return builder.toString();
+	}
+}
@@ -0,0 +1,132 @@
+package channel;
+
+import org.jcsp.util.ChannelDataStore;
+
+/**
+ * RingBuffer is a bounded FIFO buffer for JCSP channels, like Go's buffered
+ * channels: a writer only waits when it is full, and a reader when it is
+ * empty.
+ *
+ * The slots are a power of two array indexed by ever increasing read and
+ * write counters. The channel calls put and get under its own monitor, one
+ * writer and one reader at a time, so the buffer takes no lock of its own.
+ * The counters are volatile, so that other threads read the backlog and the
+ * other metrics without locking the channel.
+ *
+ * @param <T>
+ */
+public class RingBuffer<T> implements ChannelDataStore<T> {
+	private final Object[] slots;
+	private final int mask;
+	private final int capacity;
+
+	private volatile long reads;   // number of items taken
+	private volatile long writes;  // number of items put
+	private volatile int highWater; // largest backlog seen
+	private volatile long fulls;   // number of times the buffer filled up
+	private volatile RingBuffer<T> copy; // last clone, see clone
+
+	public RingBuffer(int capacity) {
+		this.capacity = Math.max(capacity, 1);
+		int size = Integer.highestOneBit(this.capacity);
+		if (size < this.capacity) {
+			size <<= 1;
+		}
+		this.slots = new Object[size];
+		this.mask = size - 1;
+	}
+
+	@SuppressWarnings("unchecked")
+	public T get() {
+		long r = reads;
+		int i = (int) r & mask;
+		T value = (T) slots[i];
+		slots[i] = null;
+		reads = r + 1;
+		return value;
+	}
+
+	@SuppressWarnings("unchecked")
+	public T startGet() {
+		return (T) slots[(int) reads & mask];
+	}
+
+	public void endGet() {
+		get();
+	}
+
+	public void put(T value) {
+		long w = writes;
+		slots[(int) w & mask] = value;
+		writes = w + 1;
+		int backlog = (int) (w + 1 - reads);
+		if (backlog > highWater) {
+			highWater = backlog;
+		}
+		if (backlog == capacity) {
+			fulls++;
+		}
+	}
+
+	public int getState() {
+		int backlog = backlog();
+		if (backlog == 0) {
+			return EMPTY;
+		}
+		return backlog >= capacity ? FULL : NONEMPTY;
+	}
+
+	// clone returns a new empty buffer of the same capacity. A JCSP channel
+	// keeps a clone of the buffer it is given: the last clone is kept as copy.
+	public Object clone() {
+		RingBuffer<T> clone = new RingBuffer<T>(capacity);
+		copy = clone;
+		return clone;
+	}
+
+	// copy returns the last clone of the buffer, or null
+	RingBuffer<T> copy() {
+		return copy;
+	}
+
+	public void removeAll() {
+		while (backlog() > 0) {
+			get();
+		}
+	}
+
+	// capacity returns the number of items the buffer holds
+	public int capacity() {
+		return capacity;
+	}
+
+	// backlog returns the number of items waiting to be read
+	public int backlog() {
+		long w = writes;
+		return (int) Math.max(w - reads, 0);
+	}
+
+	// highWater returns the largest backlog seen
+	public int highWater() {
+		return highWater;
+	}
+
+	// puts returns the number of items written
+	public long puts() {
+		return writes;
+	}
+
+	// fulls returns the number of times the buffer filled up, making the
+	// writer wait
+	public long fulls() {
+		return fulls;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append("RingBuffer [capacity=").append(capacity).append(", backlog=").append(backlog())
+			.append(", highWater=").append(highWater).append(", puts=").append(writes).append("]");
+		return builder.toString();
+	}
+}
@@ -1,84 +1,141 @@
 package common;
 
-import java.util.ArrayList;
-import java.util.List;
-
 import autils.Logger;
 
+/**
+ * RollingIndex keeps the items with the latest indexes, between size and
+ * 2*size of them, in a circular buffer. Adding an item to a full buffer drops
+ * the size oldest ones, without moving the others.
+ */
 public class RollingIndex {
 	private static Logger logger = Logger.getLogger(RollingIndex.class);
 
 	String name;
 	int size;
 	long lastIndex;
-	List<Object> items; // []interface{}
+	Object[] items; // circular buffer of 2*size slots
+	int head;       // slot of the oldest cached item
+	int count;      // number of cached items
 
 	public RollingIndex(String name, int size) {
+		this(name, size, new Object[2 * size]);
+	}
+
+	/**
+	 * Creates a RollingIndex over the given slots, whose runtime type is the
+	 * type of the arrays filled by Window.copyTo
+	 * @param name
+	 * @param size
+	 * @param slots
+	 */
+	protected RollingIndex(String name, int size, Object[] slots) {
 		this.name = name;
 		this.size = size;
-		this.items = new ArrayList(2 * size); // TBD: items: make([]interface{}, 0, 2*size),
+		this.items = slots;
+		this.head = 0;
+		this.count = 0;
 		lastIndex = -1;
 	}
 
+	/**
+	 * Window is a view of consecutive cached items. It is only valid until the
+	 * next call to set.
+	 */
+	public static class Window {
+		final Object[] slots;
+		final int start;
+		final int length;
+
+		Window(Object[] slots, int start, int length) {
+			this.slots = slots;
+			this.start = start;
+			this.length = length;
+		}
+
+		public int length() {
+			return length;
+		}
+
+		public Object get(int i) {
+			return slots[(start + i) % slots.length];
+		}
+
+		// copyTo copies the items to dst, starting at dst[offset]
+		public void copyTo(Object[] dst, int offset) {
+			int first = Math.min(length, slots.length - start);
+			System.arraycopy(slots, start, dst, offset, first);
+			System.arraycopy(slots, 0, dst, offset + first, length - first);
+		}
+	}
+
 	public RResult2<Object[], Long> getLastWindow() {
-		return new RResult2<Object[], Long>(items.toArray(), lastIndex);
+		Object[] res = new Object[count];
+		new Window(items, head, count).copyTo(res, 0);
+		return new RResult2<Object[], Long>(res, lastIndex);
+	}
+
+	public long lastIndex() {
+		return lastIndex;
+	}
+
+	// getLast returns the item with the last index, or null if there is none
+	public Object getLast() {
+		if (count == 0) {
+			return null;
+		}
+		return items[slot(count - 1)];
 	}
 
 	public RResult<Object[]> get(long skipIndex) {
-//		logger.field("skipIndex", skipIndex).field("items", items).debug("Get()");
-		Object[] res = new Object[] {};
+		RResult<Window> window = window(skipIndex);
+		if (window.err != null) {
+			return new RResult<Object[]>(new Object[] {}, window.err);
+		}
+		Object[] res = new Object[window.result.length()];
+		window.result.copyTo(res, 0);
+		return new RResult<Object[]>(res, null);
+	}
+
+	/**
+	 * window returns a view of the items with an index greater than skipIndex
+	 * @param skipIndex
+	 * @return
+	 */
+	public RResult<Window> window(long skipIndex) {
+//		logger.field("skipIndex", skipIndex).field("count", count).debug("Window()");
 
 		if (skipIndex > lastIndex) {
-			return new RResult<Object[]>(res, null);
+			return new RResult<Window>(new Window(items, head, 0), null);
 		}
 
-		long cachedItems = items.size();
 		// assume there are no gaps between indexes
-		long oldestCachedIndex = lastIndex - cachedItems + 1;
-
-//		logger.field("cachedItems", cachedItems)
-//			.field("oldestCachedIndex", oldestCachedIndex).debug("RollingIndex.Get()");
+		long oldestCachedIndex = lastIndex - count + 1;
 
 		if (skipIndex + 1 < oldestCachedIndex) {
-			return new RResult<Object[]>(res,
+			return new RResult<Window>(new Window(items, head, 0),
 					StoreErr.newStoreErr(name, StoreErrType.TooLate, Long.toString(skipIndex, 10)));
 		}
 
-		// index of 'skipped' in RollingIndex
-		long start = skipIndex - oldestCachedIndex + 1;
-
-		// TBD : equivalent with items[start:]?
-		res = items.subList((int) start, items.size()).toArray();
-
-//		logger.field("start", start).field("res",  res).debug("RollingIndex.Get()");
-
-		return new RResult<Object[]>(res, null);
+		// position of 'skipped' in RollingIndex
+		int start = (int) (skipIndex - oldestCachedIndex + 1);
+		return new RResult<Window>(new Window(items, slot(start), count - start), null);
 	}
 
 	public RResult<Object> getItem(long index) {
-		long numitems = items.size();
-		long oldestCached = lastIndex - numitems + 1;
-
-//		logger.field("index", index)
-//			.field("items", items)
-//			.field("numitems", numitems)
-//			.field("oldestCached", oldestCached).debug("GetItem()");
+		long oldestCached = lastIndex - count + 1;
 
 		if (index < oldestCached) {
 			return new RResult<Object>(null,
 					StoreErr.newStoreErr(name, StoreErrType.TooLate, Long.toString(index, 10)));
 		}
-		int findex = (int) (index - oldestCached);
-
-//		logger.field("findex", findex).debug("GetItem()");
+		long findex = index - oldestCached;
 
-		if (findex >= numitems) {
+		if (findex >= count) {
 			return new RResult<Object>(null,
 					StoreErr.newStoreErr(name, StoreErrType.KeyNotFound, Long.toString(index, 10)));
 		}
 
-//		logger.field("found item", items.get(findex)).debug("GetItem()");
-		return new RResult<Object>(items.get(findex), null);
+		return new RResult<Object>(items[slot((int) findex)], null);
 	}
 
 	public error set(Object item, long index) {
@@ -90,19 +147,19 @@ public class RollingIndex {
 
 		// adding a new item
 		if (lastIndex < 0 || index == lastIndex + 1) {
-			if (items.size() >= 2 * size) {
+			if (count >= items.length) {
 				roll();
 			}
 
-			items.add(item);
+			items[slot(count)] = item;
+			count++;
 			lastIndex = index;
 			return null;
 		}
 
 		// replace and existing item
 		// make sure index is also greater or equal than the oldest cached item's index
-		long cachedItems = items.size();
-		long oldestCachedIndex = lastIndex - cachedItems + 1;
+		long oldestCachedIndex = lastIndex - count + 1;
 
 		if (index < oldestCachedIndex) {
 			return StoreErr.newStoreErr(name, StoreErrType.TooLate, Long.toString(index, 10));
@@ -110,15 +167,31 @@ public class RollingIndex {
 
 		// replacing existing item
 		int position = (int) (index - oldestCachedIndex); // position of 'index' in RollingIndex
-		items.set(position, item);
+		items[slot(position)] = item;
 
 		return null;
 	}
 
+	// roll drops the size oldest items
 	public void roll() {
-		List<Object> newList = new ArrayList(2 * size);
-		newList.addAll(items.subList(size, items.size()));
+		int dropped = Math.min(size, count);
+		for (int i = 0; i < dropped; i++) {
+			items[slot(i)] = null;
+		}
+		head = slot(dropped);
+		count -= dropped;
+	}
+
+	// copy makes this RollingIndex hold the same items as other
+	void copy(RollingIndex other) {
+		items = other.items.clone();
+		head = other.head;
+		count = other.count;
+		lastIndex = other.lastIndex;
+	}
 
-		items = newList;
+	// slot returns the slot of the item at the given position from the oldest one
+	private int slot(int position) {
+		return (head + position) % items.length;
 	}
-}
\ No newline at end of file
+}
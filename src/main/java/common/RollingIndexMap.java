@@ -16,10 +16,15 @@ public class RollingIndexMap {
 		this.mapping = new HashMap<Long, RollingIndex>();
 
 		for (long key : keys) {
-			mapping.put(key, new RollingIndex(String.format("%s[%d]", name, key), size));
+			mapping.put(key, newIndex(key));
 		}
 	}
 
+	// newIndex creates the RollingIndex of a key
+	protected RollingIndex newIndex(long key) {
+		return new RollingIndex(String.format("%s[%d]", name, key), size);
+	}
+
 	// return key items with index > skip
 	public RResult<Object[]> get(long key, long skipIndex) {
 		RollingIndex items = mapping.get(key);
@@ -48,17 +53,17 @@ public class RollingIndexMap {
 			return new RResult<Object>(null,
 					StoreErr.newStoreErr(name, StoreErrType.KeyNotFound, Long.toString(key, 10)));
 		}
-		Object[] cached = pe.getLastWindow().result1;
-		if (cached.length == 0) {
+		Object last = pe.getLast();
+		if (last == null) {
 			return new RResult<Object>("", StoreErr.newStoreErr(name, StoreErrType.Empty, ""));
 		}
-		return new RResult<Object>(cached[cached.length - 1], null);
+		return new RResult<Object>(last, null);
 	}
 
 	public error set(long key, Object item, long index) {
 		RollingIndex items = mapping.get(key);
 		if (items == null) {
-			items = new RollingIndex(String.format("%s[%d]", name, key), size);
+			items = newIndex(key);
 			mapping.put(key, items);
 		}
 		return items.set(item, index);
@@ -69,8 +74,7 @@ public class RollingIndexMap {
 		Map<Long, Long> known = new HashMap<Long, Long>();
 		for (long key : mapping.keySet()) {
 			RollingIndex items = mapping.get(key);
-			Long lastIndex = items.getLastWindow().result2;
-			known.put(key, lastIndex);
+			known.put(key, items.lastIndex());
 		}
 		return known;
 	}
@@ -78,7 +82,7 @@ public class RollingIndexMap {
 	public error reset() {
 		Map<Long, RollingIndex> items = new HashMap<Long, RollingIndex>();
 		for (long key : keys) {
-			items.put(key, new RollingIndex(String.format("%s[%d]", name, key), size));
+			items.put(key, newIndex(key));
 		}
 		mapping = items;
 		return null;
@@ -86,10 +90,9 @@ public class RollingIndexMap {
 
 	public void copy(RollingIndexMap other) {
 		for (long key : other.keys) {
-			RollingIndex rollingIndex = new RollingIndex(String.format("%s[%d]", name, key), size);
+			RollingIndex rollingIndex = newIndex(key);
 			mapping.put(key, rollingIndex);
-			rollingIndex.lastIndex = other.mapping.get(key).lastIndex;
-			rollingIndex.items = other.mapping.get(key).items;
+			rollingIndex.copy(other.mapping.get(key));
 		}
 	}
 }
\ No newline at end of file
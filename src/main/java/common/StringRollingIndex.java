@@ -0,0 +1,39 @@
+package common;
+
+/**
+ * StringRollingIndex is a RollingIndex of Strings, such as Event hashes.
+ * Ranges are copied straight into String arrays.
+ */
+public class StringRollingIndex extends RollingIndex {
+
+	public StringRollingIndex(String name, int size) {
+		super(name, size, new String[2 * size]);
+	}
+
+	// getStrings returns the items with index > skipIndex
+	public RResult<String[]> getStrings(long skipIndex) {
+		RResult<Window> window = window(skipIndex);
+		if (window.err != null) {
+			return new RResult<String[]>(new String[] {}, window.err);
+		}
+		String[] res = new String[window.result.length()];
+		window.result.copyTo(res, 0);
+		return new RResult<String[]>(res, null);
+	}
+
+	// getLastWindowStrings returns all the cached items
+	public String[] getLastWindowStrings() {
+		String[] res = new String[count];
+		new Window(items, head, count).copyTo(res, 0);
+		return res;
+	}
+
+	public RResult<String> getString(long index) {
+		RResult<Object> getItem = getItem(index);
+		return new RResult<String>((String) getItem.result, getItem.err);
+	}
+
+	public String getLastString() {
+		return (String) getLast();
+	}
+}
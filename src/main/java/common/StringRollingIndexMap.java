@@ -0,0 +1,31 @@
+package common;
+
+/**
+ * StringRollingIndexMap is a RollingIndexMap of StringRollingIndexes
+ */
+public class StringRollingIndexMap extends RollingIndexMap {
+
+	public StringRollingIndexMap(String name, int size, long[] keys) {
+		super(name, size, keys);
+	}
+
+	@Override
+	protected RollingIndex newIndex(long key) {
+		return new StringRollingIndex(String.format("%s[%d]", name, key), size);
+	}
+
+	// return key items with index > skip
+	public RResult<String[]> getStrings(long key, long skipIndex) {
+		StringRollingIndex items = (StringRollingIndex) mapping.get(key);
+		if (items == null) {
+			return new RResult<String[]>(null,
+					StoreErr.newStoreErr(name, StoreErrType.KeyNotFound, Long.toString(key, 10)));
+		}
+
+		RResult<String[]> skipItems = items.getStrings(skipIndex);
+		if (skipItems.err != null) {
+			return new RResult<String[]>(null, skipItems.err);
+		}
+		return skipItems;
+	}
+}
@@ -0,0 +1,185 @@
+package common;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded, thread-safe cache with CLOCK eviction.
+ *
+ * Keys are spread over independent segments. Lookups only read the segment's
+ * ConcurrentHashMap and set the entry's reference bit, so they never block.
+ * Insertions lock their own segment only, and when it is full the segment's
+ * clock hand evicts the first entry that was not referenced since the hand
+ * last passed it.
+ *
+ * @param <K>
+ * @param <V>
+ */
+public class StripedCache<K,V> {
+	public static <K,V> RResult<StripedCache<K,V>> New(int size) {
+		return new RResult<StripedCache<K,V>>(new StripedCache<K,V>(size), null);
+	}
+
+	static final int MAX_SEGMENTS = 16;
+	static final int MIN_SEGMENT_SIZE = 8;
+
+	static final class Entry<K,V> {
+		final K key;
+		volatile V value;
+		volatile boolean referenced;
+
+		Entry(K key, V value) {
+			this.key = key;
+			this.value = value;
+		}
+	}
+
+	static final class Segment<K,V> {
+		final ConcurrentHashMap<K,Entry<K,V>> map;
+		final Entry<K,V>[] ring;
+		int hand;
+		int count;
+		final LongAdder evictions;
+
+		@SuppressWarnings("unchecked")
+		Segment(int capacity, LongAdder evictions) {
+			this.evictions = evictions;
+			this.map = new ConcurrentHashMap<K,Entry<K,V>>(capacity);
+			this.ring = (Entry<K,V>[]) new Entry[capacity];
+		}
+
+		synchronized void put(K key, V value) {
+			Entry<K,V> e = map.get(key);
+			if (e != null) {
+				e.value = value;
+				e.referenced = true;
+				return;
+			}
+			insert(key, value);
+		}
+
+		synchronized V putIfAbsent(K key, V value) {
+			Entry<K,V> e = map.get(key);
+			if (e != null) {
+				e.referenced = true;
+				return e.value;
+			}
+			insert(key, value);
+			return null;
+		}
+
+		// insert adds an entry for a missing key, evicting one if full
+		private void insert(K key, V value) {
+			Entry<K,V> e = new Entry<K,V>(key, value);
+			if (count < ring.length) {
+				ring[count++] = e;
+				map.put(key, e);
+				return;
+			}
+
+			// second chance: skip and clear referenced entries
+			while (ring[hand].referenced) {
+				ring[hand].referenced = false;
+				hand = (hand + 1) % ring.length;
+			}
+			map.remove(ring[hand].key);
+			evictions.increment();
+			ring[hand] = e;
+			map.put(key, e);
+			hand = (hand + 1) % ring.length;
+		}
+
+		synchronized void clear() {
+			map.clear();
+			for (int i = 0; i < count; i++) {
+				ring[i] = null;
+			}
+			hand = 0;
+			count = 0;
+		}
+	}
+
+	private final Segment<K,V>[] segments;
+	private final int mask;
+	private final int size;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	public StripedCache(int size) {
+		this.size = Math.max(size, 1);
+
+		// power of two number of segments, none smaller than MIN_SEGMENT_SIZE
+		int n = 1;
+		while (n < MAX_SEGMENTS && 2 * n * MIN_SEGMENT_SIZE <= this.size) {
+			n *= 2;
+		}
+		this.mask = n - 1;
+
+		@SuppressWarnings("unchecked")
+		Segment<K,V>[] segments = (Segment<K,V>[]) new Segment[n];
+		for (int i = 0; i < n; i++) {
+			// spread the remainder so that the capacities add up to size
+			segments[i] = new Segment<K,V>(this.size / n + (i < this.size % n ? 1 : 0), evictions);
+		}
+		this.segments = segments;
+	}
+
+	public V get(K key) {
+		Entry<K,V> e = segment(key).map.get(key);
+		if (e == null) {
+			misses.increment();
+			return null;
+		}
+		e.referenced = true;
+		hits.increment();
+		return e.value;
+	}
+
+	public void put(K key, V value) {
+		segment(key).put(key, value);
+	}
+
+	// putIfAbsent adds the value unless the key is cached, and returns the
+	// cached value, or null if it was added
+	public V putIfAbsent(K key, V value) {
+		return segment(key).putIfAbsent(key, value);
+	}
+
+	public int size() {
+		int n = 0;
+		for (Segment<K,V> s : segments) {
+			n += s.map.size();
+		}
+		return n;
+	}
+
+	public int capacity() {
+		return size;
+	}
+
+	public void clear() {
+		for (Segment<K,V> s : segments) {
+			s.clear();
+		}
+	}
+
+	public long hits() {
+		return hits.sum();
+	}
+
+	public long misses() {
+		return misses.sum();
+	}
+
+	public long evictions() {
+		return evictions.sum();
+	}
+
+	private Segment<K,V> segment(K key) {
+		int h = key.hashCode();
+		h ^= (h >>> 16);
+		return segments[h & mask];
+	}
+}
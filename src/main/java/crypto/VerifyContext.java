@@ -0,0 +1,134 @@
+package crypto;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.bouncycastle.crypto.params.ECPublicKeyParameters;
+import org.bouncycastle.crypto.signers.ECDSASigner;
+import org.bouncycastle.jcajce.provider.asymmetric.util.ECUtil;
+
+import common.RResult;
+import common.error;
+import peers.Peer;
+import peers.Peers;
+
+/**
+ * VerifyContext verifies the ECDSA signatures made by known signers.
+ *
+ * The public keys of the signers are decoded once, when they are added, and
+ * a signature is checked with a per-thread digest and ECDSASigner, so that a
+ * verification only costs the curve math. It accepts the same signatures as
+ * Utils.Verify ("ECDSA" in BouncyCastle is SHA1withECDSA).
+ */
+public class VerifyContext {
+	ConcurrentHashMap<ByteBuffer, ECPublicKeyParameters> keys; //[public key bytes] => decoded key
+
+	private static final ThreadLocal<MessageDigest> digests = ThreadLocal.withInitial(() -> {
+		try {
+			return MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	});
+	private static final ThreadLocal<ECDSASigner> signers = ThreadLocal.withInitial(ECDSASigner::new);
+
+	public VerifyContext() {
+		this.keys = new ConcurrentHashMap<ByteBuffer, ECPublicKeyParameters>();
+	}
+
+	/**
+	 * fromPeers returns a VerifyContext holding the keys of the peers. Peers
+	 * added later on are picked up too.
+	 * @param participants
+	 * @return
+	 */
+	public static VerifyContext fromPeers(Peers participants) {
+		VerifyContext ctx = new VerifyContext();
+		for (Peer p : participants.toPeerSlice()) {
+			ctx.addPeer(p);
+		}
+		participants.onNewPeer(new Peers.Listener() {
+			public void listen(Peer peer) {
+				ctx.addPeer(peer);
+			}
+		});
+		return ctx;
+	}
+
+	// addPeer adds the key of a peer. A key that can not be decoded is skipped:
+	// the events of such a peer fail verification anyway.
+	private void addPeer(Peer peer) {
+		RResult<byte[]> pubBytes = peer.PubKeyBytes();
+		if (pubBytes.err == null) {
+			add(pubBytes.result);
+		}
+	}
+
+	/**
+	 * add decodes and keeps the public key encoded in pubBytes
+	 * @param pubBytes
+	 * @return
+	 */
+	public error add(byte[] pubBytes) {
+		RResult<ECPublicKeyParameters> decode = decode(pubBytes);
+		if (decode.err != null) {
+			return decode.err;
+		}
+		keys.put(ByteBuffer.wrap(pubBytes.clone()), decode.result);
+		return null;
+	}
+
+	// known returns true if the key encoded in pubBytes has been added
+	public boolean known(byte[] pubBytes) {
+		return keys.containsKey(ByteBuffer.wrap(pubBytes));
+	}
+
+	/**
+	 * verify checks the signature (r, s) of hash by the key encoded in
+	 * pubBytes. Unknown keys are decoded for this call only, so that
+	 * the context does not grow with the keys of strangers.
+	 * @param pubBytes
+	 * @param hash
+	 * @param r
+	 * @param s
+	 * @return
+	 */
+	public boolean verify(byte[] pubBytes, byte[] hash, BigInteger r, BigInteger s) {
+		if (pubBytes == null || r == null || s == null) {
+			return false;
+		}
+		ECPublicKeyParameters key = keys.get(ByteBuffer.wrap(pubBytes));
+		if (key == null) {
+			RResult<ECPublicKeyParameters> decode = decode(pubBytes);
+			if (decode.err != null) {
+				return false;
+			}
+			key = decode.result;
+		}
+		return verify(key, hash, r, s);
+	}
+
+	static boolean verify(ECPublicKeyParameters key, byte[] hash, BigInteger r, BigInteger s) {
+		byte[] digest = digests.get().digest(hash);
+		ECDSASigner signer = signers.get();
+		signer.init(false, key);
+		return signer.verifySignature(digest, r, s);
+	}
+
+	static RResult<ECPublicKeyParameters> decode(byte[] pubBytes) {
+		PublicKey pub = pubBytes == null ? null : Utils.ToECDSAPub(pubBytes);
+		if (pub == null) {
+			return new RResult<ECPublicKeyParameters>(null, error.Errorf("invalid public key"));
+		}
+		try {
+			return new RResult<ECPublicKeyParameters>((ECPublicKeyParameters) ECUtil.generatePublicKeyParameter(pub), null);
+		} catch (InvalidKeyException | ClassCastException e) {
+			return new RResult<ECPublicKeyParameters>(null, error.Errorf(e.getMessage()));
+		}
+	}
+}
@@ -92,6 +92,12 @@ public  error initStore() {
 			return err;
 		}
 
+		err = loadOrCreateBadgerStore.result.SetWriteBehind(Config.NodeConfig.getStoreMaxUnflushed(),
+			Config.NodeConfig.getStoreFlushInterval());
+		if (err != null) {
+			return err;
+		}
+
 		if (getStore().needBoostrap()) {
 			Config.logger.debug("loaded badger store from existing database at " + dbDir);
 		} else {
@@ -0,0 +1,140 @@
+package net;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+import com.google.protobuf.AbstractMessage;
+import com.google.protobuf.CodedInputStream;
+
+import autils.Logger;
+import common.IProto;
+import common.RResult;
+import common.error;
+
+/**
+ * BinaryDecoder reads the frames written by BinaryEncoder.
+ */
+public class BinaryDecoder implements Decoder {
+	private static Logger logger = Logger.getLogger(BinaryDecoder.class);
+
+	public static final int MAX_FRAME_SIZE = 64 * 1024 * 1024;
+
+	// returned when the peer closes the connection before sending a frame
+	public static final error ErrClosed = error.Errorf("connection closed by peer");
+
+	SocketChannel r;
+	BufferPool pool;
+
+	public BinaryDecoder(SocketChannel r, BufferPool pool) {
+		this.r = r;
+		this.pool = pool;
+	}
+
+	public RResult<Integer> readRpc() {
+		ByteBuffer buf = pool.get(4);
+		try {
+			error err = read(buf, true);
+			if (err != null) {
+				return new RResult<>(0, err);
+			}
+			buf.flip();
+			int rpcType = buf.getInt();
+			logger.field("rpcType", rpcType).debug("readRpc()");
+			return new RResult<>(rpcType, null);
+		} finally {
+			pool.put(buf);
+		}
+	}
+
+	public error decode(error rpcError) {
+		RResult<ByteBuffer> readFrame = readFrame();
+		ByteBuffer buf = readFrame.result;
+		error err = readFrame.err;
+		if (err != null) {
+			return err;
+		}
+
+		if (buf.hasRemaining()) {
+			byte[] msg = new byte[buf.remaining()];
+			buf.get(msg);
+			rpcError.setErrMessage(new String(msg, StandardCharsets.UTF_8));
+		}
+		pool.put(buf);
+		return null;
+	}
+
+	public <T extends ParsableMessage> error decode(T resp) {
+		RResult<ByteBuffer> readFrame = readFrame();
+		ByteBuffer buf = readFrame.result;
+		error err = readFrame.err;
+		if (err != null) {
+			return err;
+		}
+
+		try {
+			return parse(resp.marshaller(), buf);
+		} finally {
+			pool.put(buf);
+		}
+	}
+
+	// parse decodes the frame payload in buf into the message behind m
+	static <P extends AbstractMessage> error parse(IProto<?, P> m, ByteBuffer buf) {
+		try {
+			P p = m.parser().parseFrom(CodedInputStream.newInstance(buf));
+			m.fromProto(p);
+			return null;
+		} catch (IOException e) {
+			return error.Errorf(e.getMessage());
+		}
+	}
+
+	// readFrame returns the payload of the next frame, flipped for reading
+	private RResult<ByteBuffer> readFrame() {
+		ByteBuffer header = pool.get(4);
+		int size;
+		try {
+			error err = read(header, true);
+			if (err != null) {
+				return new RResult<>(null, err);
+			}
+			header.flip();
+			size = header.getInt();
+		} finally {
+			pool.put(header);
+		}
+
+		if (size < 0 || size > MAX_FRAME_SIZE) {
+			return new RResult<>(null, error.Errorf(String.format("invalid frame size %d", size)));
+		}
+
+		ByteBuffer buf = pool.get(size);
+		error err = read(buf, false);
+		if (err != null) {
+			pool.put(buf);
+			return new RResult<>(null, err);
+		}
+		buf.flip();
+		return new RResult<>(buf, null);
+	}
+
+	// read fills the remaining bytes of buf. first tells whether this is the
+	// start of a frame, where the end of the stream is a clean close.
+	private error read(ByteBuffer buf, boolean first) {
+		try {
+			while (buf.hasRemaining()) {
+				if (r.read(buf) < 0) {
+					if (first && buf.position() == 0) {
+						return ErrClosed;
+					}
+					return error.Errorf("unexpected end of stream");
+				}
+			}
+		} catch (IOException e) {
+			return error.Errorf(e.getMessage());
+		}
+		return null;
+	}
+}
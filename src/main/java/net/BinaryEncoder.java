@@ -0,0 +1,192 @@
+package net;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+import com.google.protobuf.AbstractMessage;
+import com.google.protobuf.CodedOutputStream;
+
+import autils.Logger;
+import common.error;
+import poset.WireEvent;
+
+/**
+ * BinaryEncoder writes length-prefixed frames: a 4-byte big-endian length
+ * followed by the protobuf encoding of the message, or the UTF-8 bytes of an
+ * error message. An empty error frame means no error.
+ */
+public class BinaryEncoder implements Encoder {
+	private static Logger logger = Logger.getLogger(BinaryEncoder.class);
+
+	static final int WIRETYPE_LENGTH_DELIMITED = 2;
+
+	SocketChannel w;
+	BufferPool pool;
+
+	public BinaryEncoder(SocketChannel w, BufferPool pool) {
+		this.w = w;
+		this.pool = pool;
+	}
+
+	public error encode(int rpcType) {
+		logger.field("rpcType", rpcType).debug("encode(rpc) starts");
+		ByteBuffer buf = pool.get(4);
+		try {
+			buf.putInt(rpcType);
+			buf.flip();
+			write(buf);
+		} catch (IOException e) {
+			return error.Errorf(e.getMessage());
+		} finally {
+			pool.put(buf);
+		}
+		return null;
+	}
+
+	public error encode(error respErr) {
+		ByteBuffer buf = frame(respErr);
+		try {
+			write(buf);
+		} catch (IOException e) {
+			return error.Errorf("encode(err) error=" + e.getMessage());
+		} finally {
+			pool.put(buf);
+		}
+		return null;
+	}
+
+	public error encode(ParsableMessage o) {
+		ByteBuffer[] bufs = null;
+		try {
+			bufs = frames(o);
+			write(bufs);
+		} catch (IOException e) {
+			return error.Errorf("encode(o) error=" + e.getMessage());
+		} finally {
+			if (bufs != null) {
+				for (ByteBuffer buf : bufs) {
+					pool.put(buf);
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the frame of an error message, flipped for writing. The buffer
+	 * comes from the pool and should be given back once written.
+	 * @param respErr
+	 * @return
+	 */
+	public ByteBuffer frame(error respErr) {
+		byte[] msg = new byte[0];
+		if (respErr != null && respErr.Error() != null) {
+			msg = respErr.Error().getBytes(StandardCharsets.UTF_8);
+		}
+
+		ByteBuffer buf = pool.get(4 + msg.length);
+		buf.putInt(msg.length);
+		buf.put(msg);
+		buf.flip();
+		return buf;
+	}
+
+	/**
+	 * Returns the frame of a message, flipped for writing. The buffer comes
+	 * from the pool and should be given back once written.
+	 * @param o
+	 * @return
+	 * @throws IOException
+	 */
+	public ByteBuffer frame(ParsableMessage o) throws IOException {
+		AbstractMessage p = o.marshaller().toProto();
+		int size = p.getSerializedSize();
+		logger.field("size", size).debug("frame(o)");
+
+		ByteBuffer buf = pool.get(4 + size);
+		buf.putInt(size);
+		CodedOutputStream out = CodedOutputStream.newInstance(buf);
+		p.writeTo(out);
+		out.flush();
+		buf.flip();
+		return buf;
+	}
+
+	/**
+	 * Returns the frame of a message as buffers to be written in a row, with a
+	 * gathering write. The events of an EventsMessage are not encoded again:
+	 * the cached encoding of each event is wrapped as it is, and only the rest
+	 * of the message and the field headers of the events are encoded. Pooled
+	 * buffers should be given back once written.
+	 * @param o
+	 * @return
+	 * @throws IOException
+	 */
+	public ByteBuffer[] frames(ParsableMessage o) throws IOException {
+		if (!(o instanceof EventsMessage) || ((EventsMessage) o).getEvents() == null) {
+			return new ByteBuffer[] { frame(o) };
+		}
+		EventsMessage m = (EventsMessage) o;
+		WireEvent[] events = m.getEvents();
+		AbstractMessage header = m.headerProto();
+		int tag = (m.eventsField() << 3) | WIRETYPE_LENGTH_DELIMITED;
+		int tagSize = CodedOutputStream.computeUInt32SizeNoTag(tag);
+
+		// the field headers of the events are written after the message header,
+		// in a single array, and each event follows its own field header
+		byte[][] encoded = new byte[events.length][];
+		int[] prefixSizes = new int[events.length];
+		int headerSize = header.getSerializedSize();
+		int headSize = 4 + headerSize;
+		int size = headerSize;
+		for (int i = 0; i < events.length; i++) {
+			encoded[i] = events[i].encoded();
+			prefixSizes[i] = tagSize + CodedOutputStream.computeUInt32SizeNoTag(encoded[i].length);
+			headSize += prefixSizes[i];
+			size += prefixSizes[i] + encoded[i].length;
+		}
+		logger.field("size", size).field("events", events.length).debug("frames(o)");
+
+		byte[] head = new byte[headSize];
+		ByteBuffer.wrap(head).putInt(size);
+		CodedOutputStream out = CodedOutputStream.newInstance(head, 4, headSize - 4);
+		header.writeTo(out);
+		for (int i = 0; i < events.length; i++) {
+			out.writeUInt32NoTag(tag);
+			out.writeUInt32NoTag(encoded[i].length);
+		}
+		out.flush();
+
+		if (events.length == 0) {
+			return new ByteBuffer[] { ByteBuffer.wrap(head) };
+		}
+		ByteBuffer[] bufs = new ByteBuffer[2 * events.length];
+		int offset = 0, end = 4 + headerSize;
+		for (int i = 0; i < events.length; i++) {
+			end += prefixSizes[i];
+			bufs[2 * i] = ByteBuffer.wrap(head, offset, end - offset);
+			bufs[2 * i + 1] = ByteBuffer.wrap(encoded[i]);
+			offset = end;
+		}
+		return bufs;
+	}
+
+	private void write(ByteBuffer[] bufs) throws IOException {
+		int i = 0;
+		while (i < bufs.length) {
+			if (!bufs[i].hasRemaining()) {
+				i++;
+				continue;
+			}
+			w.write(bufs, i, bufs.length - i);
+		}
+	}
+
+	private void write(ByteBuffer buf) throws IOException {
+		while (buf.hasRemaining()) {
+			w.write(buf);
+		}
+	}
+}
@@ -0,0 +1,68 @@
+package net;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * BufferPool recycles the direct ByteBuffers used by the binary codec.
+ *
+ * Requests up to chunkSize bytes are served from the pool; larger ones get a
+ * heap buffer of their own, which is dropped when it is returned.
+ */
+public class BufferPool {
+	public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+	public static final int DEFAULT_MAX_POOLED = 64;
+
+	int chunkSize;
+	int maxPooled;
+	ConcurrentLinkedQueue<ByteBuffer> free;
+	AtomicInteger pooled;
+
+	public BufferPool(int chunkSize, int maxPooled) {
+		this.chunkSize = chunkSize;
+		this.maxPooled = maxPooled;
+		this.free = new ConcurrentLinkedQueue<ByteBuffer>();
+		this.pooled = new AtomicInteger();
+	}
+
+	public BufferPool() {
+		this(DEFAULT_CHUNK_SIZE, DEFAULT_MAX_POOLED);
+	}
+
+	/**
+	 * Returns a cleared buffer with at least size bytes remaining, limited to size
+	 * @param size
+	 * @return
+	 */
+	public ByteBuffer get(int size) {
+		if (size > chunkSize) {
+			return ByteBuffer.allocate(size);
+		}
+
+		ByteBuffer buf = free.poll();
+		if (buf == null) {
+			buf = ByteBuffer.allocateDirect(chunkSize);
+		} else {
+			pooled.decrementAndGet();
+		}
+		buf.clear();
+		buf.limit(size);
+		return buf;
+	}
+
+	/**
+	 * Gives a buffer obtained from get back to the pool
+	 * @param buf
+	 */
+	public void put(ByteBuffer buf) {
+		if (buf == null || !buf.isDirect() || buf.capacity() != chunkSize) {
+			return;
+		}
+		if (pooled.incrementAndGet() > maxPooled) {
+			pooled.decrementAndGet();
+			return;
+		}
+		free.offer(buf);
+	}
+}
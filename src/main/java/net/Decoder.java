@@ -0,0 +1,15 @@
+package net;
+
+import common.RResult;
+import common.error;
+
+/**
+ * Decoder reads RPCs from a connection
+ */
+public interface Decoder {
+	RResult<Integer> readRpc();
+
+	error decode(error rpcError);
+
+	<T extends ParsableMessage> error decode(T resp);
+}
@@ -2,11 +2,14 @@ package net;
 
 import java.util.Arrays;
 
+import com.google.protobuf.Parser;
+
 import autils.JsonUtils;
+import common.IProto;
 import common.error;
 import poset.WireEvent;
 
-public class EagerSyncRequest implements ParsableMessage {
+public class EagerSyncRequest implements EventsMessage {
 	long FromID;
 	poset.WireEvent[] Events;
 
@@ -37,6 +40,50 @@ public class EagerSyncRequest implements ParsableMessage {
 		Events = events;
 	}
 
+	@Override
+	public int eventsField() {
+		return net.proto.EagerSyncRequest.EVENTS_FIELD_NUMBER;
+	}
+
+	@Override
+	public net.proto.EagerSyncRequest headerProto() {
+		return net.proto.EagerSyncRequest.newBuilder().setFromID(FromID).build();
+	}
+
+	@Override
+	public IProto<EagerSyncRequest, net.proto.EagerSyncRequest> marshaller() {
+		return new IProto<EagerSyncRequest, net.proto.EagerSyncRequest>() {
+			@Override
+			public net.proto.EagerSyncRequest toProto() {
+				net.proto.EagerSyncRequest.Builder builder = net.proto.EagerSyncRequest.newBuilder();
+				builder.setFromID(FromID);
+				if (Events != null) {
+					Arrays.asList(Events).forEach(event -> {
+						builder.addEvents(event.marshaller().toProto());
+					});
+				}
+				return builder.build();
+			}
+
+			@Override
+			public void fromProto(net.proto.EagerSyncRequest proto) {
+				FromID = proto.getFromID();
+
+				int eventCount = proto.getEventsCount();
+				Events = new WireEvent[eventCount];
+				for (int i = 0; i < eventCount; ++i) {
+					Events[i] = new WireEvent();
+					Events[i].marshaller().fromProto(proto.getEvents(i));
+				}
+			}
+
+			@Override
+			public Parser<net.proto.EagerSyncRequest> parser() {
+				return net.proto.EagerSyncRequest.parser();
+			}
+		};
+	}
+
 	@Override
 	public error parseFrom(String s) {
 		error err = null;
@@ -1,6 +1,9 @@
 package net;
 
+import com.google.protobuf.Parser;
+
 import autils.JsonUtils;
+import common.IProto;
 import common.error;
 
 public class EagerSyncResponse implements ParsableMessage {
@@ -35,6 +38,30 @@ public class EagerSyncResponse implements ParsableMessage {
 		Success = success;
 	}
 
+	@Override
+	public IProto<EagerSyncResponse, net.proto.EagerSyncResponse> marshaller() {
+		return new IProto<EagerSyncResponse, net.proto.EagerSyncResponse>() {
+			@Override
+			public net.proto.EagerSyncResponse toProto() {
+				return net.proto.EagerSyncResponse.newBuilder()
+					.setFromID(FromID)
+					.setSuccess(Success)
+					.build();
+			}
+
+			@Override
+			public void fromProto(net.proto.EagerSyncResponse proto) {
+				FromID = proto.getFromID();
+				Success = proto.getSuccess();
+			}
+
+			@Override
+			public Parser<net.proto.EagerSyncResponse> parser() {
+				return net.proto.EagerSyncResponse.parser();
+			}
+		};
+	}
+
 	@Override
 	public error parseFrom(String s) {
 		error err = null;
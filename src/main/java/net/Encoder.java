@@ -0,0 +1,14 @@
+package net;
+
+import common.error;
+
+/**
+ * Encoder writes RPCs to a connection
+ */
+public interface Encoder {
+	error encode(int rpcType);
+
+	error encode(error respErr);
+
+	error encode(ParsableMessage o);
+}
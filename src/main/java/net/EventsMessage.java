@@ -0,0 +1,20 @@
+package net;
+
+import com.google.protobuf.AbstractMessage;
+
+import poset.WireEvent;
+
+/**
+ * EventsMessage is a message carrying wire events. BinaryEncoder frames it
+ * with the cached encodings of its events, so that an event sent to several
+ * peers is only encoded once.
+ */
+interface EventsMessage extends ParsableMessage {
+	WireEvent[] getEvents();
+
+	// eventsField returns the number of the repeated events field of the proto message
+	int eventsField();
+
+	// headerProto returns the proto message, without its events
+	AbstractMessage headerProto();
+}
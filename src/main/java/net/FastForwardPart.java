@@ -0,0 +1,11 @@
+package net;
+
+/**
+ * FastForwardPart is the part of a fast-forward a FastForwardRequest asks for
+ */
+public enum FastForwardPart {
+	All,            // the anchor block, its frame and the snapshot, at once
+	Manifest,       // the anchor block, its frame without events and the hashes of the chunks
+	FrameChunk,     // a chunk of the events of the frame
+	SnapshotChunk   // a chunk of the snapshot
+}
@@ -1,19 +1,39 @@
 package net;
 
+import com.google.protobuf.Parser;
+
 import autils.JsonUtils;
+import common.IProto;
 import common.error;
 
 public class FastForwardRequest implements ParsableMessage {
 	long FromID;
+	FastForwardPart Part;
+	long BlockIndex;
+	int Chunk;
 
 	public FastForwardRequest() {
 		super();
 		FromID = -1;
+		Part = FastForwardPart.All;
+		BlockIndex = -1;
+		Chunk = 0;
 	}
 
 	public FastForwardRequest(long fromID) {
 		super();
 		FromID = fromID;
+		Part = FastForwardPart.All;
+		BlockIndex = -1;
+		Chunk = 0;
+	}
+
+	public FastForwardRequest(long fromID, FastForwardPart part, long blockIndex, int chunk) {
+		super();
+		FromID = fromID;
+		Part = part;
+		BlockIndex = blockIndex;
+		Chunk = chunk;
 	}
 
 	public long getFromID() {
@@ -24,12 +44,69 @@ public class FastForwardRequest implements ParsableMessage {
 		FromID = fromID;
 	}
 
+	public FastForwardPart getPart() {
+		return Part;
+	}
+
+	public void setPart(FastForwardPart part) {
+		Part = part;
+	}
+
+	public long getBlockIndex() {
+		return BlockIndex;
+	}
+
+	public void setBlockIndex(long blockIndex) {
+		BlockIndex = blockIndex;
+	}
+
+	public int getChunk() {
+		return Chunk;
+	}
+
+	public void setChunk(int chunk) {
+		Chunk = chunk;
+	}
+
+	@Override
+	public IProto<FastForwardRequest, net.proto.FastForwardRequest> marshaller() {
+		return new IProto<FastForwardRequest, net.proto.FastForwardRequest>() {
+			@Override
+			public net.proto.FastForwardRequest toProto() {
+				return net.proto.FastForwardRequest.newBuilder()
+					.setFromID(FromID)
+					.setPart(Part.ordinal())
+					.setBlockIndex(BlockIndex)
+					.setChunk(Chunk)
+					.build();
+			}
+
+			@Override
+			public void fromProto(net.proto.FastForwardRequest proto) {
+				FromID = proto.getFromID();
+				int part = proto.getPart();
+				Part = part >= 0 && part < FastForwardPart.values().length
+					? FastForwardPart.values()[part] : FastForwardPart.All;
+				BlockIndex = proto.getBlockIndex();
+				Chunk = proto.getChunk();
+			}
+
+			@Override
+			public Parser<net.proto.FastForwardRequest> parser() {
+				return net.proto.FastForwardRequest.parser();
+			}
+		};
+	}
+
 	@Override
 	public error parseFrom(String s) {
 		error err = null;
 		try {
 			FastForwardRequest o = JsonUtils.StringToObject(s, FastForwardRequest.class);
 			this.FromID = o.FromID;
+			this.Part = o.Part;
+			this.BlockIndex = o.BlockIndex;
+			this.Chunk = o.Chunk;
 		} catch (Exception e) {
 			err = error.Errorf(e.getMessage());
 		}
@@ -41,6 +118,9 @@ public class FastForwardRequest implements ParsableMessage {
 		final int prime = 31;
 		int result = 1;
 		result = prime * result + (int) (FromID ^ (FromID >>> 32));
+		result = prime * result + ((Part == null) ? 0 : Part.hashCode());
+		result = prime * result + (int) (BlockIndex ^ (BlockIndex >>> 32));
+		result = prime * result + Chunk;
 		return result;
 	}
 
@@ -55,13 +135,20 @@ public class FastForwardRequest implements ParsableMessage {
 		FastForwardRequest other = (FastForwardRequest) obj;
 		if (FromID != other.FromID)
 			return false;
+		if (Part != other.Part)
+			return false;
+		if (BlockIndex != other.BlockIndex)
+			return false;
+		if (Chunk != other.Chunk)
+			return false;
 		return true;
 	}
 
 	@Override
 	public String toString() {
 		StringBuilder builder = new StringBuilder();
-		builder.append("FastForwardRequest [FromID=").append(FromID).append("]");
+		builder.append("FastForwardRequest [FromID=").append(FromID).append(", Part=").append(Part)
+			.append(", BlockIndex=").append(BlockIndex).append(", Chunk=").append(Chunk).append("]");
 		return builder.toString();
 	}
 }
@@ -2,7 +2,11 @@ package net;
 
 import java.util.Arrays;
 
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Parser;
+
 import autils.JsonUtils;
+import common.IProto;
 import common.error;
 
 public class FastForwardResponse implements ParsableMessage {
@@ -10,6 +14,9 @@ public class FastForwardResponse implements ParsableMessage {
 	poset.Block Block;
 	poset.Frame Frame;
 	byte[] Snapshot;
+	byte[][] FrameChunks;     // manifest: hashes of the chunks of the frame events
+	byte[][] SnapshotChunks;  // manifest: hashes of the chunks of the snapshot
+	byte[] Chunk;             // the requested chunk
 
 	public FastForwardResponse()
 	{
@@ -38,6 +45,9 @@ public class FastForwardResponse implements ParsableMessage {
 		Block = r.Block;
 		Frame = r.Frame;
 		Snapshot = r.Snapshot;
+		FrameChunks = r.FrameChunks;
+		SnapshotChunks = r.SnapshotChunks;
+		Chunk = r.Chunk;
 	}
 
 	public long getFromID() {
@@ -72,6 +82,106 @@ public class FastForwardResponse implements ParsableMessage {
 		Snapshot = snapshot;
 	}
 
+	public byte[][] getFrameChunks() {
+		return FrameChunks;
+	}
+
+	public void setFrameChunks(byte[][] frameChunks) {
+		FrameChunks = frameChunks;
+	}
+
+	public byte[][] getSnapshotChunks() {
+		return SnapshotChunks;
+	}
+
+	public void setSnapshotChunks(byte[][] snapshotChunks) {
+		SnapshotChunks = snapshotChunks;
+	}
+
+	public byte[] getChunk() {
+		return Chunk;
+	}
+
+	public void setChunk(byte[] chunk) {
+		Chunk = chunk;
+	}
+
+	@Override
+	public IProto<FastForwardResponse, net.proto.FastForwardResponse> marshaller() {
+		return new IProto<FastForwardResponse, net.proto.FastForwardResponse>() {
+			@Override
+			public net.proto.FastForwardResponse toProto() {
+				net.proto.FastForwardResponse.Builder builder = net.proto.FastForwardResponse.newBuilder();
+				builder.setFromID(FromID);
+				if (Block != null) {
+					builder.setBlock(Block.marshaller().toProto());
+				}
+				if (Frame != null) {
+					builder.setFrame(Frame.marshaller().toProto());
+				}
+				if (Snapshot != null) {
+					builder.setSnapshot(ByteString.copyFrom(Snapshot));
+				}
+				if (FrameChunks != null) {
+					for (byte[] h : FrameChunks) {
+						builder.addFrameChunks(ByteString.copyFrom(h));
+					}
+				}
+				if (SnapshotChunks != null) {
+					for (byte[] h : SnapshotChunks) {
+						builder.addSnapshotChunks(ByteString.copyFrom(h));
+					}
+				}
+				if (Chunk != null) {
+					builder.setChunk(ByteString.copyFrom(Chunk));
+				}
+				return builder.build();
+			}
+
+			@Override
+			public void fromProto(net.proto.FastForwardResponse proto) {
+				FromID = proto.getFromID();
+
+				Block = null;
+				if (proto.hasBlock()) {
+					Block = new poset.Block();
+					Block.marshaller().fromProto(proto.getBlock());
+				}
+
+				Frame = null;
+				if (proto.hasFrame()) {
+					Frame = new poset.Frame();
+					Frame.marshaller().fromProto(proto.getFrame());
+				}
+
+				Snapshot = proto.getSnapshot().toByteArray();
+
+				FrameChunks = null;
+				if (proto.getFrameChunksCount() > 0) {
+					FrameChunks = new byte[proto.getFrameChunksCount()][];
+					for (int i = 0; i < FrameChunks.length; ++i) {
+						FrameChunks[i] = proto.getFrameChunks(i).toByteArray();
+					}
+				}
+
+				SnapshotChunks = null;
+				if (proto.getSnapshotChunksCount() > 0) {
+					SnapshotChunks = new byte[proto.getSnapshotChunksCount()][];
+					for (int i = 0; i < SnapshotChunks.length; ++i) {
+						SnapshotChunks[i] = proto.getSnapshotChunks(i).toByteArray();
+					}
+				}
+
+				Chunk = proto.getChunk().toByteArray();
+			}
+
+			@Override
+			public Parser<net.proto.FastForwardResponse> parser() {
+				return net.proto.FastForwardResponse.parser();
+			}
+		};
+	}
+
 	@Override
 	public error parseFrom(String s) {
 		error err = null;
@@ -92,6 +202,9 @@ public class FastForwardResponse implements ParsableMessage {
 		result = prime * result + ((Frame == null) ? 0 : Frame.hashCode());
 		result = prime * result + (int) (FromID ^ (FromID >>> 32));
 		result = prime * result + Arrays.hashCode(Snapshot);
+		result = prime * result + Arrays.deepHashCode(FrameChunks);
+		result = prime * result + Arrays.deepHashCode(SnapshotChunks);
+		result = prime * result + Arrays.hashCode(Chunk);
 		return result;
 	}
 
@@ -118,6 +231,12 @@ public class FastForwardResponse implements ParsableMessage {
 			return false;
 		if (!Arrays.equals(Snapshot, other.Snapshot))
 			return false;
+		if (!Arrays.deepEquals(FrameChunks, other.FrameChunks))
+			return false;
+		if (!Arrays.deepEquals(SnapshotChunks, other.SnapshotChunks))
+			return false;
+		if (!Arrays.equals(Chunk, other.Chunk))
+			return false;
 		return true;
 	}
 
@@ -125,7 +244,10 @@ public class FastForwardResponse implements ParsableMessage {
 	public String toString() {
 		StringBuilder builder = new StringBuilder();
 		builder.append("FastForwardResponse [FromID=").append(FromID).append(", Block=").append(Block)
-				.append(", Frame=").append(Frame).append(", Snapshot=").append(Arrays.toString(Snapshot)).append("]");
+				.append(", Frame=").append(Frame).append(", Snapshot=").append(Arrays.toString(Snapshot))
+				.append(", FrameChunks=").append(FrameChunks == null ? 0 : FrameChunks.length)
+				.append(", SnapshotChunks=").append(SnapshotChunks == null ? 0 : SnapshotChunks.length)
+				.append(", Chunk=").append(Arrays.toString(Chunk)).append("]");
 		return builder.toString();
 	}
 }
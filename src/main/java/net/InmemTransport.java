@@ -9,11 +9,11 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.jcsp.lang.Alternative;
 import org.jcsp.lang.CSTimer;
-import org.jcsp.lang.Channel;
 import org.jcsp.lang.Guard;
 import org.jcsp.lang.One2OneChannel;
 
 import autils.Logger;
+import channel.BufferedChannel;
 import common.RResult;
 import common.error;
 
@@ -23,6 +23,7 @@ import common.error;
  */
 public class InmemTransport implements Transport {
 	private static final Logger logger = Logger.getLogger(InmemTransport.class);
+	static final int CONSUMER_BUFFER = 16; // RPCs buffered for the consumer
 
 	One2OneChannel<RPC> consumerCh;
 	String localAddr;
@@ -59,7 +60,7 @@ public class InmemTransport implements Transport {
 			addr = NewInmemAddr();
 		}
 
-		consumerCh = Channel.one2one(); // make(chan RPC, 16)
+		consumerCh = new BufferedChannel<RPC>(CONSUMER_BUFFER); // make(chan RPC, 16)
 		localAddr =	addr;
 		timeout = Duration.ofSeconds(50);
 
@@ -146,7 +147,7 @@ public class InmemTransport implements Transport {
 		}
 
 		// Send the RPC over
-		One2OneChannel<RPCResponse> respCh = Channel.one2one(); // make(chan RPCResponse);
+		One2OneChannel<RPCResponse> respCh = new BufferedChannel<RPCResponse>(1); // make(chan RPCResponse, 1);
 		peer.consumerCh.out().write(new RPC(args, respCh));
 
 		logger.debug("makeRPC() after write the RPC");
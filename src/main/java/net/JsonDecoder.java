@@ -12,15 +12,15 @@ import autils.Logger;
 import common.RResult;
 import common.error;
 
-public class JsonDecoder {
+public class JsonDecoder implements Decoder {
 	private static Logger logger = Logger.getLogger(JsonDecoder.class);
 
 	SocketChannel r;
-	private static ByteBuffer buffer;
+	private ByteBuffer buffer;
 
 	public JsonDecoder(SocketChannel r) {
 		this.r = r;
-		buffer = ByteBuffer.allocate(9256);
+		this.buffer = ByteBuffer.allocate(9256);
 	}
 
 	int readInt() throws IOException {
@@ -8,7 +8,7 @@ import autils.JsonUtils;
 import autils.Logger;
 import common.error;
 
-public class JsonEncoder {
+public class JsonEncoder implements Encoder {
 	private static Logger logger = Logger.getLogger(JsonEncoder.class);
 	SocketChannel w;
 
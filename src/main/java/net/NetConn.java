@@ -9,19 +9,44 @@ import common.error;
 public class NetConn {
 	String target;
 	SocketChannel conn;
-	JsonDecoder dec;
-	JsonEncoder enc;
+	Decoder dec;
+	Encoder enc;
+	boolean binary;
+
+	JsonDecoder jsonDec;
+	JsonEncoder jsonEnc;
+	BinaryDecoder binaryDec;
+	BinaryEncoder binaryEnc;
 
 	private static Logger logger = Logger.getLogger(NetConn.class);
 
-	public NetConn(String target, SocketChannel conn) {
+	public NetConn(String target, SocketChannel conn, BufferPool pool) {
 		super();
 		this.target = target;
 		this.conn = conn;
 
 		// Setup encoder/decoders
-		dec = new JsonDecoder(conn);
-		enc = new JsonEncoder(conn);
+		jsonDec = new JsonDecoder(conn);
+		jsonEnc = new JsonEncoder(conn);
+		binaryDec = new BinaryDecoder(conn, pool);
+		binaryEnc = new BinaryEncoder(conn, pool);
+		useBinary(false);
+	}
+
+	public NetConn(String target, SocketChannel conn) {
+		this(target, conn, new BufferPool());
+	}
+
+	// useBinary selects the codec used for the next RPCs on this connection
+	public void useBinary(boolean binary) {
+		this.binary = binary;
+		if (binary) {
+			dec = binaryDec;
+			enc = binaryEnc;
+		} else {
+			dec = jsonDec;
+			enc = jsonEnc;
+		}
 	}
 
 	public error release() {
@@ -39,7 +64,7 @@ public class NetConn {
 	public String toString() {
 		StringBuilder builder = new StringBuilder();
 		builder.append("netConn [target=").append(target).append(", conn=").append(conn).
-				append(", dec=").append(dec).append(", enc=").append(enc).append("]");
+				append(", binary=").append(binary).append("]");
 		return builder.toString();
 	}
-}
\ No newline at end of file
+}
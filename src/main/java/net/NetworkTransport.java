@@ -3,6 +3,7 @@ package net;
 import java.io.IOException;
 import java.net.SocketException;
 import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
@@ -11,7 +12,10 @@ import java.util.Iterator;
 import java.util.Set;
 import java.util.Stack;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -22,7 +26,9 @@ import org.jcsp.lang.Guard;
 import org.jcsp.lang.One2OneChannel;
 import org.jcsp.lang.One2OneChannelInt;
 
+import autils.JsonUtils;
 import autils.Logger;
+import channel.BufferedChannel;
 import channel.ChannelUtils;
 import channel.ExecService;
 import common.RResult;
@@ -35,14 +41,33 @@ import common.error;
  * etc.
  *
  * This transport is very simple and lightweight. Each RPC request is framed by
- * sending a byte that indicates the message type, followed by the json encoded
- * request. The response is an error string followed by the response object,
- * both are encoded using msgpack
+ * sending an int that indicates the message type, followed by the encoded
+ * request. The response is an error string followed by the response object.
+ *
+ * Two encodings are supported. When the rpcBinary bit of the message type is
+ * set, the request and the response are sent as length-prefixed protobuf
+ * frames (see BinaryEncoder); otherwise they are json encoded. Outbound RPCs
+ * use the binary encoding unless it is disabled. A binary RPC dropped without
+ * an answer is retried on a fresh connection, as the pooled one may have gone
+ * stale; a target which drops the fresh connection too does not know the
+ * binary encoding, and is sent json for JSON_FALLBACK_EXPIRY.
  */
 public class NetworkTransport implements Transport {
 
 	public static final error ErrTransportShutdown = error.Errorf("transport shutdown");
 
+	// set in the message type of RPCs using the binary encoding
+	public static final int rpcBinary = 1 << 8;
+
+	// number of threads serving inbound RPCs
+	public static final int DEFAULT_WORKERS = 16;
+
+	// number of inbound RPCs buffered for the consumer
+	public static final int CONSUMER_BUFFER = 16;
+
+	// how long a target which rejected a binary RPC is sent json
+	public static final Duration JSON_FALLBACK_EXPIRY = Duration.ofMinutes(5);
+
 	Logger logger;
 
 	ConcurrentMap<String, Stack<NetConn>> connPool;
@@ -58,6 +83,14 @@ public class NetworkTransport implements Transport {
 
 	Duration timeout;
 
+	BufferPool buffers;
+	boolean binary;
+	ConcurrentMap<String, Long> jsonTargets; // [target] => nano time until which it is sent json
+
+	ExecutorService workers;                       // serve the inbound RPCs
+	Lock consumeLock;                              // serializes the workers' writes to consumeCh
+	ConcurrentLinkedQueue<Runnable> selectorTasks; // run by the selector thread on wakeup
+
 	/**
 	 *  Creates a new network transport with the given dialer
 	 *  and listener. The maxPool controls how many connections we will pool (per
@@ -72,13 +105,19 @@ public class NetworkTransport implements Transport {
 			logger = Logger.getLogger(this.getClass());
 		//}
 		this.connPool = new ConcurrentHashMap<String, Stack<NetConn>>();
-		this.consumeCh = Channel.one2one(); // make(chan RPC),
+		this.consumeCh = new BufferedChannel<RPC>(CONSUMER_BUFFER); // make(chan RPC, 16),
 		this.logger = logger;
 		this.maxPool = maxPool;
 		this.shutdownCh = Channel.one2oneInt();
 		this.shutdownLock = new ReentrantLock();
 		this.stream = stream;
 		this.timeout = timeout;
+		this.buffers = new BufferPool();
+		this.binary = true;
+		this.jsonTargets = new ConcurrentHashMap<String, Long>();
+		this.workers = Executors.newFixedThreadPool(DEFAULT_WORKERS);
+		this.consumeLock = new ReentrantLock();
+		this.selectorTasks = new ConcurrentLinkedQueue<Runnable>();
 		this.logger = logger;
 
 		logger.debug("NetworkTransport()");
@@ -91,8 +130,10 @@ public class NetworkTransport implements Transport {
 		try {
 			if (!shutdown) {
 				ChannelUtils.close(shutdownCh);
-				stream.close();
 				shutdown = true;
+				stream.close();
+				stream.selector().wakeup();
+				workers.shutdown();
 			}
 			return null;
 		} finally {
@@ -100,6 +141,15 @@ public class NetworkTransport implements Transport {
 		}
 	}
 
+	/**
+	 * Selects the encoding of outbound RPCs: binary frames (the default) or json.
+	 * Inbound RPCs are answered in the encoding they were sent with.
+	 * @param binary
+	 */
+	public void SetBinaryCodec(boolean binary) {
+		this.binary = binary;
+	}
+
 	// Consumer implements the Transport interface.
 	public One2OneChannel<RPC> getConsumer() {
 		return consumeCh;
@@ -171,7 +221,16 @@ public class NetworkTransport implements Transport {
 			return new RResult<NetConn>(conn, null);
 		}
 		logger.field("conn", conn).debug("after pooled connection");
+		return dialConn(target, timeout);
+	}
 
+	/**
+	 * dialConn dials a new connection, bypassing the pool.
+	 * @param target
+	 * @param timeout
+	 * @return
+	 */
+	public RResult<NetConn> dialConn(String target, Duration timeout) {
 		// Dial a new connection
 		logger.field("target", target)
 			.field("timeout", timeout.toMillis()).debug("Dialing");
@@ -184,7 +243,7 @@ public class NetworkTransport implements Transport {
 		}
 
 		// Wrap the conn
-		conn = new NetConn(target, conn2);
+		NetConn conn = new NetConn(target, conn2, buffers);
 
 		// Done
 		return new RResult<NetConn>(conn, null);
@@ -232,13 +291,69 @@ public class NetworkTransport implements Transport {
 		logger.field("target", target).field("rpcType", rpcType).debug("genericRPC");
 
 		// Get a conn
-		RResult<NetConn> connCall = getConn(target, timeout);
-		NetConn conn = connCall.result;
-		error err = connCall.err;
-		if (err != null) {
-			return err;
+		NetConn conn = getPooledConn(target);
+		boolean fresh = conn == null;
+		if (fresh) {
+			RResult<NetConn> connCall = dialConn(target, timeout);
+			conn = connCall.result;
+			error err = connCall.err;
+			if (err != null) {
+				return err;
+			}
+		}
+		boolean useBinary = binary && !jsonOnly(target);
+		error err = roundTrip(conn, useBinary, rpcType, args, resp);
+
+		// A pooled connection may have been closed by the peer while idle, or
+		// by a restarting peer: try again on a fresh one
+		if (useBinary && err == BinaryDecoder.ErrClosed && !fresh) {
+			logger.field("target", target).debug("pooled connection closed, retrying on a fresh one");
+			RResult<NetConn> connCall = dialConn(target, timeout);
+			if (connCall.err != null) {
+				return connCall.err;
+			}
+			fresh = true;
+			err = roundTrip(connCall.result, useBinary, rpcType, args, resp);
+		}
+
+		// A peer which does not know the binary encoding drops a fresh connection
+		// as soon as it reads the request
+		if (useBinary && err == BinaryDecoder.ErrClosed && fresh) {
+			logger.field("target", target).warn("binary RPC rejected, falling back to json");
+			jsonTargets.put(target, System.nanoTime() + JSON_FALLBACK_EXPIRY.toNanos());
+			return genericRPC(target, rpcType, args, resp);
 		}
 
+		return err;
+	}
+
+	// jsonOnly tells whether target rejected a binary RPC less than
+	// JSON_FALLBACK_EXPIRY ago
+	boolean jsonOnly(String target) {
+		Long until = jsonTargets.get(target);
+		if (until == null) {
+			return false;
+		}
+		if (System.nanoTime() - until < 0) {
+			return true;
+		}
+		jsonTargets.remove(target, until);
+		return false;
+	}
+
+	/**
+	 * roundTrip sends the RPC on conn and decodes the response, then returns
+	 * conn to the pool if it can be reused.
+	 * @param conn
+	 * @param useBinary
+	 * @param rpcType
+	 * @param args
+	 * @param resp
+	 * @return
+	 */
+	private error roundTrip(NetConn conn, boolean useBinary, int rpcType, ParsableMessage args, ParsableMessage resp) {
+		conn.useBinary(useBinary);
+
 		// Set a deadline
 		if (timeout.getSeconds() > 0) {
 			logger.field("timeout", timeout.toMillis()).debug("SetSoTimeout()");
@@ -252,7 +367,7 @@ public class NetworkTransport implements Transport {
 		}
 
 		// Send the RPC
-		err = sendRPC(conn, rpcType, args);
+		error err = sendRPC(conn, rpcType, args);
 		logger.field("err", err).debug("sendRPC finished");
 
 		if (err != null) {
@@ -268,7 +383,6 @@ public class NetworkTransport implements Transport {
 		if (canReturn) {
 			returnConn(conn);
 		}
-
 		return err;
 	}
 
@@ -285,6 +399,9 @@ public class NetworkTransport implements Transport {
 			.field("args", args).debug("sendRPC()");
 
 		// Write the request type
+		if (conn.binary) {
+			rpcType |= rpcBinary;
+		}
 		error err = conn.enc.encode(rpcType);
 		logger.field("err", err).debug("sendRPC() encoding rpctype");
 		if (err != null) {
@@ -343,233 +460,217 @@ public class NetworkTransport implements Transport {
 
 	/**
 	 * Listening and handling incoming connections.
+	 *
+	 * A single selector thread accepts connections, assembles their requests
+	 * (see ServerConn) and writes the responses back. Decoded requests are
+	 * dispatched by the workers, which wait for the node's response.
 	 */
 	public void listen() {
 		logger.field("addr", localAddr()).info("Listening");
 		Selector selector = stream.selector();
-		try {
 
-			while (true) {
-				// Accept incoming connections
+		while (!shutdown) {
+			try {
 				selector.select();
+			} catch (IOException e) {
+				logger.field("error", e).error("listen() select failed");
+				return;
+			}
+			if (!selector.isOpen()) {
+				return;
+			}
 
-	            Set<SelectionKey> selectedKeys = selector.selectedKeys();
-	            Iterator<SelectionKey> iter = selectedKeys.iterator();
-
-	            ByteBuffer buffer = ByteBuffer.allocate(9056);
-	            while (iter.hasNext()) {
-	                SelectionKey key = iter.next();
-
-	                if (key.isAcceptable()) {
-	                	RResult<SocketChannel> accept = stream.accept();
-	        			SocketChannel conn = accept.result;
-	        			error err = accept.err;
-	        			if (err != null) {
-	        				if (IsShutdown()) {
-	        					return;
-	        				}
-	        				logger.field("error", err).error("Failed to accept connection");
-	        				continue;
-	        			}
-	        			logger.field("node", conn.socket().getLocalAddress())
-	        					.field("from", conn.socket().getRemoteSocketAddress())
-	        					.field("conn", conn)
-	        					.info("connection accepted. server socket");
-
-	        			//ExecService.go(() -> handleConn(conn));
-	        			handleConn(conn);
-	                }
-
-	                if (key.isReadable()) {
-	                	logger.field("key", key).debug("TBD XXXX key is in readable mode");
-	                	// Handle the connection
-	                	SocketChannel client = (SocketChannel) key.channel();
-	                	buffer.clear();
-	                	client.read(buffer);
-
-	                    buffer.flip();
-	                    client.write(buffer);
-	                    buffer.clear();
-	                }
-	                if (key.isWritable()) {
-	                	logger.field("key", key).debug("TBD YYYY key is in writable mode");
-	                	// Handle the connection
-	                }
-
-	                iter.remove();
-	            }
+			// Responses completed by the workers
+			Runnable task;
+			while ((task = selectorTasks.poll()) != null) {
+				task.run();
 			}
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
-	}
 
-	/**
-	 * Handle an inbound connection for its lifespan.
-	 * @param conn
-	 */
-	public void handleConn(SocketChannel conn) {
-		logger.error("handleConn() conn=" + conn);
-		try {
-			JsonDecoder dec = new JsonDecoder(conn);
-			JsonEncoder enc = new JsonEncoder(conn);
-
-			while (true) {
-				logger.error("handleConn() LOOPING conn=" + conn);
-				error err = handleCommand(dec, enc);
-				logger.field("err", err).error("handleConn() handleCommand finished");
-
-				if (err != null) {
-					// TODO: should we check for ErrTransportShutdown here as well?
-					// if (err != io.EOF && err != ErrTransportShutdown) {
-					if (err != ErrTransportShutdown) {
-						logger.field("error", err).error("Failed to decode incoming command");
+			Set<SelectionKey> selectedKeys = selector.selectedKeys();
+			Iterator<SelectionKey> iter = selectedKeys.iterator();
+			while (iter.hasNext()) {
+				SelectionKey key = iter.next();
+				iter.remove();
+
+				if (!key.isValid()) {
+					continue;
+				}
+				if (key.isAcceptable()) {
+					accept(selector);
+					continue;
+				}
+
+				ServerConn conn = (ServerConn) key.attachment();
+				try {
+					if (key.isReadable()) {
+						if (!conn.read()) {
+							conn.close();
+							continue;
+						}
+						serve(conn);
+					} else if (key.isWritable()) {
+						if (conn.write()) {
+							// a pipelined request may already be buffered
+							serve(conn);
+						}
 					}
-					return;
+				} catch (IOException | CancelledKeyException e) {
+					logger.field("conn", conn).field("error", e).debug("listen() connection closed");
+					conn.close();
 				}
 			}
-		} finally {
+		}
+	}
+
+	// accept registers a new inbound connection with the selector
+	private void accept(Selector selector) {
+		RResult<SocketChannel> accept = stream.accept();
+		SocketChannel conn = accept.result;
+		error err = accept.err;
+		if (err != null) {
+			if (!shutdown) {
+				logger.field("error", err).error("Failed to accept connection");
+			}
+			return;
+		}
+		logger.field("node", conn.socket().getLocalAddress())
+			.field("from", conn.socket().getRemoteSocketAddress())
+			.debug("connection accepted. server socket");
+
+		try {
+			conn.configureBlocking(false);
+			SelectionKey key = conn.register(selector, SelectionKey.OP_READ);
+			key.attach(new ServerConn(conn, key, buffers));
+		} catch (IOException e) {
+			logger.field("error", e).error("Failed to register connection");
 			try {
 				conn.close();
-			} catch (IOException e) {
-				e.printStackTrace();
-				logger.error("Connection close error " + e);
-				return;
+			} catch (IOException e1) {
+				logger.field("error", e1).debug("accept() close");
 			}
 		}
 	}
 
-	/**
-	 * Handles a command by decoding and dispatching a single command.
-	 * @param r
-	 * @param dec
-	 * @param enc
-	 * @return
-	 */
-	public error handleCommand(JsonDecoder dec, JsonEncoder enc) {
-		// Get the rpc type
-		RResult<Integer> readRpc = dec.readRpc();
-		int rpcType = readRpc.result;
-		error err = readRpc.err;
+	// serve hands the next complete request of conn, if any, to a worker
+	private void serve(ServerConn conn) {
+		RResult<ParsableMessage> next = conn.next();
+		ParsableMessage cmd = next.result;
+		error err = next.err;
 		if (err != null) {
-			return err;
+			logger.field("error", err).error("Failed to decode incoming command");
+			conn.close();
+			return;
+		}
+		if (cmd == null) {
+			return;
 		}
 
-		// Create the RPC object
-		One2OneChannel<RPCResponse> respCh = Channel.one2one(); // make(chan RPCResponse, 1);
-		RPC rpc = new RPC(respCh);
+		// stop reading until the response is written
+		conn.key.interestOps(0);
+		boolean binary = conn.binary;
+		workers.execute(() -> handleCommand(conn, cmd, binary));
+	}
 
-		NetworkTransportType retrievedRpc = NetworkTransportType.values[rpcType];
-		logger.field("retrievedRpc", retrievedRpc).debug("handleCommand()");
+	/**
+	 * Creates an empty command for an rpc type
+	 * @param rpcType
+	 * @return
+	 */
+	static RResult<ParsableMessage> newCommand(int rpcType) {
+		if (rpcType < 0 || rpcType >= NetworkTransportType.values.length) {
+			return new RResult<>(null, error.Errorf(String.format("unknown rpc type %d", rpcType)));
+		}
 
-		// Decode the command
-		switch (retrievedRpc) {
+		switch (NetworkTransportType.values[rpcType]) {
 		case rpcSync:
-			SyncRequest sreq = new SyncRequest();
-			err = dec.decode(sreq);
-			if (err != null) {
-				return err;
-			}
-			rpc.setCommand(sreq);
-			break;
+			return new RResult<>(new SyncRequest(), null);
 		case rpcEagerSync:
-			EagerSyncRequest esreq = new EagerSyncRequest();
-			err = dec.decode(esreq);
-			if (err != null) {
-				return err;
-			}
-			rpc.setCommand(esreq);
-			break;
+			return new RResult<>(new EagerSyncRequest(), null);
 		case rpcFastForward:
-			FastForwardRequest ffreq = new FastForwardRequest();
-			err = dec.decode(ffreq);
-			if (err != null) {
-				return err;
-			}
-			rpc.setCommand(ffreq);
-			break;
+			return new RResult<>(new FastForwardRequest(), null);
 		default:
-			return error.Errorf(String.format("unknown rpc type %d", rpcType));
+			return new RResult<>(null, error.Errorf(String.format("unknown rpc type %d", rpcType)));
 		}
+	}
 
-//		 Dispatch the RPC
-//		 TODO semantics the same?
-//		select {
-//		case consumeCh <- rpc:
-//		case <-shutdownCh:
-//			return ErrTransportShutdown;
-//		}
-
-		logger.debug("handleCommand() dispatching the RPC");
+	/**
+	 * Dispatches a decoded command to the consumer and queues its response on
+	 * the connection. It runs on a worker.
+	 * @param conn
+	 * @param cmd
+	 * @param binary
+	 */
+	void handleCommand(ServerConn conn, ParsableMessage cmd, boolean binary) {
+		// Create the RPC object
+		One2OneChannel<RPCResponse> respCh = new BufferedChannel<RPCResponse>(1); // make(chan RPCResponse, 1);
+		RPC rpc = new RPC(cmd, respCh);
 
-		CSTimer tim = new CSTimer();
-		final Alternative alt = new Alternative(new Guard[] {shutdownCh.in(), tim});
-		final int SHUTDOWN = 0, TIMER = 1;
+		logger.field("cmd", cmd).debug("handleCommand() dispatching the RPC");
 
-		switch (alt.priSelect()) {
-		case SHUTDOWN:
-			logger.debug("handleCommand() shutdown case");
-			shutdownCh.in().read();
-			return ErrTransportShutdown;
-		case TIMER:
-			logger.debug("handleCommand() timeout case");
-			tim.setAlarm(tim.read() + timeout.toMillis());
-		default:
-			logger.debug("handleCommand() consuming");
+		// consumeCh only supports a single writer
+		consumeLock.lock();
+		try {
+			if (shutdown) {
+				return;
+			}
 			consumeCh.out().write(rpc);
-			break;
+		} finally {
+			consumeLock.unlock();
 		}
 
-//		// Wait for response
-//		select {
-//			case resp := <-respCh:
-//				// Send the error first
-//				respErr = error.Errorf("");
-//				if (resp.Error != null) {
-//					respErr = resp.Error.Error();
-//				}
-//				err = enc.Encode(respErr);
-//				if ( err != null) {
-//					return err;
-//				}
-//
-//				// Send the response
-//				err = enc.Encode(resp.Response);
-//				if  (err != null) {
-//					return err;
-//				}
-//			case <-shutdownCh:
-//				return ErrTransportShutdown;
-//		}
-
 		logger.debug("Wait for a response");
 
-		final Alternative alt2 = new Alternative(new Guard[] { respCh.in(), shutdownCh.in()});
-		final int RESPONSE = 0, SHUTDOWN2 = 1;
+		final Alternative alt = new Alternative(new Guard[] { respCh.in(), shutdownCh.in()});
+		final int RESPONSE = 0, SHUTDOWN = 1;
 
-		RPCResponse resp;
-		switch (alt2.priSelect()) {
+		switch (alt.priSelect()) {
 		case RESPONSE:
-			logger.debug("Reading response channel");
-			resp = respCh.in().read();
-			// Send the error first
-			if (resp.error != null) {
-				err = enc.encode(resp.error);
-				if (err != null) {
-					return err;
-				}
+			RPCResponse resp = respCh.in().read();
+			ByteBuffer[] bufs;
+			try {
+				bufs = encodeResponse(resp, binary);
+			} catch (IOException e) {
+				logger.field("error", e).error("Failed to encode response");
+				selectorTasks.add(() -> conn.close());
+				stream.selector().wakeup();
+				return;
 			}
+			selectorTasks.add(() -> {
+				if (conn.key.isValid()) {
+					conn.respond(bufs);
+				}
+			});
+			stream.selector().wakeup();
+			break;
+		case SHUTDOWN:
+			shutdownCh.in().read();
+			break;
+		}
+	}
 
-			// Send the response
-			err = enc.encode(resp.response);
-			if (err != null) {
-				return err;
+	// encodeResponse returns the error followed by the response, in the
+	// encoding of the request
+	private ByteBuffer[] encodeResponse(RPCResponse resp, boolean binary) throws IOException {
+		if (binary) {
+			BinaryEncoder enc = new BinaryEncoder(null, buffers);
+			ByteBuffer errFrame = enc.frame(resp.error);
+			try {
+				ByteBuffer[] frames = enc.frames(resp.response);
+				ByteBuffer[] bufs = new ByteBuffer[1 + frames.length];
+				bufs[0] = errFrame;
+				System.arraycopy(frames, 0, bufs, 1, frames.length);
+				return bufs;
+			} catch (IOException e) {
+				buffers.put(errFrame);
+				throw e;
 			}
-		case SHUTDOWN2:
-			shutdownCh.in().read();
-			return ErrTransportShutdown;
 		}
 
-		return null;
+		StringBuilder s = new StringBuilder();
+		if (resp.error != null) {
+			s.append(JsonUtils.ObjectToString(resp.error));
+		}
+		s.append(resp.response.getString());
+		return new ByteBuffer[] { ByteBuffer.wrap(s.toString().getBytes()) };
 	}
 }
\ No newline at end of file
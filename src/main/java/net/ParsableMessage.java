@@ -1,6 +1,7 @@
 package net;
 
 import autils.JsonUtils;
+import common.IProto;
 import common.error;
 
 public interface ParsableMessage {
@@ -13,4 +14,9 @@ public interface ParsableMessage {
 	default public String getString() {
 		return JsonUtils.ObjectToString(this);
 	}
+
+	/**
+	 * Returns the protobuf un/marshaller of the message, used by the binary codec
+	 */
+	IProto<?, ?> marshaller();
 }
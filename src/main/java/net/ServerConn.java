@@ -0,0 +1,240 @@
+package net;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import autils.Logger;
+import common.RResult;
+import common.error;
+
+/**
+ * ServerConn is the state of an inbound connection served by the selector loop
+ * of NetworkTransport.
+ *
+ * Input is accumulated until a whole request is available: the rpc type,
+ * followed by either a binary frame or a json object. The request is then
+ * handed to a worker and reading is suspended until its response has been
+ * written back, so a connection has at most one request in flight. All the
+ * methods are called from the selector thread.
+ */
+class ServerConn {
+	private static Logger logger = Logger.getLogger(ServerConn.class);
+
+	static final int READ_TYPE = 0;   // waiting for the rpc type
+	static final int READ_LENGTH = 1; // waiting for the length of a binary frame
+	static final int READ_BODY = 2;   // waiting for the body of a binary frame
+	static final int READ_JSON = 3;   // waiting for the end of a json object
+	static final int BUSY = 4;        // a request is being served
+
+	static final int INITIAL_BUFFER_SIZE = 4 * 1024;
+
+	SocketChannel conn;
+	SelectionKey key;
+	BufferPool pool;
+
+	ByteBuffer in;           // accumulated input, in write mode
+	Deque<ByteBuffer> out;   // pending output
+	int state;
+	int rpcType;
+	boolean binary;
+	int bodySize;
+
+	ServerConn(SocketChannel conn, SelectionKey key, BufferPool pool) {
+		this.conn = conn;
+		this.key = key;
+		this.pool = pool;
+		this.in = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+		this.out = new ArrayDeque<ByteBuffer>();
+		this.state = READ_TYPE;
+	}
+
+	/**
+	 * Reads the available input. It returns false when the peer closed the
+	 * connection.
+	 * @return
+	 * @throws IOException
+	 */
+	boolean read() throws IOException {
+		if (!in.hasRemaining()) {
+			if (in.capacity() >= BinaryDecoder.MAX_FRAME_SIZE + 8) {
+				throw new IOException("request too large");
+			}
+			ByteBuffer grown = ByteBuffer.allocate(2 * in.capacity());
+			in.flip();
+			grown.put(in);
+			in = grown;
+		}
+		return conn.read(in) >= 0;
+	}
+
+	/**
+	 * Returns the next complete request, or null when more input is needed.
+	 * rpcType and binary describe the returned request.
+	 * @return
+	 */
+	RResult<ParsableMessage> next() {
+		if (state == BUSY) {
+			return new RResult<>(null, null);
+		}
+
+		in.flip();
+		try {
+			if (state == READ_TYPE) {
+				if (in.remaining() < 4) {
+					return new RResult<>(null, null);
+				}
+				int t = in.getInt();
+				binary = (t & NetworkTransport.rpcBinary) != 0;
+				rpcType = t & ~NetworkTransport.rpcBinary;
+				state = binary ? READ_LENGTH : READ_JSON;
+			}
+
+			if (state == READ_LENGTH) {
+				if (in.remaining() < 4) {
+					return new RResult<>(null, null);
+				}
+				bodySize = in.getInt();
+				if (bodySize < 0 || bodySize > BinaryDecoder.MAX_FRAME_SIZE) {
+					return new RResult<>(null, error.Errorf(String.format("invalid frame size %d", bodySize)));
+				}
+				state = READ_BODY;
+			}
+
+			ParsableMessage cmd;
+			if (state == READ_BODY) {
+				if (in.remaining() < bodySize) {
+					return new RResult<>(null, null);
+				}
+				ByteBuffer body = in.slice();
+				body.limit(bodySize);
+				in.position(in.position() + bodySize);
+
+				RResult<ParsableMessage> newCommand = NetworkTransport.newCommand(rpcType);
+				cmd = newCommand.result;
+				if (newCommand.err != null) {
+					return newCommand;
+				}
+				error err = BinaryDecoder.parse(cmd.marshaller(), body);
+				if (err != null) {
+					return new RResult<>(null, err);
+				}
+			} else {
+				int end = jsonEnd(in);
+				if (end < 0) {
+					return new RResult<>(null, null);
+				}
+				byte[] bytes = new byte[end - in.position()];
+				in.get(bytes);
+
+				RResult<ParsableMessage> newCommand = NetworkTransport.newCommand(rpcType);
+				cmd = newCommand.result;
+				if (newCommand.err != null) {
+					return newCommand;
+				}
+				error err = cmd.parseFrom(new String(bytes, StandardCharsets.UTF_8));
+				if (err != null) {
+					return new RResult<>(null, err);
+				}
+			}
+
+			state = BUSY;
+			return new RResult<>(cmd, null);
+		} finally {
+			in.compact();
+		}
+	}
+
+	/**
+	 * Queues the response of the current request and switches to writing
+	 * @param bufs
+	 */
+	void respond(ByteBuffer[] bufs) {
+		for (ByteBuffer buf : bufs) {
+			out.add(buf);
+		}
+		key.interestOps(SelectionKey.OP_WRITE);
+	}
+
+	/**
+	 * Writes the pending output. It returns true once the response has been
+	 * fully written and the connection is reading again.
+	 * @return
+	 * @throws IOException
+	 */
+	boolean write() throws IOException {
+		while (!out.isEmpty()) {
+			// gathering write of all the pending buffers
+			conn.write(out.toArray(new ByteBuffer[out.size()]));
+			while (!out.isEmpty() && !out.peek().hasRemaining()) {
+				pool.put(out.poll());
+			}
+			if (!out.isEmpty()) {
+				return false;
+			}
+		}
+		state = READ_TYPE;
+		key.interestOps(SelectionKey.OP_READ);
+		return true;
+	}
+
+	void close() {
+		key.cancel();
+		while (!out.isEmpty()) {
+			pool.put(out.poll());
+		}
+		try {
+			conn.close();
+		} catch (IOException e) {
+			logger.field("error", e).debug("close()");
+		}
+	}
+
+	/**
+	 * Returns the position following the json object starting at the position
+	 * of buf, or -1 if the object is not complete yet.
+	 * @param buf
+	 * @return
+	 */
+	static int jsonEnd(ByteBuffer buf) {
+		int depth = 0;
+		boolean inString = false;
+		boolean escaped = false;
+		for (int i = buf.position(); i < buf.limit(); i++) {
+			byte b = buf.get(i);
+			if (inString) {
+				if (escaped) {
+					escaped = false;
+				} else if (b == '\\') {
+					escaped = true;
+				} else if (b == '"') {
+					inString = false;
+				}
+				continue;
+			}
+			if (b == '"') {
+				inString = true;
+			} else if (b == '{' || b == '[') {
+				depth++;
+			} else if (b == '}' || b == ']') {
+				depth--;
+				if (depth == 0) {
+					return i + 1;
+				}
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append("ServerConn [conn=").append(conn).append(", state=").append(state)
+			.append(", rpcType=").append(rpcType).append(", binary=").append(binary).append("]");
+		return builder.toString();
+	}
+}
@@ -16,6 +16,7 @@ interface StreamLayer  {
 	/** Dial is used to create a new outgoing connection. */
 	RResult<SocketChannel> dial(String address, Duration timeout);
 
+	/** Accept returns a new non-blocking inbound connection, the caller registers it with the selector. */
 	RResult<SocketChannel> accept();
 
 	Selector selector();
@@ -3,7 +3,10 @@ package net;
 import java.util.HashMap;
 import java.util.Map;
 
+import com.google.protobuf.Parser;
+
 import autils.JsonUtils;
+import common.IProto;
 import common.error;
 
 public class SyncRequest implements ParsableMessage {
@@ -29,6 +32,32 @@ public class SyncRequest implements ParsableMessage {
 		return FromID;
 	}
 
+	@Override
+	public IProto<SyncRequest, net.proto.SyncRequest> marshaller() {
+		return new IProto<SyncRequest, net.proto.SyncRequest>() {
+			@Override
+			public net.proto.SyncRequest toProto() {
+				net.proto.SyncRequest.Builder builder = net.proto.SyncRequest.newBuilder();
+				builder.setFromID(FromID);
+				if (Known != null) {
+					builder.putAllKnown(Known);
+				}
+				return builder.build();
+			}
+
+			@Override
+			public void fromProto(net.proto.SyncRequest proto) {
+				FromID = proto.getFromID();
+				Known = new HashMap<Long,Long>(proto.getKnownMap());
+			}
+
+			@Override
+			public Parser<net.proto.SyncRequest> parser() {
+				return net.proto.SyncRequest.parser();
+			}
+		};
+	}
+
 	@Override
 	public error parseFrom(String s) {
 		error err = null;
@@ -1,13 +1,17 @@
 package net;
 
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Map;
 
+import com.google.protobuf.Parser;
+
 import autils.JsonUtils;
+import common.IProto;
 import common.error;
 import poset.WireEvent;
 
-public class SyncResponse implements ParsableMessage {
+public class SyncResponse implements EventsMessage {
 	long FromID;
 	private boolean SyncLimit;
 	private poset.WireEvent[] Events;
@@ -85,6 +89,63 @@ public class SyncResponse implements ParsableMessage {
 		return FromID;
 	}
 
+	@Override
+	public int eventsField() {
+		return net.proto.SyncResponse.EVENTS_FIELD_NUMBER;
+	}
+
+	@Override
+	public net.proto.SyncResponse headerProto() {
+		net.proto.SyncResponse.Builder builder = net.proto.SyncResponse.newBuilder();
+		builder.setFromID(FromID);
+		builder.setSyncLimit(SyncLimit);
+		if (Known != null) {
+			builder.putAllKnown(Known);
+		}
+		return builder.build();
+	}
+
+	@Override
+	public IProto<SyncResponse, net.proto.SyncResponse> marshaller() {
+		return new IProto<SyncResponse, net.proto.SyncResponse>() {
+			@Override
+			public net.proto.SyncResponse toProto() {
+				net.proto.SyncResponse.Builder builder = net.proto.SyncResponse.newBuilder();
+				builder.setFromID(FromID);
+				builder.setSyncLimit(SyncLimit);
+				if (Events != null) {
+					Arrays.asList(Events).forEach(event -> {
+						builder.addEvents(event.marshaller().toProto());
+					});
+				}
+				if (Known != null) {
+					builder.putAllKnown(Known);
+				}
+				return builder.build();
+			}
+
+			@Override
+			public void fromProto(net.proto.SyncResponse proto) {
+				FromID = proto.getFromID();
+				SyncLimit = proto.getSyncLimit();
+
+				int eventCount = proto.getEventsCount();
+				Events = new WireEvent[eventCount];
+				for (int i = 0; i < eventCount; ++i) {
+					Events[i] = new WireEvent();
+					Events[i].marshaller().fromProto(proto.getEvents(i));
+				}
+
+				Known = new HashMap<Long,Long>(proto.getKnownMap());
+			}
+
+			@Override
+			public Parser<net.proto.SyncResponse> parser() {
+				return net.proto.SyncResponse.parser();
+			}
+		};
+	}
+
 	@Override
 	public error parseFrom(String s) {
 		error err = null;
@@ -64,7 +64,6 @@ class TCPStreamLayer implements StreamLayer {
         	client = listener.accept();
 			logger.field("accept", client).debug("Accept()");
 			client.configureBlocking(false);
-			client.register(selector, SelectionKey.OP_READ | SelectionKey.OP_WRITE);
 		} catch (IOException e) {
 			return new RResult<>(null, error.Errorf(e.getMessage()));
 		}
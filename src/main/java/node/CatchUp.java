@@ -0,0 +1,308 @@
+package node;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import autils.Logger;
+import channel.ExecService;
+import common.RResult;
+import common.error;
+import crypto.hash;
+import net.FastForwardPart;
+import net.FastForwardResponse;
+import poset.Block;
+import poset.EventMessage;
+import poset.Frame;
+import poset.Utils;
+
+/**
+ * CatchUp downloads, in chunks, the frame and the App snapshot a node needs
+ * to fast-forward to an anchor block.
+ *
+ * It starts from a manifest, received from one peer: the anchor block, its
+ * frame without events and the hashes of the chunks of the frame events and
+ * of the snapshot (see CatchUpImage). The chunks are then fetched from several
+ * peers at a time. Every chunk is checked against its hash as it arrives, and
+ * a chunk which fails is asked again from the next peer. Verified chunks are
+ * kept, so that a download interrupted by failures resumes where it stopped,
+ * as long as the anchor block stays the same.
+ *
+ * The frame hash, which the signatures of the block cover, is computed as the
+ * chunks of events arrive in order, and checked once the last one is in.
+ *
+ * A manifest without chunk hashes, from a peer answering with everything at
+ * once, holds the whole frame and snapshot: there is nothing to fetch.
+ */
+public class CatchUp {
+	// Fetcher fetches a chunk of the anchor block from a peer
+	public interface Fetcher {
+		RResult<byte[]> fetch(String peerAddr, FastForwardPart part, long blockIndex, int chunk);
+	}
+
+	// task is a chunk to fetch
+	static class task {
+		final FastForwardPart part;
+		final int chunk;
+
+		task(FastForwardPart part, int chunk) {
+			this.part = part;
+			this.chunk = chunk;
+		}
+	}
+
+	final Block block;
+	final Frame header;
+	final byte[] snapshot;           // the whole snapshot, from a manifest without chunks
+	private final byte[][] frameHashes;
+	private final byte[][] snapshotHashes;
+
+	// verified chunks, guarded by this
+	private final EventMessage[][] frameEvents;
+	private final byte[][] frameChunks;     // until added to the frame digest
+	private final byte[][] snapshotChunks;
+	private final MessageDigest frameDigest;
+	private int hashed;                     // frame chunks added to the frame digest
+
+	private final Logger logger;
+
+	CatchUp(Block block, Frame header, byte[] snapshot, byte[][] frameHashes, byte[][] snapshotHashes,
+		MessageDigest frameDigest, Logger logger) {
+		this.block = block;
+		this.header = header;
+		this.snapshot = snapshot;
+		this.frameHashes = frameHashes;
+		this.snapshotHashes = snapshotHashes;
+		this.frameEvents = new EventMessage[frameHashes.length][];
+		this.frameChunks = new byte[frameHashes.length][];
+		this.snapshotChunks = new byte[snapshotHashes.length][];
+		this.frameDigest = frameDigest;
+		this.logger = logger;
+	}
+
+	/**
+	 * fromManifest prepares the download of the chunks listed in a manifest
+	 * @param manifest
+	 * @param logger
+	 * @return
+	 */
+	public static RResult<CatchUp> fromManifest(FastForwardResponse manifest, Logger logger) {
+		if (manifest.getBlock() == null || manifest.getFrame() == null) {
+			return new RResult<CatchUp>(null, error.Errorf("fast-forward manifest without block or frame"));
+		}
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			return new RResult<CatchUp>(null, error.Errorf(e.getMessage()));
+		}
+		RResult<byte[]> headerCall = manifest.getFrame().marshaller().protoMarshal();
+		if (headerCall.err != null) {
+			return new RResult<CatchUp>(null, headerCall.err);
+		}
+		digest.update(headerCall.result);
+
+		byte[][] frameHashes = manifest.getFrameChunks() != null ? manifest.getFrameChunks() : new byte[0][];
+		byte[][] snapshotHashes = manifest.getSnapshotChunks() != null ? manifest.getSnapshotChunks() : new byte[0][];
+		return new RResult<CatchUp>(new CatchUp(manifest.getBlock(), manifest.getFrame(),
+			manifest.getSnapshot(), frameHashes, snapshotHashes, digest, logger), null);
+	}
+
+	// sameAnchor tells whether a manifest lists the same chunks, so that the
+	// download can resume
+	public boolean sameAnchor(FastForwardResponse manifest) {
+		return manifest.getBlock() != null && manifest.getBlock().Index() == block.Index()
+			&& Utils.bytesEquals(manifest.getBlock().getFrameHash(), block.getFrameHash())
+			&& Arrays.deepEquals(manifest.getFrameChunks() != null ? manifest.getFrameChunks() : new byte[0][], frameHashes)
+			&& Arrays.deepEquals(manifest.getSnapshotChunks() != null ? manifest.getSnapshotChunks() : new byte[0][], snapshotHashes);
+	}
+
+	/**
+	 * fetch fetches the missing chunks from the given peers, with up to
+	 * parallelism chunks in flight. Each chunk is asked from the peers in turn,
+	 * up to attempts times.
+	 * @param peerAddrs
+	 * @param fetcher
+	 * @param parallelism
+	 * @param attempts
+	 * @return an error if chunks are still missing
+	 */
+	public error fetch(String[] peerAddrs, Fetcher fetcher, int parallelism, int attempts) {
+		ConcurrentLinkedQueue<task> tasks = new ConcurrentLinkedQueue<task>(missing());
+		if (tasks.isEmpty()) {
+			return null;
+		}
+		if (peerAddrs.length == 0) {
+			return error.Errorf("no peer to fetch the fast-forward chunks from");
+		}
+
+		int workers = Math.min(Math.max(parallelism, 1), tasks.size());
+		List<Future<?>> futures = new ArrayList<Future<?>>(workers);
+		for (int w = 0; w < workers; w++) {
+			final int first = w;
+			futures.add(ExecService.go(() -> work(first, peerAddrs, fetcher, attempts, tasks)));
+		}
+		try {
+			for (Future<?> f : futures) {
+				f.get();
+			}
+		} catch (InterruptedException e) {
+			futures.forEach(f -> f.cancel(true));
+			Thread.currentThread().interrupt();
+			return error.Errorf("interrupted while fetching the fast-forward chunks");
+		} catch (ExecutionException e) {
+			return error.Errorf(String.valueOf(e.getCause()));
+		}
+
+		int missing = missing().size();
+		if (missing > 0) {
+			return error.Errorf(String.format("%d fast-forward chunks missing for block %d", missing, block.Index()));
+		}
+		return null;
+	}
+
+	// work fetches chunks until there are none left, starting with the peer
+	// numbered first and moving to the next peer after every failure
+	private void work(int first, String[] peerAddrs, Fetcher fetcher, int attempts, ConcurrentLinkedQueue<task> tasks) {
+		int p = first;
+		task t;
+		while ((t = tasks.poll()) != null && !Thread.currentThread().isInterrupted()) {
+			for (int attempt = 0; attempt < Math.max(attempts, 1); attempt++) {
+				String peerAddr = peerAddrs[p % peerAddrs.length];
+				RResult<byte[]> fetchCall = fetcher.fetch(peerAddr, t.part, block.Index(), t.chunk);
+				error err = fetchCall.err;
+				if (err == null) {
+					err = add(t.part, t.chunk, fetchCall.result);
+				}
+				if (err == null) {
+					break;
+				}
+				logger.field("peer", peerAddr)
+					.field("part", t.part)
+					.field("chunk", t.chunk)
+					.field("error", err)
+					.debug("CatchUp.fetch()");
+				p++;
+			}
+		}
+	}
+
+	// add checks a chunk against its hash and keeps it
+	error add(FastForwardPart part, int n, byte[] chunk) {
+		byte[][] hashes = part == FastForwardPart.FrameChunk ? frameHashes : snapshotHashes;
+		if (chunk == null || n < 0 || n >= hashes.length || !Utils.bytesEquals(hash.SHA256(chunk), hashes[n])) {
+			return error.Errorf(String.format("invalid %s %d", part, n));
+		}
+		if (part == FastForwardPart.SnapshotChunk) {
+			synchronized (this) {
+				snapshotChunks[n] = chunk;
+			}
+			return null;
+		}
+
+		// a chunk of the frame is a frame holding only events
+		Frame events = new Frame();
+		error err = events.marshaller().protoUnmarshal(chunk);
+		if (err != null) {
+			return err;
+		}
+		synchronized (this) {
+			frameEvents[n] = events.GetEvents() != null ? events.GetEvents() : new EventMessage[0];
+			frameChunks[n] = chunk;
+			while (hashed < frameChunks.length && frameChunks[hashed] != null) {
+				frameDigest.update(frameChunks[hashed]);
+				frameChunks[hashed] = null;
+				hashed++;
+			}
+		}
+		return null;
+	}
+
+	// missing returns the chunks not fetched yet
+	synchronized List<task> missing() {
+		List<task> res = new ArrayList<task>();
+		for (int i = 0; i < frameEvents.length; i++) {
+			if (frameEvents[i] == null) {
+				res.add(new task(FastForwardPart.FrameChunk, i));
+			}
+		}
+		for (int i = 0; i < snapshotChunks.length; i++) {
+			if (snapshotChunks[i] == null) {
+				res.add(new task(FastForwardPart.SnapshotChunk, i));
+			}
+		}
+		return res;
+	}
+
+	/**
+	 * frame returns the frame of the anchor block, once all its chunks are in
+	 * and the frame hash matches the block
+	 * @return
+	 */
+	public synchronized RResult<Frame> frame() {
+		if (hashed < frameHashes.length) {
+			return new RResult<Frame>(null, error.Errorf("fast-forward frame is incomplete"));
+		}
+		MessageDigest digest;
+		try {
+			digest = (MessageDigest) frameDigest.clone();
+		} catch (CloneNotSupportedException e) {
+			return new RResult<Frame>(null, error.Errorf(e.getMessage()));
+		}
+		if (!Utils.bytesEquals(digest.digest(), block.getFrameHash())) {
+			return new RResult<Frame>(null, error.Errorf("invalid Frame Hash"));
+		}
+
+		if (frameEvents.length == 0) {
+			return new RResult<Frame>(header, null);
+		}
+		List<EventMessage> events = new ArrayList<EventMessage>();
+		for (EventMessage[] chunk : frameEvents) {
+			events.addAll(Arrays.asList(chunk));
+		}
+		return new RResult<Frame>(new Frame(header.GetRound(), header.GetRoots(),
+			events.toArray(new EventMessage[events.size()])), null);
+	}
+
+	/**
+	 * snapshot returns the App snapshot, once all its chunks are in
+	 * @return
+	 */
+	public synchronized RResult<byte[]> snapshot() {
+		if (snapshotChunks.length == 0) {
+			return new RResult<byte[]>(snapshot, null);
+		}
+		int size = 0;
+		for (byte[] chunk : snapshotChunks) {
+			if (chunk == null) {
+				return new RResult<byte[]>(null, error.Errorf("fast-forward snapshot is incomplete"));
+			}
+			size += chunk.length;
+		}
+		byte[] res = new byte[size];
+		int pos = 0;
+		for (byte[] chunk : snapshotChunks) {
+			System.arraycopy(chunk, 0, res, pos, chunk.length);
+			pos += chunk.length;
+		}
+		return new RResult<byte[]>(res, null);
+	}
+
+	public Block getBlock() {
+		return block;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append("CatchUp [block=").append(block.Index()).append(", frameChunks=").append(frameHashes.length)
+			.append(", snapshotChunks=").append(snapshotHashes.length).append(", missing=").append(missing().size())
+			.append("]");
+		return builder.toString();
+	}
+}
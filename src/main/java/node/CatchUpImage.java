@@ -0,0 +1,148 @@
+package node;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.protobuf.CodedOutputStream;
+
+import common.RResult;
+import common.error;
+import crypto.hash;
+import net.FastForwardPart;
+import poset.Block;
+import poset.EventMessage;
+import poset.Frame;
+
+/**
+ * CatchUpImage is what a node serves to the peers fast-forwarding from one of
+ * its anchor blocks: the block, its frame and the App snapshot, split in
+ * chunks.
+ *
+ * The chunks of the frame are consecutive parts of the serialized frame, after
+ * its round and roots, cut between events. Each of them is a valid serialized
+ * frame holding only its events, and the frame hash is the hash of the frame
+ * header followed by all the chunks, so that it can be checked as the chunks
+ * arrive. The chunks of the snapshot are slices of chunkSize bytes.
+ */
+public class CatchUpImage {
+	final Block block;
+	final Frame header;              // the frame, without its events
+	final byte[][] frameChunks;
+	final byte[][] frameHashes;
+	final byte[][] snapshotChunks;
+	final byte[][] snapshotHashes;
+
+	CatchUpImage(Block block, Frame header, byte[][] frameChunks, byte[][] snapshotChunks) {
+		this.block = block;
+		this.header = header;
+		this.frameChunks = frameChunks;
+		this.frameHashes = hashes(frameChunks);
+		this.snapshotChunks = snapshotChunks;
+		this.snapshotHashes = hashes(snapshotChunks);
+	}
+
+	/**
+	 * build splits a block, its frame and the snapshot in chunks
+	 * @param block the anchor block
+	 * @param frame the frame of the block
+	 * @param snapshot the App snapshot at the block
+	 * @param chunkSize the size of the chunks, in bytes; a chunk of the frame
+	 * holds at least one event
+	 * @return
+	 */
+	public static RResult<CatchUpImage> build(Block block, Frame frame, byte[] snapshot, int chunkSize) {
+		RResult<byte[][]> frameChunksCall = frameChunks(frame.GetEvents(), chunkSize);
+		if (frameChunksCall.err != null) {
+			return new RResult<CatchUpImage>(null, frameChunksCall.err);
+		}
+		Frame header = new Frame(frame.GetRound(), frame.GetRoots(), null);
+		return new RResult<CatchUpImage>(
+			new CatchUpImage(block, header, frameChunksCall.result, snapshotChunks(snapshot, chunkSize)), null);
+	}
+
+	// frameChunks serializes the events as the Events field of a frame, in
+	// chunks of about chunkSize bytes
+	static RResult<byte[][]> frameChunks(EventMessage[] events, int chunkSize) {
+		List<byte[]> chunks = new ArrayList<byte[]>();
+		if (events == null) {
+			return new RResult<byte[][]>(new byte[0][], null);
+		}
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			CodedOutputStream cos = CodedOutputStream.newInstance(out);
+			for (EventMessage ev : events) {
+				poset.proto.EventMessage proto = ev.marshaller().toProto();
+				int size = CodedOutputStream.computeMessageSize(poset.proto.Frame.EVENTS_FIELD_NUMBER, proto);
+				if (cos.getTotalBytesWritten() > 0 && cos.getTotalBytesWritten() + size > chunkSize) {
+					cos.flush();
+					chunks.add(out.toByteArray());
+					out = new ByteArrayOutputStream();
+					cos = CodedOutputStream.newInstance(out);
+				}
+				cos.writeMessage(poset.proto.Frame.EVENTS_FIELD_NUMBER, proto);
+			}
+			cos.flush();
+			if (out.size() > 0) {
+				chunks.add(out.toByteArray());
+			}
+		} catch (IOException e) {
+			return new RResult<byte[][]>(null, error.Errorf(e.getMessage()));
+		}
+		return new RResult<byte[][]>(chunks.toArray(new byte[chunks.size()][]), null);
+	}
+
+	static byte[][] snapshotChunks(byte[] snapshot, int chunkSize) {
+		if (snapshot == null) {
+			return new byte[0][];
+		}
+		int size = Math.max(chunkSize, 1);
+		byte[][] chunks = new byte[(snapshot.length + size - 1) / size][];
+		for (int i = 0; i < chunks.length; i++) {
+			chunks[i] = Arrays.copyOfRange(snapshot, i * size, Math.min((i + 1) * size, snapshot.length));
+		}
+		return chunks;
+	}
+
+	static byte[][] hashes(byte[][] chunks) {
+		byte[][] hashes = new byte[chunks.length][];
+		for (int i = 0; i < chunks.length; i++) {
+			hashes[i] = hash.SHA256(chunks[i]);
+		}
+		return hashes;
+	}
+
+	// manifest returns the block, the frame without its events and the hashes
+	// of the chunks
+	public net.FastForwardResponse manifest(long fromID) {
+		net.FastForwardResponse resp = new net.FastForwardResponse(fromID, block, header, null);
+		resp.setFrameChunks(frameHashes);
+		resp.setSnapshotChunks(snapshotHashes);
+		return resp;
+	}
+
+	// chunk returns a chunk of the frame or of the snapshot
+	public RResult<byte[]> chunk(FastForwardPart part, int n) {
+		byte[][] chunks = part == FastForwardPart.FrameChunk ? frameChunks
+			: part == FastForwardPart.SnapshotChunk ? snapshotChunks : null;
+		if (chunks == null || n < 0 || n >= chunks.length) {
+			return new RResult<byte[]>(null, error.Errorf(
+				String.format("no %s %d for block %d", part, n, block.Index())));
+		}
+		return new RResult<byte[]>(chunks[n], null);
+	}
+
+	public Block getBlock() {
+		return block;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append("CatchUpImage [block=").append(block.Index()).append(", frameChunks=")
+			.append(frameChunks.length).append(", snapshotChunks=").append(snapshotChunks.length).append("]");
+		return builder.toString();
+	}
+}
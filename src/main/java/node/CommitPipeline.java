@@ -0,0 +1,207 @@
+package node;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+
+import autils.Logger;
+import channel.ExecService;
+import common.RResult;
+import common.error;
+import poset.Block;
+import proxy.AppProxy;
+
+/**
+ * CommitPipeline delivers the decided blocks to the App.
+ *
+ * Blocks are queued in a bounded queue, so that consensus keeps producing
+ * blocks while the App catches up, and only waits once the queue is full. A
+ * dispatcher passes them to the App in order, with up to maxInflight blocks
+ * committed and not acknowledged yet. The acknowledgements, carrying the state
+ * hashes, are handled one at a time in block order.
+ */
+public class CommitPipeline {
+	// Committed handles the acknowledgement of a block by the App
+	public interface Committed {
+		void committed(Block block, RResult<byte[]> stateHash);
+	}
+
+	// pending is a block passed to the App and not acknowledged yet
+	static class pending {
+		final Block block;
+		final CompletableFuture<RResult<byte[]>> result;
+		final long start;
+
+		pending(Block block, CompletableFuture<RResult<byte[]>> result, long start) {
+			this.block = block;
+			this.result = result;
+			this.start = start;
+		}
+	}
+
+	private final AppProxy proxy;
+	private final Committed committed;
+	private final Logger logger;
+
+	private final ArrayBlockingQueue<Block> decided;
+	private final LinkedBlockingQueue<pending> inflight;
+	private final Semaphore slots;
+
+	private Future<?> dispatcher;
+	private Future<?> acknowledger;
+
+	private long submitted;               // number of submitted blocks, guarded by this
+
+	// metrics, updated by the acknowledger
+	private volatile long count;          // number of acknowledged blocks
+	private volatile long totalNanos;     // time the App took to acknowledge them
+	private volatile long maxNanos;       // longest time it took to acknowledge one of them
+
+	public CommitPipeline(AppProxy proxy, int queueSize, int maxInflight, Committed committed, Logger logger) {
+		this.proxy = proxy;
+		this.committed = committed;
+		this.logger = logger;
+		this.decided = new ArrayBlockingQueue<Block>(Math.max(queueSize, 1));
+		this.inflight = new LinkedBlockingQueue<pending>();
+		this.slots = new Semaphore(Math.max(maxInflight, 1));
+	}
+
+	public synchronized void start() {
+		if (dispatcher == null) {
+			dispatcher = ExecService.go(() -> dispatch());
+			acknowledger = ExecService.go(() -> acknowledge());
+		}
+	}
+
+	public synchronized void stop() {
+		if (dispatcher != null) {
+			dispatcher.cancel(true);
+			acknowledger.cancel(true);
+			dispatcher = null;
+			acknowledger = null;
+			notifyAll();
+		}
+	}
+
+	/**
+	 * submit queues a decided block, waiting for room when the queue is full
+	 * @param block
+	 * @return
+	 */
+	public error submit(Block block) {
+		try {
+			decided.put(block);
+			synchronized (this) {
+				submitted++;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return error.Errorf("interrupted while queuing block " + block.Index());
+		}
+		return null;
+	}
+
+	/**
+	 * flush waits until all the submitted blocks are acknowledged, for instance
+	 * before restoring the App from a snapshot
+	 * @return
+	 */
+	public synchronized error flush() {
+		try {
+			while (count < submitted && dispatcher != null) {
+				wait();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return error.Errorf("interrupted while flushing the commit queue");
+		}
+		return null;
+	}
+
+	// dispatch passes the queued blocks to the App, in order
+	private void dispatch() {
+		try {
+			while (true) {
+				Block block = decided.take();
+				slots.acquire();
+				long start = System.nanoTime();
+				CompletableFuture<RResult<byte[]>> result;
+				try {
+					result = proxy.CommitBlockAsync(block);
+				} catch (RuntimeException e) {
+					result = CompletableFuture.completedFuture(
+						new RResult<byte[]>(null, error.Errorf(String.valueOf(e.getMessage()))));
+				}
+				inflight.put(new pending(block, result, start));
+			}
+		} catch (InterruptedException e) {
+			logger.debug("CommitPipeline.dispatch() stopped");
+		}
+	}
+
+	// acknowledge handles the acknowledgements of the App, in block order
+	private void acknowledge() {
+		try {
+			while (true) {
+				pending p = inflight.take();
+				RResult<byte[]> res;
+				try {
+					res = p.result.get();
+				} catch (ExecutionException e) {
+					res = new RResult<byte[]>(null, error.Errorf(String.valueOf(e.getCause())));
+				}
+				slots.release();
+
+				long nanos = System.nanoTime() - p.start;
+				totalNanos += nanos;
+				maxNanos = Math.max(maxNanos, nanos);
+
+				committed.committed(p.block, res);
+				synchronized (this) {
+					count++;
+					notifyAll();
+				}
+			}
+		} catch (InterruptedException e) {
+			logger.debug("CommitPipeline.acknowledge() stopped");
+		}
+	}
+
+	// queued returns the number of blocks waiting to be passed to the App
+	public int queued() {
+		return decided.size();
+	}
+
+	// inflight returns the number of blocks passed to the App and not acknowledged
+	public int inflight() {
+		return inflight.size();
+	}
+
+	// committed returns the number of blocks acknowledged by the App
+	public long committed() {
+		return count;
+	}
+
+	// meanLatency returns the mean time the App took to acknowledge a block
+	public Duration meanLatency() {
+		long n = count;
+		return n > 0 ? Duration.ofNanos(totalNanos / n) : Duration.ZERO;
+	}
+
+	// maxLatency returns the longest time the App took to acknowledge a block
+	public Duration maxLatency() {
+		return Duration.ofNanos(maxNanos);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append("CommitPipeline [queued=").append(queued()).append(", inflight=").append(inflight())
+			.append(", committed=").append(committed()).append("]");
+		return builder.toString();
+	}
+}
@@ -7,10 +7,24 @@ import org.apache.log4j.Level;
 import autils.Logger;
 
 public class Config {
-	public Duration HeartbeatTimeout;
+	public Duration HeartbeatTimeout;         // shortest interval between gossip rounds
+	public Duration MaxHeartbeatTimeout;      // longest interval between gossip rounds; null is 1s
 	public Duration TCPTimeout;
 	public int CacheSize;
 	public long SyncLimit;
+	public int ConsensusParallelism; // threads used to decide fame and round received; <= 1 is sequential
+	public int VerifyParallelism;    // threads used to verify the signatures of synced events; <= 1 is sequential
+	public int TransactionPoolCapacity;       // maximum number of pending transactions; <= 0 is unbounded
+	public Duration TransactionPoolTimeout;   // how long a transaction waits for room in a full pool
+	public int GossipFanout;                  // gossip sessions in flight with distinct peers; <= 1 is one at a time
+	public int GossipPeerInflight;            // gossip sessions in flight with a same peer; <= 1 is one at a time
+	public boolean PeerScoring;               // select gossip peers by expected new events per ms, not at random
+	public int CommitQueueSize;               // decided blocks waiting for the App; <= 0 is 64
+	public int CommitInflight;                // blocks committed to the App and not acknowledged; <= 1 is one at a time, > 1 needs an async proxy (GrpcAppProxy)
+	public int FastForwardChunkSize;          // bytes per chunk of frame or snapshot sent to catching up peers; <= 0 is 1 MiB
+	public int FastForwardParallelism;        // fast-forward chunks fetched at a time, from distinct peers; <= 0 is 4
+	public int StoreMaxUnflushed;             // events a badger store queues before a write; <= 1 writes each at once
+	public Duration StoreFlushInterval;       // how often a badger store writes the queued events; null is only when full
 
 	private Logger logger = Logger.getLogger(Config.class);
 
@@ -79,4 +93,116 @@ public class Config {
 	public long getSyncLimit() {
 		return SyncLimit;
 	}
+
+	public int getConsensusParallelism() {
+		return ConsensusParallelism;
+	}
+
+	public void setConsensusParallelism(int consensusParallelism) {
+		ConsensusParallelism = consensusParallelism;
+	}
+
+	public int getVerifyParallelism() {
+		return VerifyParallelism;
+	}
+
+	public void setVerifyParallelism(int verifyParallelism) {
+		VerifyParallelism = verifyParallelism;
+	}
+
+	public int getTransactionPoolCapacity() {
+		return TransactionPoolCapacity;
+	}
+
+	public void setTransactionPoolCapacity(int transactionPoolCapacity) {
+		TransactionPoolCapacity = transactionPoolCapacity;
+	}
+
+	public Duration getTransactionPoolTimeout() {
+		return TransactionPoolTimeout;
+	}
+
+	public void setTransactionPoolTimeout(Duration transactionPoolTimeout) {
+		TransactionPoolTimeout = transactionPoolTimeout;
+	}
+
+	public int getGossipFanout() {
+		return GossipFanout;
+	}
+
+	public void setGossipFanout(int gossipFanout) {
+		GossipFanout = gossipFanout;
+	}
+
+	public int getGossipPeerInflight() {
+		return GossipPeerInflight;
+	}
+
+	public void setGossipPeerInflight(int gossipPeerInflight) {
+		GossipPeerInflight = gossipPeerInflight;
+	}
+
+	public Duration getMaxHeartbeatTimeout() {
+		return MaxHeartbeatTimeout != null ? MaxHeartbeatTimeout : Duration.ofSeconds(1);
+	}
+
+	public void setMaxHeartbeatTimeout(Duration maxHeartbeatTimeout) {
+		MaxHeartbeatTimeout = maxHeartbeatTimeout;
+	}
+
+	public boolean isPeerScoring() {
+		return PeerScoring;
+	}
+
+	public void setPeerScoring(boolean peerScoring) {
+		PeerScoring = peerScoring;
+	}
+
+	public int getCommitQueueSize() {
+		return CommitQueueSize > 0 ? CommitQueueSize : 64;
+	}
+
+	public void setCommitQueueSize(int commitQueueSize) {
+		CommitQueueSize = commitQueueSize;
+	}
+
+	public int getCommitInflight() {
+		return CommitInflight;
+	}
+
+	public void setCommitInflight(int commitInflight) {
+		CommitInflight = commitInflight;
+	}
+
+	public int getFastForwardChunkSize() {
+		return FastForwardChunkSize > 0 ? FastForwardChunkSize : 1 << 20;
+	}
+
+	public void setFastForwardChunkSize(int fastForwardChunkSize) {
+		FastForwardChunkSize = fastForwardChunkSize;
+	}
+
+	public int getFastForwardParallelism() {
+		return FastForwardParallelism > 0 ? FastForwardParallelism : 4;
+	}
+
+	public void setFastForwardParallelism(int fastForwardParallelism) {
+		FastForwardParallelism = fastForwardParallelism;
+	}
+
+	public int getStoreMaxUnflushed() {
+		return StoreMaxUnflushed;
+	}
+
+	public void setStoreMaxUnflushed(int storeMaxUnflushed) {
+		StoreMaxUnflushed = storeMaxUnflushed;
+	}
+
+	public Duration getStoreFlushInterval() {
+		return StoreFlushInterval;
+	}
+
+	public void setStoreFlushInterval(Duration storeFlushInterval) {
+		StoreFlushInterval = storeFlushInterval;
+	}
 }
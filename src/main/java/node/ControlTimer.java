@@ -18,7 +18,8 @@ public class ControlTimer {
 	One2OneChannel<Duration> resetCh;
 	One2OneChannelInt stopCh; //       chan struct{} //receives instruction to stop the heartbeatTimer
 	One2OneChannelInt shutdownCh; //   chan struct{} //receives instruction to exit Run loop
-	boolean set;
+	volatile boolean set;
+	volatile long alarm; // time of the next tick in ms, Long.MAX_VALUE when not set
 
 
 	public interface timerFactory {
@@ -31,6 +32,7 @@ public class ControlTimer {
 		this.resetCh = Channel.one2one();
 		this.stopCh = Channel.one2oneInt();//  make(chan struct{});
 		this.shutdownCh = Channel.one2oneInt(); //  make(chan struct{}),;
+		this.alarm = Long.MAX_VALUE;
 	}
 
 	public static ControlTimer RandomControlTimer() {
@@ -43,8 +45,9 @@ public class ControlTimer {
 					return null;
 				}
 
-				long extra = random.nextLong() % min.toMillis();
-				long alarmTime = tim.read() + min.toMillis() + extra;
+				long millis = Math.max(min.toMillis(), 1);
+				long extra = random.nextLong() % millis;
+				long alarmTime = tim.read() + millis + extra;
 				tim.setAlarm(alarmTime);
 				return tim;
 			}
@@ -56,8 +59,10 @@ public class ControlTimer {
 	public void Run(Duration init) {
 		timerFactory setTimer = new timerFactory() {
 			public CSTimer read(Duration t) /* <-chan time.Time */ {
+				CSTimer timer = timerFactory.read(t);
+				alarm = timer == null ? Long.MAX_VALUE : timer.getAlarm();
 				set = true;
-				return timerFactory.read(t);
+				return timer;
 			}
 		};
 
@@ -84,6 +89,8 @@ public class ControlTimer {
 			switch (alt.priSelect ()) {
 				case TIM:
 					timer.read();
+					// a CSTimer guard stays ready once its alarm has passed
+					disarm(timer);
 					tickCh.out().write(1); // <- struct{}{};
 					break;
 				case RESET:
@@ -92,8 +99,7 @@ public class ControlTimer {
 					break;
 				case STOP:
 					stopCh.in().read();
-					timer = null;
-					set = false;
+					disarm(timer);
 					break;
 				case SHUTDOWN:
 					shutdownCh.in().read();
@@ -103,6 +109,21 @@ public class ControlTimer {
 		}
 	}
 
+	private void disarm(CSTimer timer) {
+		timer.setAlarm(Long.MAX_VALUE);
+		alarm = Long.MAX_VALUE;
+		set = false;
+	}
+
+	// remaining returns the time left until the next tick, or null when not set
+	public Duration remaining() {
+		long alarm = this.alarm;
+		if (alarm == Long.MAX_VALUE) {
+			return null;
+		}
+		return Duration.ofMillis(Math.max(alarm - System.currentTimeMillis(), 0));
+	}
+
 	public void Shutdown() {
 		ChannelUtils.close(shutdownCh);
 	}
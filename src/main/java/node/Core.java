@@ -1,11 +1,17 @@
 package node;
 
 import java.security.KeyPair;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
 
 import org.apache.log4j.Level;
 import org.jcsp.lang.One2OneChannel;
@@ -15,6 +21,7 @@ import autils.Logger;
 import autils.time;
 import common.RResult;
 import common.RResult3;
+import common.StripedCache;
 import common.error;
 import peers.Peer;
 import poset.BlockSignature;
@@ -37,13 +44,24 @@ public class Core {
 	String head;
 	long Seq;
 
-	byte[][] transactionPool;
+	TransactionPool transactionPool;
 	poset.InternalTransaction[] internalTransactionPool;
 	poset.BlockSignature[] blockSignaturePool;
+	ConcurrentLinkedQueue<signedBlock> signedBlocks; // our block signatures made off the core lock, not stored yet
 
 	Logger logger;
 
 	int maxTransactionsInEvent;
+	long maxTransactionBytesInEvent;
+
+	ForkJoinPool verifyPool; // verifies the signatures of synced events; null when sequential
+
+	static final int DEFAULT_WIRE_CACHE_SIZE = 10000;
+	StripedCache<String,poset.WireEvent> wireCache; // [event hex] => wire event, encoded once for all peers
+
+	EventSnapshot.builder snapshots; // recent events, under the core lock
+	boolean snapshotDirty;           // events were inserted since the last snapshot
+	volatile EventSnapshot snapshot; // last published snapshot, read without the lock
 
 	public Core(long id, KeyPair key, peers.Peers participants,
 			poset.Store store, One2OneChannel<poset.Block>commitCh /**chan **/ , Logger logger) {
@@ -66,9 +84,10 @@ public class Core {
 		this.poset= p2;
 		this.inDegrees=               inDegrees;
 		this.participants=            participants;
-		this.transactionPool=         new byte[][] {};
+		this.transactionPool=         new TransactionPool();
 		this.internalTransactionPool= new poset.InternalTransaction[]{};
 		this.blockSignaturePool=      new poset.BlockSignature[] {};
+		this.signedBlocks =           new ConcurrentLinkedQueue<signedBlock>();
 		this.logger=                  logger;
 		this.head=  "";
 		this.Seq=   -1;
@@ -76,8 +95,13 @@ public class Core {
 			// default value is 4 * 1024 * 1024 bytes
 			// we use transactions of 120 bytes in tester, thus rounding it down to 16384
 		this.maxTransactionsInEvent= 16384;
+		this.maxTransactionBytesInEvent= 2 * 1024 * 1024;
+		this.wireCache= new StripedCache<String,poset.WireEvent>(DEFAULT_WIRE_CACHE_SIZE);
+		this.snapshots= new EventSnapshot.builder(store.cacheSize());
+		this.snapshot=  EventSnapshot.EMPTY;
 
 		p2.SetCore(this);
+		resetSnapshot();
 	}
 
 	public long ID() {
@@ -172,6 +196,7 @@ public class Core {
 			return err;
 		}
 		bootstrapInDegrees();
+		resetSnapshot();
 		return null;
 	}
 
@@ -236,6 +261,12 @@ public class Core {
 			Seq = event.index();
 		}
 
+		Peer creator = participants.byPubKey(event.creator());
+		if (creator != null) {
+			snapshots.add(creator.getID(), event);
+			snapshotDirty = true;
+		}
+
 		inDegrees.put(event.creator(), (long) 0);
 		RResult<Event> getEvent = poset.Store.getEvent(event.otherParent());
 		Event otherEvent = getEvent.result;
@@ -251,20 +282,107 @@ public class Core {
 		return poset.Store.knownEvents();
 	}
 
+	// snapshot returns the last published snapshot of the known events. It can
+	// be called without the core lock.
+	public EventSnapshot snapshot() {
+		return snapshot;
+	}
+
+	// publishSnapshot publishes the events inserted since the last snapshot. The
+	// caller must hold the core lock.
+	public void publishSnapshot() {
+		if (snapshotDirty) {
+			snapshot = snapshots.build(knownEvents());
+			snapshotDirty = false;
+		}
+	}
+
+	// resetSnapshot publishes a snapshot without events, after the store was
+	// loaded or reset. The caller must hold the core lock.
+	void resetSnapshot() {
+		Map<Long,Long> known = knownEvents();
+		snapshots.reset(known);
+		snapshot = snapshots.build(known);
+		snapshotDirty = false;
+	}
+
+	// unknownEvents returns the events with an index above the last known event of
+	// their creator. The caller must hold the core lock.
+	public Event[] unknownEvents(Event[] events) {
+		Map<Long,Long> known = knownEvents();
+		List<Event> res = new ArrayList<Event>(events.length);
+		for (Event ev : events) {
+			Long last = known.get(ev.creatorID());
+			if (last == null || ev.index() > last) {
+				res.add(ev);
+			}
+		}
+		return res.toArray(new Event[res.size()]);
+	}
+
 	// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
 
 	public RResult<poset.BlockSignature> SignBlock(poset.Block block) {
-		RResult<BlockSignature> signCall = block.sign(key);
+		RResult<BlockSignature> signCall = signBlock(block);
 		BlockSignature sig = signCall.result;
 		error err = signCall.err;
 		if (err != null) {
 			return new RResult<poset.BlockSignature>(new poset.BlockSignature(), err);
 		}
-		err = block.setSignature(sig);
+		return new RResult<poset.BlockSignature>(sig, setBlockSignature(block, sig));
+	}
+
+	// signBlock signs a block with the key of the core. It only reads the
+	// block and the key, so it does not need the core lock.
+	public RResult<poset.BlockSignature> signBlock(poset.Block block) {
+		return block.sign(key);
+	}
+
+	// signedBlock is a block and our signature of it
+	static final class signedBlock {
+		final poset.Block block;
+		final poset.BlockSignature sig;
+
+		signedBlock(poset.Block block, poset.BlockSignature sig) {
+			this.block = block;
+			this.sig = sig;
+		}
+	}
+
+	// queueBlockSignature hands our signature of a block over to the core,
+	// without the core lock. It is stored and added to the block signature
+	// pool by the next insertEvents or addSelfEventBlock.
+	public void queueBlockSignature(poset.Block block, poset.BlockSignature sig) {
+		signedBlocks.add(new signedBlock(block, sig));
+	}
+
+	// pendingBlockSignatures returns the number of block signatures not
+	// gossiped yet, queued or pooled
+	public int pendingBlockSignatures() {
+		return signedBlocks.size() + blockSignaturePool.length;
+	}
+
+	// processSignedBlocks stores the queued block signatures and adds them to
+	// the block signature pool. The caller must hold the core lock.
+	void processSignedBlocks() {
+		signedBlock s;
+		while ((s = signedBlocks.poll()) != null) {
+			error err = setBlockSignature(s.block, s.sig);
+			if (err != null) {
+				logger.field("block", s.block.Index()).field("error", err).error("setBlockSignature()");
+				continue;
+			}
+			addBlockSignature(s.sig);
+		}
+	}
+
+	// setBlockSignature adds our signature to a block and saves the block
+	public error setBlockSignature(poset.Block block, poset.BlockSignature sig) {
+		error err = block.setSignature(sig);
 		if  (err != null) {
-			return new RResult<poset.BlockSignature>(new poset.BlockSignature(), err);
+			return err;
 		}
-		return new RResult<poset.BlockSignature>(sig, poset.Store.setBlock(block));
+		return poset.Store.setBlock(block);
 	}
 
 	// ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
@@ -288,9 +406,22 @@ public class Core {
 		return poset.GetAnchorBlockWithFrame();
 	}
 
+	// getBlockWithFrame returns a block and the corresponding Frame
+	public RResult3<poset.Block, poset.Frame> getBlockWithFrame(long index) {
+		RResult<poset.Block> getBlock = poset.Store.getBlock(index);
+		if (getBlock.err != null) {
+			return new RResult3<poset.Block, poset.Frame>(null, null, getBlock.err);
+		}
+		RResult<poset.Frame> getFrame = poset.GetFrame(getBlock.result.roundReceived());
+		if (getFrame.err != null) {
+			return new RResult3<poset.Block, poset.Frame>(null, null, getFrame.err);
+		}
+		return new RResult3<poset.Block, poset.Frame>(getBlock.result, getFrame.result, null);
+	}
+
 	// returns events that c knows about and are not in 'known'
 	public RResult<poset.Event[]> eventDiff(Map<Long,Long> known) {
-		poset.Event[] unknown = new poset.Event[0];
+		List<poset.Event> unknown = new ArrayList<poset.Event>();
 		// known represents the index of the last event known for every participant
 		// compare this to our view of events and fill unknown with events that we know of
 		// and the other doesn't
@@ -320,63 +451,129 @@ public class Core {
 				.field("selfParent", ev.selfParent())
 				.field("index", ev.index()).field("hex", ev.hex())
 				.debugf("Sending Unknown Event");
-				unknown = Appender.append(unknown,  ev);
+				unknown.add(ev);
 			}
 		}
 
 //		sort.Stable(poset.ByTopologicalOrder(unknown));
-		Arrays.sort(unknown, new EventComparatorByTopologicalOrder());
+		poset.Event[] res = unknown.toArray(new poset.Event[unknown.size()]);
+		Arrays.sort(res, new EventComparatorByTopologicalOrder());
 
 
-		return new RResult<poset.Event[]>(unknown, null);
+		return new RResult<poset.Event[]>(res, null);
 	}
 
 	public error Sync(poset.WireEvent[] unknownEvents)  {
+		RResult<Event[]> readWireEvents = readWireEvents(unknownEvents);
+		Event[] events = readWireEvents.result;
+		error err = readWireEvents.err;
+		if (err != null) {
+			return err;
+		}
 
-		logger.field("unknown_events", unknownEvents)
-		.field("transaction_pool", transactionPool.length)
+		err = verifyEvents(events);
+		if (err != null) {
+			return err;
+		}
+
+		return insertEvents(events);
+	}
+
+	// SetVerifyParallelism sets the number of threads used to verify the
+	// signatures of synced events. Values lower than 2 keep it sequential.
+	public void SetVerifyParallelism(int parallelism) {
+		if (verifyPool != null) {
+			verifyPool.shutdown();
+			verifyPool = null;
+		}
+		if (parallelism > 1) {
+			verifyPool = new ForkJoinPool(parallelism);
+		}
+	}
+
+	// readWireEvents converts the events received in a sync. It reads the
+	// poset, so the caller must hold the core lock.
+	public RResult<Event[]> readWireEvents(poset.WireEvent[] unknownEvents) {
+		logger.field("unknown_events", unknownEvents.length).debug("readWireEvents()");
+		return poset.ReadWireInfos(unknownEvents);
+	}
+
+	// verifyEvents checks the signatures of events, on the verify pool when
+	// there is one. It does not touch the poset, so it runs without the core lock.
+	public error verifyEvents(Event[] events) {
+		error[] errs = new error[events.length];
+		crypto.VerifyContext verifier = poset.Verifier();
+		IntConsumer verify = k -> {
+			RResult<Boolean> verifyCall = events[k].verify(verifier);
+			if (verifyCall.err != null) {
+				errs[k] = verifyCall.err;
+			} else if (!verifyCall.result) {
+				errs[k] = error.Errorf("invalid Event signature");
+			}
+		};
+
+		ForkJoinPool pool = verifyPool;
+		if (pool != null && events.length > 1) {
+			pool.submit(() -> IntStream.range(0, events.length).parallel().forEach(verify)).join();
+		} else {
+			for (int k = 0; k < events.length; k++) {
+				verify.accept(k);
+			}
+		}
+
+		for (int k = 0; k < events.length; k++) {
+			if (errs[k] != null) {
+				logger.field("event", events[k].hex()).field("error", errs[k]).debug("verifyEvents()");
+				return errs[k];
+			}
+		}
+		return null;
+	}
+
+	// insertEvents inserts the events that are not known yet and creates a new
+	// head if necessary. The caller must hold the core lock.
+	public error insertEvents(Event[] events) {
+
+		logger.field("unknown_events", events.length)
+		.field("transaction_pool", transactionPool.size())
 		.field("internal_transaction_pool", internalTransactionPool.length)
 		.field("block_signature_pool", blockSignaturePool.length)
 		.field("poset.PendingLoadedEvents", poset.getPendingLoadedEvents())
-		.debug("Sync(unknownEventBlocks []poset.EventBlock)");
+		.debug("insertEvents(events []poset.Event)");
+
+		processSignedBlocks();
 
 		Map<Long, Long> myKnownEvents = knownEvents();
 		String otherHead = "";
 		// add unknown events
-		for (int k = 0; k < unknownEvents.length; ++k) {
-			poset.WireEvent we = unknownEvents[k];
-			logger.field("we", we).error("Sync");
-
-			RResult<Event> readWireInfo = poset.ReadWireInfo(we);
-			Event ev = readWireInfo.result;
-			logger.field("ev", ev).error("Sync");
-			error err = readWireInfo.err;
-			if (err != null) {
-				return err;
-			}
+		for (int k = 0; k < events.length; ++k) {
+			Event ev = events[k];
 
 			if (ev.index() > myKnownEvents.get(ev.creatorID())) {
-				err = insertEvent(ev, false);
+				error err = insertEvent(ev, false);
 				if (err != null) {
+					publishSnapshot();
 					return err;
 				}
 			}
 
 			// assume last event corresponds to other-head
-			if (k == unknownEvents.length-1) {
+			if (k == events.length-1) {
 				otherHead = ev.hex();
 			}
 		}
 
 		// create new event with self head and other head only if there are pending
 		// loaded events or the pools are not empty
+		error err = null;
 		if (poset.getPendingLoadedEvents() > 0 ||
-			transactionPool.length > 0 ||
+			!transactionPool.isEmpty() ||
 			internalTransactionPool.length > 0 ||
 			blockSignaturePool.length > 0) {
-			return addSelfEventBlock(otherHead);
+			err = addSelfEventBlock(otherHead);
 		}
-		return null;
+		publishSnapshot();
+		return err;
 	}
 
 	public error fastForward(String peer, poset.Block block, poset.Frame frame) {
@@ -413,6 +610,10 @@ public class Core {
 		if (err != null) {
 			return err;
 		}
+		wireCache.clear();
+		resetSnapshot();
+		// the signed blocks are older than the anchor block
+		signedBlocks.clear();
 
 		err = setHeadAndSeq();
 		if (err != null) {
@@ -428,6 +629,8 @@ public class Core {
 	}
 
 	public error addSelfEventBlock(String otherHead) {
+		processSignedBlocks();
+
 		RResult<Event> getEvent = poset.Store.getEvent(head);
 		// Get flag tables from parents
 		Event parentEvent = getEvent.result;
@@ -468,9 +671,7 @@ public class Core {
 
 		// create new event with self head and empty other parent
 		// empty transaction pool in its payload
-		byte[][] batch;
-		int nTxs = Math.min(transactionPool.length, maxTransactionsInEvent);
-		batch = Appender.slice(transactionPool, 0, nTxs); //transactionPool[0:nTxs:nTxs];
+		byte[][] batch = transactionPool.drain(maxTransactionsInEvent, maxTransactionBytesInEvent);
 		Event newHead = new poset.Event(batch,
 			internalTransactionPool,
 			blockSignaturePool,
@@ -478,22 +679,24 @@ public class Core {
 
 		err = signAndInsertSelfEvent(newHead);
 		if ( err != null) {
+			transactionPool.unDrain();
 			return error.Errorf(String.format("newHead := poset.NewEventBlock: %s", err));
 		}
 		logger
-			.field("transactions",          transactionPool.length)
+			.field("transactions",          batch.length)
+			.field("transaction_pool",      transactionPool.size())
 			.field("internal_transactions", internalTransactionPool.length)
 			.field("block_signatures",      blockSignaturePool.length)
 			.debug("newHead := poset.NewEventBlock");
 
-		transactionPool = Appender.slice(transactionPool, nTxs, transactionPool.length); //transactionPool[nTxs:]; //[][]byte{}
 		internalTransactionPool = new poset.InternalTransaction[]{};
 		// retain blockSignaturePool until transactionPool is empty
 		// FIXIT: is there any better strategy?
-		if (transactionPool.length == 0) {
+		if (transactionPool.isEmpty()) {
 			blockSignaturePool = new poset.BlockSignature[]{};
 		}
 
+		publishSnapshot();
 		return null;
 	}
 
@@ -511,14 +714,42 @@ public class Core {
 		return new RResult<poset.Event[]>(events, null);
 	}
 
+	// toWire returns the wire form of inserted events. The wire events are cached,
+	// so that an event synced to several peers is converted and encoded once.
 	public RResult<poset.WireEvent[]> toWire(poset.Event[] events) {
 		poset.WireEvent[] wireEvents = new poset.WireEvent[events.length];
 		for (int i = 0; i < events.length; ++i) {
-			wireEvents[i] = events[i].toWire();
+			String hex = events[i].hex();
+			poset.WireEvent wireEvent = wireCache.get(hex);
+			if (wireEvent == null) {
+				// keep the entry of a concurrent updateWire, which is newer
+				wireEvent = events[i].toWire();
+				poset.WireEvent cached = wireCache.putIfAbsent(hex, wireEvent);
+				if (cached != null) {
+					wireEvent = cached;
+				}
+			}
+			wireEvents[i] = wireEvent;
 		}
 		return new RResult<poset.WireEvent[]>(wireEvents, null);
 	}
 
+	// updateWire refreshes the cached wire form of an event whose flag table
+	// changed, even if not cached yet so that a toWire racing with the change
+	// cannot cache the old form, and the event served from the snapshots
+	public void updateWire(poset.Event event) {
+		wireCache.put(event.hex(), event.toWire());
+		Peer creator = participants.byPubKey(event.creator());
+		if (creator != null) {
+			snapshots.replace(creator.getID(), event);
+		}
+	}
+
+	// SetWireCacheSize sets the number of wire events kept for sync responses
+	public void SetWireCacheSize(int size) {
+		wireCache = new StripedCache<String,poset.WireEvent>(size);
+	}
+
 	public error runConsensus()  {
 
 		long start = System.nanoTime();
@@ -561,7 +792,7 @@ public class Core {
 			return err;
 		}
 
-		logger.field("transaction_pool", transactionPool.length)
+		logger.field("transaction_pool", transactionPool.size())
 			.field("block_signature_pool", blockSignaturePool.length)
 			.field("poset.PendingLoadedEvents", poset.getPendingLoadedEvents())
 			.debug("RunConsensus()");
@@ -569,8 +800,28 @@ public class Core {
 		return null;
 	}
 
-	public void addTransactions(byte[][] txs) {
-		transactionPool = Appender.append(transactionPool, txs);
+	// addTransactions queues txs for the next self events. It does not need the
+	// core lock.
+	public error addTransactions(byte[][] txs) {
+		return transactionPool.addAll(txs);
+	}
+
+	// offerTransaction queues tx if the transaction pool has room, without
+	// waiting. It does not need the core lock.
+	public error offerTransaction(byte[] tx) {
+		return transactionPool.offer(tx);
+	}
+
+	// transactionPoolRoom returns the number of transactions the pool takes
+	// without waiting
+	public int transactionPoolRoom() {
+		return transactionPool.room();
+	}
+
+	// SetTransactionPoolCapacity bounds the transaction pool: adding to a full
+	// pool waits up to timeout, then fails. A capacity lower than 1 removes the bound.
+	public void SetTransactionPoolCapacity(int capacity, Duration timeout) {
+		transactionPool.setCapacity(capacity, timeout);
 	}
 
 	public void addInternalTransactions(poset.InternalTransaction[] txs) {
@@ -655,7 +906,7 @@ public class Core {
 				.append(", hexID=").append(hexID).append(", poset=").append(poset.hashCode())
 				.append(", inDegrees=").append(inDegrees).append(", participants=").append(participants)
 				.append(", head=").append(head).append(", Seq=").append(Seq).append(", transactionPool=")
-				.append(Arrays.toString(transactionPool)).append(", internalTransactionPool=")
+				.append(transactionPool).append(", internalTransactionPool=")
 				.append(Arrays.toString(internalTransactionPool)).append(", blockSignaturePool=")
 				.append(Arrays.toString(blockSignaturePool)).append(", logger=").append(logger)
 				.append(", maxTransactionsInEvent=").append(maxTransactionsInEvent).append("]");
@@ -0,0 +1,198 @@
+package node;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import common.RResult;
+import common.StoreErr;
+import common.StoreErrType;
+import common.error;
+import poset.Event;
+import poset.EventComparatorByTopologicalOrder;
+
+/**
+ * EventSnapshot is an immutable view of the events known by a Core: the index
+ * of the last event of every participant and their recent events. The Core
+ * publishes a new one after each batch of inserted events, so that syncs can
+ * be served without the core lock while consensus runs.
+ */
+public class EventSnapshot {
+	// log is the recent events of a participant: events[i] has index first + i
+	static final class log {
+		final Event[] events;
+		final long first;
+		final int count;
+
+		log(Event[] events, long first, int count) {
+			this.events = events;
+			this.first = first;
+			this.count = count;
+		}
+	}
+
+	static final EventSnapshot EMPTY = new EventSnapshot(new HashMap<Long,Long>(), new HashMap<Long,log>());
+
+	final Map<Long,Long> known;   // [participant id] => index of its last event
+	final Map<Long,log> logs;     // [participant id] => its recent events
+
+	EventSnapshot(Map<Long,Long> known, Map<Long,log> logs) {
+		this.known = Collections.unmodifiableMap(known);
+		this.logs = logs;
+	}
+
+	// knownEvents returns the index of the last event of every participant
+	public Map<Long,Long> knownEvents() {
+		return known;
+	}
+
+	// overSyncLimit returns true if more than syncLimit events are not in 'known'
+	public boolean overSyncLimit(Map<Long,Long> known, long syncLimit) {
+		long totUnknown = 0;
+		for (Map.Entry<Long,Long> e : this.known.entrySet()) {
+			Long other = known.get(e.getKey());
+			if (other != null && e.getValue() > other) {
+				totUnknown += e.getValue() - other;
+			}
+		}
+		return totUnknown > syncLimit;
+	}
+
+	/**
+	 * eventDiff returns the events of the snapshot that are not in 'known', in
+	 * topological order. It fails with a TooLate error when some of them are
+	 * older than the recent events kept by the snapshot.
+	 * @param known
+	 * @return
+	 */
+	public RResult<Event[]> eventDiff(Map<Long,Long> known) {
+		List<Event> unknown = new ArrayList<Event>();
+		for (Map.Entry<Long,Long> e : known.entrySet()) {
+			log l = logs.get(e.getKey());
+			if (l == null) {
+				// unknown peer detected.
+				continue;
+			}
+			long from = e.getValue() + 1;
+			if (from < l.first) {
+				return new RResult<Event[]>(new Event[] {},
+					StoreErr.newStoreErr("EventSnapshot", StoreErrType.TooLate, Long.toString(e.getValue())));
+			}
+			for (long i = from - l.first; i < l.count; i++) {
+				unknown.add(l.events[(int) i]);
+			}
+		}
+
+		Event[] res = unknown.toArray(new Event[unknown.size()]);
+		Arrays.sort(res, new EventComparatorByTopologicalOrder());
+		return new RResult<Event[]>(res, null);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append("EventSnapshot [known=").append(known).append("]");
+		return builder.toString();
+	}
+
+	/**
+	 * builder keeps the recent events of every participant, and publishes them
+	 * as snapshots. It is only used under the core lock.
+	 *
+	 * The events of a participant are appended to an array which is shared with
+	 * the snapshots already published: they only read the slots below their own
+	 * count, which are not written anymore. The array is replaced when it is full,
+	 * and copied before replacing an updated event if a snapshot was published
+	 * since it was last copied.
+	 */
+	static final class builder {
+		final int window;
+		final Map<Long,Event[]> events;
+		final Map<Long,Long> first;
+		final Map<Long,Integer> count;
+		final Set<Long> shared;
+
+		builder(int window) {
+			this.window = Math.max(window, 1);
+			this.events = new HashMap<Long,Event[]>();
+			this.first = new HashMap<Long,Long>();
+			this.count = new HashMap<Long,Integer>();
+			this.shared = new HashSet<Long>();
+		}
+
+		// reset forgets the events, the next event of a participant being the one
+		// following its last known event
+		void reset(Map<Long,Long> known) {
+			events.clear();
+			first.clear();
+			count.clear();
+			shared.clear();
+			for (Map.Entry<Long,Long> e : known.entrySet()) {
+				events.put(e.getKey(), new Event[0]);
+				first.put(e.getKey(), e.getValue() + 1);
+				count.put(e.getKey(), 0);
+			}
+		}
+
+		// add appends the event of a participant
+		void add(long id, Event ev) {
+			Event[] evs = events.get(id);
+			if (evs == null || ev.index() != first.get(id) + count.get(id)) {
+				// first event of a participant, or a gap: start over from it
+				events.put(id, new Event[] {ev});
+				first.put(id, ev.index());
+				count.put(id, 1);
+				shared.remove(id);
+				return;
+			}
+
+			int n = count.get(id);
+			if (n == evs.length) {
+				// keep the last window events at most
+				int keep = Math.min(n, window);
+				Event[] grown = new Event[Math.max(2 * keep, 8)];
+				System.arraycopy(evs, n - keep, grown, 0, keep);
+				first.put(id, first.get(id) + n - keep);
+				evs = grown;
+				n = keep;
+				events.put(id, evs);
+				shared.remove(id);
+			}
+			evs[n] = ev;
+			count.put(id, n + 1);
+		}
+
+		// replace replaces an event already added, which was updated, copying
+		// the array first if published snapshots read it
+		void replace(long id, Event ev) {
+			Event[] evs = events.get(id);
+			if (evs == null) {
+				return;
+			}
+			long i = ev.index() - first.get(id);
+			if (i < 0 || i >= count.get(id)) {
+				return;
+			}
+			if (shared.remove(id)) {
+				evs = evs.clone();
+				events.put(id, evs);
+			}
+			evs[(int) i] = ev;
+		}
+
+		EventSnapshot build(Map<Long,Long> known) {
+			Map<Long,log> logs = new HashMap<Long,log>();
+			for (Map.Entry<Long,Event[]> e : events.entrySet()) {
+				long id = e.getKey();
+				logs.put(id, new log(e.getValue(), first.get(id), count.get(id)));
+			}
+			shared.addAll(events.keySet());
+			return new EventSnapshot(new HashMap<Long,Long>(known), logs);
+		}
+	}
+}
@@ -0,0 +1,97 @@
+package node;
+
+import java.time.Duration;
+
+/**
+ * Heartbeat adapts the interval between gossip rounds.
+ *
+ * Pending transactions, block signatures or loaded events bring the interval
+ * down to its floor at once, so that the first transaction after a lull is not
+ * delayed. Otherwise the interval shrinks while syncs keep bringing new events,
+ * the faster the more events they bring, and grows back while they come back
+ * empty.
+ *
+ * The floor is min, or the mean round trip time of syncs divided by the fanout
+ * if it is longer: gossip sessions beyond the fanout would not be started
+ * anyway. The interval never exceeds max.
+ */
+public class Heartbeat {
+	static final double YIELD_WEIGHT = 0.25; // weight of the last sync in the mean yield
+	static final double RTT_WEIGHT = 0.125;  // weight of the last sync in the mean round trip time
+	static final double GROWTH = 1.5;        // growth of the interval when idle
+
+	final long minNanos;
+	final long maxNanos;
+	final int fanout;
+
+	private volatile long intervalNanos;
+	private double meanYield;    // mean number of new events per sync
+	private double meanRttNanos; // mean round trip time of syncs
+
+	/**
+	 * @param min the shortest interval
+	 * @param max the longest interval
+	 * @param fanout the number of gossip sessions in flight
+	 */
+	public Heartbeat(Duration min, Duration max, int fanout) {
+		this.minNanos = Math.max(min.toNanos(), 1);
+		this.maxNanos = Math.max(max.toNanos(), minNanos);
+		this.fanout = Math.max(fanout, 1);
+		this.intervalNanos = maxNanos;
+	}
+
+	/**
+	 * observeSync records the outcome of a sync with a peer
+	 * @param events the number of events received
+	 * @param rtt the round trip time of the sync request
+	 */
+	public synchronized void observeSync(int events, Duration rtt) {
+		meanYield += YIELD_WEIGHT * (events - meanYield);
+		long nanos = rtt.toNanos();
+		meanRttNanos = meanRttNanos == 0 ? nanos : meanRttNanos + RTT_WEIGHT * (nanos - meanRttNanos);
+	}
+
+	/**
+	 * next computes the interval until the next gossip round
+	 * @param pending the number of pending transactions, block signatures and
+	 * loaded events
+	 * @return
+	 */
+	public synchronized Duration next(long pending) {
+		double floor = Math.min(Math.max(minNanos, meanRttNanos / fanout), maxNanos);
+		double interval = intervalNanos;
+		if (pending > 0) {
+			interval = floor;
+		} else if (meanYield >= 1) {
+			interval /= 1 + Math.log(1 + meanYield) / Math.log(2);
+		} else {
+			interval *= GROWTH - (GROWTH - 1) * meanYield;
+		}
+
+		intervalNanos = (long) Math.min(Math.max(interval, floor), maxNanos);
+		return Duration.ofNanos(intervalNanos);
+	}
+
+	// interval returns the last computed interval
+	public Duration interval() {
+		return Duration.ofNanos(intervalNanos);
+	}
+
+	// meanYield returns the mean number of new events per sync
+	public synchronized double meanYield() {
+		return meanYield;
+	}
+
+	// meanRtt returns the mean round trip time of syncs
+	public synchronized Duration meanRtt() {
+		return Duration.ofNanos((long) meanRttNanos);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append("Heartbeat [interval=").append(interval()).append(", meanYield=").append(meanYield())
+			.append(", meanRtt=").append(meanRtt()).append("]");
+		return builder.toString();
+	}
+}
@@ -2,13 +2,20 @@ package node;
 
 import java.security.KeyPair;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.jcsp.lang.Alternative;
+import org.jcsp.lang.CSTimer;
 import org.jcsp.lang.Channel;
 import org.jcsp.lang.Guard;
 import org.jcsp.lang.One2OneChannel;
@@ -17,13 +24,17 @@ import org.jcsp.lang.One2OneChannelInt;
 import autils.Appender;
 import autils.Logger;
 import autils.time;
+import channel.BufferedChannel;
 import channel.ChannelUtils;
 import channel.ExecService;
 import common.RResult;
 import common.RResult3;
+import common.StoreErr;
+import common.StoreErrType;
 import common.error;
 import net.EagerSyncRequest;
 import net.EagerSyncResponse;
+import net.FastForwardPart;
 import net.FastForwardRequest;
 import net.FastForwardResponse;
 import net.RPC;
@@ -38,6 +49,11 @@ import poset.Frame;
 import poset.WireEvent;
 
 public class Node extends NodeState {
+	static final int CATCH_UP_IMAGES = 2; // anchor blocks kept in chunks for fast-forwarding peers
+	static final int COMMIT_BUFFER = 400; // decided blocks buffered between the core and the node
+	static final int SUBMIT_BATCH = 256;  // transactions read at once from the submit channel
+	static final long POOL_FULL_RETRY_MS = 5; // how often a full transaction pool is checked for room
+
 	Config conf;
 	Logger logger;
 
@@ -58,10 +74,15 @@ public class Node extends NodeState {
 	One2OneChannel<poset.InternalTransaction> submitInternalCh;
 
 	One2OneChannel<poset.Block> commitCh;
+	CommitPipeline commits; // delivers the decided blocks to the App
 
 	One2OneChannel<Object> shutdownCh; // chan struct{}
 
+	Map<Long,CatchUpImage> catchUpImages; // [block index] => chunks served to fast-forwarding peers
+	CatchUp catchUp;                      // the fast-forward in progress, kept to resume it
+
 	ControlTimer controlTimer;
+	Heartbeat heartbeat; // adapts the interval of the control timer
 
 	long start;
 	int syncRequests;
@@ -70,6 +91,8 @@ public class Node extends NodeState {
 	boolean needBoostrap;
 	AtomicLong gossipJobs;
 	AtomicLong rpcJobs;
+	Map<String,AtomicInteger> peerGossipJobs; // [net addr] => gossip sessions in flight with the peer
+	AtomicBoolean returning;                  // a gossip session asked lachesis to return
 
 	public Node(Config conf,
 			long id,
@@ -83,18 +106,23 @@ public class Node extends NodeState {
 
 		Peers pmap = store.participants().result;
 
-		One2OneChannel<poset.Block> commitCh = Channel.one2one(); // TBD // make(chan poset.Block, 400);
+		One2OneChannel<poset.Block> commitCh = new BufferedChannel<poset.Block>(COMMIT_BUFFER); // make(chan poset.Block, 400);
 		Core core = new Core(id, key, pmap, store, commitCh, conf.getLogger());
+		core.poset.SetParallelism(conf.getConsensusParallelism());
+		core.SetVerifyParallelism(conf.getVerifyParallelism());
+		core.SetTransactionPoolCapacity(conf.getTransactionPoolCapacity(), conf.getTransactionPoolTimeout());
+		core.SetWireCacheSize(conf.getCacheSize());
 
 		String pubKey = core.hexID();
 
-		PeerSelector peerSelector = new SmartPeerSelector(participants, pubKey,
-				new FlagtableContainer() {
-					@Override
-					public RResult<Map<String, Long>> getFlagTable() {
-						return core.poset.GetFlagTableOfRandomUndeterminedEvent();
-					}}
-			);
+		FlagtableContainer flagTable = new FlagtableContainer() {
+			@Override
+			public RResult<Map<String, Long>> getFlagTable() {
+				return core.poset.GetFlagTableOfRandomUndeterminedEvent();
+			}};
+		PeerSelector peerSelector = conf.isPeerScoring()
+			? new ScoringPeerSelector(participants, pubKey, flagTable)
+			: new SmartPeerSelector(participants, pubKey, flagTable);
 
 		this.id = id;
 		this.conf= conf;
@@ -108,11 +136,25 @@ public class Node extends NodeState {
 		this.submitCh = proxy.SubmitCh();
 		this.submitInternalCh = proxy.SubmitInternalCh();
 		this.commitCh = commitCh;
+		this.commits = new CommitPipeline(proxy, conf.getCommitQueueSize(), conf.getCommitInflight(),
+			(block, res) -> committed(block, res), this.logger);
 		this.shutdownCh = Channel.one2one(); //make(chan struct{});
+		this.catchUpImages = new LinkedHashMap<Long,CatchUpImage>() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long,CatchUpImage> eldest) {
+				return size() > CATCH_UP_IMAGES;
+			}
+		};
 		this.controlTimer = ControlTimer.RandomControlTimer();
+		this.heartbeat = new Heartbeat(conf.HeartbeatTimeout, conf.getMaxHeartbeatTimeout(),
+			conf.getGossipFanout());
 		this.start = System.nanoTime();
 		this.gossipJobs = new AtomicLong(0);
 		this.rpcJobs = new AtomicLong(0);
+		this.peerGossipJobs = new ConcurrentHashMap<String,AtomicInteger>();
+		this.returning = new AtomicBoolean(false);
 
 		this.coreLock = new ReentrantLock();
 
@@ -157,6 +199,7 @@ public class Node extends NodeState {
 
 		// Execute some background work regardless of the state of the node.
 		// Process SubmitTx and CommitBlock requests
+		commits.start();
 		ExecService.go(() -> doBackgroundWork());
 
 		// pause before gossiping test transactions to allow all nodes come up
@@ -187,30 +230,52 @@ public class Node extends NodeState {
 	}
 
 	public void resetTimer() {
-		if (!controlTimer.set) {
-			Duration ts = conf.HeartbeatTimeout;
-			//Slow gossip if nothing interesting to say
-			if (core.poset.getPendingLoadedEvents() == 0 &&
-				core.transactionPool.length == 0 &&
-				core.blockSignaturePool.length == 0) {
-				ts = Duration.ofSeconds(1); //(time.Second);
+		long pending = core.poset.getPendingLoadedEvents() +
+			core.transactionPool.size() +
+			core.pendingBlockSignatures();
+		// resetCh only supports a single writer
+		synchronized (controlTimer) {
+			if (!controlTimer.set) {
+				controlTimer.resetCh.out().write(heartbeat.next(pending));
+			} else if (pending > 0) {
+				// bring forward a tick planned while there was nothing to gossip
+				Duration ts = heartbeat.next(pending);
+				Duration remaining = controlTimer.remaining();
+				if (remaining != null && remaining.compareTo(ts) > 0) {
+					controlTimer.resetCh.out().write(ts);
+				}
 			}
-			controlTimer.resetCh.out().write(ts);
 		}
 	}
 
+	// doBackgroundWork never waits for room in the transaction pool, as it also
+	// drains commitCh: while the pool is full, it leaves the transactions in
+	// submitCh, which holds the submitters back, and checks the pool again
+	// every POOL_FULL_RETRY_MS
 	public void doBackgroundWork() {
+		final CSTimer poolTimer = new CSTimer();
 		while (true) {
-			final Alternative alt = new Alternative (new Guard[] {submitCh.in(), submitInternalCh.in(), commitCh.in(), shutdownCh.in()});
-			final int SUBMIT = 0, SUBMIT_INT = 1, COMMIT = 2, SHUTDOWN = 3;
-			switch (alt.priSelect ()) {
+			int room = core.transactionPoolRoom();
+			if (room <= 0) {
+				poolTimer.setAlarm(poolTimer.read() + POOL_FULL_RETRY_MS);
+			}
+			final Alternative alt = new Alternative (new Guard[] {submitCh.in(), submitInternalCh.in(), commitCh.in(), shutdownCh.in(), poolTimer});
+			final int SUBMIT = 0, SUBMIT_INT = 1, COMMIT = 2, SHUTDOWN = 3, POOL_FULL = 4;
+			switch (alt.priSelect (new boolean[] {room > 0, true, true, true, room <= 0})) {
 				// fall through
 				case SUBMIT:
-					byte[] t = submitCh.in().read();
-					logger.debug("Adding Transactions to Transaction Pool");
-					addTransaction(t);
+					List<byte[]> txs = new ArrayList<byte[]>();
+					txs.add(submitCh.in().read());
+					BufferedChannel.drain(submitCh, txs, Math.min(room, SUBMIT_BATCH) - 1);
+					logger.field("count", txs.size()).debug("Adding Transactions to Transaction Pool");
+					for (byte[] t : txs) {
+						offerTransaction(t);
+					}
 					resetTimer();
 					break;
+				case POOL_FULL:
+					// the pool may have room again
+					break;
 				case SUBMIT_INT:
 					poset.InternalTransaction t1 = submitInternalCh.in().read();
 					logger.debug("Adding Internal Transaction");
@@ -243,6 +308,7 @@ public class Node extends NodeState {
 	 */
 	public void lachesis(boolean gossip) {
 		One2OneChannelInt returnCh = Channel.one2oneInt(); // TBD // make(chan struct{}, 100)
+		returning.set(false);
 		while (true) {
 			final Alternative alt = new Alternative (new Guard[] {netCh.in(), controlTimer.tickCh.in(), returnCh.in(), shutdownCh.in()});
 			final int NET = 0, TIME = 1, RETURN = 2, SHUTDOWN = 3;
@@ -256,19 +322,13 @@ public class Node extends NodeState {
 						logger.debug("Processing RPC");
 						processRPC(rpc);
 						resetTimer();
-						rpcJobs.incrementAndGet();
+						rpcJobs.decrementAndGet();
 					});
 					break;
 				case TIME:
 					controlTimer.tickCh.in().read();
-					if (gossip && gossipJobs.get() < 1) {
-						Peer peer = peerSelector.next();
-						goFunc(() -> {
-							gossipJobs.incrementAndGet();
-							gossip(peer.getNetAddr(), returnCh);
-							gossipJobs.incrementAndGet();
-						});
-						logger.debug("Gossip");
+					if (gossip) {
+						startGossip(returnCh);
 					}
 					logStats();
 					resetTimer();
@@ -287,6 +347,48 @@ public class Node extends NodeState {
 		}
 	}
 
+	/**
+	 * startGossip starts gossip sessions with distinct peers, chosen by the peer
+	 * selector, until conf.GossipFanout sessions are in flight. A peer is not
+	 * given more than conf.GossipPeerInflight sessions at a time.
+	 * @param returnCh
+	 */
+	void startGossip(One2OneChannelInt returnCh) {
+		int fanout = Math.max(conf.getGossipFanout(), 1);
+		int perPeer = Math.max(conf.getGossipPeerInflight(), 1);
+		int free = (int) (fanout - gossipJobs.get());
+		if (free <= 0) {
+			return;
+		}
+
+		Peer[] peers;
+		selectorLock.lock();
+		try {
+			peers = peerSelector.next(free);
+		} finally {
+			selectorLock.unlock();
+		}
+
+		for (Peer peer : peers) {
+			String addr = peer.getNetAddr();
+			AtomicInteger inflight = peerGossipJobs.computeIfAbsent(addr, a -> new AtomicInteger());
+			if (inflight.incrementAndGet() > perPeer) {
+				inflight.decrementAndGet();
+				continue;
+			}
+			gossipJobs.incrementAndGet();
+			goFunc(() -> {
+				try {
+					gossip(addr, returnCh);
+				} finally {
+					inflight.decrementAndGet();
+					gossipJobs.decrementAndGet();
+				}
+			});
+			logger.field("peer", addr).debug("Gossip");
+		}
+	}
+
 	public void processRPC(net.RPC rpc) {
 		Object cmd = rpc.getCommand();
 
@@ -313,44 +415,28 @@ public class Node extends NodeState {
 		SyncResponse resp = new net.SyncResponse (id);
 		error respErr = null;
 
+		// Served from the last snapshot of the core, without the core lock
+		EventSnapshot snapshot = core.snapshot();
+
 		// Check sync limit
-		coreLock.lock();
-		boolean overSyncLimit = core.overSyncLimit(cmd.getKnown(), conf.SyncLimit);
-		coreLock.unlock();
-		if (overSyncLimit) {
+		if (snapshot.overSyncLimit(cmd.getKnown(), conf.SyncLimit)) {
 			logger.debug("core.OverSyncLimit(cmd.Known, conf.SyncLimit)");
 			resp.setSyncLimit(true);
 		} else {
 			// Compute Diff
 			long start = System.nanoTime();
-			coreLock.lock();
-			RResult<Event[]> eventDiffCall = core.eventDiff(cmd.getKnown());
-			Event[] eventDiff = eventDiffCall.result;
-			error err = eventDiffCall.err;
-			coreLock.unlock();
+			RResult<WireEvent[]> eventDiffCall = wireEventDiff(snapshot, cmd.getKnown());
 			logger.field("Duration", time.Since(start)).debug("core.EventBlockDiff(cmd.Known)");
-			if (err != null) {
-				logger.field("Error", err).error("core.EventBlockDiff(cmd.Known)");
-				respErr = err;
-			}
-
-			// Convert to WireEvents
-			RResult<WireEvent[]> toWireCall = core.toWire(eventDiff);
-			WireEvent[] wireEvents = toWireCall.result;
-			err = toWireCall.err;
-			if (err != null) {
-				logger.field("error", err).debug("core.TransportEventBlock(eventDiff)");
-				respErr = err;
+			if (eventDiffCall.err != null) {
+				logger.field("Error", eventDiffCall.err).error("core.EventBlockDiff(cmd.Known)");
+				respErr = eventDiffCall.err;
 			} else {
-				resp.setEvents(wireEvents);
+				resp.setEvents(eventDiffCall.result);
 			}
 		}
 
 		// Get Self Known
-		coreLock.lock();
-		Map<Long, Long> knownEvents = core.knownEvents();
-		coreLock.unlock();
-		resp.setKnown(knownEvents);
+		resp.setKnown(snapshot.knownEvents());
 
 		logger
 			.field("events",     resp.getEvents().length)
@@ -368,9 +454,7 @@ public class Node extends NodeState {
 			.debug("processEagerSyncRequest(rpc net.RPC, cmd *net.EagerSyncRequest)");
 
 		boolean success = true;
-		coreLock.lock();
 		error err = sync(cmd.getEvents());
-		coreLock.unlock();
 		if (err != null) {
 			logger.field("error", err).error("sync(cmd.Events)");
 			success = false;
@@ -382,8 +466,14 @@ public class Node extends NodeState {
 
 	public void processFastForwardRequest(net.RPC rpc, net.FastForwardRequest cmd) {
 		logger.field("from", cmd.getFromID())
+			.field("part", cmd.getPart())
 			.debug("processFastForwardRequest(rpc net.RPC, cmd *net.FastForwardRequest)");
 
+		if (cmd.getPart() != null && cmd.getPart() != FastForwardPart.All) {
+			processChunkedFastForwardRequest(rpc, cmd);
+			return;
+		}
+
 		FastForwardResponse resp = new net.FastForwardResponse(id);
 		error respErr = null;
 
@@ -419,6 +509,77 @@ public class Node extends NodeState {
 		rpc.respond(resp, respErr);
 	}
 
+	// processChunkedFastForwardRequest answers with the manifest of our anchor
+	// block, or with a chunk of the requested block
+	void processChunkedFastForwardRequest(net.RPC rpc, net.FastForwardRequest cmd) {
+		FastForwardResponse resp = new net.FastForwardResponse(id);
+		boolean manifest = cmd.getPart() == FastForwardPart.Manifest;
+		RResult<CatchUpImage> imageCall = catchUpImage(manifest ? -1 : cmd.getBlockIndex());
+		error err = imageCall.err;
+		if (err == null) {
+			if (manifest) {
+				resp = imageCall.result.manifest(id);
+			} else {
+				RResult<byte[]> chunkCall = imageCall.result.chunk(cmd.getPart(), cmd.getChunk());
+				resp.setChunk(chunkCall.result);
+				err = chunkCall.err;
+			}
+		}
+
+		logger
+			.field("block", cmd.getBlockIndex())
+			.field("chunk", cmd.getChunk())
+			.field("Error", err)
+			.debug("FastForwardRequest Received");
+		rpc.respond(resp, err);
+	}
+
+	// catchUpImage returns the chunks of a block, or of our anchor block when
+	// index is negative. The last ones are kept, so that the snapshot and the
+	// chunks are not made again for every chunk requested.
+	RResult<CatchUpImage> catchUpImage(long index) {
+		synchronized (catchUpImages) {
+			RResult3<Block, Frame> getBlockWithFrame;
+			coreLock.lock();
+			try {
+				if (index < 0) {
+					getBlockWithFrame = core.getAnchorBlockWithFrame();
+				} else {
+					CatchUpImage image = catchUpImages.get(index);
+					if (image != null) {
+						return new RResult<CatchUpImage>(image, null);
+					}
+					getBlockWithFrame = core.getBlockWithFrame(index);
+				}
+			} finally {
+				coreLock.unlock();
+			}
+			Block block = getBlockWithFrame.result1;
+			error err = getBlockWithFrame.err;
+			if (err != null) {
+				logger.field("error", err).error("core.getBlockWithFrame()");
+				return new RResult<CatchUpImage>(null, err);
+			}
+			CatchUpImage image = catchUpImages.get(block.Index());
+			if (image != null) {
+				return new RResult<CatchUpImage>(image, null);
+			}
+
+			RResult<byte[]> getSnapshot = proxy.GetSnapshot(block.Index());
+			err = getSnapshot.err;
+			if (err != null) {
+				logger.field("error", err).error("proxy.GetSnapshot(block.Index())");
+				return new RResult<CatchUpImage>(null, err);
+			}
+			RResult<CatchUpImage> buildCall = CatchUpImage.build(block, getBlockWithFrame.result2,
+				getSnapshot.result, conf.getFastForwardChunkSize());
+			if (buildCall.err == null) {
+				catchUpImages.put(block.Index(), buildCall.result);
+			}
+			return buildCall;
+		}
+	}
+
 	/**
 	 * This function is usually called in a go-routine and needs to inform the
 	 * calling routine (usually the lachesis routine) when it is time to exit the
@@ -442,7 +603,10 @@ public class Node extends NodeState {
 		if (syncLimit) {
 			logger.field("from", peerAddr).debug("SyncLimit");
 			setState(NodeStates.CatchingUp);
-			parentReturnCh.out().write(1); // <- struct{}{};
+			// concurrent sessions may all hit the limit; only one of them tells lachesis
+			if (returning.compareAndSet(false, true)) {
+				parentReturnCh.out().write(1); // <- struct{}{};
+			}
 			return null;
 		}
 
@@ -463,22 +627,27 @@ public class Node extends NodeState {
 	public RResult3<Boolean,Map<Long,Long>> pull(String peerAddr) {
 	/* (boolean syncLimit, Map<Long,Long> otherKnownEvents, error err) { */
 		// Compute Known
-		coreLock.lock();
-		Map<Long,Long> knownEvents = core.knownEvents();
-		coreLock.unlock();
+		Map<Long,Long> knownEvents = core.snapshot().knownEvents();
 
 		// Send SyncRequest
 		long start = System.nanoTime();
 		RResult<net.SyncResponse> requestSyncCall = requestSync(peerAddr, knownEvents);
 		net.SyncResponse resp = requestSyncCall.result;
 		error err = requestSyncCall.err;
-		logger.field("Duration", time.Since(start)).debug("requestSync(peerAddr, knownEvents)");
+		long elapsed = time.Since(start);
+		logger.field("Duration", elapsed).debug("requestSync(peerAddr, knownEvents)");
 		// FIXIT: should we catch io.EOF error here and how we process it?
 		//	if err == io.EOF {
 		//		return false, null, null
 		//	}
 		if (err != null) {
 			logger.field("Error", err).error("requestSync(peerAddr, knownEvents)");
+			selectorLock.lock();
+			try {
+				peerSelector.updateFailure(peerAddr, Duration.ofNanos(elapsed));
+			} finally {
+				selectorLock.unlock();
+			}
 			return new RResult3<Boolean,Map<Long,Long>>(false, null, err);
 		}
 		logger
@@ -489,14 +658,22 @@ public class Node extends NodeState {
 			.field("knownEvents", knownEvents)
 			.debug("SyncResponse");
 
+		int received = resp.getEvents() == null ? 0 : resp.getEvents().length;
+		heartbeat.observeSync(received, Duration.ofNanos(elapsed));
+		selectorLock.lock();
+		try {
+			peerSelector.updateSync(peerAddr, Duration.ofNanos(elapsed), received,
+				PeerSelector.lag(resp.getKnown(), knownEvents));
+		} finally {
+			selectorLock.unlock();
+		}
+
 		if (resp.isSyncLimit()) {
 			return new RResult3<Boolean,Map<Long,Long>>(true, null, null);
 		}
 
 		// Add Events to poset and create new Head if necessary
-		coreLock.lock();
 		err = sync(resp.getEvents());
-		coreLock.unlock();
 		if (err != null) {
 //			logger.field("error", err).error("sync(resp.Events)")
 			return new RResult3<Boolean,Map<Long,Long>>(false, null, err);
@@ -506,38 +683,26 @@ public class Node extends NodeState {
 	}
 
 	public error push(String peerAddr, Map<Long,Long> knownEvents)  {
+		EventSnapshot snapshot = core.snapshot();
+
 		// Check SyncLimit
-		coreLock.lock();
-		boolean overSyncLimit = core.overSyncLimit(knownEvents, conf.SyncLimit);
-		coreLock.unlock();
-		if (overSyncLimit) {
+		if (snapshot.overSyncLimit(knownEvents, conf.SyncLimit)) {
 			logger.debug("core.OverSyncLimit(knownEvents, conf.SyncLimit)");
 			return null;
 		}
 
 		// Compute Diff
 		long start = System.nanoTime();
-		coreLock.lock();
-		RResult<Event[]> eventDiffCall = core.eventDiff(knownEvents);
-		Event[] eventDiff = eventDiffCall.result;
+		RResult<WireEvent[]> eventDiffCall = wireEventDiff(snapshot, knownEvents);
+		WireEvent[] wireEvents = eventDiffCall.result;
 		error err = eventDiffCall.err;
-		coreLock.unlock();
 		logger.field("Duration", time.Since(start)).debug("core.EventDiff(knownEvents)");
 		if (err != null) {
 			logger.field("Error", err).error("core.EventDiff(knownEvents)");
 			return err;
 		}
 
-		if (eventDiff.length > 0) {
-			// Convert to WireEvents
-			RResult<WireEvent[]> toWire = core.toWire(eventDiff);
-			WireEvent[] wireEvents = toWire.result;
-			err = toWire.err;
-			if (err != null) {
-				logger.field("Error", err).debug("core.TransferEventBlock(eventDiff)");
-				return err;
-			}
-
+		if (wireEvents.length > 0) {
 			// Create and Send EagerSyncRequest
 			start = System.nanoTime();
 			logger.field("wireEvents", wireEvents).debug("Sending requestEagerSync.wireEvents");
@@ -559,6 +724,33 @@ public class Node extends NodeState {
 		return null;
 	}
 
+	// wireEventDiff returns the wire events unknown to a peer. They are read from
+	// a snapshot of the core, unless the peer is behind the events it keeps: they
+	// are then read from the store, under the core lock.
+	private RResult<WireEvent[]> wireEventDiff(EventSnapshot snapshot, Map<Long,Long> known) {
+		RResult<Event[]> eventDiffCall = snapshot.eventDiff(known);
+		if (eventDiffCall.err != null && StoreErr.Is(eventDiffCall.err, StoreErrType.TooLate)) {
+			coreLock.lock();
+			try {
+				eventDiffCall = core.eventDiff(known);
+			} finally {
+				coreLock.unlock();
+			}
+		}
+		if (eventDiffCall.err != null) {
+			return new RResult<WireEvent[]>(null, eventDiffCall.err);
+		}
+		// the wire forms are cached, the cache is safe without the lock
+		return core.toWire(eventDiffCall.result);
+	}
+
+	/**
+	 * fastForward gets the manifest of an anchor block from a peer, fetches the
+	 * chunks of its frame and of the App snapshot from several peers, and
+	 * resets the node from them. The chunks already fetched for the same anchor
+	 * block are kept when it fails, so that the next attempt resumes.
+	 * @return
+	 */
 	public error fastForward() {
 		logger.debug("fastForward()");
 
@@ -566,9 +758,28 @@ public class Node extends NodeState {
 		waitRoutines();
 
 		// fastForwardRequest
-		Peer peer = peerSelector.next();
+		Peer[] selected;
+		selectorLock.lock();
+		try {
+			selected = peerSelector.next(conf.getFastForwardParallelism());
+		} finally {
+			selectorLock.unlock();
+		}
+		// our own anchor is the one we are behind
+		List<Peer> others = new ArrayList<Peer>(selected.length);
+		for (Peer p : selected) {
+			if (!p.getNetAddr().equals(localAddr) && !p.getPubKeyHex().equals(core.hexID())) {
+				others.add(p);
+			}
+		}
+		if (others.isEmpty()) {
+			return error.Errorf("no peer to fast-forward from");
+		}
+		Peer[] peers = others.toArray(new Peer[others.size()]);
+		Peer peer = peers[0];
 		long start = System.nanoTime();
-		RResult<net.FastForwardResponse> requestFastForwardCall = requestFastForward(peer.getNetAddr());
+		RResult<net.FastForwardResponse> requestFastForwardCall = requestFastForward(peer.getNetAddr(),
+			FastForwardPart.Manifest, -1, 0);
 		FastForwardResponse resp = requestFastForwardCall.result;
 		error err = requestFastForwardCall.err;
 		logger.field("Duration", time.Since(start)).debug("requestFastForward(peer.NetAddr)");
@@ -580,14 +791,66 @@ public class Node extends NodeState {
 			.field("from_id",              resp.getFromID())
 			.field("block_index",          resp.getBlock().Index())
 			.field("block_round_received", resp.getBlock().roundReceived())
-			.field("frame_events",         resp.getFrame().GetEvents().length)
 			.field("frame_roots",          resp.getFrame().GetRoots())
-			.field("snapshot",             resp.getSnapshot())
+			.field("frame_chunks",         resp.getFrameChunks() == null ? 0 : resp.getFrameChunks().length)
+			.field("snapshot_chunks",      resp.getSnapshotChunks() == null ? 0 : resp.getSnapshotChunks().length)
 			.debug("FastForwardResponse");
 
-		// prepare core. ie: fresh poset
+		// check the block signatures before fetching anything
 		coreLock.lock();
-		err = core.fastForward(peer.getPubKeyHex(), resp.getBlock(), resp.getFrame());
+		try {
+			err = core.poset.CheckBlock(resp.getBlock());
+		} finally {
+			coreLock.unlock();
+		}
+		if (err != null) {
+			logger.field("Error", err).error("core.poset.CheckBlock(resp.Block)");
+			return err;
+		}
+
+		if (catchUp == null || !catchUp.sameAnchor(resp)) {
+			RResult<CatchUp> fromManifest = CatchUp.fromManifest(resp, logger);
+			if (fromManifest.err != null) {
+				return fromManifest.err;
+			}
+			catchUp = fromManifest.result;
+		}
+
+		String[] peerAddrs = new String[peers.length];
+		for (int i = 0; i < peers.length; i++) {
+			peerAddrs[i] = peers[i].getNetAddr();
+		}
+		err = catchUp.fetch(peerAddrs, (addr, part, blockIndex, chunk) -> {
+			RResult<net.FastForwardResponse> chunkCall = requestFastForward(addr, part, blockIndex, chunk);
+			return new RResult<byte[]>(chunkCall.result == null ? null : chunkCall.result.getChunk(), chunkCall.err);
+		}, conf.getFastForwardParallelism(), Math.max(peers.length, 2));
+		logger.field("Duration", time.Since(start)).debug("catchUp.fetch()");
+		if (err != null) {
+			logger.field("Error", err).error("catchUp.fetch()");
+			return err;
+		}
+
+		RResult<Frame> frameCall = catchUp.frame();
+		RResult<byte[]> snapshotCall = catchUp.snapshot();
+		CatchUp done = catchUp;
+		catchUp = null;
+		if (frameCall.err != null) {
+			logger.field("Error", frameCall.err).error("catchUp.frame()");
+			return frameCall.err;
+		}
+		if (snapshotCall.err != null) {
+			return snapshotCall.err;
+		}
+
+		// let the App process the blocks decided before, while they can still be
+		// signed and stored, then prepare core. ie: fresh poset
+		err = commits.flush();
+		if (err != null) {
+			logger.field("Error", err).error("commits.flush()");
+			return err;
+		}
+		coreLock.lock();
+		err = core.fastForward(peer.getPubKeyHex(), done.getBlock(), frameCall.result);
 		coreLock.unlock();
 		if (err != null) {
 			logger.field("Error", err).error("core.FastForward(peer.PubKeyHex, resp.Block, resp.Frame)");
@@ -595,7 +858,7 @@ public class Node extends NodeState {
 		}
 
 		// update app from snapshot
-		err = proxy.Restore(resp.getSnapshot());
+		err = proxy.Restore(snapshotCall.result);
 		if (err != null) {
 			logger.field("Error", err).error("proxy.Restore(resp.Snapshot)");
 			return err;
@@ -628,10 +891,16 @@ public class Node extends NodeState {
 	}
 
 	public RResult<net.FastForwardResponse> requestFastForward(String target) {
+		return requestFastForward(target, FastForwardPart.All, -1, 0);
+	}
+
+	public RResult<net.FastForwardResponse> requestFastForward(String target, FastForwardPart part, long blockIndex, int chunk) {
 		logger.field("target", target)
+			.field("part", part)
+			.field("chunk", chunk)
 			.debug("requestFastForward(target string) (net.FastForwardResponse, error)");
 
-		FastForwardRequest args = new net.FastForwardRequest(id);
+		FastForwardRequest args = new net.FastForwardRequest(id, part, blockIndex, chunk);
 
 		net.FastForwardResponse out = new net.FastForwardResponse();
 		error err = trans.fastForward(target, args, out);
@@ -639,29 +908,71 @@ public class Node extends NodeState {
 		return new RResult<net.FastForwardResponse>(out, err);
 	}
 
+	// sync takes the core lock to convert the events and to insert them, but
+	// not while their signatures are verified
 	public error sync(poset.WireEvent[] events ) {
-		// Insert Events in Poset and create new Head if necessary
 		long start = System.nanoTime();
-		error err = core.Sync(events);
-//		logger.field("Duration", time.Since(start)).debug("core.Sync(events)");
+		RResult<Event[]> readWireEvents;
+		coreLock.lock();
+		try {
+			readWireEvents = core.readWireEvents(events);
+		} finally {
+			coreLock.unlock();
+		}
+		Event[] evs = readWireEvents.result;
+		error err = readWireEvents.err;
 		if (err != null) {
 			return err;
 		}
 
-		// Run consensus methods
-		start = System.nanoTime();
-		err = core.runConsensus();
-		logger.field("Duration", time.Since(start)).debug("core.RunConsensus()");
+		// events another gossip session inserted meanwhile are skipped by
+		// insertEvents, so only the unknown ones need a signature check
+		coreLock.lock();
+		Event[] unknown;
+		try {
+			unknown = core.unknownEvents(evs);
+		} finally {
+			coreLock.unlock();
+		}
+		err = core.verifyEvents(unknown);
+		logger.field("Duration", time.Since(start)).debug("core.verifyEvents(events)");
 		if (err != null) {
 			return err;
 		}
 
+		coreLock.lock();
+		try {
+			// Insert Events in Poset and create new Head if necessary
+			err = core.insertEvents(evs);
+			if (err != null) {
+				return err;
+			}
+
+			// Run consensus methods
+			start = System.nanoTime();
+			err = core.runConsensus();
+			logger.field("Duration", time.Since(start)).debug("core.RunConsensus()");
+			if (err != null) {
+				return err;
+			}
+		} finally {
+			coreLock.unlock();
+		}
+
 		return null;
 	}
 
+	// commit queues a decided block for the App. It only waits when the commit
+	// queue is full, so that consensus does not run too far ahead of the App.
 	public error commit(poset.Block block ) {
+		return commits.submit(block);
+	}
+
+	// committed handles the acknowledgement of a block by the App, in block
+	// order, and adds our signature of the block
+	void committed(poset.Block block, RResult<byte[]> commitCall) {
 		byte[] stateHash = new byte[]{0, 1, 2};
-		error err = proxy.CommitBlock(block).err;
+		error err = commitCall.err;
 		if (err != null) {
 			logger.field("error", err).debug("commit(block poset.Block)");
 		}
@@ -669,6 +980,7 @@ public class Node extends NodeState {
 		logger
 			.field("block",      block.Index())
 			.field("state_hash", String.format("%X", stateHash))
+			.field("app_state_hash", commitCall.result == null ? "" : crypto.Utils.toHexString(commitCall.result))
 			// "err":        err,
 		.debug("commit(eventBlock poset.EventBlock)");
 
@@ -688,30 +1000,35 @@ public class Node extends NodeState {
 			// this requires a 1:1 relationship with nodes and clients
 			// multiple nodes can't read from the same client
 
+			// the block is signed off the core lock, and the signature handed
+			// over to the core without it: consensus may be holding the lock
+			// while it waits for room to pass decided blocks on to us
 			block.setStateHash(stateHash);
-			coreLock.lock();
-			try {
-				RResult<BlockSignature> signBlockCall = core.SignBlock(block);
-				BlockSignature sig = signBlockCall.result;
-				err = signBlockCall.err;
-				if (err != null) {
-					return err;
-				}
-				core.addBlockSignature(sig);
-			} finally {
-				coreLock.unlock();
+			RResult<BlockSignature> signBlockCall = core.signBlock(block);
+			err = signBlockCall.err;
+			if (err != null) {
+				logger.field("error", err).error("Signing EventBlock");
+				return;
 			}
+			core.queueBlockSignature(block, signBlockCall.result);
 		}
-
-		return null;
 	}
 
+	// addTransaction queues tx in the transaction pool, which does not need the
+	// core lock
 	public void addTransaction(byte[] tx) {
-		coreLock.lock();
-		try {
-			core.addTransactions(new byte[][]{tx});
-		} finally {
-			coreLock.unlock();
+		error err = core.addTransactions(new byte[][]{tx});
+		if (err != null) {
+			logger.field("error", err).error("addTransaction()");
+		}
+	}
+
+	// offerTransaction queues tx in the transaction pool if it has room,
+	// without waiting, and drops it otherwise
+	void offerTransaction(byte[] tx) {
+		error err = core.offerTransaction(tx);
+		if (err != null) {
+			logger.field("error", err).error("offerTransaction()");
 		}
 	}
 
@@ -735,6 +1052,7 @@ public class Node extends NodeState {
 			// Stop and wait for concurrent operations
 			ChannelUtils.close(shutdownCh);
 			waitRoutines();
+			commits.stop();
 
 			// For some reason this needs to be called after closing the shutdownCh
 			// Not entirely sure why...
@@ -743,6 +1061,8 @@ public class Node extends NodeState {
 			// transport and store should only be closed once all concurrent operations
 			// are finished otherwise they will panic trying to use close objects
 			trans.close();
+			core.poset.SetParallelism(0);
+			core.SetVerifyParallelism(0);
 			core.poset.Store.close();
 		}
 	}
@@ -765,7 +1085,9 @@ public class Node extends NodeState {
 		Map<String,String> s = new HashMap<String,String>();
 		s.put("last_consensus_round",    ""+lastConsensusRound);
 		s.put("time_elapsed",            String.format("%.2f", timeElapsedSeconds));
-		s.put("heartbeat",               String.format("%.2f", conf.HeartbeatTimeout.getSeconds()));
+		s.put("heartbeat",               String.format("%.3f", heartbeat.interval().toNanos() / 1e9));
+		s.put("sync_yield",              String.format("%.2f", heartbeat.meanYield()));
+		s.put("sync_rtt_ms",             "" + heartbeat.meanRtt().toMillis());
 		s.put("node_current",            "" + System.currentTimeMillis() / 1000);
 		s.put("node_start",              "" + start);
 		s.put("last_block_index",        "" + core.getLastBlockIndex());
@@ -773,8 +1095,21 @@ public class Node extends NodeState {
 		s.put("sync_limit",              "" + conf.SyncLimit);
 		s.put("consensus_transactions",  "" + consensusTransactions);
 		s.put("undetermined_events",     "" + core.getUndeterminedEvents().size());
-		s.put("transaction_pool",        "" + core.transactionPool.length);
+		s.put("transaction_pool",        "" + core.transactionPool.size());
+		s.put("transaction_pool_bytes",  "" + core.transactionPool.bytes());
+		s.put("transaction_pool_rejected", "" + core.transactionPool.rejected());
+		s.put("transaction_wait_mean_ms", "" + core.transactionPool.meanWait().toMillis());
+		s.put("transaction_wait_max_ms", "" + core.transactionPool.maxWait().toMillis());
+		s.put("submit_backlog",          "" + BufferedChannel.backlog(submitCh));
+		s.put("commit_backlog",          "" + BufferedChannel.backlog(commitCh));
+		s.put("net_backlog",             "" + BufferedChannel.backlog(netCh));
+		s.put("commit_queue",            "" + commits.queued());
+		s.put("commit_inflight",         "" + commits.inflight());
+		s.put("committed_blocks",        "" + commits.committed());
+		s.put("app_latency_mean_ms",     "" + commits.meanLatency().toMillis());
+		s.put("app_latency_max_ms",      "" + commits.maxLatency().toMillis());
 		s.put("num_peers",               "" + peerSelector.peers().length());
+		s.put("gossip_jobs",             "" + gossipJobs.get());
 		s.put("sync_rate",               "" + String.format("%.2f",syncRate()));
 		s.put("transactions_per_second", String.format("%.2f",transactionsPerSecond));
 		s.put("events_per_second",       String.format("%.2f",consensusEventsPerSecond));
@@ -817,8 +1152,9 @@ public class Node extends NodeState {
 		return core.poset.Store.lastBlockIndex();
 	}
 
+	// roundWitnesses returns a copy of the witnesses of round i, which callers may sort
 	public String[] roundWitnesses(long i) {
-		return core.poset.Store.roundWitnesses(i);
+		return core.poset.Store.roundWitnesses(i).clone();
 	}
 
 	public RResult<poset.Frame> getFrame(long i) {
@@ -828,14 +1164,10 @@ public class Node extends NodeState {
 	/**
 	 * Node's method candidates
 	 */
-	public void pushTx(byte[] tx) {
-		coreLock.lock();
-		try {
-			core.addTransactions(new byte[][]{tx});
-			logger.debugf("PushTx('%s')", tx);
-		} finally {
-			coreLock.unlock();
-		}
+	public error pushTx(byte[] tx) {
+		error err = core.addTransactions(new byte[][]{tx});
+		logger.debugf("PushTx('%s')", tx);
+		return err;
 	}
 
 	public void register() {
@@ -863,11 +1195,11 @@ public class Node extends NodeState {
 	}
 
 	public Map<Long,Long> getKnownEvents() {
-		return core.poset.Store.knownEvents();
+		return core.snapshot().knownEvents();
 	}
 
 	public RResult<Map<Long,Long>> getEvents()  {
-		Map<Long, Long> res = core.knownEvents();
+		Map<Long, Long> res = core.snapshot().knownEvents();
 		return new RResult(res, null);
 	}
 
@@ -888,7 +1220,7 @@ public class Node extends NodeState {
 	}
 
 	public String[] getRoundWitnesses(long roundIndex) {
-		return core.poset.Store.roundWitnesses(roundIndex);
+		return core.poset.Store.roundWitnesses(roundIndex).clone();
 	}
 
 	public int getRoundEvents(long roundIndex) {
@@ -1,5 +1,10 @@
 package node;
 
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+
 /**
  * PeerSelector provides an interface for the lachesis node to
  * update the last peer it gossiped with and select the next peer
@@ -9,4 +14,71 @@ public interface PeerSelector {
 	peers.Peers peers();
 	void updateLast(String peer);
 	peers.Peer next();
-}
\ No newline at end of file
+
+	// next returns at most n distinct peers to gossip with at the same time
+	peers.Peer[] next(int n);
+
+	// updateSync records a completed sync with a peer: its round trip time, the
+	// number of events received and the lag of our known events behind the peer's
+	default void updateSync(String peer, Duration rtt, int events, long lag) {
+	}
+
+	// updateFailure records a failed sync with a peer, and the time it took to fail
+	default void updateFailure(String peer, Duration elapsed) {
+	}
+
+	/**
+	 * lag returns the number of events known by a peer and not by us
+	 * @param theirs the known events of the peer
+	 * @param ours our known events
+	 * @return
+	 */
+	static long lag(Map<Long,Long> theirs, Map<Long,Long> ours) {
+		long lag = 0;
+		if (theirs == null) {
+			return lag;
+		}
+		for (Map.Entry<Long,Long> e : theirs.entrySet()) {
+			Long known = ours.get(e.getKey());
+			long ahead = e.getValue() - (known == null ? -1 : known);
+			if (ahead > 0) {
+				lag += ahead;
+			}
+		}
+		return lag;
+	}
+
+	/**
+	 * excludeLocal returns the peers other than the local peer, unless there is
+	 * no other peer: a node never gossips with itself, whatever the fanout
+	 * @param participants
+	 * @param localAddr
+	 * @return
+	 */
+	static peers.Peer[] excludeLocal(peers.Peers participants, String localAddr) {
+		peers.Peer[] all = participants.toPeerSlice();
+		peers.Peer[] others = participants.excludePeer(all, localAddr).peers;
+		return others.length > 0 ? others : all;
+	}
+
+	/**
+	 * pick returns n distinct candidates chosen at random, or all of them when
+	 * there are no more than n
+	 * @param candidates
+	 * @param n
+	 * @param rand
+	 * @return
+	 */
+	static peers.Peer[] pick(peers.Peer[] candidates, int n, Random rand) {
+		peers.Peer[] res = candidates.clone();
+		int k = Math.min(Math.max(n, 0), res.length);
+		// partial Fisher-Yates shuffle of the first k slots
+		for (int i = 0; i < k; i++) {
+			int j = i + rand.nextInt(res.length - i);
+			peers.Peer p = res[i];
+			res[i] = res[j];
+			res[j] = p;
+		}
+		return Arrays.copyOf(res, k);
+	}
+}
@@ -22,16 +22,16 @@ public class RandomPeerSelector implements PeerSelector {
 	}
 
 	public peers.Peer next() {
-		Peer[] selectablePeers = peers.toPeerSlice();
+		return next(1)[0];
+	}
+
+	public peers.Peer[] next(int n) {
+		Peer[] selectablePeers = PeerSelector.excludeLocal(peers, localAddr);
 
-		if (selectablePeers.length > 1) {
-			selectablePeers = peers.excludePeer(selectablePeers, localAddr).peers;
-			if (selectablePeers.length > 1) {
-				selectablePeers = peers.excludePeer(selectablePeers, last).peers;
-			}
+		if (selectablePeers.length > n) {
+			selectablePeers = peers.excludePeer(selectablePeers, last).peers;
 		}
 
-		int i = Utils.random().nextInt(selectablePeers.length);
-		return selectablePeers[i];
+		return PeerSelector.pick(selectablePeers, n, Utils.random());
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,206 @@
+package node;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import common.RResult;
+import peers.Peer;
+
+/**
+ * ScoringPeerSelector prefers the peers expected to bring the most new events
+ * per millisecond.
+ *
+ * It keeps, for every peer, moving averages of the round trip time of syncs,
+ * of their failure rate and of the lag of our known events behind theirs. A
+ * peer scores (lag + 1) / (rtt + 1) * (1 - failure rate). Peers which have not
+ * been synced with yet come first; otherwise the best scoring peers are chosen,
+ * except for a fraction of the selections which picks peers at random, so that
+ * the scores of the other peers stay up to date.
+ *
+ * Like SmartPeerSelector, it always skips the local peer, and skips the last
+ * peer gossiped with and the peers flagged in the flag table of an
+ * undetermined event as long as enough peers remain. The candidate and score arrays are reused between
+ * selections.
+ */
+public class ScoringPeerSelector implements PeerSelector {
+	static final double WEIGHT = 0.2;   // weight of the last sync in the moving averages
+	static final double EXPLORE = 0.1;  // fraction of the selections made at random
+
+	// score is what we know about a peer
+	static final class score {
+		boolean synced;      // at least one sync completed
+		double rttMillis;    // mean round trip time
+		double failures;     // mean failure rate
+		double lag;          // mean number of events the peer knew and we did not, or sent us
+
+		double value() {
+			if (!synced) {
+				return Double.POSITIVE_INFINITY;
+			}
+			return (lag + 1) / (rttMillis + 1) * (1 - failures);
+		}
+	}
+
+	peers.Peers peers;
+	String localAddr;
+	String last;
+
+	FlagtableContainer flagTable;
+
+	private Random rand;
+	private final Map<String,score> scores;  // [net addr] => score
+
+	// reused between selections
+	private Peer[] slice;        // the peer slice the arrays were built for
+	private Peer[] candidates;
+	private boolean[] excluded;
+	private double[] values;
+
+	public ScoringPeerSelector(peers.Peers participants,
+		String localAddr, FlagtableContainer GetFlagTable) {
+
+		this.localAddr = localAddr;
+		this.peers =     participants;
+		this.flagTable = GetFlagTable;
+		this.scores =    new HashMap<String,score>();
+
+		this.rand = new Random();
+		this.rand.setSeed(System.currentTimeMillis());
+	}
+
+	public peers.Peers peers() {
+		return peers;
+	}
+
+	public synchronized void updateLast(String peer) {
+		last = peer;
+	}
+
+	public synchronized void updateSync(String peer, Duration rtt, int events, long lag) {
+		score s = scoreOf(peer);
+		observe(s, rtt, Math.max(events, lag));
+		s.failures -= WEIGHT * s.failures;
+	}
+
+	public synchronized void updateFailure(String peer, Duration elapsed) {
+		score s = scoreOf(peer);
+		observe(s, elapsed, 0);
+		s.failures += WEIGHT * (1 - s.failures);
+	}
+
+	// observe adds a sync to the moving averages of a peer; a failed sync
+	// counts as a sync lasting until the failure and bringing nothing
+	private void observe(score s, Duration rtt, double lag) {
+		double millis = rtt.toNanos() / 1e6;
+		if (!s.synced) {
+			s.synced = true;
+			s.rttMillis = millis;
+			s.lag = lag;
+		} else {
+			s.rttMillis += WEIGHT * (millis - s.rttMillis);
+			s.lag += WEIGHT * (lag - s.lag);
+		}
+	}
+
+	private score scoreOf(String peer) {
+		score s = scores.get(peer);
+		if (s == null) {
+			s = new score();
+			scores.put(peer, s);
+		}
+		return s;
+	}
+
+	public peers.Peer next() {
+		return next(1)[0];
+	}
+
+	public synchronized peers.Peer[] next(int n) {
+		Peer[] all = peers.toPeerSlice();
+		if (all != slice) {
+			slice = all;
+			candidates = new Peer[all.length];
+			excluded = new boolean[all.length];
+			values = new double[all.length];
+		}
+
+		// the local peer is excluded as long as another peer remains, the
+		// other exclusions as long as more than n peers remain
+		int count = all.length;
+		Arrays.fill(excluded, false);
+		count = exclude(all, localAddr, 1, count);
+		count = exclude(all, last, n, count);
+		if (count > n) {
+			RResult<Map<String, Long>> ftRes = flagTable == null ? null : flagTable.getFlagTable();
+			if (ftRes != null && ftRes.err == null && ftRes.result != null) {
+				for (Map.Entry<String, Long> e : ftRes.result.entrySet()) {
+					if (e.getValue() == 1) {
+						count = exclude(all, e.getKey(), n, count);
+					}
+				}
+			}
+		}
+
+		int k = 0;
+		for (int i = 0; i < all.length; i++) {
+			if (!excluded[i]) {
+				values[k] = valueOf(all[i]);
+				candidates[k++] = all[i];
+			}
+		}
+		int size = Math.min(Math.max(n, 0), k);
+		Peer[] res = new Peer[size];
+		for (int i = 0; i < size; i++) {
+			// the best remaining candidate, or a random one; ties go to the random one
+			int pick = i + rand.nextInt(k - i);
+			if (rand.nextDouble() >= EXPLORE) {
+				for (int j = i; j < k; j++) {
+					if (values[j] > values[pick]) {
+						pick = j;
+					}
+				}
+			}
+			swap(i, pick);
+			res[i] = candidates[i];
+		}
+		return res;
+	}
+
+	private void swap(int i, int j) {
+		Peer p = candidates[i];
+		candidates[i] = candidates[j];
+		candidates[j] = p;
+		double v = values[i];
+		values[i] = values[j];
+		values[j] = v;
+	}
+
+	// exclude excludes the peers matching peer, unless no more than n peers
+	// would remain. It returns the number of peers left.
+	private int exclude(Peer[] all, String peer, int n, int count) {
+		if (peer == null || count <= n) {
+			return count;
+		}
+		for (int i = 0; i < all.length && count > n; i++) {
+			if (!excluded[i] && (all[i].getNetAddr().equals(peer) || all[i].getPubKeyHex().equals(peer))) {
+				excluded[i] = true;
+				count--;
+			}
+		}
+		return count;
+	}
+
+	private double valueOf(Peer p) {
+		score s = scores.get(p.getNetAddr());
+		return s == null ? Double.POSITIVE_INFINITY : s.value();
+	}
+
+	// score returns the score of a peer, for tests and stats
+	synchronized double score(String peer) {
+		score s = scores.get(peer);
+		return s == null ? Double.POSITIVE_INFINITY : s.value();
+	}
+}
@@ -38,31 +38,31 @@ public class SmartPeerSelector implements PeerSelector {
 	}
 
 	public peers.Peer next() {
-		Peer[] selectablePeers = peers.toPeerSlice();
-		if (selectablePeers.length > 1) {
-			selectablePeers = peers.excludePeer(selectablePeers, localAddr).peers;
+		return next(1)[0];
+	}
+
+	public peers.Peer[] next(int n) {
+		Peer[] selectablePeers = PeerSelector.excludeLocal(peers, localAddr);
 
-			if (selectablePeers.length > 1) {
-				selectablePeers = peers.excludePeer(selectablePeers, last).peers;
-				if (selectablePeers.length > 1) {
-					RResult<Map<String, Long>> ftRes = flagTable.getFlagTable();
+		if (selectablePeers.length > n) {
+			selectablePeers = peers.excludePeer(selectablePeers, last).peers;
+			if (selectablePeers.length > n) {
+				RResult<Map<String, Long>> ftRes = flagTable.getFlagTable();
 
-					if (ftRes.err == null) {
-						Map<String, Long> ft = ftRes.result;
-						if (ft != null) {
-							for (String id : ft.keySet()) {
-								long flag = ft.get(id);
-								if (flag == 1 && selectablePeers.length > 1) {
-									// TODO: check it
-									selectablePeers = peers.excludePeer(selectablePeers, id).peers;
-								}
+				if (ftRes.err == null) {
+					Map<String, Long> ft = ftRes.result;
+					if (ft != null) {
+						for (String id : ft.keySet()) {
+							long flag = ft.get(id);
+							if (flag == 1 && selectablePeers.length > n) {
+								// TODO: check it
+								selectablePeers = peers.excludePeer(selectablePeers, id).peers;
 							}
 						}
 					}
 				}
 			}
 		}
-		int i = rand.nextInt(selectablePeers.length);
-		return selectablePeers[i];
+		return PeerSelector.pick(selectablePeers, n, rand);
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,255 @@
+package node;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import common.error;
+
+/**
+ * TransactionPool queues the transactions submitted to a node until they are
+ * packed into self events.
+ *
+ * Any thread may add transactions, without holding the core lock: they go to
+ * a lock-free queue. A single consumer, the thread creating self events under
+ * the core lock, drains them in batches bounded by a number of transactions
+ * and a number of bytes.
+ *
+ * The pool is unbounded by default. With a capacity, add waits up to a
+ * timeout for room, and fails once it expires: a timeout of zero rejects
+ * transactions as soon as the pool is full. offer never waits, for the
+ * callers which hold transactions back while the pool is full instead.
+ */
+public class TransactionPool {
+	// pending is a queued transaction and the time it was queued at
+	static class pending {
+		final byte[] tx;
+		final long queued;
+
+		pending(byte[] tx, long queued) {
+			this.tx = tx;
+			this.queued = queued;
+		}
+	}
+
+	private final ConcurrentLinkedQueue<pending> queue;
+	private final ArrayDeque<pending> putBack; // consumer only: put back from an unused batch
+	private pending[] last = new pending[0];   // consumer only: the last drained batch
+	private long lastWaitNanos;                // consumer only: time the last batch spent in the pool
+	private final AtomicInteger size;
+	private final AtomicLong bytes;
+
+	private volatile Semaphore room;           // null when unbounded
+	private volatile long timeoutNanos;
+
+	// metrics, updated by the consumer
+	private volatile long drained;             // number of transactions drained
+	private volatile long totalWaitNanos;      // time they spent in the pool
+	private volatile long maxWaitNanos;        // longest time one of them spent in the pool
+	private final AtomicLong rejected;         // number of transactions refused when full
+
+	public TransactionPool() {
+		this.queue = new ConcurrentLinkedQueue<pending>();
+		this.putBack = new ArrayDeque<pending>();
+		this.size = new AtomicInteger();
+		this.bytes = new AtomicLong();
+		this.rejected = new AtomicLong();
+	}
+
+	/**
+	 * setCapacity bounds the number of queued transactions. A capacity lower than
+	 * 1 makes the pool unbounded. It must be called before the pool is used.
+	 * @param capacity
+	 * @param timeout how long add waits for room
+	 */
+	public void setCapacity(int capacity, Duration timeout) {
+		room = capacity > 0 ? new Semaphore(Math.max(capacity - size.get(), 0)) : null;
+		timeoutNanos = timeout == null ? 0 : timeout.toNanos();
+	}
+
+	/**
+	 * add queues tx. It returns an error if the pool stayed full for the
+	 * whole timeout.
+	 * @param tx
+	 * @return
+	 */
+	public error add(byte[] tx) {
+		return add(tx, timeoutNanos);
+	}
+
+	/**
+	 * offer queues tx if the pool has room, without waiting. It returns an
+	 * error if the pool is full.
+	 * @param tx
+	 * @return
+	 */
+	public error offer(byte[] tx) {
+		return add(tx, 0);
+	}
+
+	private error add(byte[] tx, long timeoutNanos) {
+		Semaphore room = this.room;
+		if (room != null) {
+			boolean acquired;
+			try {
+				acquired = timeoutNanos > 0
+					? room.tryAcquire(timeoutNanos, TimeUnit.NANOSECONDS)
+					: room.tryAcquire();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				acquired = false;
+			}
+			if (!acquired) {
+				rejected.incrementAndGet();
+				return error.Errorf("transaction pool is full");
+			}
+		}
+		size.incrementAndGet();
+		bytes.addAndGet(tx.length);
+		queue.add(new pending(tx, System.nanoTime()));
+		return null;
+	}
+
+	/**
+	 * addAll queues txs, stopping at the first one that does not fit
+	 * @param txs
+	 * @return
+	 */
+	public error addAll(byte[][] txs) {
+		for (byte[] tx : txs) {
+			error err = add(tx);
+			if (err != null) {
+				return err;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * drain removes and returns the oldest transactions, at most maxCount of them
+	 * and at most maxBytes bytes. The first transaction is always taken, even if
+	 * it is larger than maxBytes, so that it does not stay stuck in the pool.
+	 * Only the consumer may call it.
+	 * @param maxCount
+	 * @param maxBytes
+	 * @return
+	 */
+	public byte[][] drain(int maxCount, long maxBytes) {
+		List<pending> batch = new ArrayList<pending>(Math.min(Math.max(maxCount, 0), size.get()));
+		long batchBytes = 0;
+		long now = System.nanoTime();
+		long wait = 0, longest = maxWaitNanos;
+		while (batch.size() < maxCount) {
+			pending p = putBack.peekFirst();
+			if (p == null) {
+				p = queue.peek();
+			}
+			if (p == null || (!batch.isEmpty() && batchBytes + p.tx.length > maxBytes)) {
+				break;
+			}
+			if (putBack.pollFirst() == null) {
+				queue.poll();
+			}
+			batch.add(p);
+			batchBytes += p.tx.length;
+			wait += now - p.queued;
+			longest = Math.max(longest, now - p.queued);
+		}
+
+		int n = batch.size();
+		last = batch.toArray(new pending[n]);
+		lastWaitNanos = wait;
+		if (n > 0) {
+			size.addAndGet(-n);
+			bytes.addAndGet(-batchBytes);
+			drained += n;
+			totalWaitNanos += wait;
+			maxWaitNanos = longest;
+			Semaphore room = this.room;
+			if (room != null) {
+				room.release(n);
+			}
+		}
+		byte[][] txs = new byte[n][];
+		for (int i = 0; i < n; i++) {
+			txs[i] = last[i].tx;
+		}
+		return txs;
+	}
+
+	/**
+	 * unDrain puts the last drained batch back at the head of the pool, when it
+	 * could not be used. Only the consumer may call it.
+	 */
+	public void unDrain() {
+		long batchBytes = 0;
+		for (int i = last.length - 1; i >= 0; i--) {
+			putBack.addFirst(last[i]);
+			batchBytes += last[i].tx.length;
+		}
+		size.addAndGet(last.length);
+		bytes.addAndGet(batchBytes);
+		drained -= last.length;
+		totalWaitNanos -= lastWaitNanos;
+		// producers may have taken the room back already: the pool then goes over
+		// its capacity for a while, rather than block the consumer
+		Semaphore room = this.room;
+		if (room != null) {
+			for (int i = 0; i < last.length && room.tryAcquire(); i++) {
+			}
+		}
+		last = new pending[0];
+		lastWaitNanos = 0;
+	}
+
+	public boolean isEmpty() {
+		return size.get() == 0;
+	}
+
+	// room returns the number of transactions the pool takes without waiting,
+	// Integer.MAX_VALUE when it is unbounded
+	public int room() {
+		Semaphore room = this.room;
+		return room != null ? room.availablePermits() : Integer.MAX_VALUE;
+	}
+
+	// size returns the number of queued transactions
+	public int size() {
+		return size.get();
+	}
+
+	// bytes returns the number of bytes of the queued transactions
+	public long bytes() {
+		return bytes.get();
+	}
+
+	// rejected returns the number of transactions refused because the pool was full
+	public long rejected() {
+		return rejected.get();
+	}
+
+	// meanWait returns the mean time the drained transactions spent in the pool
+	public Duration meanWait() {
+		long n = drained;
+		return n > 0 ? Duration.ofNanos(totalWaitNanos / n) : Duration.ZERO;
+	}
+
+	// maxWait returns the longest time a drained transaction spent in the pool
+	public Duration maxWait() {
+		return Duration.ofNanos(maxWaitNanos);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append("TransactionPool [size=").append(size()).append(", bytes=").append(bytes())
+			.append(", rejected=").append(rejected()).append("]");
+		return builder.toString();
+	}
+}
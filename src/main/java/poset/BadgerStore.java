@@ -1,10 +1,21 @@
 package poset;
 
 import java.io.File;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
 
 import org.mapdb.DB;
 import org.mapdb.DBMaker;
@@ -32,6 +43,10 @@ public class BadgerStore implements Store {
 	public static final String topoPrefix        = "topo";
 	public static final String blockPrefix       = "block";
 	public static final String framePrefix       = "frame";
+	public static final String anchorKey         = "bootstrap_anchor";
+
+	//number of Events read at once when scanning the topological index
+	public static final int TOPOLOGICAL_CHUNK_SIZE = 1000;
 
 	private static final Logger logger = Logger.getLogger(BadgerStore.class);
 
@@ -41,6 +56,19 @@ public class BadgerStore implements Store {
 	String path;
 	boolean needBoostrap;
 
+	//write-behind, see SetWriteBehind
+	int maxUnflushed;                  //0 when every write is committed at once
+	Map<String,Event> pendingEvents;   //[event hex] => Event, in insertion order
+	Map<Long,RoundInfo> pendingRounds; //[round index] => RoundInfo
+	long[] pendingAnchor;              //[block index, topological index]
+	Lock pendingLock;
+	ScheduledExecutorService flusher;
+
+	//writeLock serialises the db writes and commits, so that a commit never
+	//takes in the half-written batch of another thread. It is taken after
+	//pendingLock.
+	Lock writeLock;
+
 	public BadgerStore() {
 		super();
 		this.participants = null;
@@ -165,6 +193,85 @@ public class BadgerStore implements Store {
 		return new RResult<BadgerStore>(store, null);
 	}
 
+	/**
+	 * SetWriteBehind makes the store queue the Events and Rounds it persists and
+	 * write them to the database as a single transaction, once maxUnflushed
+	 * Events are pending or every flushInterval. The InmemStore still serves
+	 * the reads, and at most maxUnflushed Events are lost on a crash.
+	 * A maxUnflushed lower than 2 commits every write at once.
+	 * @param maxUnflushed
+	 * @param flushInterval
+	 * @return
+	 */
+	public error SetWriteBehind(int maxUnflushed, Duration flushInterval) {
+		error err = flush();
+		if (err != null) {
+			return err;
+		}
+		if (flusher != null) {
+			flusher.shutdown();
+			flusher = null;
+		}
+
+		this.maxUnflushed = maxUnflushed > 1 ? maxUnflushed : 0;
+		if (this.maxUnflushed > 0 && flushInterval != null && !flushInterval.isZero()) {
+			flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread t = new Thread(r, "badger-store-flusher");
+				t.setDaemon(true);
+				return t;
+			});
+			long interval = flushInterval.toMillis();
+			flusher.scheduleWithFixedDelay(() -> {
+				error flushErr = flush();
+				if (flushErr != null) {
+					logger.field("error", flushErr).error("BadgerStore flush failed");
+				}
+			}, interval, interval, TimeUnit.MILLISECONDS);
+		}
+		return null;
+	}
+
+	/**
+	 * Flush writes the pending Events and Rounds in a single transaction. If it
+	 * fails, the transaction is rolled back and they stay pending.
+	 * @return
+	 */
+	public error flush() {
+		pendingLock.lock();
+		try {
+			if (pendingEvents.isEmpty() && pendingRounds.isEmpty() && pendingAnchor == null) {
+				return null;
+			}
+
+			error err = commit(() -> {
+				error putErr = putEvents(pendingEvents.values().toArray(new Event[0]));
+				if (putErr != null) {
+					return putErr;
+				}
+				for (Map.Entry<Long,RoundInfo> e : pendingRounds.entrySet()) {
+					putErr = putRound(e.getKey(), e.getValue());
+					if (putErr != null) {
+						return putErr;
+					}
+				}
+				if (pendingAnchor != null) {
+					putBootstrapAnchor(pendingAnchor[0], pendingAnchor[1]);
+				}
+				return null;
+			});
+			if (err != null) {
+				return err;
+			}
+
+			pendingEvents.clear();
+			pendingRounds.clear();
+			pendingAnchor = null;
+			return null;
+		} finally {
+			pendingLock.unlock();
+		}
+	}
+
 	//==============================================================================
 	//Keys
 
@@ -216,7 +323,18 @@ public class BadgerStore implements Store {
 		RResult<Event> getEvent = inmemStore.getEvent(key);
 		Event event = getEvent.result;
 		error err = getEvent.err;
-		//if not in cache, try to get it from db
+		//if not in cache, try the pending writes then the db
+		if (err != null && maxUnflushed > 0) {
+			pendingLock.lock();
+			try {
+				Event pending = pendingEvents.get(key);
+				if (pending != null) {
+					return new RResult<Event>(pending, null);
+				}
+			} finally {
+				pendingLock.unlock();
+			}
+		}
 		if (err != null) {
 			RResult<Event> dbGetEventCall = dbGetEvent(key);
 			event = dbGetEventCall.result;
@@ -232,6 +350,18 @@ public class BadgerStore implements Store {
 			return err;
 		}
 		//try to add it to the db
+		if (maxUnflushed > 0) {
+			pendingLock.lock();
+			try {
+				pendingEvents.put(event.hex(), event);
+				if (pendingEvents.size() < maxUnflushed) {
+					return null;
+				}
+			} finally {
+				pendingLock.unlock();
+			}
+			return flush();
+		}
 		return dbSetEvents(new Event[]{event});
 	}
 
@@ -240,6 +370,11 @@ public class BadgerStore implements Store {
 		String[] res = participantEventsCall.result;
 		error err = participantEventsCall.err;
 		if (err != null) {
+			//the db has to see the pending writes
+			err = flush();
+			if (err != null) {
+				return new RResult<String[]>(null, err);
+			}
 			RResult<String[]> dbParticipantEventsCall = dbParticipantEvents(participant, skip);
 			res = dbParticipantEventsCall.result;
 			err = dbParticipantEventsCall.err;
@@ -252,6 +387,10 @@ public class BadgerStore implements Store {
 		String result = participantEventCall.result;
 		error err = participantEventCall.err;
 		if (err != null) {
+			err = flush();
+			if (err != null) {
+				return new RResult<String>("", err);
+			}
 			RResult<String> dbParticipantEventCall = dbParticipantEvent(participant, index);
 			result = dbParticipantEventCall.result;
 			err = dbParticipantEventCall.err;
@@ -316,6 +455,17 @@ public class BadgerStore implements Store {
 		RResult<RoundInfo> getRound = inmemStore.getRound(r);
 		RoundInfo res = getRound.result;
 		error err = getRound.err;
+		if (err != null && maxUnflushed > 0) {
+			pendingLock.lock();
+			try {
+				RoundInfo pending = pendingRounds.get(r);
+				if (pending != null) {
+					return new RResult<RoundInfo>(pending, null);
+				}
+			} finally {
+				pendingLock.unlock();
+			}
+		}
 		if (err != null) {
 			RResult<RoundInfo> dbGetRoundCall = dbGetRound(r);
 			res = dbGetRoundCall.result;
@@ -329,6 +479,15 @@ public class BadgerStore implements Store {
 		if (err != null) {
 			return err;
 		}
+		if (maxUnflushed > 0) {
+			pendingLock.lock();
+			try {
+				pendingRounds.put(r, round);
+			} finally {
+				pendingLock.unlock();
+			}
+			return null;
+		}
 		return dbSetRound(r, round);
 	}
 
@@ -417,11 +576,24 @@ public class BadgerStore implements Store {
 	}
 
 	public error close() {
-		error err = inmemStore.close();
+		if (flusher != null) {
+			flusher.shutdown();
+			flusher = null;
+		}
+		error err = flush();
+		if (err != null) {
+			return err;
+		}
+		err = inmemStore.close();
 		if (err != null){
 			return err;
 		}
-		db.close();
+		writeLock.lock();
+		try {
+			db.close();
+		} finally {
+			writeLock.unlock();
+		}
 		return null;
 	}
 
@@ -445,6 +617,11 @@ public class BadgerStore implements Store {
 	private ConcurrentNavigableMap<byte[],byte[]> frameMap;
 
 	private void initDBMaps() {
+		pendingEvents = new LinkedHashMap<String,Event>();
+		pendingRounds = new TreeMap<Long,RoundInfo>();
+		pendingLock = new ReentrantLock();
+		writeLock = new ReentrantLock();
+
 		eventMap = db.treeMap("events_map", Serializer.BYTE_ARRAY, Serializer.BYTE_ARRAY).createOrOpen();
 		participantMap = db.treeMap("participants_map", Serializer.BYTE_ARRAY, Serializer.BYTE_ARRAY).createOrOpen();
 		participantEventMap = db.treeMap("participants_event", Serializer.BYTE_ARRAY, Serializer.BYTE_ARRAY).createOrOpen();
@@ -486,6 +663,38 @@ public class BadgerStore implements Store {
 		// TODO why tx.Discard? how to convert.
 //		tx = db.NewTransaction(true);
 //		defer tx.Discard();
+		return commit(() -> putEvents(events));
+	}
+
+	/**
+	 * commit makes the writes of put and commits them as one transaction. The
+	 * writes are rolled back if put fails, and no other thread writes to the db
+	 * in the meantime.
+	 * @param put writes to the db maps without committing
+	 * @return
+	 */
+	private error commit(Supplier<error> put) {
+		writeLock.lock();
+		try {
+			error err;
+			try {
+				err = put.get();
+			} catch (RuntimeException e) {
+				err = error.Errorf(String.valueOf(e.getMessage()));
+			}
+			if (err != null) {
+				db.rollback();
+				return err;
+			}
+			db.commit();
+			return null;
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	//putEvents writes events to the db maps without committing
+	private error putEvents(Event[] events) {
 		for (Event event : events) {
 			String eventHex = event.hex();
 			//logger.field("eventHex", eventHex).debug("dbSetEvents()");
@@ -509,51 +718,72 @@ public class BadgerStore implements Store {
 			//logger.field("topoKey", new String(peKey)).debug("dbSetEvents()");
 			eventMap.put(peKey, eventBytes);
 		}
-
-		db.commit();
 		return null;
 	}
 
+	/**
+	 * dbTopologicalEvents returns all the Events of the database, in
+	 * topological order
+	 * @return
+	 */
 	public RResult<Event[]> dbTopologicalEvents() {
-		Event[] res = null;
+		ArrayList<Event> res = new ArrayList<Event>();
 		long t = 0;
+		while (true) {
+			RResult<Event[]> chunkCall = dbTopologicalEvents(t, TOPOLOGICAL_CHUNK_SIZE);
+			Event[] chunk = chunkCall.result;
+			error err = chunkCall.err;
+			if (err != null) {
+				return new RResult<Event[]>(null, err);
+			}
+			if (chunk.length == 0) {
+				break;
+			}
+			res.addAll(Arrays.asList(chunk));
+			t += chunk.length;
+		}
 
-		error err = null;
-		byte[] key;
-		byte[] item;
-		while (err == null) {
-			key = topologicalEventKey(t);
-			item = eventMap.get(key);
+		//logger.field("res", res).debug("dbTopologicalEvents()");
+		return new RResult<Event[]>(res.isEmpty() ? null : res.toArray(new Event[res.size()]), null);
+	}
 
-			//logger.field("key", new String(key)).field("item", Arrays.toString(item)).field("t",t).debug("dbTopologicalEvents");
-			if (item == null) {
-				err = StoreErr.newStoreErr("Event", StoreErrType.KeyNotFound, Arrays.toString(item));
+	/**
+	 * dbTopologicalEvents returns at most count Events, in topological order,
+	 * starting from topological index start. The scan stops at the first gap in
+	 * the topological index, so an empty result marks its end.
+	 * @param start
+	 * @param count
+	 * @return
+	 */
+	public RResult<Event[]> dbTopologicalEvents(long start, int count) {
+		ArrayList<Event> res = new ArrayList<Event>();
+
+		//[topo_index] keys are zero-padded, so a key range is an index range
+		Map<byte[],byte[]> topoRange = eventMap.subMap(
+			topologicalEventKey(start), true, topologicalEventKey(start + count), false);
+		long t = start;
+		for (Map.Entry<byte[],byte[]> entry : topoRange.entrySet()) {
+			if (!Arrays.equals(entry.getKey(), topologicalEventKey(t))) {
 				break;
 			}
+			byte[] item = entry.getValue();
 			byte[] eventBytes = eventMap.get(item);
 			//logger.field("eventBytes", eventBytes).debug("dbTopologicalEvents");
 			if (eventBytes == null) {
-				err = StoreErr.newStoreErr("Event", StoreErrType.KeyNotFound, Arrays.toString(item));
-				break;
+				error err = StoreErr.newStoreErr("Event", StoreErrType.KeyNotFound, new String(item));
+				return new RResult<Event[]>(null, err);
 			}
 
 			Event event = new Event();
-			err = event.marshaller().protoUnmarshal(eventBytes);
+			error err = event.marshaller().protoUnmarshal(eventBytes);
 			if (err != null){
-				break;
+				return new RResult<Event[]>(null, err);
 			}
-			res = Appender.append(res, event);
-
+			res.add(event);
 			t++;
 		}
 
-		if (isDBKeyNotFound(err)) {
-			//logger.field("err", err).debug("DBKeyNotFound");
-			return new RResult<Event[]>(res, null);
-		}
-
-		//logger.field("res", res).field("err", err).debug("dbTopologicalEvents()");
-		return new RResult<Event[]>(res, err);
+		return new RResult<Event[]>(res.toArray(new Event[res.size()]), null);
 	}
 
 	public  RResult<String[]> dbParticipantEvents(String participant, long skip) {
@@ -600,22 +830,22 @@ public class BadgerStore implements Store {
 	}
 
 	public error dbSetRoots(Map<String,Root> roots) {
-		for (String participant : roots.keySet()) {
-			Root root = roots.get(participant);
-			RResult<byte[]> rootMarshal = root.marshaller().protoMarshal();
-			byte[] val = rootMarshal.result;
-			error err = rootMarshal.err;
-			if (err != null) {
-				return err;
+		return commit(() -> {
+			for (String participant : roots.keySet()) {
+				Root root = roots.get(participant);
+				RResult<byte[]> rootMarshal = root.marshaller().protoMarshal();
+				byte[] val = rootMarshal.result;
+				error err = rootMarshal.err;
+				if (err != null) {
+					return err;
+				}
+				byte[] key = participantRootKey(participant);
+//				fmt.Println("Setting root", participant, "->", key)
+				//insert [participant_root] => [root bytes]
+				participantRootMap.put(key, val);
 			}
-			byte[] key = participantRootKey(participant);
-//			fmt.Println("Setting root", participant, "->", key)
-			//insert [participant_root] => [root bytes]
-			participantRootMap.put(key, val);
-		}
-
-		db.commit();
-		return null;
+			return null;
+		});
 	}
 
 	public RResult<Root> dbGetRoot(String participant) {
@@ -663,6 +893,11 @@ public class BadgerStore implements Store {
 	}
 
 	public error dbSetRound(long index , RoundInfo round ) {
+		return commit(() -> putRound(index, round));
+	}
+
+	//putRound writes a round to the db map without committing
+	private error putRound(long index , RoundInfo round ) {
 		byte[] key = roundKey(index);
 		RResult<byte[]> protoMarshal = round.marshaller().protoMarshal();
 		byte[] val = protoMarshal.result;
@@ -673,7 +908,6 @@ public class BadgerStore implements Store {
 
 		//insert [round_index] => [round bytes]
 		roundMap.put(key, val);
-		db.commit();
 		return null;
 	}
 
@@ -699,14 +933,19 @@ public class BadgerStore implements Store {
 	}
 
 	public error dbSetParticipants(peers.Peers participants)  {
-		for (String participant : participants.getByPubKey().keySet()) {
-			Peer id = participants.getByPubKey().get(participant);
-			byte[] key = participantKey(participant);
-			byte[] value = String.valueOf(id.getID()).getBytes();
-			//logger.field("key", new String(key)).field("value", new String(value)).debug("dbSetParticipants()");
-
-			//insert [participant_participant] => [id]
-			participantMap.put(key, value);
+		writeLock.lock();
+		try {
+			for (String participant : participants.getByPubKey().keySet()) {
+				Peer id = participants.getByPubKey().get(participant);
+				byte[] key = participantKey(participant);
+				byte[] value = String.valueOf(id.getID()).getBytes();
+				//logger.field("key", new String(key)).field("value", new String(value)).debug("dbSetParticipants()");
+
+				//insert [participant_participant] => [id]
+				participantMap.put(key, value);
+			}
+		} finally {
+			writeLock.unlock();
 		}
 
 //		db.commit();
@@ -742,10 +981,60 @@ public class BadgerStore implements Store {
 		}
 
 		//insert [index] => [block bytes]
-		blockMap.put(key, val);
+		return commit(() -> {
+			blockMap.put(key, val);
+			return null;
+		});
+	}
 
-		db.commit();
-		return null;
+	/**
+	 * dbGetBootstrapAnchor returns the index of the Block Bootstrap can reset
+	 * the Poset from, and the topological index of the first Event to replay
+	 * on top of it.
+	 * @return
+	 */
+	public RResult3<Long,Long> dbGetBootstrapAnchor() {
+		byte[] anchorBytes = blockMap.get(anchorKey.getBytes());
+		if (anchorBytes == null) {
+			error err = StoreErr.newStoreErr("Anchor", StoreErrType.KeyNotFound, anchorKey);
+			return new RResult3<Long,Long>(-1L, -1L, err);
+		}
+		ByteBuffer buf = ByteBuffer.wrap(anchorBytes);
+		long blockIndex = buf.getLong();
+		long topologicalIndex = buf.getLong();
+		return new RResult3<Long,Long>(blockIndex, topologicalIndex, null);
+	}
+
+	/**
+	 * dbSetBootstrapAnchor records the Block Bootstrap can reset the Poset
+	 * from. Every Event with a lower topological index must belong to the Frame
+	 * of this Block or to an earlier one. With write-behind, the anchor is
+	 * written in the same transaction as the pending Events.
+	 * @param blockIndex
+	 * @param topologicalIndex
+	 * @return
+	 */
+	public error dbSetBootstrapAnchor(long blockIndex, long topologicalIndex) {
+		pendingLock.lock();
+		try {
+			if (maxUnflushed > 0) {
+				pendingAnchor = new long[] {blockIndex, topologicalIndex};
+				return null;
+			}
+		} finally {
+			pendingLock.unlock();
+		}
+
+		return commit(() -> {
+			putBootstrapAnchor(blockIndex, topologicalIndex);
+			return null;
+		});
+	}
+
+	private void putBootstrapAnchor(long blockIndex, long topologicalIndex) {
+		ByteBuffer buf = ByteBuffer.allocate(2 * Long.BYTES);
+		buf.putLong(blockIndex).putLong(topologicalIndex);
+		blockMap.put(anchorKey.getBytes(), buf.array());
 	}
 
 	public RResult<Frame> dbGetFrame(long index) {
@@ -777,9 +1066,10 @@ public class BadgerStore implements Store {
 		}
 
 		//insert [index] => [frame bytes]
-		frameMap.put(key, val);
-		db.commit();
-		return null;
+		return commit(() -> {
+			frameMap.put(key, val);
+			return null;
+		});
 	}
 
 	//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
@@ -798,6 +1088,10 @@ public class BadgerStore implements Store {
 	}
 
 	public RResult<Event[]> topologicalEvents() {
+		error err = flush();
+		if (err != null) {
+			return new RResult<Event[]>(null, err);
+		}
 		return dbTopologicalEvents();
 	}
 }
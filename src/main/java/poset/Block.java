@@ -240,6 +240,12 @@ public class Block {
 	}
 
 	public RResult<Boolean> verify(BlockSignature sig) {
+		return verify(sig, null);
+	}
+
+	// verify checks sig with the pre-decoded keys of verifier, or with a freshly
+	// decoded key when verifier is null.
+	public RResult<Boolean> verify(BlockSignature sig, crypto.VerifyContext verifier) {
 		RResult<byte[]> hash2 = body.hash();
 		byte[] signBytes = hash2.result;
 		error err = hash2.err;
@@ -247,8 +253,6 @@ public class Block {
 			return new RResult<Boolean>(false, err);
 		}
 
-		PublicKey pubKey = crypto.Utils.ToECDSAPub(sig.validator);
-
 		RResult3<BigInteger, BigInteger> decodeSignature = crypto.Utils.DecodeSignature(sig.signature);
 		BigInteger r = decodeSignature.result1;
 		BigInteger s = decodeSignature.result2;
@@ -257,6 +261,10 @@ public class Block {
 			return new RResult<Boolean>(false, err);
 		}
 
+		if (verifier != null) {
+			return new RResult<Boolean>(verifier.verify(sig.validator, signBytes, r, s), null);
+		}
+		PublicKey pubKey = crypto.Utils.ToECDSAPub(sig.validator);
 		return new RResult<Boolean>(crypto.Utils.Verify(pubKey, signBytes, r, s), null);
 	}
 
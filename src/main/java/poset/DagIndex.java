@@ -0,0 +1,264 @@
+package poset;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import poset.proto.Trilean;
+
+/**
+ * DagIndex is an in-memory index of the Events inserted in a Poset.
+ *
+ * Every Event gets a dense int id and a vector clock which holds, for every
+ * participant, the highest index of that participant's Events that are
+ * ancestors of the Event (the Event itself included). Ancestry and strongly-see
+ * queries are answered by comparing these vectors, without string keys or
+ * Store lookups.
+ *
+ * Parents which are not indexed (Roots, Events dropped by the rolling window)
+ * do not contribute to the vectors. Queries involving Events unknown to the
+ * index return Trilean.UNDEFINED so that the caller can fall back to the
+ * recursive computation.
+ */
+public class DagIndex {
+	int size;
+	int base;  // id of the oldest indexed Event
+	int count; // number of indexed Events
+
+	// [id - base] => Event data
+	String[] hashes;
+	int[] creators;
+	long[] indexes;
+	long[][] clocks;
+
+	Map<String,Integer> ids;   // [hash] => id
+	Map<String,Integer> slots; // [creator] => slot in the vector clocks
+	Chain[] chains;            // [slot] => ids of the creator's Events by index
+
+	// Chain maps the consecutive indexes of a creator's Events to their ids
+	static class Chain {
+		long first;
+		int[] ids;
+		int len;
+
+		Chain() {
+			this.first = -1;
+			this.ids = new int[16];
+			this.len = 0;
+		}
+
+		void add(long index, int id) {
+			if (len == 0 || index != first + len) {
+				first = index;
+				len = 0;
+			}
+			if (len == ids.length) {
+				ids = Arrays.copyOf(ids, 2 * len);
+			}
+			ids[len++] = id;
+		}
+
+		int get(long index) {
+			if (len == 0 || index < first || index >= first + len) {
+				return -1;
+			}
+			return ids[(int) (index - first)];
+		}
+
+		// drops the ids lower than base
+		void trim(int base) {
+			int skip = 0;
+			while (skip < len && ids[skip] < base) {
+				skip++;
+			}
+			if (skip > 0) {
+				System.arraycopy(ids, skip, ids, 0, len - skip);
+				first += skip;
+				len -= skip;
+			}
+		}
+	}
+
+	/**
+	 * Constructor
+	 * @param size the index keeps between size and 2*size Events
+	 */
+	public DagIndex(int size) {
+		this.size = Math.max(size, 1);
+		reset();
+	}
+
+	public void reset() {
+		this.base = 0;
+		this.count = 0;
+		this.hashes = new String[2 * size];
+		this.creators = new int[2 * size];
+		this.indexes = new long[2 * size];
+		this.clocks = new long[2 * size][];
+		this.ids = new HashMap<String,Integer>();
+		this.slots = new HashMap<String,Integer>();
+		this.chains = new Chain[0];
+	}
+
+	// Add indexes an Event whose parents, when known, were added before. It
+	// returns the id of the Event.
+	public int add(String hash, String creator, long index, String selfParent, String otherParent) {
+		Integer known = ids.get(hash);
+		if (known != null) {
+			return known;
+		}
+		if (count >= 2 * size) {
+			roll();
+		}
+
+		int slot = slot(creator);
+		long[] clock = new long[slots.size()];
+		Arrays.fill(clock, -1);
+		merge(clock, selfParent);
+		merge(clock, otherParent);
+		clock[slot] = index;
+
+		int id = base + count;
+		hashes[count] = hash;
+		creators[count] = slot;
+		indexes[count] = index;
+		clocks[count] = clock;
+		count++;
+
+		ids.put(hash, id);
+		chains[slot].add(index, id);
+		return id;
+	}
+
+	public int id(String hash) {
+		if (hash == null) {
+			return -1;
+		}
+		Integer id = ids.get(hash);
+		if (id == null) {
+			return -1;
+		}
+		return id;
+	}
+
+	public int len() {
+		return count;
+	}
+
+	//true if y is an ancestor of x
+	public Trilean ancestor(String x, String y) {
+		int px = position(x);
+		int py = position(y);
+		if (px < 0 || py < 0) {
+			return Trilean.UNDEFINED;
+		}
+		return toTrilean(clock(px, creators[py]) >= indexes[py]);
+	}
+
+	//true if y is a self-ancestor of x
+	public Trilean selfAncestor(String x, String y) {
+		int px = position(x);
+		int py = position(y);
+		if (px < 0 || py < 0) {
+			return Trilean.UNDEFINED;
+		}
+		return toTrilean(creators[px] == creators[py] && indexes[px] >= indexes[py]);
+	}
+
+	//true if x strongly sees y, ie. if Events from at least superMajority
+	//participants in x's ancestry see y
+	public Trilean stronglySee(String x, String y, int superMajority) {
+		int px = position(x);
+		int py = position(y);
+		if (px < 0 || py < 0) {
+			return Trilean.UNDEFINED;
+		}
+
+		int cy = creators[py];
+		long iy = indexes[py];
+		if (clock(px, cy) < iy) {
+			return Trilean.FALSE;
+		}
+
+		// the last Event of every creator seen by x is the one most likely to
+		// see y; if it does not, none of its self-ancestors does.
+		long[] cx = clocks[px];
+		int sentinels = 0;
+		for (int c = 0; c < cx.length; c++) {
+			if (cx[c] < 0) {
+				continue;
+			}
+			int w = chains[c].get(cx[c]);
+			if (w < base) {
+				return Trilean.UNDEFINED;
+			}
+			if (clock(w - base, cy) >= iy) {
+				sentinels++;
+			}
+		}
+		return toTrilean(sentinels >= superMajority);
+	}
+
+	int position(String hash) {
+		int id = id(hash);
+		if (id < base) {
+			return -1;
+		}
+		return id - base;
+	}
+
+	long clock(int position, int slot) {
+		long[] clock = clocks[position];
+		if (slot >= clock.length) {
+			return -1;
+		}
+		return clock[slot];
+	}
+
+	int slot(String creator) {
+		Integer slot = slots.get(creator);
+		if (slot == null) {
+			slot = slots.size();
+			slots.put(creator, slot);
+			chains = Arrays.copyOf(chains, slot + 1);
+			chains[slot] = new Chain();
+		}
+		return slot;
+	}
+
+	void merge(long[] clock, String parent) {
+		int p = position(parent);
+		if (p < 0) {
+			return;
+		}
+		long[] pc = clocks[p];
+		for (int i = 0; i < pc.length; i++) {
+			if (pc[i] > clock[i]) {
+				clock[i] = pc[i];
+			}
+		}
+	}
+
+	// drops the oldest half of the indexed Events
+	void roll() {
+		for (int i = 0; i < size; i++) {
+			ids.remove(hashes[i]);
+		}
+		int keep = count - size;
+		System.arraycopy(hashes, size, hashes, 0, keep);
+		System.arraycopy(creators, size, creators, 0, keep);
+		System.arraycopy(indexes, size, indexes, 0, keep);
+		System.arraycopy(clocks, size, clocks, 0, keep);
+		Arrays.fill(hashes, keep, count, null);
+		Arrays.fill(clocks, keep, count, null);
+		base += size;
+		count = keep;
+		for (Chain chain : chains) {
+			chain.trim(base);
+		}
+	}
+
+	static Trilean toTrilean(boolean b) {
+		return b ? Trilean.TRUE : Trilean.FALSE;
+	}
+}
@@ -14,7 +14,6 @@ import common.RResult;
 import common.RResult3;
 import common.error;
 import node.FlagtableContainer;
-import poset.proto.FlagTableWrapper.Builder;
 
 public class Event implements FlagtableContainer {
 	EventMessage message;
@@ -26,6 +25,8 @@ public class Event implements FlagtableContainer {
 	String creator;
 	byte[] hash;
 	String hex;
+	FlagTable flagTable; //decoded message.FlagTable
+	String verifiedSignature; //message.Signature once verify() succeeded
 
 	// NewEvent creates new block event.
 	public Event(byte[][] transactions,
@@ -59,15 +60,12 @@ public class Event implements FlagtableContainer {
 			blockSignaturePointers
 		);
 
-		Builder builder = poset.proto.FlagTableWrapper.newBuilder();
-		if (flagTable!= null) {
-			builder.putAllBody(flagTable);
-		}
-		byte[] ft = builder.build().toByteArray();
+		FlagTable ft = FlagTable.of(flagTable);
 
 		this.message = new EventMessage();
 		this.message.Body = body;
-		this.message.FlagTable = ft;
+		this.message.FlagTable = ft.encode().result;
+		this.flagTable = ft;
 
 		// TODO I added these init
 		this.round = -1;
@@ -112,6 +110,7 @@ public class Event implements FlagtableContainer {
 		this.creator = ev.creator;
 		this.hash = ev.hash;
 		this.hex = ev.hex;
+		this.flagTable = ev.flagTable;
 	}
 
 	// Round returns round of event.
@@ -182,9 +181,21 @@ public class Event implements FlagtableContainer {
 		return err;
 	}
 
+	//verify checks the signature of the Event. A successful check is remembered
+	//as long as the signature is not replaced.
 	public RResult<Boolean> verify() {
+		return verify(null);
+	}
+
+	//verify checks the signature of the Event with the pre-decoded keys of
+	//verifier, or with a freshly decoded key when verifier is null.
+	public RResult<Boolean> verify(crypto.VerifyContext verifier) {
+		String signature = message.Signature;
+		if (signature != null && signature == verifiedSignature) {
+			return new RResult<Boolean>(true, null);
+		}
+
 		byte[] pubBytes = message.Body.Creator;
-		PublicKey pubKey = crypto.Utils.ToECDSAPub(pubBytes);
 
 		RResult<byte[]> hash2 = message.Body.Hash();
 		byte[] signBytes = hash2.result;
@@ -201,7 +212,17 @@ public class Event implements FlagtableContainer {
 			return new RResult<Boolean>(false, err);
 		}
 
-		return new RResult<Boolean>(crypto.Utils.Verify(pubKey, signBytes, r, s), null);
+		boolean ok;
+		if (verifier != null) {
+			ok = verifier.verify(pubBytes, signBytes, r, s);
+		} else {
+			PublicKey pubKey = crypto.Utils.ToECDSAPub(pubBytes);
+			ok = crypto.Utils.Verify(pubKey, signBytes, r, s);
+		}
+		if (ok) {
+			verifiedSignature = signature;
+		}
+		return new RResult<Boolean>(ok, null);
 	}
 
 	//sha256 hash of body
@@ -288,17 +309,39 @@ public class Event implements FlagtableContainer {
 
 	// ReplaceFlagTable replaces flag tabl
 	public error replaceFlagTable(Map<String,Long> flagTable) {
-		RResult<byte[]> byteArrayCall = new FlagTableWrapper(flagTable).marshaller().protoMarshal();
-		message.FlagTable = byteArrayCall.result;
+		FlagTable ft = FlagTable.of(flagTable);
+		RResult<byte[]> byteArrayCall = ft.encode();
 		error err = byteArrayCall.err;
-		return err;
+		if (err != null) {
+			return err;
+		}
+		message.FlagTable = byteArrayCall.result;
+		this.flagTable = ft;
+		return null;
+	}
+
+	/**
+	 * flagTable returns the decoded flag table. It is decoded again only when
+	 * message.FlagTable has been replaced.
+	 * @return
+	 */
+	public RResult<FlagTable> flagTable() {
+		FlagTable ft = flagTable;
+		if (ft != null && ft.encodedAs(message.FlagTable)) {
+			return new RResult<FlagTable>(ft, null);
+		}
+
+		RResult<FlagTable> decode = FlagTable.decode(message.FlagTable);
+		if (decode.err == null) {
+			flagTable = decode.result;
+		}
+		return decode;
 	}
 
 	// GetFlagTable returns the flag tabl
 	public RResult<Map<String,Long>> getFlagTable() {
-		FlagTableWrapper flagTable = new FlagTableWrapper();
-		error err = flagTable.marshaller().protoUnmarshal(message.FlagTable);
-		return new RResult<Map<String,Long>>(flagTable.Body, err);
+		RResult<FlagTable> ft = flagTable();
+		return new RResult<Map<String,Long>>(ft.result, ft.err);
 	}
 
 	/**
@@ -307,14 +350,13 @@ public class Event implements FlagtableContainer {
 	 * @return
 	 */
 	public RResult<Map<String,Long>> mergeFlagTable(Map<String,Long> dst) {
-		FlagTableWrapper src = new FlagTableWrapper();
-		error err = src.marshaller().protoUnmarshal(message.FlagTable);
+		RResult<FlagTable> src = flagTable();
+		error err = src.err;
 		if (err != null) {
 			return new RResult<Map<String,Long>>(null, err);
 		}
 
-		src.Body.putAll(dst);
-		return new RResult<Map<String,Long>>(src.Body, err);
+		return new RResult<Map<String,Long>>(src.result.merge(FlagTable.of(dst)), null);
 	}
 
 
@@ -356,6 +398,9 @@ public class Event implements FlagtableContainer {
 				creator = proto.getCreator();
 				hash = proto.getHash().toByteArray();
 				hex = proto.getHex();
+				if (message != null && message.Body != null && hash.length > 0) {
+					message.Body.setHash(hash);
+				}
 			}
 
 			@Override
@@ -18,6 +18,8 @@ public class EventBody {
 	long Index;
 	BlockSignature [] BlockSignatures;
 
+	private volatile byte[] digest; //sha256 of the encoded body, computed once
+
 	public EventBody(byte[][] transactions, InternalTransaction[] internalTransactions, String[] parents,
 			byte[] creator, long index, BlockSignature[] blockSignatures) {
 		super();
@@ -40,6 +42,7 @@ public class EventBody {
 	}
 
 	public void Reset()                    {
+		digest = null;
 		Transactions = null;
 		InternalTransactions = null;
 		Parents = null;
@@ -109,6 +112,7 @@ public class EventBody {
 
 			@Override
 			public void fromProto(poset.proto.EventBody proto) {
+				digest = null;
 				Transactions = toArray(proto.getTransactionsList());
 
 				int intranCount = proto.getInternalTransactionsCount();
@@ -186,13 +190,26 @@ public class EventBody {
 		return true;
 	}
 
+	// Hash returns the sha256 hash of the encoded body. The body is encoded and
+	// hashed on the first call only, so it must not be modified afterwards.
 	public RResult<byte[]> Hash() {
-		RResult<byte[]> protoMarshal = marshaller().protoMarshal();
-		byte[] hashBytes = protoMarshal.result;
-		error err = protoMarshal.err;
-		if (err != null) {
-			return new RResult<byte[]>(null, err);
+		byte[] h = digest;
+		if (h == null) {
+			RResult<byte[]> protoMarshal = marshaller().protoMarshal();
+			byte[] hashBytes = protoMarshal.result;
+			error err = protoMarshal.err;
+			if (err != null) {
+				return new RResult<byte[]>(null, err);
+			}
+			h = hash.SHA256(hashBytes);
+			digest = h;
 		}
-		return new RResult<byte[]>(hash.SHA256(hashBytes), null);
+		return new RResult<byte[]>(h, null);
+	}
+
+	// setHash records the hash of the body, known from a trusted source such as
+	// the store
+	void setHash(byte[] h) {
+		digest = h;
 	}
 }
\ No newline at end of file
@@ -0,0 +1,198 @@
+package poset;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import common.RResult;
+import common.error;
+
+/**
+ * FlagTable is an immutable, decoded flag table: the hashes are kept sorted
+ * in an array, next to their flags, and looked up by binary search. It also
+ * keeps the protobuf bytes it was decoded from, or encoded to, so that an
+ * Event only decodes its flag table once.
+ */
+public final class FlagTable extends AbstractMap<String,Long> {
+	static final FlagTable EMPTY = new FlagTable(new String[0], new long[0]);
+
+	final String[] keys;  // sorted hashes
+	final long[] flags;   // flags[i] is the flag of keys[i]
+	private byte[] bytes; // encoded form, computed once
+
+	private FlagTable(String[] keys, long[] flags) {
+		this.keys = keys;
+		this.flags = flags;
+	}
+
+	/**
+	 * of returns the FlagTable holding the entries of m
+	 * @param m
+	 * @return
+	 */
+	public static FlagTable of(Map<String,Long> m) {
+		if (m == null || m.isEmpty()) {
+			return EMPTY;
+		}
+		if (m instanceof FlagTable) {
+			return (FlagTable) m;
+		}
+		String[] keys = m.keySet().toArray(new String[m.size()]);
+		Arrays.sort(keys);
+		long[] flags = new long[keys.length];
+		for (int i = 0; i < keys.length; i++) {
+			flags[i] = m.get(keys[i]);
+		}
+		return new FlagTable(keys, flags);
+	}
+
+	/**
+	 * of returns the FlagTable giving the same flag to every hash
+	 * @param hashes
+	 * @param flag
+	 * @return
+	 */
+	public static FlagTable of(String[] hashes, long flag) {
+		String[] keys = Arrays.stream(hashes).distinct().sorted().toArray(String[]::new);
+		long[] flags = new long[keys.length];
+		Arrays.fill(flags, flag);
+		return new FlagTable(keys, flags);
+	}
+
+	/**
+	 * decode returns the FlagTable encoded in bytes
+	 * @param bytes
+	 * @return
+	 */
+	public static RResult<FlagTable> decode(byte[] bytes) {
+		FlagTableWrapper wrapper = new FlagTableWrapper();
+		error err = wrapper.marshaller().protoUnmarshal(bytes);
+		if (err != null) {
+			return new RResult<FlagTable>(null, err);
+		}
+		FlagTable ft = wrapper.Body.isEmpty() ? new FlagTable(EMPTY.keys, EMPTY.flags) : of(wrapper.Body);
+		ft.bytes = bytes;
+		return new RResult<FlagTable>(ft, null);
+	}
+
+	/**
+	 * encode returns the protobuf encoding of the FlagTable
+	 * @return
+	 */
+	public RResult<byte[]> encode() {
+		if (bytes == null) {
+			RResult<byte[]> protoMarshal = new FlagTableWrapper(this).marshaller().protoMarshal();
+			if (protoMarshal.err != null) {
+				return protoMarshal;
+			}
+			bytes = protoMarshal.result;
+		}
+		return new RResult<byte[]>(bytes, null);
+	}
+
+	// encodedAs returns true if the FlagTable was decoded from, or encoded to, b
+	boolean encodedAs(byte[] b) {
+		return bytes == b;
+	}
+
+	/**
+	 * merge returns a FlagTable with the entries of both tables. The flags of
+	 * other win over the flags of this table.
+	 * @param other
+	 * @return
+	 */
+	public FlagTable merge(FlagTable other) {
+		if (other.keys.length == 0) {
+			return this;
+		}
+		if (keys.length == 0) {
+			return other;
+		}
+
+		String[] mk = new String[keys.length + other.keys.length];
+		long[] mf = new long[mk.length];
+		int i = 0, j = 0, n = 0;
+		while (i < keys.length || j < other.keys.length) {
+			int c;
+			if (i == keys.length) {
+				c = 1;
+			} else if (j == other.keys.length) {
+				c = -1;
+			} else {
+				c = keys[i].compareTo(other.keys[j]);
+			}
+
+			if (c < 0) {
+				mk[n] = keys[i];
+				mf[n++] = flags[i++];
+			} else {
+				mk[n] = other.keys[j];
+				mf[n++] = other.flags[j++];
+				if (c == 0) {
+					i++;
+				}
+			}
+		}
+		return new FlagTable(Arrays.copyOf(mk, n), Arrays.copyOf(mf, n));
+	}
+
+	// keys returns the sorted hashes of the table. It must not be modified.
+	public String[] keys() {
+		return keys;
+	}
+
+	@Override
+	public int size() {
+		return keys.length;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return key instanceof String && Arrays.binarySearch(keys, key) >= 0;
+	}
+
+	@Override
+	public Long get(Object key) {
+		if (!(key instanceof String)) {
+			return null;
+		}
+		int i = Arrays.binarySearch(keys, key);
+		return i >= 0 ? flags[i] : null;
+	}
+
+	@Override
+	public Set<Map.Entry<String,Long>> entrySet() {
+		return new AbstractSet<Map.Entry<String,Long>>() {
+			@Override
+			public Iterator<Map.Entry<String,Long>> iterator() {
+				return new Iterator<Map.Entry<String,Long>>() {
+					int i = 0;
+
+					@Override
+					public boolean hasNext() {
+						return i < keys.length;
+					}
+
+					@Override
+					public Map.Entry<String,Long> next() {
+						if (i >= keys.length) {
+							throw new NoSuchElementException();
+						}
+						Map.Entry<String,Long> e = new SimpleImmutableEntry<String,Long>(keys[i], flags[i]);
+						i++;
+						return e;
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return keys.length;
+			}
+		};
+	}
+}
@@ -3,12 +3,12 @@ package poset;
 import java.util.HashMap;
 import java.util.Map;
 
-import common.LRUCache;
 import common.RResult;
 import common.RResult3;
-import common.RollingIndex;
+import common.StringRollingIndex;
 import common.StoreErr;
 import common.StoreErrType;
+import common.StripedCache;
 import common.error;
 import peers.Peer;
 import peers.Peers.Listener;
@@ -16,11 +16,11 @@ import peers.Peers.Listener;
 public class InmemStore implements Store {
 	int cacheSize;
 	peers.Peers participants;
-	LRUCache<String,Event> eventCache;
-	LRUCache<Long,RoundInfo> roundCache;
-	LRUCache<Long,Block> blockCache;
-	LRUCache<Long,Frame> frameCache;
-	common.RollingIndex consensusCache;
+	StripedCache<String,Event> eventCache;
+	StripedCache<Long,RoundInfo> roundCache;
+	StripedCache<Long,Block> blockCache;
+	StripedCache<Long,Frame> frameCache;
+	StringRollingIndex consensusCache;
 	long totConsensusEvents;
 	ParticipantEventsCache participantEventsCache;
 	Map<String,Root> rootsByParticipant; //[participant] => Root
@@ -38,32 +38,32 @@ public class InmemStore implements Store {
 			rootsByParticipant.put(pk,  root);
 		}
 
-		RResult<LRUCache<String,Event>> eventCacheCre = LRUCache.New(cacheSize);
-		LRUCache<String,Event> eventCache = eventCacheCre.result;
+		RResult<StripedCache<String,Event>> eventCacheCre = StripedCache.New(cacheSize);
+		StripedCache<String,Event> eventCache = eventCacheCre.result;
 		error err = eventCacheCre.err;
 		if (err != null) {
 			System.err.println( String.format("Unable to init InmemStore.eventCache:", err));
 			System.exit(31);
 		}
 
-		RResult<LRUCache<Long,RoundInfo>> roundCacheCre = LRUCache.New(cacheSize);
-		LRUCache<Long,RoundInfo> roundCache = roundCacheCre.result;
+		RResult<StripedCache<Long,RoundInfo>> roundCacheCre = StripedCache.New(cacheSize);
+		StripedCache<Long,RoundInfo> roundCache = roundCacheCre.result;
 		err = roundCacheCre.err;
 		if (err != null) {
 			System.err.println( String.format("Unable to init InmemStore.roundCache:", err));
 			System.exit(32);
 		}
 
-		RResult<LRUCache<Long,Block>> blockCacheCre = LRUCache.New(cacheSize);
-		LRUCache<Long,Block> blockCache = blockCacheCre.result;
+		RResult<StripedCache<Long,Block>> blockCacheCre = StripedCache.New(cacheSize);
+		StripedCache<Long,Block> blockCache = blockCacheCre.result;
 		err = blockCacheCre.err;
 		if (err != null) {
 			System.err.println( String.format("Unable to init InmemStore.blockCache:", err));
 			System.exit(33);
 		}
 
-		RResult<LRUCache<Long,Frame>> frameCacheCre = LRUCache.New(cacheSize);
-		LRUCache<Long,Frame> frameCache = frameCacheCre.result;
+		RResult<StripedCache<Long,Frame>> frameCacheCre = StripedCache.New(cacheSize);
+		StripedCache<Long,Frame> frameCache = frameCacheCre.result;
 		err = frameCacheCre.err;
 		if (err != null) {
 			System.err.println( String.format("Unable to init InmemStore.frameCache:", err));
@@ -76,7 +76,7 @@ public class InmemStore implements Store {
 		this.roundCache=             roundCache;
 		this.blockCache=             blockCache;
 		this.frameCache=             frameCache;
-		this.consensusCache=         new RollingIndex("ConsensusCache", cacheSize);
+		this.consensusCache=         new StringRollingIndex("ConsensusCache", cacheSize);
 		this.participantEventsCache= new ParticipantEventsCache(cacheSize, participants);
 		this.rootsByParticipant=     rootsByParticipant;
 		this.lastRound=              -1;
@@ -222,12 +222,7 @@ public class InmemStore implements Store {
 	}
 
 	public String[] consensusEvents() {
-		Object[] lastWindow = consensusCache.getLastWindow().result1;
-		String[] res = new String[lastWindow.length];
-		for (int i =0 ; i< lastWindow.length; ++i) {
-			res[i] = lastWindow[i].toString();
-		}
-		return res;
+		return consensusCache.getLastWindowStrings();
 	}
 
 	public long consensusEventsCount() {
@@ -335,16 +330,16 @@ public class InmemStore implements Store {
 	}
 
 	public error reset(Map<String,Root> roots)  {
-		RResult<LRUCache<String,Event>> newCache = LRUCache.New(cacheSize);
-		LRUCache<String,Event> eventCache = newCache.result;
+		RResult<StripedCache<String,Event>> newCache = StripedCache.New(cacheSize);
+		StripedCache<String,Event> eventCache = newCache.result;
 		error err = newCache.err;
 		if (err != null) {
 			System.err.println( String.format("Unable to reset InmemStore.eventCache:", err));
 			System.exit(41);
 		}
 
-		RResult<LRUCache<Long,RoundInfo>> newCache1 = LRUCache.New(cacheSize);
-		LRUCache<Long,RoundInfo> roundCache = newCache1.result;
+		RResult<StripedCache<Long,RoundInfo>> newCache1 = StripedCache.New(cacheSize);
+		StripedCache<Long,RoundInfo> roundCache = newCache1.result;
 		err = newCache1.err;
 		if (err != null) {
 			System.err.println( String.format("Unable to reset InmemStore.roundCache:", err));
@@ -356,7 +351,7 @@ public class InmemStore implements Store {
 		this.rootsBySelfParent = null;
 		this.eventCache = eventCache;
 		this.roundCache = roundCache;
-		this.consensusCache = new RollingIndex("ConsensusCache", cacheSize);
+		this.consensusCache = new StringRollingIndex("ConsensusCache", cacheSize);
 		err = participantEventsCache.Reset();
 		this.lastRound = -1;
 		this.lastBlock = -1;
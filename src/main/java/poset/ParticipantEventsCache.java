@@ -5,7 +5,7 @@ import java.util.Map;
 import autils.Logger;
 import common.StoreErrType;
 import common.RResult;
-import common.RollingIndexMap;
+import common.StringRollingIndexMap;
 import common.StoreErr;
 import common.error;
 import peers.Peer;
@@ -14,7 +14,7 @@ public class ParticipantEventsCache {
 
 	private static Logger logger = Logger.getLogger(ParticipantEventsCache.class);
 	peers.Peers participants;
-	RollingIndexMap rim;
+	StringRollingIndexMap rim;
 
 	class Key {
 		String x;
@@ -27,7 +27,7 @@ public class ParticipantEventsCache {
 
 	public ParticipantEventsCache(int size, peers.Peers participants) {
 		this.participants = participants;
-		this.rim = new RollingIndexMap("ParticipantEvents", size, participants.toIDSlice());
+		this.rim = new StringRollingIndexMap("ParticipantEvents", size, participants.toIDSlice());
 	}
 
 	public RResult<Long> participantID(String participant) {
@@ -51,18 +51,7 @@ public class ParticipantEventsCache {
 			return new RResult<String[]>(null, err);
 		}
 
-		RResult<Object[]> get = rim.get(id, skipIndex);
-		Object[] pe = get.result;
-		err = get.err;
-		if (err != null) {
-			return new RResult<String[]>(null, err);
-		}
-
-		String[] res = new String[pe.length];
-		for (int k = 0; k < pe.length; k++) {
-			res[k] = pe[k].toString();
-		}
-		return new RResult<String[]>(res, null);
+		return rim.getStrings(id, skipIndex);
 	}
 
 	public RResult<String> GetItem(String participant, long index) {
@@ -2,10 +2,13 @@ package poset;
 
 import java.security.PrivateKey;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -13,15 +16,16 @@ import org.apache.log4j.Level;
 import org.jcsp.lang.One2OneChannel;
 
 import autils.Logger;
-import common.LRUCache;
 import common.RResult;
 import common.RResult3;
 import common.StoreErr;
 import common.StoreErrType;
+import common.StripedCache;
 import common.error;
 import node.Core;
 import peers.Peer;
 import peers.Peers.Listener;
+import poset.proto.Trilean;
 
 /**
  * Poset is a DAG of Events. It also contains methods to extract a consensus
@@ -31,7 +35,10 @@ public class Poset {
 	public peers.Peers Participants; //[public key] => id
 	public Store Store;              //store of Events, Rounds, and Blocks
 	List<String> UndeterminedEvents; //[index] => hash . FIFO queue of Events whose consensus order is not yet determined
+	List<String> UndividedEvents;    //[index] => hash . FIFO queue of inserted Events not yet processed by DivideRounds
+	Map<String,Long> receptionIndex; //[hash] => first round an undetermined Event has not been checked against
 	List<pendingRound> PendingRounds; //FIFO queue of Rounds which have not attained consensus yet
+	Map<Long,VoteTable> voteTables;  //[round] => fame votes on the witnesses of a pending Round
 	long LastConsensusRound;       //index of last consensus round
 	long FirstConsensusRound;      //index of first consensus round (only used in tests)
 	long AnchorBlock;              //index of last block with enough signatures
@@ -41,15 +48,21 @@ public class Poset {
 	int PendingLoadedEvents;       //number of loaded events that are not yet committed
 	One2OneChannel<Block> commitCh;//channel for committing Blocks
 	long topologicalIndex;         //counter used to order events in topological order (only local)
+	boolean bootstrapping;         //replayed events keep their topological index
 	int superMajority;
 	int trustCount;
 	Core core;
 
-	LRUCache<String,Boolean> ancestorCache;
-	LRUCache<String,Boolean> selfAncestorCache;
-	LRUCache<String,Boolean> stronglySeeCache;
-	LRUCache<String,Long> roundCache;
-	LRUCache<String,Long> timestampCache;
+	StripedCache<String,Boolean> ancestorCache;
+	StripedCache<String,Boolean> selfAncestorCache;
+	StripedCache<String,Boolean> stronglySeeCache;
+	StripedCache<String,Long> roundCache;
+	StripedCache<String,Long> timestampCache;
+
+	DagIndex dagIndex;             //vector clocks of inserted Events
+	boolean useDagIndex;           //answer ancestry queries from dagIndex when possible
+	ForkJoinPool pool;             //runs the consensus loops in parallel; null when sequential
+	crypto.VerifyContext verifier; //pre-decoded keys of the participants
 
 	Logger logger;
 
@@ -71,36 +84,36 @@ public class Poset {
 		int trustCount = (int) Math.ceil(((double) participants.length()) / 3);
 
 		int cacheSize = store.cacheSize();
-		RResult<LRUCache<String,Boolean>> ancestorCacheCre = LRUCache.New(cacheSize);
-		LRUCache<String,Boolean> ancestorCache = ancestorCacheCre.result;
+		RResult<StripedCache<String,Boolean>> ancestorCacheCre = StripedCache.New(cacheSize);
+		StripedCache<String,Boolean> ancestorCache = ancestorCacheCre.result;
 		error err = ancestorCacheCre.err;
 		if ( err != null) {
 			logger.fatal("Unable to init Poset.ancestorCache");
 		}
 
-		RResult<LRUCache<String,Boolean>> selfAncestorCacheCre = LRUCache.New(cacheSize);
-		LRUCache<String,Boolean> selfAncestorCache = selfAncestorCacheCre.result;
+		RResult<StripedCache<String,Boolean>> selfAncestorCacheCre = StripedCache.New(cacheSize);
+		StripedCache<String,Boolean> selfAncestorCache = selfAncestorCacheCre.result;
 		err = selfAncestorCacheCre.err;
 		if ( err != null) {
 			logger.fatal("Unable to init Poset.selfAncestorCache");
 		}
 
-		RResult<LRUCache<String,Boolean>> stronglySeeCacheCre = LRUCache.New(cacheSize);
-		LRUCache<String,Boolean> stronglySeeCache = stronglySeeCacheCre.result;
+		RResult<StripedCache<String,Boolean>> stronglySeeCacheCre = StripedCache.New(cacheSize);
+		StripedCache<String,Boolean> stronglySeeCache = stronglySeeCacheCre.result;
 		err = stronglySeeCacheCre.err;
 		if ( err != null) {
 			logger.fatal("Unable to init Poset.stronglySeeCache");
 		}
 
-		RResult<LRUCache<String,Long>> roundCacheCre = LRUCache.New(cacheSize);
-		LRUCache<String,Long> roundCache = roundCacheCre.result;
+		RResult<StripedCache<String,Long>> roundCacheCre = StripedCache.New(cacheSize);
+		StripedCache<String,Long> roundCache = roundCacheCre.result;
 		err = roundCacheCre.err;
 		if ( err != null) {
 			logger.fatal("Unable to init Poset.roundCache");
 		}
 
-		RResult<LRUCache<String,Long>> timestampCacheCre = LRUCache.New(cacheSize);
-		LRUCache<String,Long> timestampCache = timestampCacheCre.result;
+		RResult<StripedCache<String,Long>> timestampCacheCre = StripedCache.New(cacheSize);
+		StripedCache<String,Long> timestampCache = timestampCacheCre.result;
 		err = timestampCacheCre.err;
 		if ( err != null) {
 			logger.fatal("Unable to init Poset.timestampCache");
@@ -114,11 +127,17 @@ public class Poset {
 		this.stronglySeeCache=  stronglySeeCache;
 		this.roundCache=        roundCache;
 		this.timestampCache=   timestampCache;
+		this.dagIndex=          new DagIndex(cacheSize);
+		this.useDagIndex=       true;
 		this.logger=            logger;
 		this.superMajority=     superMajority;
 		this.trustCount=        trustCount;
+		this.verifier=          crypto.VerifyContext.fromPeers(participants);
 
 		this.UndeterminedEvents = new ArrayList<String>();
+		this.UndividedEvents = new ArrayList<String>();
+		this.receptionIndex = new HashMap<String,Long>();
+		this.voteTables = new HashMap<Long,VoteTable>();
 
 		participants.onNewPeer(
 			new Listener() {
@@ -130,11 +149,41 @@ public class Poset {
 		);
 	}
 
+	// Verifier returns the context verifying the signatures of the participants
+	public crypto.VerifyContext Verifier() {
+		return verifier;
+	}
+
 	// SetCore sets a core for poset.
 	public void SetCore(Core core) {
 		this.core = core;
 	}
 
+	// SetUseDagIndex selects between the vector clock index and the recursive
+	// Store walk for ancestor, selfAncestor and stronglySee.
+	public void SetUseDagIndex(boolean useDagIndex) {
+		this.useDagIndex = useDagIndex;
+	}
+
+	// SetParallelism sets the number of threads used by DecideFame and
+	// DecideRoundReceived. Values lower than 2 keep them sequential. The
+	// parallel paths rely on the DagIndex and are skipped when it is disabled.
+	public void SetParallelism(int parallelism) {
+		if (pool != null) {
+			pool.shutdown();
+			pool = null;
+		}
+		if (parallelism > 1) {
+			pool = new ForkJoinPool(parallelism);
+		}
+	}
+
+	// parallelFor runs body for 0 <= i < n on the consensus pool and waits for
+	// all of them to complete
+	private void parallelFor(int n, IntConsumer body) {
+		pool.submit(() -> IntStream.range(0, n).parallel().forEach(body)).join();
+	}
+
 	/*******************************************************************************
 	Private Methods
 	*******************************************************************************/
@@ -144,6 +193,13 @@ public class Poset {
 
 	//true if y is an ancestor of x
 	public RResult<Boolean> ancestor(String x, String y) {
+		if (useDagIndex) {
+			Trilean t = dagIndex.ancestor(x, y);
+			if (t != Trilean.UNDEFINED) {
+				return new RResult<Boolean>(t == Trilean.TRUE, null);
+			}
+		}
+
 		Boolean c = ancestorCache.get(Key (x, y));
 		if(c != null) {
 			return new RResult<Boolean>(c, null);
@@ -242,6 +298,13 @@ public class Poset {
 
 	//true if y is a self-ancestor of x
 	public RResult<Boolean> selfAncestor(String x, String y) {
+		if (useDagIndex) {
+			Trilean t = dagIndex.selfAncestor(x, y);
+			if (t != Trilean.UNDEFINED) {
+				return new RResult<Boolean>(t == Trilean.TRUE, null);
+			}
+		}
+
 		Boolean c = selfAncestorCache.get(Key(x, y));
 		if (c != null) {
 			return new RResult<Boolean>(c, null);
@@ -323,6 +386,13 @@ public class Poset {
 			return new RResult<Boolean>(false, null);
 		}
 
+		if (useDagIndex) {
+			Trilean t = dagIndex.stronglySee(x, y, superMajority);
+			if (t != Trilean.UNDEFINED) {
+				return new RResult<Boolean>(t == Trilean.TRUE, null);
+			}
+		}
+
 		Boolean c = stronglySeeCache.get( Key(x, y));
 		if (c != null) {
 			return new RResult<Boolean>(c, null);
@@ -490,24 +560,26 @@ public class Poset {
 				// if in a flag table there are witnesses of the current round, then
 				// current round is other parent round.
 				String[] ws = Store.roundWitnesses(opRound);
-				RResult<Map<String, Long>> getFlagTable = ex.getFlagTable();
-				Map<String, Long> ft = getFlagTable.result;
-				for (String k : ft.keySet()) {
-					for (String w : ws) {
-						if (w.equals(k) && !w.equals(ex.hex())) {
-							RResult<Boolean> seeCall = see(ex.hex(), w);
-							Boolean see = seeCall.result;
-							err = seeCall.err;
-							if ( err != null) {
-								return new RResult<Long>(Long.MIN_VALUE, err);
-							}
+				RResult<FlagTable> getFlagTable = ex.flagTable();
+				FlagTable ft = getFlagTable.result;
+				err = getFlagTable.err;
+				if (err != null) {
+					return new RResult<Long>(Long.MIN_VALUE, err);
+				}
+				for (String w : ws) {
+					if (ft.containsKey(w) && !w.equals(ex.hex())) {
+						RResult<Boolean> seeCall = see(ex.hex(), w);
+						Boolean see = seeCall.result;
+						err = seeCall.err;
+						if ( err != null) {
+							return new RResult<Long>(Long.MIN_VALUE, err);
+						}
 
-							if (see) {
-								if (!found) {
-									found = true;
-								}
-								seeOpRoundRoots++;
+						if (see) {
+							if (!found) {
+								found = true;
 							}
+							seeOpRoundRoots++;
 						}
 					}
 				}
@@ -578,12 +650,18 @@ public class Poset {
 		}
 
 		// check ft
-		Map<String, Long> ft = ex.getFlagTable().result;
+		RResult<FlagTable> getFlagTable = ex.flagTable();
+		FlagTable ft = getFlagTable.result;
+		err = getFlagTable.err;
+		if (err != null) {
+			return new RResult<Long>(Long.MIN_VALUE, err);
+		}
 		if (ft.size() >= superMajority) {
 			int count = 0;
 
-			for (String root2 : ft.keySet()) {
-				if (isSee.isSee(this, root2, ws)) {
+			//only the witnesses of parentRound can be counted
+			for (String w : ws) {
+				if (ft.containsKey(w) && isSee.isSee(this, w, ws)) {
 					count++;
 				}
 			}
@@ -1047,7 +1125,7 @@ public class Poset {
 	//checks the ancestors are known, and prevents the introduction of forks.
 	public error InsertEvent(Event event, boolean setWireInfo) {
 		//verify signature
-		RResult<Boolean> verify = event.verify();
+		RResult<Boolean> verify = event.verify(verifier);
 		Boolean ok = verify.result;
 		error err = verify.err;
 		if  (!ok) {
@@ -1073,8 +1151,14 @@ public class Poset {
 			return error.Errorf(String.format("CheckOtherParent: %s", err));
 		}
 
-		event.message.TopologicalIndex = topologicalIndex;
-		topologicalIndex++;
+		if (bootstrapping) {
+			if (event.message.TopologicalIndex >= topologicalIndex) {
+				topologicalIndex = event.message.TopologicalIndex + 1;
+			}
+		} else {
+			event.message.TopologicalIndex = topologicalIndex;
+			topologicalIndex++;
+		}
 
 		if (setWireInfo) {
 			err = setWireInfo(event);
@@ -1088,12 +1172,16 @@ public class Poset {
 			return error.Errorf(String.format("SetEvent: %s", err));
 		}
 
+		dagIndex.add(event.hex(), event.creator(), event.index(),
+			event.selfParent(), event.otherParent());
+
 		logger.field("UndeterminedEvents", UndeterminedEvents).debug("adding hex");
 
 		if (UndeterminedEvents == null) {
 			UndeterminedEvents = new ArrayList<>();
 		}
 		UndeterminedEvents.add(event.hex());
+		UndividedEvents.add(event.hex());
 
 		if (event.isLoaded()) {
 			PendingLoadedEvents++;
@@ -1116,86 +1204,98 @@ public class Poset {
 	/*
 	DivideRounds assigns a Round and LamportTimestamp to Events, and flags them as
 	witnesses if necessary. Pushes Rounds in the PendingRounds queue if necessary.
+	Only the Events inserted since the previous call (UndividedEvents) are visited.
 	*/
 	public error DivideRounds() {
-		for (int i =0; i < UndeterminedEvents.size(); ++i) {
-			String hash = UndeterminedEvents.get(i);
-//		for (String h : UndeterminedEvents) {
-			RResult<Event> getEvent = Store.getEvent(hash);
-			Event ev = getEvent.result;
-			error err = getEvent.err;
+		int i = 0;
+		error err = null;
+		for (; i < UndividedEvents.size(); ++i) {
+			err = divideRound(UndividedEvents.get(i));
 			if (err != null) {
+				break;
+			}
+		}
+		//keep the Event that failed, and the ones after it, for the next pass
+		UndividedEvents.subList(0, i).clear();
+		return err;
+	}
+
+	private error divideRound(String hash) {
+		RResult<Event> getEvent = Store.getEvent(hash);
+		Event ev = getEvent.result;
+		error err = getEvent.err;
+		if (err != null) {
+			return err;
+		}
+
+		boolean updateEvent = false;
+
+		/*
+		   Compute Event's round, update the corresponding Round object, and
+		   add it to the PendingRounds queue if necessary.
+		*/
+		// TODO java code can't check if a long is null
+//			if (ev.round == null) {
+		if (ev.round < 0) {
+			RResult<Long> roundCall = round(hash);
+			long roundNumber = roundCall.result;
+			err = roundCall.err;
+			if ( err != null) {
 				return err;
 			}
 
-			boolean updateEvent = false;
+			ev.setRound(roundNumber);
+			updateEvent = true;
+
+			RResult<RoundInfo> getRound = Store.getRound(roundNumber);
+			RoundInfo roundInfo = getRound.result;
+			err = getRound.err;
+			if (err != null && !StoreErr.Is(err, StoreErrType.KeyNotFound)) {
+				return err;
+			}
 
 			/*
-			   Compute Event's round, update the corresponding Round object, and
-			   add it to the PendingRounds queue if necessary.
+				Why the lower bound?
+				Normally, once a Round has attained consensus, it is impossible for
+				new Events from a previous Round to be inserted; the lower bound
+				appears redundant. This is the case when the poset grows
+				linearly, without jumps, which is what we intend by 'Normally'.
+				But the Reset function introduces a discontinuity  by jumping
+				straight to a specific place in the poset. This technique relies
+				on a base layer of Events (the corresponding Frame's Events) for
+				other Events to be added on top, but the base layer must not be
+				reprocessed.
 			*/
-			// TODO java code can't check if a long is null
-//			if (ev.round == null) {
-			if (ev.round < 0) {
-				RResult<Long> roundCall = round(hash);
-				long roundNumber = roundCall.result;
-				err = roundCall.err;
-				if ( err != null) {
-					return err;
-				}
 
-				ev.setRound(roundNumber);
-				updateEvent = true;
+			// TODO go code check: LastConsensusRound == null
+			if (!roundInfo.queued &&
+				(LastConsensusRound < 0 ||
+					roundNumber >= LastConsensusRound)) {
 
-				RResult<RoundInfo> getRound = Store.getRound(roundNumber);
-				RoundInfo roundInfo = getRound.result;
-				err = getRound.err;
-				if (err != null && !StoreErr.Is(err, StoreErrType.KeyNotFound)) {
-					return err;
-				}
-
-				/*
-					Why the lower bound?
-					Normally, once a Round has attained consensus, it is impossible for
-					new Events from a previous Round to be inserted; the lower bound
-					appears redundant. This is the case when the poset grows
-					linearly, without jumps, which is what we intend by 'Normally'.
-					But the Reset function introduces a discontinuity  by jumping
-					straight to a specific place in the poset. This technique relies
-					on a base layer of Events (the corresponding Frame's Events) for
-					other Events to be added on top, but the base layer must not be
-					reprocessed.
-				*/
-
-				// TODO go code check: LastConsensusRound == null
-				if (!roundInfo.queued &&
-					(LastConsensusRound < 0 ||
-						roundNumber >= LastConsensusRound)) {
-
-					if (PendingRounds == null) {
-						PendingRounds = new ArrayList<>();
-					}
-					PendingRounds.add(new pendingRound (roundNumber, false));
-					roundInfo.queued = true;
+				if (PendingRounds == null) {
+					PendingRounds = new ArrayList<>();
 				}
+				PendingRounds.add(new pendingRound (roundNumber, false));
+				roundInfo.queued = true;
+			}
 
-				RResult<Boolean> witnessCall = witness(hash);
-				Boolean witness = witnessCall.result;
-				err = witnessCall.err;
-				if (err != null) {
-					return err;
-				}
-				roundInfo.AddEvent(hash, witness);
+			RResult<Boolean> witnessCall = witness(hash);
+			Boolean witness = witnessCall.result;
+			err = witnessCall.err;
+			if (err != null) {
+				return err;
+			}
+			roundInfo.AddEvent(hash, witness);
 
-				err = Store.setRound(roundNumber, roundInfo);
-				if (err != null) {
-					return err;
-				}
+			err = Store.setRound(roundNumber, roundInfo);
+			if (err != null) {
+				return err;
+			}
 
-				if (witness) {
-					// if event is self head
-					if (core != null && ev.hex().equals(core.head()) &&
-						ev.creator().equals(core.hexID())) {
+			if (witness) {
+				// if event is self head
+				if (core != null && ev.hex().equals(core.head()) &&
+					ev.creator().equals(core.hexID())) {
 
 //						replaceFlagTable := public(Event event, long round) {
 //							HashMap<String, Long> ft = new HashMap<String, Long>();
@@ -1206,47 +1306,47 @@ public class Poset {
 //							event.ReplaceFlagTable(ft);
 //						}
 
-						// special case
-						if (ev.getRound() == 0) {
-							replaceFlagTable(ev, 0);
-							RResult<Root> getRoot = Store.getRoot(ev.creator());
-							Root root = getRoot.result;
-							err = getRoot.err;
-							if ( err != null) {
-								return err;
-							}
-							ev.message.WitnessProof = new String[]{root.SelfParent.Hash};
-						} else {
-							replaceFlagTable(ev, ev.getRound());
-							String[] roots = Store.roundWitnesses(ev.getRound() - 1);
-							ev.message.WitnessProof = roots;
+					// special case
+					if (ev.getRound() == 0) {
+						replaceFlagTable(ev, 0);
+						RResult<Root> getRoot = Store.getRoot(ev.creator());
+						Root root = getRoot.result;
+						err = getRoot.err;
+						if ( err != null) {
+							return err;
 						}
+						ev.message.WitnessProof = new String[]{root.SelfParent.Hash};
+					} else {
+						replaceFlagTable(ev, ev.getRound());
+						String[] roots = Store.roundWitnesses(ev.getRound() - 1);
+						ev.message.WitnessProof = roots;
 					}
+					core.updateWire(ev);
 				}
 			}
+		}
 
-			/*
-				Compute the Event's LamportTimestamp
-			*/
-			if (ev.lamportTimestamp < 0) {
-
-				RResult<Long> lamportTimestampCall = lamportTimestamp(hash);
-				long lamportTimestamp = lamportTimestampCall.result;
-				err = lamportTimestampCall.err;
-				if (err != null) {
-					return err;
-				}
+		/*
+			Compute the Event's LamportTimestamp
+		*/
+		if (ev.lamportTimestamp < 0) {
 
-				ev.setLamportTimestamp(lamportTimestamp);
-				updateEvent = true;
+			RResult<Long> lamportTimestampCall = lamportTimestamp(hash);
+			long lamportTimestamp = lamportTimestampCall.result;
+			err = lamportTimestampCall.err;
+			if (err != null) {
+				return err;
 			}
 
-			if (updateEvent) {
-				if (ev.creatorID() == 0) {
-					setWireInfo(ev);
-				}
-				Store.setEvent(ev);
+			ev.setLamportTimestamp(lamportTimestamp);
+			updateEvent = true;
+		}
+
+		if (updateEvent) {
+			if (ev.creatorID() == 0) {
+				setWireInfo(ev);
 			}
+			Store.setEvent(ev);
 		}
 
 		return null;
@@ -1254,32 +1354,18 @@ public class Poset {
 
 
 	private void replaceFlagTable(Event event, long round) {
-		HashMap<String, Long> ft = new HashMap<String, Long>();
 		String[] ws = Store.roundWitnesses(round);
-		for (String v : ws) {
-			ft.put(v, (long) 1);
-		}
-		event.replaceFlagTable(ft);
+		event.replaceFlagTable(FlagTable.of(ws, 1));
 	}
 
-	private void setVote(HashMap<String,Map<String,Boolean>> votes, String x, String y, boolean vote) {
-		if (votes.get(x) == null) {
-			votes.put(x,  new HashMap<String,Boolean>());
-		}
-		votes.get(x).put(y, vote);
-	};
-
-
 	//DecideFame decides if witnesses are famous
 	public error DecideFame() {
 
 		logger.field("poset", this).debug("DecideFame() starts");
 
-		//Initialize the vote map
-		HashMap<String,Map<String,Boolean>> votes = new HashMap<String, Map<String, Boolean>>(); //[x][y]=>vote(x,y)
-
 		Map<Long,Long> decidedRounds = new HashMap<Long,Long>(); // [round number] => index in PendingRounds
 
+		long lastRound = Store.lastRound();
 		for (int pos = 0; pos < PendingRounds.size(); ++pos ) {
 			pendingRound r = PendingRounds.get(pos);
 			long roundIndex = r.Index;
@@ -1296,86 +1382,78 @@ public class Poset {
 			if ( err != null) {
 				return err;
 			}
-			for (String x :  roundInfo.Witnesses()) {
-//				logger.WithFields(logrus.Fields{
-//					"x": x,
-//					"roundInfo.IsDecided(x)": roundInfo.IsDecided(x),
-//				}).debug("DecideFame() processing a witness in pending round");
-
-//				RoundEvent w = roundInfo.Message.Events.get(x);
-//				logger.WithFields(logrus.Fields{
-//					"witness": x,
-//					"w": w,
-//					"w.Consensus" : w.Consensus,
-//					"w.Famous" : w.Famous,
-//					"w.Witness" : w.Witness,
-//					"ok": ok,
-//				}).debug("DecideFame() check witness x");
 
+			//Votes cast in previous calls are kept until the round is decided
+			VoteTable votes = voteTables.get(roundIndex);
+			if (votes == null) {
+				votes = new VoteTable(roundIndex);
+				voteTables.put(roundIndex, votes);
+			}
+
+			//[j - roundIndex - 1] => witnesses of round j
+			String[][] ws = new String[(int) Math.max(lastRound - roundIndex, 0)][];
+			for (long j = roundIndex + 1; j <= lastRound; j++) {
+				ws[(int) (j - roundIndex - 1)] = Store.roundWitnesses(j);
+			}
 
+			if (pool != null && useDagIndex) {
+				prefetchVotes(votes, roundInfo, ws);
+			}
+
+			for (String x :  roundInfo.Witnesses()) {
 				if (roundInfo.IsDecided(x)) {
 					continue;
 				}
+				int xs = votes.candidate(x);
 			VOTE_LOOP:
-				for (long j = roundIndex + 1; j <= Store.lastRound(); j++) {
-					for (String y : Store.roundWitnesses(j)) {
-						long diff = j - roundIndex;
-
-//						logger.WithFields(logrus.Fields{
-//							"Store.LastRound()": Store.LastRound(),
-//							"j" : j,
-//							"x": x,
-//							"y": y,
-//							"diff": diff,
-//						}).debug("DecideFame() in VOTE_LOOP");
+				for (long j = roundIndex + 1; j <= lastRound; j++) {
+					long diff = j - roundIndex;
+					for (String y : ws[(int) (diff - 1)]) {
+						int ys = votes.voter(y);
+
+						//a vote cast in a previous call did not decide x
+						if (votes.hasVoted(ys, xs)) {
+							continue;
+						}
 
 						if (diff == 1) {
 							RResult<Boolean> seeCall = see(y, x);
 							Boolean ycx = seeCall.result;
 							err = seeCall.err;
-
-//							logger.WithFields(logrus.Fields{
-//								"ycx": ycx,
-//								"err" : err,
-//							}).debug("DecideFame() in VOTE_LOOP after see()");
-
 							if (err != null) {
 								return err;
 							}
-							setVote(votes, y, x, ycx);
+							votes.set(ys, xs, ycx);
 						} else {
-							//count votes
-							List<String> ssWitnesses = new ArrayList<String>();
-							for (String w1 : Store.roundWitnesses(j - 1)) {
-								RResult<Boolean> stronglySeeCall = stronglySee(y, w1);
-								boolean ss = stronglySeeCall.result;
-								err = stronglySeeCall.err;
-
-//								logger.WithFields(logrus.Fields{
-//									"ss": ss,
-//									"err" : err,
-//								}).debug("DecideFame() in VOTE_LOOP after stronglySee()");
-
-								if ( err != null) {
-									return err;
-								}
-								if (ss) {
-									ssWitnesses.add(w1);
+							//witnesses of round j-1 strongly seen by y
+							int[] ssWitnesses = votes.stronglySeen(ys);
+							if (ssWitnesses == null) {
+								String[] prev = ws[(int) (diff - 2)];
+								ssWitnesses = new int[prev.length];
+								int n = 0;
+								for (String w1 : prev) {
+									RResult<Boolean> stronglySeeCall = stronglySee(y, w1);
+									boolean ss = stronglySeeCall.result;
+									err = stronglySeeCall.err;
+									if ( err != null) {
+										return err;
+									}
+									if (ss) {
+										ssWitnesses[n++] = votes.voter(w1);
+									}
 								}
+								ssWitnesses = Arrays.copyOf(ssWitnesses, n);
+								votes.setStronglySeen(ys, ssWitnesses);
 							}
 
-//							logger.WithFields(logrus.Fields{
-//								"ssWitnesses": ssWitnesses,
-//								"Participants.Len()" : Participants.Len(),
-//								"superMajority": superMajority,
-//							}).debug("DecideFame() in VOTE_LOOP RRR compute ssWitnesses");
-
+							//count votes
 							long yays = 0;
 							long nays = 0;
-							for (String w1 : ssWitnesses) {
-								if (votes.get(w1).get(x)) {
+							for (int w1 : ssWitnesses) {
+								byte vote = votes.get(w1, xs);
+								if (vote == VoteTable.YES) {
 									yays++;
-								} else {
+								} else if (vote == VoteTable.NO) {
 									nays++;
 								}
 							}
@@ -1386,53 +1464,20 @@ public class Poset {
 								t = yays;
 							}
 
-//							logger.WithFields(logrus.Fields{
-//								"diff": diff,
-//								"Participants.Len()" : Participants.Len(),
-//								"superMajority": superMajority,
-//								"t": t,
-//								"v": v,
-//								"yays": yays,
-//								"nays" : nays,
-//							}).debug("DecideFame() in VOTE_LOOP RRR before SetFame called");
-
 							//normal round
 							if ((diff % Participants.length()) > 0) {
 								if (t >= superMajority) {
-
-//									logger.WithFields(logrus.Fields{
-//										"x": x,
-//										"v": v,
-//									}).debug("DecideFame() in VOTE_LOOP XXXXX calling SetFame");
-
 									roundInfo.SetFame(x, v);
-									setVote(votes, y, x, v);
+									votes.set(ys, xs, v);
 									break VOTE_LOOP; //break out of j loop
 								} else {
-
-//									logger.WithFields(logrus.Fields{
-//										"x": x,
-//										"v": v,
-//									}).debug("DecideFame() in VOTE_LOOP XXXXX calling setVote");
-
-									setVote(votes, y, x, v);
+									votes.set(ys, xs, v);
 								}
 							} else { //coin round
 								if (t >= superMajority) {
-//									logger.WithFields(logrus.Fields{
-//										"x": x,
-//										"v": v,
-//									}).debug("DecideFame() in VOTE_LOOP XXXXX1 calling setVote");
-
-									setVote(votes, y, x, v);
+									votes.set(ys, xs, v);
 								} else {
-
-//									logger.WithFields(logrus.Fields{
-//										"x": x,
-//										"v": v,
-//									}).debug("DecideFame() in VOTE_LOOP XXXXX2 calling setVote");
-
-									setVote(votes, y, x, middleBit(y)); //middle bit of y's hash
+									votes.set(ys, xs, middleBit(y)); //middle bit of y's hash
 								}
 							}
 						}
@@ -1440,42 +1485,14 @@ public class Poset {
 				}
 			}
 
-
 			err = Store.setRound(roundIndex, roundInfo);
-
-//			logger.WithFields(logrus.Fields{
-//				"roundInfo": roundInfo,
-//				"roundInfo.WitnessesDecided()": roundInfo.WitnessesDecided(),
-//				"err": err,
-//			}).debug("DecideFame() out of VOTE_LOOP, after check SetRound()");
-
 			if ( err != null) {
 				return err;
 			}
 
-//			logger.WithFields(logrus.Fields{
-//				"roundInfo": roundInfo,
-//				"roundInfo.WitnessesDecided()": roundInfo.WitnessesDecided(),
-//			}).debug("DecideFame() out of VOTE_LOOP, after error check SetRound()");
-
-//			for (Event e : roundInfo.Message.Events) {
-//				logger.WithFields(logrus.Fields{
-//					"e": e,
-//					"e.Witness": e.Witness,
-//					"e.Famous": e.Famous,
-//					"(e.Witness && e.Famous == Trilean_UNDEFINED)=" : e.Witness && e.Famous == Trilean_UNDEFINED,
-//				}).debug("DecideFame() out of VOTE_LOOP, forloop print");
-//			}
-
 			if (roundInfo.WitnessesDecided()) {
-//				logger.WithFields(logrus.Fields{
-//					"decidedRounds": decidedRounds,
-//					"roundIndex" : roundIndex,
-//					"pos" : pos,
-//					"err": err,
-//				}).debug("DecideFame() out of VOTE_LOOP, beofre set decidedRounds[roundIndex]");
-
 				decidedRounds.put(roundIndex, (long) pos);
+				voteTables.remove(roundIndex);
 			}
 
 		}
@@ -1484,6 +1501,76 @@ public class Poset {
 		return null;
 	}
 
+	//prefetchVotes fills votes, on the consensus pool, with the first round votes
+	//and the strongly-seen sets of the voters that the DagIndex can answer for.
+	//The tally in DecideFame then skips those votes and reuses those sets;
+	//anything left unset is computed sequentially as before.
+	private void prefetchVotes(VoteTable votes, RoundInfo roundInfo, String[][] ws) {
+		if (ws.length == 0) {
+			return;
+		}
+
+		//slots are handed out sequentially, workers only fill their own row
+		List<String> pending = new ArrayList<String>();
+		for (String x : roundInfo.Witnesses()) {
+			if (!roundInfo.IsDecided(x)) {
+				votes.candidate(x);
+				pending.add(x);
+			}
+		}
+		for (String[] w : ws) {
+			for (String y : w) {
+				votes.voter(y);
+			}
+		}
+		votes.ensureCandidates();
+
+		String[] first = ws[0];
+		int[] cs = new int[pending.size()];
+		for (int k = 0; k < cs.length; k++) {
+			cs[k] = votes.candidate(pending.get(k));
+		}
+		parallelFor(first.length, k -> {
+			int ys = votes.voterSlot(first[k]);
+			for (int c = 0; c < cs.length; c++) {
+				if (votes.hasVoted(ys, cs[c])) {
+					continue;
+				}
+				Trilean t = dagIndex.ancestor(first[k], pending.get(c));
+				if (t != Trilean.UNDEFINED) {
+					votes.set(ys, cs[c], t == Trilean.TRUE);
+				}
+			}
+		});
+
+		//[k] => (diff - 1, position in ws[diff - 1]) of a voter of a later round
+		List<int[]> later = new ArrayList<int[]>();
+		for (int d = 1; d < ws.length; d++) {
+			for (int k = 0; k < ws[d].length; k++) {
+				if (votes.stronglySeen(votes.voterSlot(ws[d][k])) == null) {
+					later.add(new int[] {d, k});
+				}
+			}
+		}
+		parallelFor(later.size(), k -> {
+			int[] at = later.get(k);
+			String y = ws[at[0]][at[1]];
+			String[] prev = ws[at[0] - 1];
+			int[] ss = new int[prev.length];
+			int n = 0;
+			for (String w1 : prev) {
+				Trilean t = dagIndex.stronglySee(y, w1, superMajority);
+				if (t == Trilean.UNDEFINED) {
+					return;
+				}
+				if (t == Trilean.TRUE) {
+					ss[n++] = votes.voterSlot(w1);
+				}
+			}
+			votes.setStronglySeen(votes.voterSlot(y), Arrays.copyOf(ss, n));
+		});
+	}
+
 	//DecideRoundReceived assigns a RoundReceived to undetermined events when they
 	//reach consensus
 	public error DecideRoundReceived() {
@@ -1492,7 +1579,12 @@ public class Poset {
 			.field("UndeterminedEvents", UndeterminedEvents)
 			.debug("DecideRoundReceived() starts");
 
+		if (pool != null && useDagIndex) {
+			return decideRoundReceivedParallel();
+		}
+
 		List<String> newUndeterminedEvents = new ArrayList<String>();
+		Map<Long,String[]> famous = new HashMap<Long,String[]>();
 
 		/* From whitepaper - 18/03/18
 		   "[...] An event is said to be “received” in the first round where all the
@@ -1500,83 +1592,242 @@ public class Poset {
 		   fame of all witnesses decided"
 		*/
 		for (String x :  UndeterminedEvents) {
-
-			boolean received = false;
-			RResult<Long> roundCall = round(x);
-			long r = roundCall.result;
-			error err = roundCall.err;
+			RResult<Boolean> receiveCall = receive(x, famous);
+			error err = receiveCall.err;
 			if (err != null) {
 				return err;
 			}
+			if (!receiveCall.result) {
+				newUndeterminedEvents.add(x);
+			}
+		}
+
+		UndeterminedEvents = newUndeterminedEvents;
+
+		return null;
+	}
+
+	//receptionStart returns the first round x, of round r, still has to be
+	//checked against. The famous witnesses of a decided round never change, so
+	//the rounds x was not received in are not checked again.
+	private long receptionStart(String x, long r) {
+		Long next = receptionIndex.get(x);
+		return next == null ? r + 1 : Math.max(next, r + 1);
+	}
+
+	//receive sets the RoundReceived of x if x has reached consensus, and reports
+	//whether it did. famous caches the famous witnesses of the decided rounds
+	//for the current pass.
+	private RResult<Boolean> receive(String x, Map<Long,String[]> famous) {
 
-			RoundInfo tr;
-			for (long i = r + 1; i <= Store.lastRound(); i++) {
-				RResult<RoundInfo> getRound = Store.getRound(i);
-				tr = getRound.result;
-				err = getRound.err;
+		boolean received = false;
+		RResult<Long> roundCall = round(x);
+		long r = roundCall.result;
+		error err = roundCall.err;
+		if (err != null) {
+			return new RResult<Boolean>(false, err);
+		}
+
+		RoundInfo tr;
+		long i;
+		for (i = receptionStart(x, r); i <= Store.lastRound(); i++) {
+			RResult<RoundInfo> getRound = Store.getRound(i);
+			tr = getRound.result;
+			err = getRound.err;
+			if ( err != null) {
+				//Can happen after a Reset/FastSync
+				if (LastConsensusRound >=0 &&
+					r < LastConsensusRound) {
+					received = true;
+					break;
+				}
+				return new RResult<Boolean>(false, err);
+			}
+
+			//We are looping from earlier to later rounds; so if we encounter
+			//one round with undecided witnesses, we are sure that this event
+			//is not "received". Break out of i loop
+			if (!tr.WitnessesDecided()) {
+				break;
+			}
+
+			String[] fws = famous.get(i);
+			if (fws == null) {
+				fws = tr.FamousWitnesses();
+				famous.put(i, fws);
+			}
+			//set of famous witnesses that see x
+			List<String> s = new ArrayList<String>();
+			for (String w : fws) {
+				RResult<Boolean> seeCall = see(w, x);
+				boolean see = seeCall.result;
+				err = seeCall.err;
 				if ( err != null) {
-					//Can happen after a Reset/FastSync
-					if (LastConsensusRound >=0 &&
-						r < LastConsensusRound) {
-						received = true;
-						break;
-					}
-					return err;
+					return new RResult<Boolean>(false, err);
+				}
+				if (see) {
+					s.add(w);
 				}
+			}
 
-				//We are looping from earlier to later rounds; so if we encounter
-				//one round with undecided witnesses, we are sure that this event
-				//is not "received". Break out of i loop
-				if (!tr.WitnessesDecided()) {
-					break;
+			if (s.size() == fws.length  && s.size() > 0) {
+
+				received = true;
+
+				RResult<Event> getEvent = Store.getEvent(x);
+				Event ex = getEvent.result;
+				err = getEvent.err;
+				if ( err != null) {
+					return new RResult<Boolean>(false, err);
 				}
+				ex.setRoundReceived(i);
 
-				String[] fws = tr.FamousWitnesses();
-				//set of famous witnesses that see x
-				List<String> s = new ArrayList<String>();
-				for (String w : fws) {
-					RResult<Boolean> seeCall = see(w, x);
-					boolean see = seeCall.result;
-					err = seeCall.err;
-					if ( err != null) {
-						return err;
-					}
-					if (see) {
-						s.add(w);
-					}
+				err = Store.setEvent(ex);
+				if ( err != null) {
+					return new RResult<Boolean>(false, err);
 				}
 
-				if (s.size() == fws.length  && s.size() > 0) {
+				tr.SetConsensusEvent(x);
+				err = Store.setRound(i, tr);
+				if ( err != null) {
+					return new RResult<Boolean>(false, err);
+				}
 
-					received = true;
+				//break out of i loop
+				break;
+			}
 
-					RResult<Event> getEvent = Store.getEvent(x);
-					Event ex = getEvent.result;
-					err = getEvent.err;
-					if ( err != null) {
-						return err;
-					}
-					ex.setRoundReceived(i);
+		}
 
-					err = Store.setEvent(ex);
-					if ( err != null) {
-						return err;
-					}
+		if (received) {
+			receptionIndex.remove(x);
+		} else {
+			receptionIndex.put(x, i);
+		}
+		return new RResult<Boolean>(received, null);
+	}
 
-					tr.SetConsensusEvent(x);
-					err = Store.setRound(i, tr);
-					if ( err != null) {
-						return err;
-					}
+	//decideRoundReceivedParallel is DecideRoundReceived with the famous witnesses
+	//checks of all the undetermined events split across the consensus pool. The
+	//workers only read the DagIndex and a snapshot of the decided rounds; the
+	//results are applied to the Store in the original order afterwards, and the
+	//events the index cannot answer for go through the sequential receive.
+	private error decideRoundReceivedParallel() {
+		int n = UndeterminedEvents.size();
+		String[] xs = UndeterminedEvents.toArray(new String[n]);
+		long[] starts = new long[n];
+		long lastRound = Store.lastRound();
+		long first = lastRound;
+		for (int k = 0; k < n; k++) {
+			RResult<Long> roundCall = round(xs[k]);
+			error err = roundCall.err;
+			if (err != null) {
+				return err;
+			}
+			starts[k] = receptionStart(xs[k], roundCall.result);
+			first = Math.min(first, starts[k]);
+		}
 
-					//break out of i loop
+		//snapshot of the famous witnesses of rounds [first, lastRound]
+		int span = (int) Math.max(lastRound - first + 1, 0);
+		boolean[] decided = new boolean[span];
+		String[][] fws = new String[span][];
+		boolean[] missing = new boolean[span];
+		for (int i = 0; i < span; i++) {
+			RResult<RoundInfo> getRound = Store.getRound(first + i);
+			if (getRound.err != null) {
+				missing[i] = true;
+				continue;
+			}
+			if (getRound.result.WitnessesDecided()) {
+				decided[i] = true;
+				fws[i] = getRound.result.FamousWitnesses();
+			}
+		}
+
+		final long NOT_RECEIVED = -1, SEQUENTIAL = -2;
+		long[] received = new long[n];
+		long[] next = new long[n]; //first round not checked, for NOT_RECEIVED
+		final long base = first;
+		parallelFor(n, k -> {
+			received[k] = NOT_RECEIVED;
+			long i;
+			for (i = starts[k]; i <= lastRound; i++) {
+				int p = (int) (i - base);
+				if (missing[p]) {
+					received[k] = SEQUENTIAL;
+					return;
+				}
+				if (!decided[p]) {
 					break;
 				}
-
+				boolean all = fws[p].length > 0;
+				for (String w : fws[p]) {
+					Trilean t = dagIndex.ancestor(w, xs[k]);
+					if (t == Trilean.UNDEFINED) {
+						received[k] = SEQUENTIAL;
+						return;
+					}
+					if (t == Trilean.FALSE) {
+						all = false;
+						break;
+					}
+				}
+				if (all) {
+					received[k] = i;
+					return;
+				}
 			}
+			next[k] = i;
+		});
 
-			if (!received) {
+		List<String> newUndeterminedEvents = new ArrayList<String>();
+		Map<Long,String[]> famous = new HashMap<Long,String[]>();
+		for (int k = 0; k < n; k++) {
+			String x = xs[k];
+			if (received[k] == SEQUENTIAL) {
+				RResult<Boolean> receiveCall = receive(x, famous);
+				error err = receiveCall.err;
+				if (err != null) {
+					return err;
+				}
+				if (!receiveCall.result) {
+					newUndeterminedEvents.add(x);
+				}
+				continue;
+			}
+			if (received[k] == NOT_RECEIVED) {
+				receptionIndex.put(x, next[k]);
 				newUndeterminedEvents.add(x);
+				continue;
+			}
+
+			receptionIndex.remove(x);
+			long i = received[k];
+			RResult<Event> getEvent = Store.getEvent(x);
+			Event ex = getEvent.result;
+			error err = getEvent.err;
+			if ( err != null) {
+				return err;
+			}
+			ex.setRoundReceived(i);
+
+			err = Store.setEvent(ex);
+			if ( err != null) {
+				return err;
+			}
+
+			//re-read the round, receive may have updated it
+			RResult<RoundInfo> getRound = Store.getRound(i);
+			RoundInfo tr = getRound.result;
+			err = getRound.err;
+			if ( err != null) {
+				return err;
+			}
+			tr.SetConsensusEvent(x);
+			err = Store.setRound(i, tr);
+			if ( err != null) {
+				return err;
 			}
 		}
 
@@ -1593,6 +1844,7 @@ public class Poset {
 
 		//Defer removing processed Rounds from the PendingRounds Queue
 		int processedIndex = 0;
+		Block lastBlock = null;
 
 		logger.field("PendingRounds", PendingRounds.size())
 			.field("LastConsensusRound", LastConsensusRound)
@@ -1674,6 +1926,7 @@ public class Poset {
 					if (err != null){
 						return err;
 					}
+					lastBlock = block;
 
 					if (commitCh != null) {
 						commitCh.out().write(block);
@@ -1693,9 +1946,52 @@ public class Poset {
 		}
 
 		PendingRounds = PendingRounds.subList(processedIndex, PendingRounds.size());
+
+		//The last Block is a base for Bootstrap only if no later Round was
+		//processed, otherwise the Events of that Round would be skipped
+		if (lastBlock != null && lastBlock.roundReceived() == LastConsensusRound
+				&& Store instanceof BadgerStore) {
+			RResult<Long> replayIndexCall = replayIndex();
+			long replayIndex = replayIndexCall.result;
+			error err = replayIndexCall.err;
+			if (err != null) {
+				return err;
+			}
+			err = ((BadgerStore) Store).dbSetBootstrapAnchor(lastBlock.Index(), replayIndex);
+			if (err != null) {
+				return err;
+			}
+		}
 		return null;
 	}
 
+	//replayIndex returns the lowest topological index of the Events that are not
+	//part of a processed Round yet
+	private RResult<Long> replayIndex() {
+		List<String> unprocessed = new ArrayList<String>(UndeterminedEvents);
+		for (pendingRound r : PendingRounds) {
+			RResult<RoundInfo> getRound = Store.getRound(r.Index);
+			if (getRound.err != null) {
+				continue;
+			}
+			unprocessed.addAll(Arrays.asList(getRound.result.ConsensusEvents()));
+		}
+
+		long min = topologicalIndex;
+		for (String x : unprocessed) {
+			RResult<Event> getEvent = Store.getEvent(x);
+			Event ev = getEvent.result;
+			error err = getEvent.err;
+			if (err != null) {
+				return new RResult<Long>(-1L, err);
+			}
+			if (ev.message.TopologicalIndex < min) {
+				min = ev.message.TopologicalIndex;
+			}
+		}
+		return new RResult<Long>(min, null);
+	}
+
 	//GetFrame computes the Frame corresponding to a RoundReceived.
 	public RResult<Frame> GetFrame(long roundReceived) {
 
@@ -1870,7 +2166,7 @@ public class Poset {
 						.warn("Verifying Block signature. Could not fetch Block");
 					continue;
 				}
-				RResult<Boolean> verify = block.verify(bs);
+				RResult<Boolean> verify = block.verify(bs, verifier);
 				Boolean valid = verify.result;
 				err = verify.err;
 				if ( err != null) {
@@ -1954,33 +2250,36 @@ public class Poset {
 		AnchorBlock = -1;
 
 		UndeterminedEvents = new ArrayList<String>();
+		UndividedEvents = new ArrayList<String>();
+		receptionIndex = new HashMap<String,Long>();
 		PendingRounds = new ArrayList<pendingRound>();
+		voteTables = new HashMap<Long,VoteTable>();
 		PendingLoadedEvents = 0;
 		topologicalIndex = 0;
 
 		int cacheSize = Store.cacheSize();
-		RResult<LRUCache<String,Boolean>> ancestorCacheCall = LRUCache.New(cacheSize);
-		LRUCache<String,Boolean> ancestorCache = ancestorCacheCall.result;
+		RResult<StripedCache<String,Boolean>> ancestorCacheCall = StripedCache.New(cacheSize);
+		StripedCache<String,Boolean> ancestorCache = ancestorCacheCall.result;
 		error err = ancestorCacheCall.err;
 		if ( err != null) {
 			logger.fatal("Unable to reset Poset.ancestorCache");
 		}
 
-		RResult<LRUCache<String,Boolean>> selfAncestorCacheCall = LRUCache.New(cacheSize);
-		LRUCache<String,Boolean> selfAncestorCache = selfAncestorCacheCall.result;
+		RResult<StripedCache<String,Boolean>> selfAncestorCacheCall = StripedCache.New(cacheSize);
+		StripedCache<String,Boolean> selfAncestorCache = selfAncestorCacheCall.result;
 		err = selfAncestorCacheCall.err;
 		if ( err != null) {
 			logger.fatal("Unable to reset Poset.selfAncestorCache");
 		}
-		RResult<LRUCache<String,Boolean>> stronglySeeCacheCall = LRUCache.New(cacheSize);
-		LRUCache<String,Boolean> stronglySeeCache = stronglySeeCacheCall.result;
+		RResult<StripedCache<String,Boolean>> stronglySeeCacheCall = StripedCache.New(cacheSize);
+		StripedCache<String,Boolean> stronglySeeCache = stronglySeeCacheCall.result;
 		err = stronglySeeCacheCall.err;
 		if ( err != null) {
 			logger.fatal("Unable to reset Poset.stronglySeeCache");
 		}
 
-		RResult<LRUCache<String,Long>> roundCacheCall = LRUCache.New(cacheSize);
-		LRUCache<String,Long> roundCache = roundCacheCall.result;
+		RResult<StripedCache<String,Long>> roundCacheCall = StripedCache.New(cacheSize);
+		StripedCache<String,Long> roundCache = roundCacheCall.result;
 		err = roundCacheCall.err;
 		if (err != null) {
 			logger.fatal("Unable to reset Poset.roundCache");
@@ -1990,6 +2289,7 @@ public class Poset {
 		this.selfAncestorCache = selfAncestorCache;
 		this.stronglySeeCache = stronglySeeCache;
 		this.roundCache = roundCache;
+		this.dagIndex.reset();
 
 		Peer[] participants = Participants.toPeerSlice();
 
@@ -2024,60 +2324,157 @@ public class Poset {
 		return null;
 	}
 
-	//Bootstrap loads all Events from the Store's DB (if there is one) and feeds
+	//Bootstrap loads the Events from the Store's DB (if there is one) and feeds
 	//them to the Poset (in topological order) for consensus ordering. After this
-	//method call, the Poset should be in a state coherent with the 'tip' of the Poset
+	//method call, the Poset should be in a state coherent with the 'tip' of the Poset.
+	//When the DB holds a bootstrap anchor, the Poset is reset from the anchor Block
+	//and only the Events that were not settled by then are replayed. The Events
+	//are read and processed in chunks, so only the unsettled tail is in memory.
 	public error Bootstrap() {
 		if (Store instanceof BadgerStore) {
 			BadgerStore badgerStore = (BadgerStore) Store;
 
-			//Retrieve the Events from the underlying DB. They come out in topological order
-			RResult<Event[]> dbTopologicalEventsCall = badgerStore.dbTopologicalEvents();
-			Event[] topologicalEvents = dbTopologicalEventsCall.result;
-			error err = dbTopologicalEventsCall.err;
-			if (err != null) {
-				return err;
-			}
-
-			//Insert the Events in the Poset
-			for (Event e : topologicalEvents) {
-				err = InsertEvent(e, true);
-				if ( err != null) {
+			bootstrapping = true;
+			try {
+				RResult3<Long,Long> anchorCall = badgerStore.dbGetBootstrapAnchor();
+				long start = 0;
+				long settledRound = -1;
+				error err = anchorCall.err;
+				if (err == null) {
+					err = resetFromAnchor(anchorCall.result1);
+					if (err != null) {
+						return err;
+					}
+					start = anchorCall.result2;
+					settledRound = LastConsensusRound;
+				} else if (!badgerStore.isDBKeyNotFound(err)) {
 					return err;
 				}
-			}
 
-			//Compute the consensus order of Events
-			err = DivideRounds();
-			if  (err != null) {
-				return err;
-			}
-			err = DecideFame();
-			if ( err != null) {
-				return err;
-			}
+				logger.field("start", start).field("settledRound", settledRound).debug("Bootstrap()");
 
-			err = DecideRoundReceived();
-			if (err != null) {
-				return err;
-			}
+				//Retrieve the Events from the underlying DB. They come out in topological order
+				while (true) {
+					RResult<Event[]> chunkCall = badgerStore.dbTopologicalEvents(start, BadgerStore.TOPOLOGICAL_CHUNK_SIZE);
+					Event[] chunk = chunkCall.result;
+					err = chunkCall.err;
+					if (err != null) {
+						return err;
+					}
+					if (chunk.length == 0) {
+						break;
+					}
 
-			err = ProcessDecidedRounds();
-			if (err != null) {
-				return err;
-			}
-			err = ProcessSigPool();
-			if (err != null) {
-				return err;
+					//Insert the Events in the Poset. Those received by the anchor
+					//Round or earlier are already covered by its Frame
+					for (Event e : chunk) {
+						long rr = e.getRoundReceived();
+						if (settledRound >= 0 && rr >= 0 && rr <= settledRound) {
+							continue;
+						}
+						err = InsertEvent(e, true);
+						if ( err != null) {
+							return err;
+						}
+					}
+					start += chunk.length;
+
+					//Compute the consensus order of Events
+					err = bootstrapConsensus();
+					if (err != null) {
+						return err;
+					}
+				}
+
+				err = ProcessSigPool();
+				if (err != null) {
+					return err;
+				}
+			} finally {
+				bootstrapping = false;
 			}
 		}
 
 		return null;
 	}
 
+	//resetFromAnchor resets the Poset from a Block and its Frame
+	private error resetFromAnchor(long blockIndex) {
+		RResult<Block> getBlock = Store.getBlock(blockIndex);
+		Block block = getBlock.result;
+		error err = getBlock.err;
+		if (err != null) {
+			return err;
+		}
+
+		RResult<Frame> getFrame = Store.getFrame(block.roundReceived());
+		Frame frame = getFrame.result;
+		err = getFrame.err;
+		if (err != null) {
+			return err;
+		}
+
+		return Reset(block, frame);
+	}
+
+	private error bootstrapConsensus() {
+		error err = DivideRounds();
+		if  (err != null) {
+			return err;
+		}
+		err = DecideFame();
+		if ( err != null) {
+			return err;
+		}
+		err = DecideRoundReceived();
+		if (err != null) {
+			return err;
+		}
+		return ProcessDecidedRounds();
+	}
+
 	//ReadWireInfo converts a WireEvent to an Event by replacing int IDs with the
 	//corresponding public keys.
 	public RResult<Event> ReadWireInfo(WireEvent wevent) {
+		return ReadWireInfo(wevent, null);
+	}
+
+	//ReadWireInfos converts WireEvents, given in topological order, to Events.
+	//Parents that come earlier in the batch are resolved from the batch itself,
+	//so that all the Events can be converted before any of them is inserted.
+	public RResult<Event[]> ReadWireInfos(WireEvent[] wevents) {
+		Event[] res = new Event[wevents.length];
+		Map<String,String> batch = new HashMap<String,String>();
+		for (int k = 0; k < wevents.length; k++) {
+			RResult<Event> readWireInfo = ReadWireInfo(wevents[k], batch);
+			Event ev = readWireInfo.result;
+			error err = readWireInfo.err;
+			if (err != null) {
+				return new RResult<Event[]>(null, err);
+			}
+			batch.put(batchKey(ev.creator(), ev.index()), ev.hex());
+			res[k] = ev;
+		}
+		return new RResult<Event[]>(res, null);
+	}
+
+	private static String batchKey(String participant, long index) {
+		return participant + "/" + index;
+	}
+
+	//participantEvent looks up the Event of a participant in batch first, then
+	//in the Store
+	private RResult<String> participantEvent(String participant, long index, Map<String,String> batch) {
+		if (batch != null) {
+			String hex = batch.get(batchKey(participant, index));
+			if (hex != null) {
+				return new RResult<String>(hex, null);
+			}
+		}
+		return Store.participantEvent(participant, index);
+	}
+
+	private RResult<Event> ReadWireInfo(WireEvent wevent, Map<String,String> batch) {
 		String selfParent = Event.rootSelfParent(wevent.Body.CreatorID);
 		String otherParent = "";
 		error err;
@@ -2097,7 +2494,7 @@ public class Poset {
 		}
 
 		if (wevent.Body.SelfParentIndex >= 0) {
-			RResult<String> ParticipantEventCall = Store.participantEvent(creator.getPubKeyHex(), wevent.Body.SelfParentIndex);
+			RResult<String> ParticipantEventCall = participantEvent(creator.getPubKeyHex(), wevent.Body.SelfParentIndex, batch);
 			selfParent = ParticipantEventCall.result;
 			err = ParticipantEventCall.err;
 			if ( err != null) {
@@ -2107,7 +2504,7 @@ public class Poset {
 		if (wevent.Body.OtherParentIndex >= 0) {
 			Peer otherParentCreator = Participants.byId(wevent.Body.OtherParentCreatorID);
 			if (otherParentCreator != null) {
-				RResult<String> participantEventCall = Store.participantEvent(otherParentCreator.getPubKeyHex(), wevent.Body.OtherParentIndex);
+				RResult<String> participantEventCall = participantEvent(otherParentCreator.getPubKeyHex(), wevent.Body.OtherParentIndex, batch);
 				otherParent = participantEventCall.result;
 				err = participantEventCall.err;
 
@@ -2188,7 +2585,7 @@ public class Poset {
 	public error CheckBlock(Block block) {
 		int validSignatures = 0;
 		for(BlockSignature s : block.getBlockSignatures()) {
-			boolean ok = block.verify(s).result;
+			boolean ok = block.verify(s, verifier).result;
 			if (ok) {
 				validSignatures++;
 			}
@@ -1,14 +1,33 @@
 package poset;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
 import com.google.protobuf.Parser;
 
 import common.IProto;
 import poset.proto.Trilean;
 
 public class RoundInfo {
+	private static final String[] NONE = new String[0];
+
 	RoundInfoMessage Message;
 	boolean queued;
 
+	// Views of Message.Events, updated by AddEvent, SetFame and SetConsensusEvent,
+	// and rebuilt when Message.Events is replaced. The arrays returned by the
+	// queries are shared and must not be modified.
+	private Map<String,RoundEvent> indexed; // the Events map the views describe
+	private int indexedSize;
+	private String[] witnesses = NONE;
+	private String[] famous = NONE;
+	private int undecided;                   // witnesses with an undefined fame
+	private List<String> consensus = new ArrayList<String>();
+	private String[] consensusView;          // consensus as an array, built on demand
+	private String[] roundEventsView;        // non consensus events, built on demand
+
 	public RoundInfo() {
 		Message = new RoundInfoMessage();
 		// TODO just add this init. ok?
@@ -21,75 +40,136 @@ public class RoundInfo {
 		queued = false;
 	}
 
+	// index makes sure the views describe Message.Events
+	private void index() {
+		Map<String,RoundEvent> events = Message.Events;
+		if (indexed == events && indexedSize == events.size()) {
+			return;
+		}
+		List<String> ws = new ArrayList<String>();
+		List<String> fws = new ArrayList<String>();
+		consensus = new ArrayList<String>();
+		undecided = 0;
+		for (Map.Entry<String,RoundEvent> entry : events.entrySet()) {
+			RoundEvent e = entry.getValue();
+			if (e.Witness) {
+				ws.add(entry.getKey());
+				if (e.Famous == Trilean.UNDEFINED) {
+					undecided++;
+				} else if (e.Famous == Trilean.TRUE) {
+					fws.add(entry.getKey());
+				}
+			}
+			if (e.Consensus) {
+				consensus.add(entry.getKey());
+			}
+		}
+		witnesses = ws.toArray(NONE);
+		famous = fws.toArray(NONE);
+		consensusView = null;
+		roundEventsView = null;
+		indexed = events;
+		indexedSize = events.size();
+	}
+
+	// put adds a new event to Message.Events and to the views
+	private void put(String x, RoundEvent re) {
+		Message.Events.put(x, re);
+		indexedSize++;
+		roundEventsView = null;
+		if (re.Witness) {
+			witnesses = append(witnesses, x);
+			if (re.Famous == Trilean.UNDEFINED) {
+				undecided++;
+			}
+		}
+	}
+
+	private static String[] append(String[] a, String x) {
+		String[] res = Arrays.copyOf(a, a.length + 1);
+		res[a.length] = x;
+		return res;
+	}
+
 	public void AddEvent(String x, boolean witness) {
+		index();
 		RoundEvent re = Message.Events.get(x);
 		if (re == null) {
-			Message.Events.put(x, new RoundEvent(witness));
+			put(x, new RoundEvent(witness));
 		}
 	}
 
 	public void SetConsensusEvent(String x) {
+		index();
 		RoundEvent re = Message.Events.get(x);
 		if (re == null) {
 			re = new RoundEvent();
+			put(x, re);
+		}
+		if (!re.Consensus) {
+			re.Consensus = true;
+			consensus.add(x);
+			consensusView = null;
+			roundEventsView = null;
 		}
-		re.Consensus = true;
-		Message.Events.put(x,  re);
 	}
 
 	public void SetFame(String x, boolean f) {
+		index();
 		RoundEvent re = Message.Events.get(x);
 		if (re == null) {
 			re = new RoundEvent(true);
+			put(x, re);
 		}
-		if (f) {
-			re.Famous = Trilean.TRUE;
-		} else {
-			re.Famous = Trilean.FALSE;
+		Trilean fame = f ? Trilean.TRUE : Trilean.FALSE;
+		if (re.Witness && re.Famous != fame) {
+			if (re.Famous == Trilean.UNDEFINED) {
+				undecided--;
+			}
+			if (f) {
+				famous = append(famous, x);
+			} else if (re.Famous == Trilean.TRUE) {
+				famous = Arrays.stream(famous).filter(w -> !w.equals(x)).toArray(String[]::new);
+			}
 		}
-		Message.Events.put(x, re);
+		re.Famous = fame;
 	}
 
 	//return true if no witnesses' fame is left undefined
 	public boolean WitnessesDecided() {
-		for (RoundEvent e: Message.Events.values()) {
-			if (e.Witness && e.Famous == Trilean.UNDEFINED) {
-				return false;
-			}
-		}
-		return true;
+		index();
+		return undecided == 0;
 	}
 
 	//return witnesses
 	public String[] Witnesses() {
-		String[] res = Message.Events.keySet().stream().filter( x ->
-			Message.Events.get(x).Witness
-		).toArray(String[]::new);
-		return res;
+		index();
+		return witnesses;
 	}
 
 	public String[] RoundEvents() {
-		String[] res = Message.Events.keySet().stream().filter( x ->
-			!(Message.Events.get(x).Consensus)
-		).toArray(String[]::new);
-		return res;
+		index();
+		if (roundEventsView == null) {
+			roundEventsView = Message.Events.keySet().stream().filter( x ->
+				!(Message.Events.get(x).Consensus)
+			).toArray(String[]::new);
+		}
+		return roundEventsView;
 	}
 
 	//return consensus events
 	public String[] ConsensusEvents() {
-		String[] res = Message.Events.keySet().stream().filter( x ->
-			Message.Events.get(x).Consensus
-		).toArray(String[]::new);
-		return res;
+		index();
+		if (consensusView == null) {
+			consensusView = consensus.toArray(NONE);
+		}
+		return consensusView;
 	}
 
 	//return famous witnesses
 	public String[] FamousWitnesses() {
-		String[] res = Message.Events.keySet().stream().filter( x -> {
-			RoundEvent e = Message.Events.get(x);
-			return (e.Witness && e.Famous == Trilean.TRUE);
-		}).toArray(String[]::new);
-		return res;
+		index();
+		return famous;
 	}
 
 	public boolean IsDecided(String witness) {
@@ -0,0 +1,111 @@
+package poset;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * VoteTable holds the fame votes cast on the witnesses of one pending Round.
+ *
+ * The witnesses whose fame is being decided (candidates) and the witnesses of
+ * later Rounds which vote on them (voters) are given dense slots, and the votes
+ * are kept in a byte matrix indexed by [voter][candidate]. A vote never changes
+ * once it is cast, and neither does the set of previous-round voters that a
+ * voter strongly sees, so the table is carried across DecideFame calls until
+ * the Round is decided; later passes only evaluate the newly added voters.
+ */
+public class VoteTable {
+	static final byte NONE = 0;
+	static final byte YES = 1;
+	static final byte NO = 2;
+
+	long round;
+	Map<String,Integer> candidates; // [witness of round] => slot
+	Map<String,Integer> voters;     // [witness of a later round] => slot
+	byte[][] votes;                 // [voter slot][candidate slot] => vote
+	int[][] stronglySeen;           // [voter slot] => slots of the previous round voters it strongly sees
+
+	public VoteTable(long round) {
+		this.round = round;
+		this.candidates = new HashMap<String,Integer>();
+		this.voters = new HashMap<String,Integer>();
+		this.votes = new byte[16][];
+		this.stronglySeen = new int[16][];
+	}
+
+	public int candidate(String x) {
+		Integer slot = candidates.get(x);
+		if (slot == null) {
+			slot = candidates.size();
+			candidates.put(x, slot);
+		}
+		return slot;
+	}
+
+	public int voter(String y) {
+		Integer slot = voters.get(y);
+		if (slot == null) {
+			slot = voters.size();
+			voters.put(y, slot);
+			if (slot == votes.length) {
+				votes = Arrays.copyOf(votes, 2 * slot);
+				stronglySeen = Arrays.copyOf(stronglySeen, 2 * slot);
+			}
+			votes[slot] = new byte[Math.max(candidates.size(), 4)];
+		}
+		return slot;
+	}
+
+	// grows the rows of all the voters to fit every candidate, so that set
+	// does not reallocate them. It allows voters to be filled concurrently.
+	public void ensureCandidates() {
+		int n = candidates.size();
+		for (int y = 0; y < voters.size(); y++) {
+			if (votes[y].length < n) {
+				votes[y] = Arrays.copyOf(votes[y], n);
+			}
+		}
+	}
+
+	// returns the slot of y if it is a known voter, -1 otherwise
+	public int voterSlot(String y) {
+		Integer slot = voters.get(y);
+		if (slot == null) {
+			return -1;
+		}
+		return slot;
+	}
+
+	public byte get(int y, int x) {
+		byte[] row = votes[y];
+		if (x >= row.length) {
+			return NONE;
+		}
+		return row[x];
+	}
+
+	public boolean hasVoted(int y, int x) {
+		return get(y, x) != NONE;
+	}
+
+	public void set(int y, int x, boolean vote) {
+		byte[] row = votes[y];
+		if (x >= row.length) {
+			row = Arrays.copyOf(row, Math.max(2 * row.length, x + 1));
+			votes[y] = row;
+		}
+		row[x] = vote ? YES : NO;
+	}
+
+	public int[] stronglySeen(int y) {
+		return stronglySeen[y];
+	}
+
+	public void setStronglySeen(int y, int[] ss) {
+		stronglySeen[y] = ss;
+	}
+
+	public long round() {
+		return round;
+	}
+}
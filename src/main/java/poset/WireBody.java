@@ -2,6 +2,11 @@ package poset;
 
 import java.util.Arrays;
 
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Parser;
+
+import common.IProto;
+
 public class WireBody {
 	byte[][] Transactions;
 	InternalTransaction[] InternalTransactions;
@@ -103,6 +108,81 @@ public class WireBody {
 		Index = index;
 	}
 
+	public IProto<WireBody, poset.proto.WireBody> marshaller() {
+		return new IProto<WireBody, poset.proto.WireBody>() {
+			@Override
+			public poset.proto.WireBody toProto() {
+				poset.proto.WireBody.Builder builder = poset.proto.WireBody.newBuilder();
+				if (Transactions != null) {
+					Arrays.asList(Transactions).forEach(transaction -> {
+						builder.addTransactions(ByteString.copyFrom(transaction));
+					});
+				}
+				if (InternalTransactions != null) {
+					Arrays.asList(InternalTransactions).forEach(internalTransaction -> {
+						builder.addInternalTransactions(internalTransaction.marshaller().toProto());
+					});
+				}
+				if (BlockSignatures != null) {
+					Arrays.asList(BlockSignatures).forEach(blockSignature -> {
+						poset.proto.WireBlockSignature.Builder bs = poset.proto.WireBlockSignature.newBuilder()
+							.setIndex(blockSignature.Index);
+						if (blockSignature.Signature != null) {
+							bs.setSignature(blockSignature.Signature);
+						}
+						builder.addBlockSignatures(bs.build());
+					});
+				}
+				builder.setSelfParentIndex(SelfParentIndex)
+					.setOtherParentCreatorID(OtherParentCreatorID)
+					.setOtherParentIndex(OtherParentIndex)
+					.setCreatorID(CreatorID)
+					.setIndex(Index);
+				return builder.build();
+			}
+
+			@Override
+			public void fromProto(poset.proto.WireBody proto) {
+				// empty lists decode to null, as they are when json decoded
+				Transactions = null;
+				if (proto.getTransactionsCount() > 0) {
+					Transactions = toArray(proto.getTransactionsList());
+				}
+
+				int intranCount = proto.getInternalTransactionsCount();
+				InternalTransactions = null;
+				if (intranCount > 0) {
+					InternalTransactions = new InternalTransaction[intranCount];
+					for (int i = 0; i < intranCount; ++i) {
+						InternalTransactions[i] = new InternalTransaction();
+						InternalTransactions[i].marshaller().fromProto(proto.getInternalTransactions(i));
+					}
+				}
+
+				int bsCount = proto.getBlockSignaturesCount();
+				BlockSignatures = null;
+				if (bsCount > 0) {
+					BlockSignatures = new WireBlockSignature[bsCount];
+					for (int i = 0; i < bsCount; ++i) {
+						poset.proto.WireBlockSignature bs = proto.getBlockSignatures(i);
+						BlockSignatures[i] = new WireBlockSignature(bs.getIndex(), bs.getSignature());
+					}
+				}
+
+				SelfParentIndex = proto.getSelfParentIndex();
+				OtherParentCreatorID = proto.getOtherParentCreatorID();
+				OtherParentIndex = proto.getOtherParentIndex();
+				CreatorID = proto.getCreatorID();
+				Index = proto.getIndex();
+			}
+
+			@Override
+			public Parser<poset.proto.WireBody> parser() {
+				return poset.proto.WireBody.parser();
+			}
+		};
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
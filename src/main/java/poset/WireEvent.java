@@ -2,12 +2,19 @@ package poset;
 
 import java.util.Arrays;
 
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Parser;
+
+import common.IProto;
+
 public class WireEvent {
 	WireBody Body;
 	String Signature;
 	byte[] FlagTable;
 	String[] WitnessProof;
 
+	private transient volatile byte[] encoded; // protobuf encoding, shared by every message carrying the event
+
 	public WireEvent() {
 		Body = null;
 		Signature = null;
@@ -43,6 +50,66 @@ public class WireEvent {
 		return null;
 	}
 
+	public IProto<WireEvent, poset.proto.WireEvent> marshaller() {
+		return new IProto<WireEvent, poset.proto.WireEvent>() {
+			@Override
+			public poset.proto.WireEvent toProto() {
+				poset.proto.WireEvent.Builder builder = poset.proto.WireEvent.newBuilder();
+				if (Body != null) {
+					builder.setBody(Body.marshaller().toProto());
+				}
+				if (Signature != null) {
+					builder.setSignature(Signature);
+				}
+				if (FlagTable != null) {
+					builder.setFlagTable(ByteString.copyFrom(FlagTable));
+				}
+				if (WitnessProof != null) {
+					Arrays.asList(WitnessProof).forEach(witnessProof -> {
+						builder.addWitnessProof(witnessProof);
+					});
+				}
+				return builder.build();
+			}
+
+			@Override
+			public void fromProto(poset.proto.WireEvent proto) {
+				encoded = null;
+				Body = null;
+				if (proto.hasBody()) {
+					Body = new WireBody();
+					Body.marshaller().fromProto(proto.getBody());
+				}
+				// unset fields decode to null, as they are when json decoded
+				Signature = proto.getSignature().isEmpty() ? null : proto.getSignature();
+				FlagTable = proto.getFlagTable().isEmpty() ? null : proto.getFlagTable().toByteArray();
+				WitnessProof = null;
+				if (proto.getWitnessProofCount() > 0) {
+					WitnessProof = proto.getWitnessProofList().toArray(new String[0]);
+				}
+			}
+
+			@Override
+			public Parser<poset.proto.WireEvent> parser() {
+				return poset.proto.WireEvent.parser();
+			}
+		};
+	}
+
+	/**
+	 * encoded returns the protobuf encoding of the event. It is computed once,
+	 * so a WireEvent must not be modified once it has been encoded.
+	 * @return
+	 */
+	public byte[] encoded() {
+		byte[] b = encoded;
+		if (b == null) {
+			b = marshaller().toProto().toByteArray();
+			encoded = b;
+		}
+		return b;
+	}
+
 	public WireBody getBody() {
 		return Body;
 	}
@@ -1,5 +1,7 @@
 package proxy;
 
+import java.util.concurrent.CompletableFuture;
+
 import org.jcsp.lang.One2OneChannel;
 
 import common.RResult;
@@ -16,6 +18,17 @@ public interface AppProxy {
 
 	RResult<byte[]> CommitBlock(poset.Block block);
 
+	/**
+	 * CommitBlockAsync commits a Block to the App without waiting for the
+	 * resulting state hash. Blocks are passed in order, and several of them may
+	 * be in flight. By default the block is committed synchronously.
+	 * @param block
+	 * @return
+	 */
+	default CompletableFuture<RResult<byte[]>> CommitBlockAsync(poset.Block block) {
+		return CompletableFuture.completedFuture(CommitBlock(block));
+	}
+
 	RResult<byte[]> GetSnapshot(long blockIndex);
 
 	error Restore(byte[] snapshot);
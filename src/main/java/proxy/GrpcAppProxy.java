@@ -6,18 +6,19 @@ import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.apache.log4j.Level;
 import org.jcsp.lang.CSTimer;
-import org.jcsp.lang.Channel;
 import org.jcsp.lang.One2OneChannel;
 
 import com.google.protobuf.ByteString;
 
 import autils.Appender;
 import autils.Logger;
+import channel.BufferedChannel;
 import channel.ChannelUtils;
 import channel.ExecService;
 import common.NetUtils;
@@ -40,6 +41,8 @@ import proxy.proto.ToServer.Tx;
 public class GrpcAppProxy implements AppProxy, LachesisNodeServer {
 
 	static final error ErrNoAnswers = error.Errorf("no answers");
+	static final int SUBMIT_BUFFER = 256; // transactions buffered for the node
+	static final int EVENT_BUFFER = 16;   // events buffered for the clients
 
 	Logger logger;
 	ServerSocket listener; // net.Listener
@@ -68,13 +71,12 @@ public class GrpcAppProxy implements AppProxy, LachesisNodeServer {
 
 		this.logger = logger;
 		this.timeout = timeout;
-		this.new_clients = Channel.one2one(); // make(chan ClientStream, 100);
-		// TODO: make chans buffered?
+		this.new_clients = new BufferedChannel<LachesisNode_ConnectServer>(100); // make(chan ClientStream, 100);
 		this.askings = new HashMap<UUID, One2OneChannel<ToServer.Answer>>();
 		this.askings_sync = new ReentrantReadWriteLock();
 
-		this.event4server = Channel.one2one();
-		this.event4clients = Channel.one2one();
+		this.event4server = new BufferedChannel<byte[]>(SUBMIT_BUFFER);
+		this.event4clients = new BufferedChannel<ToClient>(EVENT_BUFFER);
 
 //		p.listener, err = net.Listen("tcp", bind_addr);
 		int parsePort = NetUtils.parsePort(bind_addr);
@@ -246,15 +248,30 @@ public class GrpcAppProxy implements AppProxy, LachesisNodeServer {
 
 	// CommitBlock implements AppProxy interface method
 	public RResult<byte[]> CommitBlock(poset.Block block) {
+		return CommitBlockAsync(block).join();
+	}
+
+	// CommitBlockAsync implements AppProxy interface method: the block is pushed
+	// to the App at once, and its answer is read by a goroutine, so that the
+	// next blocks are pushed without waiting for it
+	public CompletableFuture<RResult<byte[]>> CommitBlockAsync(poset.Block block) {
 		RResult<byte[]> protoMarshal = block.marshaller().protoMarshal();
 		byte[] data = protoMarshal.result;
 		error err = protoMarshal.err;
 		if (err != null) {
-			return new RResult<byte[]>(null, err);
+			return CompletableFuture.completedFuture(new RResult<byte[]>(null, err));
 		}
 
 		One2OneChannel<Answer> answerCh = push_block(data);
-		Answer answer = answerCh.in().read();
+		CompletableFuture<RResult<byte[]>> result = new CompletableFuture<RResult<byte[]>>();
+		ExecService.go(() -> {
+			result.complete(blockAnswer(answerCh.in().read()));
+		});
+		return result;
+	}
+
+	// blockAnswer returns the state hash, or the error, answered for a block
+	private RResult<byte[]> blockAnswer(Answer answer) {
 		boolean ok = answer != null;
 		if (!ok) {
 			return new RResult<byte[]>(null, ErrNoAnswers);
@@ -377,7 +394,7 @@ public class GrpcAppProxy implements AppProxy, LachesisNodeServer {
 	}
 
 	public One2OneChannel<ToServer.Answer> subscribe4answer(UUID uuid) {
-		One2OneChannel<ToServer.Answer> ch = Channel.one2one(); // make(chan *internal.ToServer.Answer);
+		One2OneChannel<ToServer.Answer> ch = new BufferedChannel<ToServer.Answer>(1); // make(chan *internal.ToServer.Answer, 1);
 		askings_sync.writeLock().lock();
 		askings.put(uuid, ch);
 		askings_sync.writeLock().unlock();
@@ -15,6 +15,7 @@ import org.jcsp.lang.One2OneChannel;
 import com.google.protobuf.ByteString;
 
 import autils.Logger;
+import channel.BufferedChannel;
 import channel.ChannelUtils;
 import channel.ExecService;
 import common.RResult;
@@ -37,6 +38,7 @@ import proxy.proto.ToServer.Answer;
 import proxy.proto.ToServer.Answer.Builder;
 
 public class GrpcLachesisProxy implements proxy.LachesisProxy {
+	static final int EVENT_BUFFER = 16; // commits, snapshot and restore requests buffered for the App
 
 	// ZeroTime = time.Date(0, time.January, 0, 0, 0, 0, 0, time.Local)
 	static final Instant ZeroTime;
@@ -84,11 +86,11 @@ public class GrpcLachesisProxy implements proxy.LachesisProxy {
 		this.reconn_timeout = Duration.ofSeconds(2); // 2 * time.Second;
 		this.addr = addr;
 		this.shutdown = Channel.one2one(); // make(chan struct{}),
-		this.reconnect_ticket = Channel.one2one(); // make(chan time.Time, 1),
+		this.reconnect_ticket = new BufferedChannel<Instant>(1); // make(chan time.Time, 1),
 		this.logger = logger;
-		this.commitCh = Channel.one2one(); // make(chan proto.Commit),
-		this.queryCh = Channel.one2one(); // make(chan proto.SnapshotRequest),
-		this.restoreCh = Channel.one2one(); // make(chan proto.RestoreRequest),
+		this.commitCh = new BufferedChannel<proxy.proto.Commit>(EVENT_BUFFER); // make(chan proto.Commit, 16),
+		this.queryCh = new BufferedChannel<proxy.proto.SnapshotRequest>(EVENT_BUFFER); // make(chan proto.SnapshotRequest, 16),
+		this.restoreCh = new BufferedChannel<proxy.proto.RestoreRequest>(EVENT_BUFFER); // make(chan proto.RestoreRequest, 16),
 		this.stream = new AtomicReference<LachesisNode_ConnectClient>();
 
 //		this.conn = grpc.Dial(this.addr,
@@ -314,7 +316,7 @@ public class GrpcLachesisProxy implements proxy.LachesisProxy {
 	}
 
 	public One2OneChannel<proxy.proto.CommitResponse> newCommitResponseCh(UUID uuid) {
-		One2OneChannel<proxy.proto.CommitResponse> respCh = Channel.one2one();
+		One2OneChannel<proxy.proto.CommitResponse> respCh = new BufferedChannel<proxy.proto.CommitResponse>(1);
 		ExecService.go(() -> {
 			ToServer answer = null;
 			CommitResponse resp = respCh.in().read();
@@ -331,7 +333,7 @@ public class GrpcLachesisProxy implements proxy.LachesisProxy {
 	}
 
 	public One2OneChannel<proxy.proto.SnapshotResponse> newSnapshotResponseCh(UUID uuid) {
-		One2OneChannel<proxy.proto.SnapshotResponse> respCh = Channel.one2one();
+		One2OneChannel<proxy.proto.SnapshotResponse> respCh = new BufferedChannel<proxy.proto.SnapshotResponse>(1);
 		ExecService.go(() -> {
 			ToServer answer = null;
 			SnapshotResponse resp = respCh.in().read();
@@ -345,7 +347,7 @@ public class GrpcLachesisProxy implements proxy.LachesisProxy {
 	}
 
 	public One2OneChannel<proxy.proto.RestoreResponse> newRestoreResponseCh(UUID uuid) {
-		One2OneChannel<proxy.proto.RestoreResponse> respCh = Channel.one2one();
+		One2OneChannel<proxy.proto.RestoreResponse> respCh = new BufferedChannel<proxy.proto.RestoreResponse>(1);
 		ExecService.go(() -> {
 			ToServer answer = null;
 			RestoreResponse resp = respCh.in().read();
@@ -3,10 +3,10 @@ package proxy;
 import java.util.Arrays;
 
 import org.apache.log4j.Level;
-import org.jcsp.lang.Channel;
 import org.jcsp.lang.One2OneChannel;
 
 import autils.Logger;
+import channel.BufferedChannel;
 import common.RResult;
 import common.error;
 import poset.InternalTransaction;
@@ -15,6 +15,8 @@ import poset.InternalTransaction;
  * InmemAppProxy implements the AppProxy interface natively
  */
 public class InmemAppProxy implements AppProxy {
+	static final int SUBMIT_BUFFER = 256; // transactions buffered for the node
+
 	Logger logger;
 	ProxyHandler handler;
 	One2OneChannel<byte[]> submitCh;
@@ -36,8 +38,8 @@ public class InmemAppProxy implements AppProxy {
 		}
 
 		this.logger = logger;
-		this.submitCh = Channel.one2one();// make(chan []byte);
-		this.submitInternalCh = Channel.one2one(); // make(chan poset.InternalTransaction);
+		this.submitCh = new BufferedChannel<byte[]>(SUBMIT_BUFFER);// make(chan []byte, 256);
+		this.submitInternalCh = new BufferedChannel<InternalTransaction>(SUBMIT_BUFFER); // make(chan poset.InternalTransaction, 256);
 	}
 
 	/**
@@ -0,0 +1,38 @@
+package channel;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Test for BufferedChannel
+ *
+ */
+public class BufferedChannelTest {
+
+	@Test
+	public void TestBufferedChannel() {
+		int n = 5;
+		BufferedChannel<Integer> ch = new BufferedChannel<Integer>(8);
+		assertEquals("capacity", 8, ch.capacity());
+		for (int i = 0; i < n; i++) {
+			ch.out().write(i);
+		}
+		assertEquals("backlog", n, ch.backlog());
+		assertEquals("backlog of the channel", n, BufferedChannel.backlog(ch));
+		assertEquals("the buffer is the one the channel uses", n, ch.buffer().puts());
+
+		List<Integer> items = new ArrayList<Integer>();
+		assertEquals("drain stops at max", 3, ch.drain(items, 3));
+		assertEquals("drained in order", Arrays.asList(0, 1, 2), items);
+		assertEquals("backlog after drain", n - 3, ch.backlog());
+
+		assertEquals("drain stops when empty", n - 3, ch.drain(items, 10));
+		assertEquals("drained in order", Arrays.asList(0, 1, 2, 3, 4), items);
+		assertEquals("empty", 0, ch.backlog());
+		assertEquals("high water", n, ch.buffer().highWater());
+	}
+}
@@ -0,0 +1,48 @@
+package channel;
+import static org.junit.Assert.assertEquals;
+
+import org.jcsp.util.ChannelDataStore;
+import org.junit.Test;
+
+/**
+ * Test for RingBuffer
+ *
+ */
+public class RingBufferTest {
+
+	@Test
+	public void TestRingBuffer() {
+		RingBuffer<Integer> buffer = new RingBuffer<Integer>(3);
+		assertEquals("capacity", 3, buffer.capacity());
+		assertEquals("starts empty", ChannelDataStore.EMPTY, buffer.getState());
+
+		// wrap around the slots several times
+		int next = 0, expected = 0;
+		for (int round = 0; round < 5; round++) {
+			while (buffer.getState() != ChannelDataStore.FULL) {
+				buffer.put(next++);
+			}
+			assertEquals("full at capacity", 3, buffer.backlog());
+			assertEquals("startGet peeks", Integer.valueOf(expected), buffer.startGet());
+			buffer.endGet();
+			expected++;
+			assertEquals("one item taken", ChannelDataStore.NONEMPTY, buffer.getState());
+			while (buffer.getState() != ChannelDataStore.EMPTY) {
+				assertEquals("FIFO order", Integer.valueOf(expected++), buffer.get());
+			}
+		}
+		assertEquals("all items written", next, buffer.puts());
+		assertEquals("high water", 3, buffer.highWater());
+		assertEquals("filled up once per round", 5, buffer.fulls());
+
+		buffer.put(1);
+		buffer.put(2);
+		buffer.removeAll();
+		assertEquals("emptied", 0, buffer.backlog());
+
+		@SuppressWarnings("unchecked")
+		RingBuffer<Integer> clone = (RingBuffer<Integer>) buffer.clone();
+		assertEquals("clone has the same capacity", 3, clone.capacity());
+		assertEquals("clone is empty", ChannelDataStore.EMPTY, clone.getState());
+	}
+}
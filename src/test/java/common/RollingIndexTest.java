@@ -151,4 +151,28 @@ public class RollingIndexTest {
 
 		assertEquals("expected and cached should be equal", expected3, convertedItems);
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void TestStringRollingIndex() {
+		int size = 4;
+		StringRollingIndex rollingIndex = new StringRollingIndex("test", size);
+		String[] items = null;
+		// enough items to wrap around the buffer several times
+		for (int i = 0; i < 7 * size + 1; i++) {
+			String item = String.format("item%d", i);
+			assertNull("set should succeed", rollingIndex.set(item, i));
+			items = Appender.append(items, item);
+
+			long skipIndex = Math.max(i - size, -1);
+			RResult<String[]> getStrings = rollingIndex.getStrings(skipIndex);
+			assertNull(String.format("getStrings(%d) err", skipIndex), getStrings.err);
+			assertArrayEquals(String.format("items after %d", skipIndex),
+				Appender.slice(items, (int) skipIndex + 1, items.length), getStrings.result);
+			assertEquals("last item", item, rollingIndex.getLastString());
+		}
+
+		String[] window = rollingIndex.getLastWindowStrings();
+		assertEquals("window length", size + 1, window.length);
+		assertEquals("oldest cached item", items[items.length - size - 1], window[0]);
+	}
+}
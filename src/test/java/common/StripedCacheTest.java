@@ -0,0 +1,92 @@
+package common;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests for StripedCache
+ */
+public class StripedCacheTest {
+	@Test
+	public void TestStripedCache() {
+		// small enough to fit in a single segment
+		int size = 10;
+		StripedCache<String,Long> cache = StripedCache.<String,Long>New(size).result;
+
+		for (long i = 0; i < size; i++) {
+			cache.put(String.format("key%d", i), i);
+		}
+		assertEquals("cache should be full", size, cache.size());
+		assertEquals("no evictions expected", 0, cache.evictions());
+
+		for (long i = 0; i < size; i++) {
+			assertEquals("cached value", (Long) i, cache.get(String.format("key%d", i)));
+		}
+		assertEquals("hits", size, cache.hits());
+		assertNull("missing key", cache.get("none"));
+		assertEquals("misses", 1, cache.misses());
+
+		cache.put("key0", -1L);
+		assertEquals("updated value", (Long) (-1L), cache.get("key0"));
+		assertEquals("update should not grow the cache", size, cache.size());
+
+		assertEquals("putIfAbsent keeps the cached value", (Long) (-1L), cache.putIfAbsent("key0", 0L));
+		assertEquals("value not replaced", (Long) (-1L), cache.get("key0"));
+
+		for (long i = size; i < 3 * size; i++) {
+			cache.put(String.format("key%d", i), i);
+		}
+		assertTrue("cache should stay bounded", cache.size() <= size);
+		assertEquals("evictions", 3 * size - cache.size(), cache.evictions());
+
+		cache.clear();
+		assertEquals("cleared cache", 0, cache.size());
+	}
+
+	@Test
+	public void TestStripedCacheSecondChance() {
+		// a single segment, so that eviction order is deterministic
+		StripedCache<Integer,Integer> cache = new StripedCache<Integer,Integer>(4);
+		for (int i = 0; i < 4; i++) {
+			cache.put(i, i);
+		}
+		cache.get(0);
+		cache.put(4, 4);
+
+		assertEquals("referenced entry should be kept", (Integer) 0, cache.get(0));
+		assertNull("unreferenced entry should be evicted", cache.get(1));
+		assertEquals("evictions", 1, cache.evictions());
+	}
+
+	@Test
+	public void TestStripedCacheConcurrent() throws InterruptedException {
+		int size = 256;
+		StripedCache<Integer,Integer> cache = new StripedCache<Integer,Integer>(size);
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int t = 0; t < 8; t++) {
+			int offset = t * 1000;
+			Thread thread = new Thread(() -> {
+				for (int i = 0; i < 1000; i++) {
+					cache.put(offset + i, i);
+					Integer v = cache.get(offset + i / 2);
+					if (v != null) {
+						assertEquals("value", (Integer) (i / 2), v);
+					}
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		assertTrue("cache should stay bounded", cache.size() <= size);
+		assertEquals("lookups", 8 * 1000, cache.hits() + cache.misses());
+	}
+}
@@ -0,0 +1,50 @@
+package crypto;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.PublicKey;
+
+import common.RResult3;
+
+/**
+ * VerifyContextBenchmark compares the cost of verifying a signature with the
+ * key decoded at every call, as Utils.Verify does, and with the key cached by
+ * a VerifyContext. It is run by hand, outside of the test suite.
+ */
+public class VerifyContextBenchmark {
+	public static void main(String[] args) {
+		int n = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+		KeyPair key = Utils.GenerateECDSAKeyPair().result;
+		byte[] pub = Utils.FromECDSAPub(key.getPublic());
+		VerifyContext ctx = new VerifyContext();
+		if (ctx.add(pub) != null) {
+			throw new IllegalStateException("cannot add the key");
+		}
+
+		byte[] msg = hash.SHA256("benchmark".getBytes());
+		RResult3<BigInteger, BigInteger> sign = Utils.Sign(key.getPrivate(), msg);
+		BigInteger r = sign.result1, s = sign.result2;
+
+		// warm up both paths
+		for (int i = 0; i < n; i++) {
+			Utils.Verify(Utils.ToECDSAPub(pub), msg, r, s);
+			ctx.verify(pub, msg, r, s);
+		}
+
+		long start = System.nanoTime();
+		for (int i = 0; i < n; i++) {
+			PublicKey pubKey = Utils.ToECDSAPub(pub);
+			Utils.Verify(pubKey, msg, r, s);
+		}
+		long uncached = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		for (int i = 0; i < n; i++) {
+			ctx.verify(pub, msg, r, s);
+		}
+		long cached = System.nanoTime() - start;
+
+		System.out.println(String.format("verify: uncached %d us/op, cached %d us/op",
+			uncached / n / 1000, cached / n / 1000));
+	}
+}
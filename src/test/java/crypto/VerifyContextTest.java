@@ -0,0 +1,60 @@
+package crypto;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+
+import org.junit.Test;
+
+import common.RResult3;
+import peers.Peer;
+import peers.Peers;
+
+/**
+ * Tests for VerifyContext
+ *
+ */
+public class VerifyContextTest {
+
+	private byte[] hash(String msg) {
+		return hash.SHA256(msg.getBytes());
+	}
+
+	@Test
+	public void TestVerifyContext() {
+		KeyPair key = Utils.GenerateECDSAKeyPair().result;
+		KeyPair other = Utils.GenerateECDSAKeyPair().result;
+		byte[] pub = Utils.FromECDSAPub(key.getPublic());
+		byte[] otherPub = Utils.FromECDSAPub(other.getPublic());
+
+		Peers participants = new Peers();
+		participants.addPeer(new Peer(Utils.toHexString(pub), ""));
+		VerifyContext ctx = VerifyContext.fromPeers(participants);
+		assertEquals("peer key should be known", true, ctx.known(pub));
+		assertEquals("other key should not be known yet", false, ctx.known(otherPub));
+
+		byte[] msg = hash("time for beer");
+		RResult3<BigInteger, BigInteger> sign = Utils.Sign(key.getPrivate(), msg);
+		assertNull("No error signing", sign.err);
+		BigInteger r = sign.result1, s = sign.result2;
+
+		assertEquals("Utils.Verify should accept the signature", true,
+			Utils.Verify(Utils.ToECDSAPub(pub), msg, r, s));
+		assertEquals("VerifyContext should accept the signature", true, ctx.verify(pub, msg, r, s));
+		assertEquals("VerifyContext should reject another message", false,
+			ctx.verify(pub, hash("time for wine"), r, s));
+		assertEquals("VerifyContext should reject another signer", false, ctx.verify(otherPub, msg, r, s));
+
+		// unknown signers are verified, but not remembered
+		RResult3<BigInteger, BigInteger> otherSign = Utils.Sign(other.getPrivate(), msg);
+		assertEquals("VerifyContext should accept an unknown signer", true,
+			ctx.verify(otherPub, msg, otherSign.result1, otherSign.result2));
+		assertEquals("unknown key should not be remembered", false, ctx.known(otherPub));
+
+		participants.addPeer(new Peer(Utils.toHexString(otherPub), ""));
+		assertEquals("new peer key should be known", true, ctx.known(otherPub));
+		assertEquals("VerifyContext should accept the new peer", true,
+			ctx.verify(otherPub, msg, otherSign.result1, otherSign.result2));
+	}
+}
@@ -0,0 +1,139 @@
+package net;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+import org.junit.Test;
+
+import common.RResult;
+import common.error;
+import poset.WireBody;
+import poset.WireEvent;
+
+/**
+ * Test for BinaryEncoder and BinaryDecoder
+ *
+ */
+public class BinaryCodecTest extends NetTransportTest {
+
+	@Test
+	public void TestBinaryCodec() throws IOException {
+		ServerSocketChannel listener = ServerSocketChannel.open();
+		listener.bind(new InetSocketAddress("127.0.0.1", 0));
+		SocketChannel client = SocketChannel.open(listener.getLocalAddress());
+		SocketChannel server = listener.accept();
+
+		// tiny chunks, so that both pooled and oversized buffers are used
+		BufferPool pool = new BufferPool(16, 2);
+		BinaryEncoder enc = new BinaryEncoder(client, pool);
+		BinaryDecoder dec = new BinaryDecoder(server, pool);
+
+		error err = enc.encode(NetworkTransportType.rpcSync.ordinal() | NetworkTransport.rpcBinary);
+		assertNull("No error when encoding rpc type", err);
+		RResult<Integer> readRpc = dec.readRpc();
+		assertNull("No error when reading rpc type", readRpc.err);
+		assertEquals("rpc type should match",
+			NetworkTransportType.rpcSync.ordinal() | NetworkTransport.rpcBinary, (int) readRpc.result);
+
+		SyncRequest expectedReq = getExpectedSyncRequest();
+		err = enc.encode(expectedReq);
+		assertNull("No error when encoding request", err);
+		SyncRequest req = new SyncRequest();
+		err = dec.decode(req);
+		assertNull("No error when decoding request", err);
+		assertEquals("SyncRequest should match", expectedReq, req);
+
+		SyncResponse expectedResp = getExpectedSyncResponse();
+		err = enc.encode(expectedResp);
+		assertNull("No error when encoding response", err);
+		SyncResponse resp = new SyncResponse();
+		err = dec.decode(resp);
+		assertNull("No error when decoding response", err);
+		assertEquals("SyncResponse should match", expectedResp, resp);
+
+		err = enc.encode((error) null);
+		assertNull("No error when encoding no error", err);
+		error rpcError = new error(null);
+		err = dec.decode(rpcError);
+		assertNull("No error when decoding no error", err);
+		assertNull("Decoded no error", rpcError.Error());
+
+		err = enc.encode(error.Errorf("sync failed"));
+		assertNull("No error when encoding error", err);
+		err = dec.decode(rpcError);
+		assertNull("No error when decoding error", err);
+		assertEquals("Decoded error should match", "sync failed", rpcError.Error());
+
+		client.close();
+		err = dec.readRpc().err;
+		assertEquals("Closed connection", BinaryDecoder.ErrClosed, err);
+
+		server.close();
+		listener.close();
+	}
+
+	@Test
+	public void TestBinaryCodecCachedEvents() throws IOException {
+		ServerSocketChannel listener = ServerSocketChannel.open();
+		listener.bind(new InetSocketAddress("127.0.0.1", 0));
+		SocketChannel client = SocketChannel.open(listener.getLocalAddress());
+		SocketChannel server = listener.accept();
+
+		BufferPool pool = new BufferPool(16, 2);
+		BinaryEncoder enc = new BinaryEncoder(client, pool);
+		BinaryDecoder dec = new BinaryDecoder(server, pool);
+
+		WireEvent[] events = new WireEvent[] {
+			new WireEvent(new WireBody(null, null, null, 1L, 10L, 0L, 9L, -1L), null),
+			new WireEvent(new WireBody(null, null, null, 2L, 10L, 1L, 9L, 0L), "sig"),
+			new WireEvent(),
+		};
+		SyncResponse first = getExpectedSyncResponse();
+		first.setEvents(events);
+		SyncResponse second = new SyncResponse(2, false, events, first.getKnown());
+
+		// the responses carrying an event share its encoding
+		ByteBuffer[] firstFrames = enc.frames(first);
+		ByteBuffer[] secondFrames = enc.frames(second);
+		assertEquals("frames", 2 * events.length, firstFrames.length);
+		for (int i = 0; i < events.length; i++) {
+			assertSame("event encoding should be shared",
+				firstFrames[2 * i + 1].array(), secondFrames[2 * i + 1].array());
+		}
+
+		for (SyncResponse expectedResp : new SyncResponse[]{first, second}) {
+			error err = enc.encode(expectedResp);
+			assertNull("No error when encoding response", err);
+			SyncResponse resp = new SyncResponse();
+			err = dec.decode(resp);
+			assertNull("No error when decoding response", err);
+			assertEquals("SyncResponse should match", expectedResp, resp);
+		}
+
+		EagerSyncRequest expectedReq = new EagerSyncRequest(3, events);
+		error err = enc.encode(expectedReq);
+		assertNull("No error when encoding eager request", err);
+		EagerSyncRequest req = new EagerSyncRequest();
+		err = dec.decode(req);
+		assertNull("No error when decoding eager request", err);
+		assertEquals("EagerSyncRequest should match", expectedReq, req);
+
+		SyncResponse empty = new SyncResponse(4, true, new WireEvent[0], first.getKnown());
+		err = enc.encode(empty);
+		assertNull("No error when encoding empty response", err);
+		SyncResponse resp = new SyncResponse();
+		err = dec.decode(resp);
+		assertNull("No error when decoding empty response", err);
+		assertEquals("empty SyncResponse should match", empty, resp);
+
+		client.close();
+		server.close();
+		listener.close();
+	}
+}
@@ -0,0 +1,46 @@
+package net;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import common.RResult;
+
+/**
+ * Test for ServerConn
+ *
+ */
+public class ServerConnTest extends NetTransportTest {
+
+	@Test
+	public void TestJsonEnd() {
+		ByteBuffer buf = ByteBuffer.wrap("{\"a\":{\"b\":\"}\\\"\"},\"c\":[1,2]}{}".getBytes());
+		assertEquals("end of the first object", 27, ServerConn.jsonEnd(buf));
+
+		buf = ByteBuffer.wrap("{\"a\":{\"b\":1}".getBytes());
+		assertEquals("incomplete object", -1, ServerConn.jsonEnd(buf));
+	}
+
+	@Test
+	public void TestNextJson() {
+		ServerConn conn = new ServerConn(null, null, new BufferPool());
+		SyncRequest expectedReq = getExpectedSyncRequest();
+		byte[] json = expectedReq.getString().getBytes();
+
+		// the request arrives in two parts
+		conn.in.putInt(NetworkTransportType.rpcSync.ordinal());
+		conn.in.put(json, 0, json.length / 2);
+		RResult<ParsableMessage> next = conn.next();
+		assertNull("No error on partial request", next.err);
+		assertNull("No request yet", next.result);
+
+		conn.in.put(json, json.length / 2, json.length - json.length / 2);
+		next = conn.next();
+		assertNull("No error on complete request", next.err);
+		assertEquals("SyncRequest should match", expectedReq, next.result);
+		assertEquals("json request", false, conn.binary);
+		assertEquals("serving the request", ServerConn.BUSY, conn.state);
+	}
+}
@@ -0,0 +1,123 @@
+package node;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import autils.Logger;
+import common.RResult;
+import common.error;
+import net.FastForwardPart;
+import net.FastForwardResponse;
+import poset.Block;
+import poset.Event;
+import poset.EventMessage;
+import poset.Frame;
+import poset.Root;
+
+/**
+ * Test for CatchUpImage and CatchUp
+ *
+ */
+public class CatchUpTest {
+	Logger logger = Logger.getLogger(CatchUpTest.class);
+
+	private Frame frame(int count) {
+		EventMessage[] events = new EventMessage[count];
+		for (int i = 0; i < count; i++) {
+			Event event = new Event(new byte[][]{String.format("transaction %d", i).getBytes()},
+				null, null, new String[]{"", ""}, new byte[]{1}, i, new HashMap<String,Long>());
+			events[i] = event.getMessage();
+		}
+		return new Frame(1L, new Root[]{new Root(0), new Root(1)}, events);
+	}
+
+	private byte[] snapshot(int size) {
+		byte[] snapshot = new byte[size];
+		for (int i = 0; i < size; i++) {
+			snapshot[i] = (byte) i;
+		}
+		return snapshot;
+	}
+
+	private CatchUpImage image(Frame frame, byte[] snapshot) {
+		RResult<Block> newBlockFromFrame = Block.newBlockFromFrame(1, frame);
+		assertNull("No error creating block from frame", newBlockFromFrame.err);
+		RResult<CatchUpImage> build = CatchUpImage.build(newBlockFromFrame.result, frame, snapshot, 64);
+		assertNull("No error building the image", build.err);
+		return build.result;
+	}
+
+	@Test
+	public void TestCatchUp() {
+		Frame frame = frame(10);
+		byte[] snapshot = snapshot(1000);
+		CatchUpImage image = image(frame, snapshot);
+		assertTrue("frame split in chunks", image.frameChunks.length > 1);
+		assertEquals("snapshot split in chunks", 16, image.snapshotChunks.length);
+
+		FastForwardResponse manifest = image.manifest(1);
+		assertNull("manifest without events", manifest.getFrame().GetEvents());
+		RResult<CatchUp> fromManifest = CatchUp.fromManifest(manifest, logger);
+		assertNull("No error reading the manifest", fromManifest.err);
+		CatchUp catchUp = fromManifest.result;
+
+		// one peer corrupts the chunks, the other one serves them
+		error err = catchUp.fetch(new String[]{"bad", "good"}, (addr, part, blockIndex, chunk) -> {
+			RResult<byte[]> res = image.chunk(part, chunk);
+			if (addr.equals("bad")) {
+				byte[] corrupt = res.result.clone();
+				corrupt[0] ^= 1;
+				return new RResult<byte[]>(corrupt, null);
+			}
+			return res;
+		}, 3, 2);
+		assertNull("No error fetching the chunks", err);
+
+		RResult<Frame> frameCall = catchUp.frame();
+		assertNull("No error checking the frame", frameCall.err);
+		assertArrayEquals("frame should match", frame.Hash().result, frameCall.result.Hash().result);
+		assertEquals("all the events", 10, frameCall.result.GetEvents().length);
+		assertArrayEquals("snapshot should match", snapshot, catchUp.snapshot().result);
+	}
+
+	@Test
+	public void TestCatchUpResume() {
+		Frame frame = frame(10);
+		byte[] snapshot = snapshot(300);
+		CatchUpImage image = image(frame, snapshot);
+		FastForwardResponse manifest = image.manifest(1);
+		CatchUp catchUp = CatchUp.fromManifest(manifest, logger).result;
+
+		// the first frame chunk cannot be fetched
+		AtomicInteger fetched = new AtomicInteger();
+		error err = catchUp.fetch(new String[]{"a", "b"}, (addr, part, blockIndex, chunk) -> {
+			if (part == FastForwardPart.FrameChunk && chunk == 0) {
+				return new RResult<byte[]>(null, error.Errorf("unreachable"));
+			}
+			fetched.incrementAndGet();
+			return image.chunk(part, chunk);
+		}, 2, 2);
+		assertNotNull("a chunk is missing", err);
+		assertEquals("one chunk missing", 1, catchUp.missing().size());
+		assertNotNull("the frame is incomplete", catchUp.frame().err);
+		assertTrue("same anchor", catchUp.sameAnchor(image.manifest(2)));
+
+		// the next attempt only fetches the missing chunk
+		fetched.set(0);
+		err = catchUp.fetch(new String[]{"a"}, (addr, part, blockIndex, chunk) -> {
+			fetched.incrementAndGet();
+			return image.chunk(part, chunk);
+		}, 2, 1);
+		assertNull("No error resuming", err);
+		assertEquals("only the missing chunk fetched", 1, fetched.get());
+		assertArrayEquals("frame should match", frame.Hash().result, catchUp.frame().result.Hash().result);
+		assertArrayEquals("snapshot should match", snapshot, catchUp.snapshot().result);
+	}
+}
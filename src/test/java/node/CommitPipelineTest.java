@@ -0,0 +1,144 @@
+package node;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jcsp.lang.One2OneChannel;
+import org.junit.Test;
+
+import autils.Logger;
+import common.RResult;
+import common.error;
+import poset.Block;
+import poset.InternalTransaction;
+import proxy.AppProxy;
+
+/**
+ * Test for CommitPipeline
+ *
+ */
+public class CommitPipelineTest {
+
+	// asyncApp acknowledges blocks out of order, from several threads
+	static class asyncApp implements AppProxy {
+		final AtomicInteger inflight = new AtomicInteger();
+		final AtomicInteger maxInflight = new AtomicInteger();
+
+		public One2OneChannel<byte[]> SubmitCh() {
+			return null;
+		}
+
+		public One2OneChannel<InternalTransaction> SubmitInternalCh() {
+			return null;
+		}
+
+		public RResult<byte[]> CommitBlock(Block block) {
+			return new RResult<byte[]>(new byte[]{(byte) block.Index()}, null);
+		}
+
+		public CompletableFuture<RResult<byte[]>> CommitBlockAsync(Block block) {
+			int n = inflight.incrementAndGet();
+			maxInflight.accumulateAndGet(n, Math::max);
+			return CompletableFuture.supplyAsync(() -> {
+				try {
+					Thread.sleep(block.Index() % 2 == 0 ? 20 : 1);
+				} catch (InterruptedException e) {
+				}
+				inflight.decrementAndGet();
+				return CommitBlock(block);
+			});
+		}
+
+		public RResult<byte[]> GetSnapshot(long blockIndex) {
+			return new RResult<byte[]>(new byte[]{}, null);
+		}
+
+		public error Restore(byte[] snapshot) {
+			return null;
+		}
+	}
+
+	// manualApp leaves the acknowledgements to the test
+	static class manualApp extends asyncApp {
+		final List<CompletableFuture<RResult<byte[]>>> results = new ArrayList<CompletableFuture<RResult<byte[]>>>();
+
+		public synchronized CompletableFuture<RResult<byte[]>> CommitBlockAsync(Block block) {
+			CompletableFuture<RResult<byte[]>> result = new CompletableFuture<RResult<byte[]>>();
+			results.add(result);
+			notifyAll();
+			return result;
+		}
+
+		synchronized CompletableFuture<RResult<byte[]>> result(int i) throws InterruptedException {
+			while (results.size() <= i) {
+				wait();
+			}
+			return results.get(i);
+		}
+	}
+
+	@Test
+	public void TestCommitPipelineOutOfOrder() throws InterruptedException {
+		manualApp app = new manualApp();
+		List<Long> acks = new ArrayList<Long>();
+		CommitPipeline commits = new CommitPipeline(app, 4, 3, (block, res) -> {
+			synchronized (acks) {
+				acks.add(block.Index());
+			}
+		}, Logger.getLogger(CommitPipelineTest.class));
+		commits.start();
+
+		for (int i = 0; i < 3; i++) {
+			assertNull("No error submitting a block", commits.submit(new Block(i, i + 1, new byte[]{}, new byte[][]{})));
+		}
+		// all three blocks are in flight; the App answers the last ones first
+		app.result(2).complete(new RResult<byte[]>(new byte[]{2}, null));
+		app.result(1).complete(new RResult<byte[]>(new byte[]{1}, null));
+		Thread.sleep(50);
+		synchronized (acks) {
+			assertTrue("no acknowledgement before the first block's", acks.isEmpty());
+		}
+
+		app.result(0).complete(new RResult<byte[]>(new byte[]{0}, null));
+		assertNull("No error flushing", commits.flush());
+		commits.stop();
+		assertEquals("acknowledged in block order", Arrays.asList(0L, 1L, 2L), acks);
+	}
+
+	@Test
+	public void TestCommitPipeline() {
+		asyncApp app = new asyncApp();
+		List<Long> acks = new ArrayList<Long>();
+		List<byte[]> hashes = new ArrayList<byte[]>();
+		CommitPipeline commits = new CommitPipeline(app, 4, 3, (block, res) -> {
+			acks.add(block.Index());
+			hashes.add(res.result);
+		}, Logger.getLogger(CommitPipelineTest.class));
+		commits.start();
+
+		int count = 20;
+		for (int i = 0; i < count; i++) {
+			error err = commits.submit(new Block(i, i + 1, new byte[]{}, new byte[][]{}));
+			assertNull("No error submitting a block", err);
+		}
+		assertNull("No error flushing", commits.flush());
+		commits.stop();
+
+		assertEquals("all blocks acknowledged", count, commits.committed());
+		assertEquals("nothing queued", 0, commits.queued());
+		assertTrue("at most 3 blocks in flight", app.maxInflight.get() <= 3);
+		assertTrue("several blocks in flight", app.maxInflight.get() > 1);
+		for (int i = 0; i < count; i++) {
+			assertEquals("acknowledged in order", (long) i, (long) acks.get(i));
+			assertArrayEquals("state hash of the block", new byte[]{(byte) i}, hashes.get(i));
+		}
+		assertTrue("latency is recorded", commits.maxLatency().compareTo(commits.meanLatency()) >= 0);
+	}
+}
@@ -281,6 +281,42 @@ public class CoreTest {
 	}
 
 
+	@Test
+	public void TestSyncVerifyPool() {
+		initCores(3);
+		initPoset(cores, participantKeys, index, 0);
+		cores[1].SetVerifyParallelism(4);
+
+		// the diff holds events whose parents only come earlier in the diff
+		Map<Long,Long> knownBy1 = cores[1].knownEvents();
+		Event[] unknownBy1 = cores[0].eventDiff(knownBy1).result;
+		WireEvent[] unknownWire = cores[0].toWire(unknownBy1).result;
+
+		RResult<Event[]> readWireEvents = cores[1].readWireEvents(unknownWire);
+		Event[] events = readWireEvents.result;
+		error err = readWireEvents.err;
+		assertNull("No error reading wire events", err);
+		for (int i = 0; i < events.length; i++) {
+			assertEquals(String.format("event %d should match", i), unknownBy1[i].hex(), events[i].hex());
+		}
+
+		// a forged signature is rejected before anything is inserted
+		Event[] forgedEvents = cores[1].readWireEvents(unknownWire).result;
+		KeyPair otherKey = crypto.Utils.GenerateECDSAKeyPair().result;
+		err = forgedEvents[forgedEvents.length - 1].sign(otherKey.getPrivate());
+		assertNull("No error signing", err);
+		err = cores[1].verifyEvents(forgedEvents);
+		assertNotNull("Forged signature should be rejected", err);
+
+		err = cores[1].verifyEvents(events);
+		assertNull("No error verifying events", err);
+		err = cores[1].insertEvents(events);
+		assertNull("No error inserting events", err);
+		assertEquals("core 1 should know what core 0 knows", cores[0].knownEvents(), cores[1].knownEvents());
+
+		cores[1].SetVerifyParallelism(0);
+	}
+
 	private void initCores(int n) {
 		cores = null;
 		index = new HashMap<String,String>();
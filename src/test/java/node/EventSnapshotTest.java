@@ -0,0 +1,108 @@
+package node;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import common.RResult;
+import common.StoreErr;
+import common.StoreErrType;
+import poset.Event;
+
+/**
+ * Test for EventSnapshot
+ *
+ */
+public class EventSnapshotTest {
+
+	private Event event(long index) {
+		return new Event(new byte[][]{}, null, null, new String[]{"", ""}, new byte[]{1}, index,
+			new HashMap<String,Long>());
+	}
+
+	private Map<Long,Long> known(long index0, long index1) {
+		Map<Long,Long> known = new HashMap<Long,Long>();
+		known.put(0L, index0);
+		known.put(1L, index1);
+		return known;
+	}
+
+	@Test
+	public void TestEventSnapshot() {
+		EventSnapshot.builder builder = new EventSnapshot.builder(2);
+		builder.reset(known(-1, -1));
+
+		Event[] events = new Event[20];
+		for (int i = 0; i < events.length; i++) {
+			events[i] = event(i);
+		}
+		builder.add(0, events[0]);
+		builder.add(0, events[1]);
+		EventSnapshot first = builder.build(known(1, -1));
+
+		for (int i = 2; i < events.length; i++) {
+			builder.add(0, events[i]);
+		}
+		EventSnapshot second = builder.build(known(19, -1));
+
+		// a published snapshot does not see later events
+		RResult<Event[]> diff = first.eventDiff(known(-1, -1));
+		assertNull("No error computing the first diff", diff.err);
+		assertArrayEquals("first diff", new Event[]{events[0], events[1]}, diff.result);
+		assertEquals("first known", known(1, -1), first.knownEvents());
+
+		diff = second.eventDiff(known(15, -1));
+		assertNull("No error computing the second diff", diff.err);
+		assertArrayEquals("second diff",
+			new Event[]{events[16], events[17], events[18], events[19]}, diff.result);
+
+		// older events are dropped beyond the window
+		diff = second.eventDiff(known(-1, -1));
+		assertTrue("TooLate error expected", StoreErr.Is(diff.err, StoreErrType.TooLate));
+
+		assertTrue("over the sync limit", second.overSyncLimit(known(15, -1), 3));
+		assertFalse("within the sync limit", second.overSyncLimit(known(16, -1), 3));
+	}
+
+	@Test
+	public void TestEventSnapshotReplace() {
+		EventSnapshot.builder builder = new EventSnapshot.builder(4);
+		builder.reset(known(-1, -1));
+
+		Event[] events = new Event[]{event(0), event(1), event(2)};
+		for (Event ev : events) {
+			builder.add(0, ev);
+		}
+		EventSnapshot first = builder.build(known(2, -1));
+
+		// a published snapshot keeps the event it was built with
+		Event updated = event(1);
+		builder.replace(0, updated);
+		EventSnapshot second = builder.build(known(2, -1));
+
+		RResult<Event[]> diff = first.eventDiff(known(-1, -1));
+		assertNull("No error computing the first diff", diff.err);
+		assertArrayEquals("first diff", events, diff.result);
+
+		diff = second.eventDiff(known(-1, -1));
+		assertNull("No error computing the second diff", diff.err);
+		assertArrayEquals("second diff", new Event[]{events[0], updated, events[2]}, diff.result);
+
+		// replacing again before publishing writes the same copy
+		Event again = event(2);
+		builder.replace(0, again);
+		builder.replace(0, event(5));
+		diff = builder.build(known(2, -1)).eventDiff(known(-1, -1));
+		assertNull("No error computing the third diff", diff.err);
+		assertArrayEquals("third diff", new Event[]{events[0], updated, again}, diff.result);
+		diff = second.eventDiff(known(-1, -1));
+		assertArrayEquals("second diff unchanged",
+			new Event[]{events[0], updated, events[2]}, diff.result);
+	}
+}
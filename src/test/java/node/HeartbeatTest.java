@@ -0,0 +1,55 @@
+package node;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+
+import org.junit.Test;
+
+/**
+ * Test for Heartbeat
+ *
+ */
+public class HeartbeatTest {
+
+	@Test
+	public void TestHeartbeat() {
+		Duration min = Duration.ofMillis(10), max = Duration.ofSeconds(1);
+		Heartbeat heartbeat = new Heartbeat(min, max, 2);
+		assertEquals("starts idle", max, heartbeat.interval());
+
+		// pending transactions bring it down at once
+		assertEquals("pending work", min, heartbeat.next(1));
+
+		// empty syncs make it grow back, up to max
+		Duration last = heartbeat.interval();
+		for (int i = 0; i < 5; i++) {
+			heartbeat.observeSync(0, Duration.ofMillis(4));
+			Duration next = heartbeat.next(0);
+			assertTrue("interval should grow", next.compareTo(last) > 0);
+			last = next;
+		}
+		for (int i = 0; i < 20; i++) {
+			heartbeat.next(0);
+		}
+		assertEquals("bounded by max", max, heartbeat.interval());
+
+		// syncs bringing events make it shrink
+		last = heartbeat.interval();
+		for (int i = 0; i < 5; i++) {
+			heartbeat.observeSync(50, Duration.ofMillis(4));
+			Duration next = heartbeat.next(0);
+			assertTrue("interval should shrink", next.compareTo(last) < 0 || next.equals(min));
+			last = next;
+		}
+		assertEquals("bounded by min", min, heartbeat.next(0));
+
+		// slow syncs raise the floor to the round trip time over the fanout
+		for (int i = 0; i < 50; i++) {
+			heartbeat.observeSync(50, Duration.ofMillis(100));
+		}
+		Duration floor = heartbeat.next(10);
+		assertTrue("floor should follow the round trip time",
+			floor.compareTo(Duration.ofMillis(45)) > 0 && floor.compareTo(Duration.ofMillis(50)) <= 0);
+	}
+}
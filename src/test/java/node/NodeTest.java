@@ -309,7 +309,7 @@ public class NodeTest {
 
 		// check the Tx was removed from the transactionPool
 		// and added to the new Head
-		int l = node0.core.transactionPool.length;
+		int l = node0.core.transactionPool.size();
 		assertEquals("node0's transactionPool should have 0 elements", 0, l);
 
 		Event node0Head = node0.core.getHead().result;
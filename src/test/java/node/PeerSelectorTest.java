@@ -0,0 +1,126 @@
+package node;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+import peers.Peer;
+import peers.Peers;
+
+/**
+ * Test for PeerSelector
+ *
+ */
+public class PeerSelectorTest {
+
+	private Peers initPeers(int n) {
+		Peers participants = new Peers();
+		for (int i = 0; i < n; i++) {
+			participants.addPeer(new Peer(String.format("0x%04X", i), String.format("addr%d", i)));
+		}
+		return participants;
+	}
+
+	@Test
+	public void TestRandomPeerSelectorFanout() {
+		Peers participants = initPeers(5);
+		RandomPeerSelector selector = new RandomPeerSelector(participants, "addr0");
+		selector.updateLast("addr1");
+
+		for (int k = 0; k < 20; k++) {
+			Peer[] next = selector.next(3);
+			assertEquals("should select 3 peers", 3, next.length);
+			Set<String> addrs = new HashSet<String>();
+			for (Peer p : next) {
+				addrs.add(p.getNetAddr());
+			}
+			assertEquals("peers should be distinct", 3, addrs.size());
+			assertFalse("local peer should not be selected", addrs.contains("addr0"));
+			assertFalse("last peer should not be selected", addrs.contains("addr1"));
+		}
+
+		// not enough peers to exclude the last one, but never the local one
+		Peer[] all = selector.next(10);
+		assertEquals("should select every other peer", 4, all.length);
+		for (Peer p : all) {
+			assertFalse("local peer should not be selected", p.getNetAddr().equals("addr0"));
+		}
+	}
+
+	@Test
+	public void TestPickDistinct() {
+		Peer[] candidates = initPeers(4).toPeerSlice();
+		Set<Peer> seen = new HashSet<Peer>();
+		for (int k = 0; k < 100; k++) {
+			Peer[] picked = PeerSelector.pick(candidates, 2, new java.util.Random(k));
+			assertEquals("should pick 2 peers", 2, picked.length);
+			assertTrue("picked peers should be distinct", !picked[0].equals(picked[1]));
+			seen.add(picked[0]);
+			seen.add(picked[1]);
+		}
+		assertEquals("every candidate should get picked", 4, seen.size());
+	}
+
+	@Test
+	public void TestScoringPeerSelector() {
+		Peers participants = initPeers(5);
+		ScoringPeerSelector selector = new ScoringPeerSelector(participants, "0x0000", null);
+
+		// peers not synced with yet come first
+		Set<String> tried = new HashSet<String>();
+		for (int k = 0; k < 4; k++) {
+			Peer p = selector.next();
+			assertFalse("local peer should not be selected", p.getNetAddr().equals("addr0"));
+			tried.add(p.getNetAddr());
+			selector.updateSync(p.getNetAddr(), Duration.ofMillis(100), 0, 0);
+		}
+		assertEquals("every peer should be tried", 4, tried.size());
+
+		// addr3 is fast and ahead of us, addr4 fails
+		selector.updateSync("addr3", Duration.ofMillis(5), 20, 30);
+		selector.updateFailure("addr4", Duration.ofSeconds(1));
+		assertTrue("fast peer should score higher", selector.score("addr3") > selector.score("addr1"));
+		assertTrue("failing peer should score lower", selector.score("addr4") < selector.score("addr1"));
+
+		int best = 0;
+		for (int k = 0; k < 100; k++) {
+			Peer[] next = selector.next(2);
+			assertEquals("should select 2 peers", 2, next.length);
+			assertFalse("peers should be distinct", next[0].equals(next[1]));
+			if (next[0].getNetAddr().equals("addr3")) {
+				best++;
+			}
+		}
+		assertTrue("best peer should come first most of the time", best > 70);
+
+		// the last peer is skipped while enough peers remain
+		selector.updateLast("addr3");
+		for (int k = 0; k < 20; k++) {
+			for (Peer p : selector.next(3)) {
+				assertFalse("last peer should not be selected", p.getNetAddr().equals("addr3"));
+			}
+		}
+
+		// the local peer is skipped even when every other peer is selected
+		Peer[] all = selector.next(10);
+		assertEquals("should select every other peer", 4, all.length);
+		for (Peer p : all) {
+			assertFalse("local peer should not be selected", p.getNetAddr().equals("addr0"));
+		}
+		assertEquals("lag", 7, PeerSelector.lag(known(5, 9), known(3, 4)));
+	}
+
+	private Map<Long,Long> known(long index0, long index1) {
+		Map<Long,Long> known = new HashMap<Long,Long>();
+		known.put(0L, index0);
+		known.put(1L, index1);
+		return known;
+	}
+}
@@ -0,0 +1,76 @@
+package node;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+
+import org.junit.Test;
+
+/**
+ * Test for TransactionPool
+ *
+ */
+public class TransactionPoolTest {
+
+	@Test
+	public void TestTransactionPoolDrain() {
+		TransactionPool pool = new TransactionPool();
+		assertNull("No error adding", pool.addAll(new byte[][]{
+			"a".getBytes(), "bb".getBytes(), "ccc".getBytes(), "dddd".getBytes()}));
+		assertEquals("size", 4, pool.size());
+		assertEquals("bytes", 10, pool.bytes());
+
+		// bounded by count
+		byte[][] batch = pool.drain(2, 100);
+		assertArrayEquals("first batch", new byte[][]{"a".getBytes(), "bb".getBytes()}, batch);
+		assertEquals("size after the first batch", 2, pool.size());
+		assertEquals("bytes after the first batch", 7, pool.bytes());
+
+		// an unused batch goes back at the head
+		pool.unDrain();
+		assertEquals("size after unDrain", 4, pool.size());
+		batch = pool.drain(100, 6);
+		assertArrayEquals("batch bounded by bytes",
+			new byte[][]{"a".getBytes(), "bb".getBytes(), "ccc".getBytes()}, batch);
+
+		// an oversized transaction is still taken on its own
+		batch = pool.drain(100, 1);
+		assertArrayEquals("oversized transaction", new byte[][]{"dddd".getBytes()}, batch);
+		assertTrue("pool should be empty", pool.isEmpty());
+		assertEquals("empty batch", 0, pool.drain(100, 100).length);
+	}
+
+	@Test
+	public void TestTransactionPoolCapacity() {
+		TransactionPool pool = new TransactionPool();
+		pool.setCapacity(2, Duration.ZERO);
+		assertNull("No error adding the first transaction", pool.add("a".getBytes()));
+		assertNull("No error adding the second transaction", pool.add("b".getBytes()));
+		assertNotNull("Full pool should reject", pool.add("c".getBytes()));
+		assertEquals("rejected", 1, pool.rejected());
+
+		pool.drain(1, 100);
+		assertEquals("room after draining", 1, pool.room());
+		assertNull("Room after draining", pool.add("c".getBytes()));
+		assertEquals("no room left", 0, pool.room());
+
+		// a full pool waits for the consumer
+		pool.setCapacity(2, Duration.ofSeconds(5));
+		Thread consumer = new Thread(() -> {
+			try {
+				Thread.sleep(100);
+			} catch (InterruptedException e) {
+			}
+			pool.drain(1, 100);
+		});
+		consumer.start();
+		assertNotNull("Offer should not wait for room", pool.offer("d".getBytes()));
+		assertNull("Add should wait for room", pool.add("d".getBytes()));
+		assertArrayEquals("order should be kept",
+			new byte[][]{"c".getBytes(), "d".getBytes()}, pool.drain(100, 100));
+		assertTrue("mean wait", pool.meanWait().compareTo(pool.maxWait()) <= 0);
+	}
+}
@@ -1,5 +1,6 @@
 package poset;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
@@ -15,6 +16,7 @@ import org.junit.Test;
 
 import autils.Appender;
 import autils.FileUtils;
+import autils.Logger;
 import common.RResult2;
 import common.RResult;
 import common.RResult3;
@@ -227,6 +229,24 @@ public class BadgerStoreTest {
 			assertTrue("Verified signature returns true", ver);
 		}
 
+		//check that a chunked scan returns the same events
+		int chunkSize = 3;
+		for (long start = 0; start < topologicalEvents.length; start += chunkSize) {
+			RResult<Event[]> chunkCall = store.dbTopologicalEvents(start, chunkSize);
+			Event[] chunk = chunkCall.result;
+			err = chunkCall.err;
+			assertNull("No error", err);
+			assertEquals("Length of chunk should match",
+				Math.min(chunkSize, topologicalEvents.length - start), chunk.length);
+			for (int i = 0; i < chunk.length; ++i) {
+				assertEquals(String.format("chunk[%d][%d].Hex should match", start, i),
+					topologicalEvents[(int) start + i].hex(), chunk[i].hex());
+			}
+		}
+		RResult<Event[]> endCall = store.dbTopologicalEvents(topologicalEvents.length, chunkSize);
+		assertNull("No error", endCall.err);
+		assertEquals("No events after the last one", 0, endCall.result.length);
+
 		//check that participant events where correctly added
 		int skipIndex = -1; //do not skip any indexes
 		for (pub p : participants) {
@@ -546,6 +566,134 @@ public class BadgerStoreTest {
 		removeBadgerStore(store);
 	}
 
+	@Test
+	public void TestBadgerWriteBehind() {
+		int cacheSize = 10;
+		int maxUnflushed = 10;
+		RResult2<BadgerStore, pub[]> initBadgerStore = initBadgerStore(cacheSize);
+		BadgerStore store = initBadgerStore.result1;
+		pub p = initBadgerStore.result2[0];
+
+		error err = store.SetWriteBehind(maxUnflushed, null);
+		assertNull("No error", err);
+
+		Event[] events = null;
+		for (int k = 0; k < maxUnflushed; k++) {
+			Event event = new Event(
+					new byte[][]{String.format("%s_%d", p.hex.substring(0,5), k).getBytes()},
+					new InternalTransaction[]{},
+					new BlockSignature[]{new BlockSignature("validator".getBytes(), 0, "r|s")},
+					new String[]{"", ""},
+					p.pubKey,
+					k, null);
+			events = Appender.append(events, event);
+			err = store.setEvent(event);
+			assertNull("No error", err);
+
+			if (k == maxUnflushed - 2) {
+				// still pending, but visible through the store
+				assertNotNull("Event should not be in the db yet", store.dbGetEvent(event.hex()).err);
+				RResult<Event> getEvent = store.getEvent(event.hex());
+				assertNull("No error", getEvent.err);
+				assertEquals("Event should match", event.message.Body, getEvent.result.message.Body);
+			}
+		}
+
+		// reaching maxUnflushed writes the whole batch
+		for (Event ev : events) {
+			RResult<Event> dbGetEvent = store.dbGetEvent(ev.hex());
+			assertNull("No error", dbGetEvent.err);
+			assertEquals("Event should match", ev.message.Body, dbGetEvent.result.message.Body);
+		}
+
+		RoundInfo round = new RoundInfo();
+		round.AddEvent(events[0].hex(), true);
+		err = store.setRound(0, round);
+		assertNull("No error", err);
+		assertNotNull("Round should not be in the db yet", store.dbGetRound(0).err);
+
+		err = store.flush();
+		assertNull("No error", err);
+		RResult<RoundInfo> dbGetRound = store.dbGetRound(0);
+		assertNull("No error", dbGetRound.err);
+		assertEquals("Round and StoredRound do not match", round, dbGetRound.result);
+
+		removeBadgerStore(store);
+	}
+
+	@Test
+	public void TestBadgerBootstrapAnchor() {
+		int cacheSize = 1; // Inmem_store's caches accept positive cacheSize only
+		RResult2<BadgerStore, pub[]> initBadgerStore = initBadgerStore(cacheSize);
+		BadgerStore store = initBadgerStore.result1;
+
+		RResult3<Long,Long> anchorCall = store.dbGetBootstrapAnchor();
+		assertTrue("No anchor yet", store.isDBKeyNotFound(anchorCall.err));
+
+		error err = store.dbSetBootstrapAnchor(3, 42);
+		assertNull("No error", err);
+		anchorCall = store.dbGetBootstrapAnchor();
+		assertNull("No error", anchorCall.err);
+		assertEquals("Anchor block should match", 3, (long) anchorCall.result1);
+		assertEquals("Anchor topological index should match", 42, (long) anchorCall.result2);
+
+		//with write-behind, the anchor is written with the pending events
+		err = store.SetWriteBehind(10, null);
+		assertNull("No error", err);
+		err = store.dbSetBootstrapAnchor(4, 50);
+		assertNull("No error", err);
+		assertEquals("Anchor should not be updated yet", 3, (long) store.dbGetBootstrapAnchor().result1);
+		err = store.flush();
+		assertNull("No error", err);
+		assertEquals("Anchor should be updated", 4, (long) store.dbGetBootstrapAnchor().result1);
+
+		removeBadgerStore(store);
+	}
+
+	@Test
+	public void TestBadgerBootstrap() {
+		//run consensus on a Poset backed by a BadgerStore, which saves an anchor
+		recreateTestDir();
+		PosetTest posetTest = new PosetTest();
+		posetTest.badgerDir = dbPath;
+		posetTest.initConsensusPoset(true);
+		Poset p = posetTest.poset;
+		assertNull("No error", p.DivideRounds());
+		assertNull("No error", p.DecideFame());
+		assertNull("No error", p.DecideRoundReceived());
+		assertNull("No error", p.ProcessDecidedRounds());
+
+		BadgerStore store = (BadgerStore) p.Store;
+		RResult3<Long,Long> anchorCall = store.dbGetBootstrapAnchor();
+		assertNull("ProcessDecidedRounds should save an anchor", anchorCall.err);
+		long lastBlockIndex = store.lastBlockIndex();
+		assertEquals("Anchor should be the last block", lastBlockIndex, (long) anchorCall.result1);
+		Block block = store.getBlock(lastBlockIndex).result;
+		Map<Long,Long> known = store.knownEvents();
+		error err = store.close();
+		assertNull("No error", err);
+
+		//bootstrap a new Poset from the same database: it is reset from the
+		//anchor block, then the later Events are replayed
+		RResult<BadgerStore> loadBadgerStore = BadgerStore.LoadBadgerStore(posetTest.cacheSize, dbPath);
+		BadgerStore recycledStore = loadBadgerStore.result;
+		assertNull("No error", loadBadgerStore.err);
+		Poset np = new Poset(recycledStore.participants, recycledStore, null, Logger.getLogger(BadgerStoreTest.class));
+		err = np.Bootstrap();
+		assertNull("No error bootstrapping", err);
+		assertFalse("Bootstrap should be over", np.bootstrapping);
+
+		assertEquals("LastConsensusRound should match", p.LastConsensusRound, np.LastConsensusRound);
+		assertEquals("Last block should match", lastBlockIndex, recycledStore.lastBlockIndex());
+		RResult<Block> lastBlock = recycledStore.getBlock(lastBlockIndex);
+		assertNull("No error", lastBlock.err);
+		assertEquals("Block should match", block, lastBlock.result);
+		assertEquals("Known events should match", known, recycledStore.knownEvents());
+		assertEquals("Replayed Events should all be divided", 0, np.UndividedEvents.size());
+
+		removeBadgerStore(recycledStore);
+	}
+
 	@Test
 	public void TestBadgerBlocks() {
 		int cacheSize = 1; // Inmem_store's caches accept positive cacheSize only
@@ -0,0 +1,97 @@
+package poset;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import poset.proto.Trilean;
+
+/**
+ * Test of DagIndex
+ *
+ */
+public class DagIndexTest {
+
+	/*
+	|  e12  |
+	|   | \ |
+	|  s10 e20
+	|   | / |
+	|   /   |
+	| / |   |
+	s00 |  s20
+	|   |   |
+	e01 |   |
+	| \ |   |
+	e0  e1  e2
+	|   |   |
+	r0  r1  r2
+	0   1   2
+	*/
+	private DagIndex initDagIndex(int size) {
+		DagIndex dag = new DagIndex(size);
+		dag.add("e0", "a", 0, "r0", "");
+		dag.add("e1", "b", 0, "r1", "");
+		dag.add("e2", "c", 0, "r2", "");
+		dag.add("e01", "a", 1, "e0", "e1");
+		dag.add("s20", "c", 1, "e2", "");
+		dag.add("s10", "b", 1, "e1", "");
+		dag.add("s00", "a", 2, "e01", "");
+		dag.add("e20", "c", 2, "s20", "s00");
+		dag.add("e12", "b", 2, "s10", "e20");
+		return dag;
+	}
+
+	@Test
+	public void TestAncestor() {
+		DagIndex dag = initDagIndex(100);
+
+		assertEquals("ancestor(e01, e1)", Trilean.TRUE, dag.ancestor("e01", "e1"));
+		assertEquals("ancestor(e20, e0)", Trilean.TRUE, dag.ancestor("e20", "e0"));
+		assertEquals("ancestor(e12, e2)", Trilean.TRUE, dag.ancestor("e12", "e2"));
+		assertEquals("ancestor(e12, e12)", Trilean.TRUE, dag.ancestor("e12", "e12"));
+		assertEquals("ancestor(e01, e2)", Trilean.FALSE, dag.ancestor("e01", "e2"));
+		assertEquals("ancestor(s00, e2)", Trilean.FALSE, dag.ancestor("s00", "e2"));
+		assertEquals("ancestor(e12, r0)", Trilean.UNDEFINED, dag.ancestor("e12", "r0"));
+		assertEquals("ancestor(e12, \"\")", Trilean.UNDEFINED, dag.ancestor("e12", ""));
+	}
+
+	@Test
+	public void TestSelfAncestor() {
+		DagIndex dag = initDagIndex(100);
+
+		assertEquals("selfAncestor(e20, e2)", Trilean.TRUE, dag.selfAncestor("e20", "e2"));
+		assertEquals("selfAncestor(s00, e01)", Trilean.TRUE, dag.selfAncestor("s00", "e01"));
+		assertEquals("selfAncestor(e20, e0)", Trilean.FALSE, dag.selfAncestor("e20", "e0"));
+		assertEquals("selfAncestor(e12, e20)", Trilean.FALSE, dag.selfAncestor("e12", "e20"));
+		assertEquals("selfAncestor(e1, r1)", Trilean.UNDEFINED, dag.selfAncestor("e1", "r1"));
+	}
+
+	@Test
+	public void TestStronglySee() {
+		DagIndex dag = initDagIndex(100);
+		int superMajority = 3;
+
+		assertEquals("stronglySee(e12, e01)", Trilean.TRUE, dag.stronglySee("e12", "e01", superMajority));
+		assertEquals("stronglySee(e12, e0)", Trilean.TRUE, dag.stronglySee("e12", "e0", superMajority));
+		assertEquals("stronglySee(e20, e0)", Trilean.FALSE, dag.stronglySee("e20", "e0", superMajority));
+		assertEquals("stronglySee(e12, e2)", Trilean.FALSE, dag.stronglySee("e12", "e2", superMajority));
+		assertEquals("stronglySee(e01, e2)", Trilean.FALSE, dag.stronglySee("e01", "e2", superMajority));
+		assertEquals("stronglySee(e12, r0)", Trilean.UNDEFINED, dag.stronglySee("e12", "r0", superMajority));
+	}
+
+	@Test
+	public void TestRoll() {
+		DagIndex dag = initDagIndex(3);
+
+		assertEquals("indexed events", 6, dag.len());
+		assertEquals("id(e0)", -1, dag.id("e0"));
+		assertEquals("id(e12)", 8, dag.id("e12"));
+
+		// dropped events are unknown, but later ones keep their ancestry
+		assertEquals("ancestor(e12, e1)", Trilean.UNDEFINED, dag.ancestor("e12", "e1"));
+		assertEquals("ancestor(e12, e01)", Trilean.TRUE, dag.ancestor("e12", "e01"));
+		assertEquals("ancestor(e12, s20)", Trilean.TRUE, dag.ancestor("e12", "s20"));
+		assertEquals("ancestor(e20, s10)", Trilean.FALSE, dag.ancestor("e20", "s10"));
+		assertEquals("stronglySee(e12, s20)", Trilean.FALSE, dag.stronglySee("e12", "s20", 3));
+	}
+}
@@ -3,6 +3,7 @@ import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.security.KeyPair;
@@ -212,6 +213,74 @@ public class EventTest {
 		assertEquals("expected flag table should match", exp, res.Body);
 	}
 
+	@Test
+	public void TestFlagTableCache() {
+		HashMap<String, Long> start = new HashMap<String,Long>();
+		start.put("y", 1L);
+		start.put("x", 0L);
+
+		EventMessage eventMessage = new EventMessage();
+		eventMessage.FlagTable = new FlagTableWrapper(start).marshaller().protoMarshal().result;
+		Event event = new Event(eventMessage);
+
+		RResult<FlagTable> ft = event.flagTable();
+		assertNull("No error", ft.err);
+		assertEquals("decoded flag table should match", start, ft.result);
+		assertArrayEquals("keys should be sorted", new String[]{"x", "y"}, ft.result.keys());
+		assertTrue("flag table should be decoded once", ft.result == event.flagTable().result);
+
+		HashMap<String, Long> other = new HashMap<String,Long>();
+		other.put("x", 1L);
+		other.put("z", 1L);
+		Map<String, Long> merged = event.mergeFlagTable(other).result;
+		HashMap<String, Long> exp = new HashMap<String,Long>();
+		exp.put("x", 1L);
+		exp.put("y", 1L);
+		exp.put("z", 1L);
+		assertEquals("merged flag table should match", exp, merged);
+		assertEquals("merge should not change the event", start, event.flagTable().result);
+
+		error err = event.replaceFlagTable(merged);
+		assertNull("No error", err);
+		assertTrue("replaced flag table should be kept", merged == event.flagTable().result);
+
+		//a new encoding is decoded again
+		event.message.FlagTable = new FlagTableWrapper(start).marshaller().protoMarshal().result;
+		assertEquals("flag table should follow message.FlagTable", start, event.flagTable().result);
+	}
+
+
+	@Test
+	public void TestBodyHashCache() {
+		KeyPair key = crypto.Utils.GenerateECDSAKeyPair().result;
+		EventBody body = createDummyEventBody();
+		body.Creator = crypto.Utils.FromECDSAPub(key.getPublic());
+
+		Event event = new Event(new EventMessage(body));
+		assertNull("No Error signing Event", event.sign(key.getPrivate()));
+		byte[] hash = body.Hash().result;
+		assertSame("body should be hashed once", hash, body.Hash().result);
+		assertSame("event hash should be the body hash", hash, event.hash().result);
+
+		//copies share the body hash
+		assertSame("copy should keep the hash", hash, new Event(event).hash().result);
+		assertSame("message copy should keep the hash", hash, new Event(event.message).hash().result);
+
+		//a reloaded event trusts its stored hash
+		byte[] raw = event.marshaller().protoMarshal().result;
+		Event reloaded = new Event();
+		assertNull("No Error unmarshalling Event", reloaded.marshaller().protoUnmarshal(raw));
+		byte[] stored = reloaded.message.Body.Hash().result;
+		assertSame("reloaded body should not be hashed again", reloaded.hash().result, stored);
+		assertArrayEquals("reloaded hash should match", hash, stored);
+		assertEquals("reloaded event should verify", true, reloaded.verify().result);
+
+		//a decoded body is hashed again
+		EventBody decoded = new EventBody();
+		assertNull("No Error unmarshalling EventBody",
+			decoded.marshaller().protoUnmarshal(body.marshaller().protoMarshal().result));
+		assertArrayEquals("decoded body hash should match", hash, decoded.Hash().result);
+	}
 
 	private EventBody createDummyEventBody() {
 		EventBody body = new EventBody();
@@ -1,6 +1,7 @@
 package poset;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
@@ -886,11 +887,35 @@ public class PosetTest {
 		assertEquals(String.format("RoundDiff(%s, %s) should be 0", e20, e21), 0, d);
 	}
 
+	@Test
+	public void testDivideRoundsUndividedEvents() {
+		initRoundPoset();
+		assertEquals("every inserted Event should wait for DivideRounds",
+			orderedEvents.length, poset.UndividedEvents.size());
+
+		error err = poset.DivideRounds();
+		assertNull("No error", err);
+		assertEquals("DivideRounds should drain UndividedEvents", 0, poset.UndividedEvents.size());
+		assertFalse("DivideRounds should queue the rounds", poset.PendingRounds.isEmpty());
+
+		for (Event e : orderedEvents) {
+			RResult<Event> getEvent = poset.Store.getEvent(e.hex());
+			assertNull("No error", getEvent.err);
+			assertTrue(String.format("%s should have a round", e.hex()), getEvent.result.getRound() >= 0);
+		}
+
+		// nothing was inserted since: the next pass has nothing to visit
+		err = poset.DivideRounds();
+		assertNull("No error", err);
+		assertEquals("UndividedEvents should stay empty", 0, poset.UndividedEvents.size());
+	}
+
 	//@Test
 	public void testDivideRounds() {
 		initRoundPoset();
 		error err = poset.DivideRounds();
 		assertNull("No error", err);
+		assertEquals("DivideRounds should drain UndividedEvents", 0, poset.UndividedEvents.size());
 
 		long l = poset.Store.lastRound();
 		assertEquals("last round should be 2", 2, l);
@@ -1361,6 +1386,81 @@ public class PosetTest {
 		initPosetFull(plays, db, n);
 	}
 
+	// consensus runs the consensus methods on p
+	private void consensus(Poset p) {
+		assertNull("No error in DivideRounds", p.DivideRounds());
+		assertNull("No error in DecideFame", p.DecideFame());
+		assertNull("No error in DecideRoundReceived", p.DecideRoundReceived());
+		assertNull("No error in ProcessDecidedRounds", p.ProcessDecidedRounds());
+	}
+
+	private String[] sorted(String[] a) {
+		String[] res = a.clone();
+		Arrays.sort(res);
+		return res;
+	}
+
+	@Test
+	public void testParallelConsensus() {
+		initConsensusPoset(false);
+
+		// the reference runs sequentially on all the events at once
+		Poset reference = poset;
+		reference.SetParallelism(0);
+		consensus(reference);
+		assertTrue("blocks should be produced", reference.Store.lastBlockIndex() >= 0);
+
+		// the others get the events in two halves, so that the vote tables of the
+		// pending rounds are carried from one DecideFame call to the next
+		Poset sequential = new Poset(participants, new InmemStore(participants, cacheSize), null, logger);
+		sequential.SetParallelism(0);
+		Poset parallel = new Poset(participants, new InmemStore(participants, cacheSize), null, logger);
+		parallel.SetParallelism(4);
+		int half = orderedEvents.length / 2;
+		for (Poset p : new Poset[]{sequential, parallel}) {
+			for (int i = 0; i < orderedEvents.length; i++) {
+				if (i == half) {
+					consensus(p);
+				}
+				error err = p.InsertEvent(new Event(orderedEvents[i].getMessage()), true);
+				assertNull(String.format("No error when inserting event %d", i), err);
+			}
+			consensus(p);
+		}
+
+		for (Poset p : new Poset[]{sequential, parallel}) {
+			String name = p == parallel ? "parallel" : "sequential";
+			for (Event e : orderedEvents) {
+				Event want = reference.Store.getEvent(e.hex()).result;
+				RResult<Event> getEvent = p.Store.getEvent(e.hex());
+				assertNull("No error", getEvent.err);
+				assertEquals(String.format("%s round of %s", name, e.hex()),
+					want.getRound(), getEvent.result.getRound());
+				assertEquals(String.format("%s round received of %s", name, e.hex()),
+					want.getRoundReceived(), getEvent.result.getRoundReceived());
+			}
+
+			assertEquals(name + " last round", reference.Store.lastRound(), p.Store.lastRound());
+			for (long r = 0; r <= reference.Store.lastRound(); r++) {
+				RoundInfo want = reference.Store.getRound(r).result;
+				RResult<RoundInfo> getRound = p.Store.getRound(r);
+				assertNull("No error", getRound.err);
+				assertArrayEquals(String.format("%s witnesses of round %d", name, r),
+					sorted(want.Witnesses()), sorted(getRound.result.Witnesses()));
+				assertArrayEquals(String.format("%s famous witnesses of round %d", name, r),
+					sorted(want.FamousWitnesses()), sorted(getRound.result.FamousWitnesses()));
+			}
+
+			assertEquals(name + " last consensus round", reference.LastConsensusRound, p.LastConsensusRound);
+			assertEquals(name + " last block", reference.Store.lastBlockIndex(), p.Store.lastBlockIndex());
+			for (long b = 0; b <= reference.Store.lastBlockIndex(); b++) {
+				assertEquals(String.format("%s block %d", name, b),
+					reference.Store.getBlock(b).result, p.Store.getBlock(b).result);
+			}
+		}
+		parallel.SetParallelism(0);
+	}
+
 	//@Test
 	public void testDivideRoundsBis() {
 		initConsensusPoset(false);
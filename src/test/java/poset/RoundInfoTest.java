@@ -0,0 +1,80 @@
+package poset;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import poset.proto.Trilean;
+
+/**
+ * Test for RoundInfo
+ *
+ */
+public class RoundInfoTest {
+
+	private String[] sorted(String[] a) {
+		String[] res = a.clone();
+		Arrays.sort(res);
+		return res;
+	}
+
+	@Test
+	public void TestRoundInfoViews() {
+		RoundInfo round = new RoundInfo();
+		round.AddEvent("w0", true);
+		round.AddEvent("w1", true);
+		round.AddEvent("w2", true);
+		round.AddEvent("e0", false);
+		round.AddEvent("w0", false); // already known
+
+		assertArrayEquals("witnesses", new String[]{"w0", "w1", "w2"}, sorted(round.Witnesses()));
+		assertSame("witnesses should not be rebuilt", round.Witnesses(), round.Witnesses());
+		assertFalse("witnesses should not be decided", round.WitnessesDecided());
+		assertEquals("no famous witness yet", 0, round.FamousWitnesses().length);
+
+		round.SetFame("w0", true);
+		round.SetFame("w1", false);
+		assertFalse("w2 is not decided", round.WitnessesDecided());
+		round.SetFame("w2", true);
+		assertTrue("witnesses should be decided", round.WitnessesDecided());
+		assertArrayEquals("famous witnesses", new String[]{"w0", "w2"}, sorted(round.FamousWitnesses()));
+
+		round.SetFame("w2", false);
+		assertArrayEquals("famous witnesses after a change", new String[]{"w0"}, round.FamousWitnesses());
+
+		round.SetConsensusEvent("e0");
+		round.SetConsensusEvent("e1"); // unknown event
+		round.SetConsensusEvent("e0");
+		assertArrayEquals("consensus events", new String[]{"e0", "e1"}, round.ConsensusEvents());
+		assertSame("consensus events should not be rebuilt", round.ConsensusEvents(), round.ConsensusEvents());
+		assertArrayEquals("round events", new String[]{"w0", "w1", "w2"}, sorted(round.RoundEvents()));
+	}
+
+	@Test
+	public void TestRoundInfoViewsFromMessage() {
+		Map<String,RoundEvent> events = new HashMap<String,RoundEvent>();
+		events.put("w0", new RoundEvent(true, Trilean.TRUE));
+		events.put("w1", new RoundEvent(true, Trilean.UNDEFINED));
+		events.put("e0", new RoundEvent(false, Trilean.UNDEFINED));
+		RoundInfo round = new RoundInfo(new RoundInfoMessage(events));
+
+		assertArrayEquals("witnesses", new String[]{"w0", "w1"}, sorted(round.Witnesses()));
+		assertArrayEquals("famous witnesses", new String[]{"w0"}, round.FamousWitnesses());
+		assertFalse("witnesses should not be decided", round.WitnessesDecided());
+
+		// a replaced message is indexed again
+		Map<String,RoundEvent> others = new HashMap<String,RoundEvent>();
+		others.put("x0", new RoundEvent(true, Trilean.FALSE));
+		round.Message = new RoundInfoMessage(others);
+		assertArrayEquals("witnesses of the new message", new String[]{"x0"}, round.Witnesses());
+		assertEquals("no famous witness in the new message", 0, round.FamousWitnesses().length);
+		assertTrue("witnesses of the new message should be decided", round.WitnessesDecided());
+	}
+}
@@ -0,0 +1,96 @@
+package poset;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Test for VoteTable
+ *
+ */
+public class VoteTableTest {
+
+	@Test
+	public void TestVoteTableSlots() {
+		VoteTable votes = new VoteTable(3);
+		assertEquals("round", 3, votes.round());
+		assertEquals("first candidate", 0, votes.candidate("x0"));
+		assertEquals("second candidate", 1, votes.candidate("x1"));
+		assertEquals("known candidate keeps its slot", 0, votes.candidate("x0"));
+
+		assertEquals("unknown voter", -1, votes.voterSlot("y0"));
+		assertEquals("first voter", 0, votes.voter("y0"));
+		assertEquals("known voter keeps its slot", 0, votes.voter("y0"));
+		assertEquals("voter slot", 0, votes.voterSlot("y0"));
+
+		assertFalse("no vote yet", votes.hasVoted(0, 1));
+		votes.set(0, 1, true);
+		votes.set(0, 0, false);
+		assertEquals("yes vote", VoteTable.YES, votes.get(0, 1));
+		assertEquals("no vote", VoteTable.NO, votes.get(0, 0));
+		assertTrue("voted", votes.hasVoted(0, 0));
+	}
+
+	@Test
+	public void TestVoteTableVoterGrowth() {
+		// more voters than the 16 initial slots, doubled twice
+		int n = 40;
+		VoteTable votes = new VoteTable(0);
+		int x = votes.candidate("x");
+		for (int i = 0; i < n; i++) {
+			int y = votes.voter("y" + i);
+			assertEquals("dense voter slots", i, y);
+			votes.set(y, x, i % 3 == 0);
+			assertNull("strongly seen not computed yet", votes.stronglySeen(y));
+			votes.setStronglySeen(y, new int[]{i});
+		}
+		for (int i = 0; i < n; i++) {
+			int y = votes.voterSlot("y" + i);
+			assertEquals(String.format("vote of voter %d kept across growth", i),
+				i % 3 == 0 ? VoteTable.YES : VoteTable.NO, votes.get(y, x));
+			assertEquals(String.format("strongly seen of voter %d kept across growth", i),
+				i, votes.stronglySeen(y)[0]);
+		}
+	}
+
+	@Test
+	public void TestVoteTableCandidateGrowth() {
+		VoteTable votes = new VoteTable(0);
+		int x0 = votes.candidate("x0");
+		int y = votes.voter("y");
+		votes.set(y, x0, true);
+
+		// candidates added after the voter row was made
+		int last = -1;
+		for (int i = 1; i < 10; i++) {
+			last = votes.candidate("x" + i);
+		}
+		assertEquals("last candidate slot", 9, last);
+		assertEquals("slot past the row is not voted", VoteTable.NONE, votes.get(y, last));
+		assertFalse("slot past the row is not voted", votes.hasVoted(y, last));
+
+		// set grows the row
+		votes.set(y, last, false);
+		assertEquals("vote past the old row", VoteTable.NO, votes.get(y, last));
+		assertEquals("earlier vote kept", VoteTable.YES, votes.get(y, x0));
+		for (int i = 1; i < last; i++) {
+			assertEquals(String.format("candidate %d not voted", i), VoteTable.NONE, votes.get(y, i));
+		}
+
+		// ensureCandidates grows every row to fit the candidates
+		int z = votes.voter("z");
+		votes.set(z, x0, false);
+		int x10 = votes.candidate("x10");
+		int x11 = votes.candidate("x11");
+		votes.ensureCandidates();
+		assertTrue("row of y fits all candidates", votes.votes[y].length >= 12);
+		assertTrue("row of z fits all candidates", votes.votes[z].length >= 12);
+		assertEquals("vote of y kept", VoteTable.NO, votes.get(y, last));
+		assertEquals("vote of z kept", VoteTable.NO, votes.get(z, x0));
+		votes.set(z, x11, true);
+		assertEquals("vote on the last candidate", VoteTable.YES, votes.get(z, x11));
+		assertEquals("neighbour not voted", VoteTable.NONE, votes.get(z, x10));
+	}
+}